@@ -0,0 +1,95 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import etomica.simulation.prototypes.HSMD3D;
+import etomica.util.HeapList;
+import etomica.util.IEventQueue;
+import etomica.util.TreeLinker;
+import etomica.util.TreeList;
+import etomica.util.random.RandomMersenneTwister;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the TreeList and HeapList event queues, both inside IntegratorHard
+ * (collisions processed per second for hard spheres) and in isolation with
+ * the "hold" pattern of an event-driven simulation: remove the first event
+ * and reinsert it slightly later, with event times clustered together.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BenchEventQueue {
+
+    @Param({"TreeList", "HeapList"})
+    public String queue;
+
+    @Param({"4000", "32000", "108000"})
+    public int numAtoms;
+
+    private HSMD3D sim;
+    private IEventQueue eventQueue;
+    private TreeLinker[] linkers;
+    private RandomMersenneTwister random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HSMD3D.HSMD3DParam params = new HSMD3D.HSMD3DParam();
+        params.nAtoms = numAtoms;
+        sim = new HSMD3D(params);
+        sim.integrator.reset();
+        sim.integrator.setEventQueue(makeQueue());
+
+        random = new RandomMersenneTwister(1);
+        eventQueue = makeQueue();
+        linkers = new TreeLinker[numAtoms];
+        for (int i = 0; i < numAtoms; i++) {
+            linkers[i] = new TreeLinker(i);
+            // clustered times, as after a neighbor list reset
+            linkers[i].sortKey = 1 + 1e-3 * random.nextDouble();
+            eventQueue.add(linkers[i]);
+        }
+    }
+
+    private IEventQueue makeQueue() {
+        return queue.equals("HeapList") ? new HeapList() : new TreeList();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public long collisions() {
+        sim.integrator.doStep();
+        return sim.integrator.getCollisionCount();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public double hold() {
+        TreeLinker first = linkers[(Integer) eventQueue.firstElement()];
+        eventQueue.remove(first);
+        first.sortKey += 1e-3 * random.nextDouble();
+        eventQueue.add(first);
+        return first.sortKey;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(BenchEventQueue.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,142 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.nbr;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.AtomType;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.nbr.list.PotentialMasterList;
+import etomica.potential.*;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full energy and force sweeps through PotentialMasterCell and
+ * PotentialMasterList.  Run main (which attaches the GC profiler) and check
+ * that gc.alloc.rate.norm is ~0 bytes per operation; any allocation per
+ * neighbor pair would show up there as megabytes.  The parallel parameter
+ * toggles PotentialMasterList's multi-threaded mode.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BenchPairDispatch {
+
+    @Param({"4000"})
+    public int numAtoms;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Box boxCell, boxList;
+    private PotentialMasterCell pmCell;
+    private PotentialMasterList pmList;
+    private PotentialCalculationEnergySum pcEnergy;
+    private PotentialCalculationForceSum pcForceCell, pcForceList;
+    private IteratorDirective id;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesSpheresMono species = new SpeciesSpheresMono(sim, sim.getSpace());
+        sim.addSpecies(species);
+        AtomType leafType = species.getLeafType();
+        double rc = 3;
+
+        pmCell = new PotentialMasterCell(sim, rc, sim.getSpace());
+        pmCell.setCellRange(2);
+        pmList = new PotentialMasterList(sim, 4, sim.getSpace());
+        pmList.setParallel(parallel);
+
+        boxCell = makeBox(sim, species);
+        boxList = makeBox(sim, species);
+
+        P2SoftSphericalTruncated p2 = new P2SoftSphericalTruncated(sim.getSpace(), new P2LennardJones(sim.getSpace()), rc);
+        pmCell.addPotential(p2, new AtomType[]{leafType, leafType});
+        pmList.addPotential(p2, new AtomType[]{leafType, leafType});
+        pmCell.reset();
+        pmList.reset();
+
+        pcEnergy = new PotentialCalculationEnergySum();
+        pcForceCell = new PotentialCalculationForceSum();
+        pcForceCell.setAgentManager(new AtomLeafAgentManager<Vector>(a -> sim.getSpace().makeVector(), boxCell));
+        pcForceList = new PotentialCalculationForceSum();
+        pcForceList.setAgentManager(new AtomLeafAgentManager<Vector>(a -> sim.getSpace().makeVector(), boxList));
+        id = new IteratorDirective();
+        id.includeLrc = false;
+    }
+
+    private Box makeBox(Simulation sim, SpeciesSpheresMono species) {
+        Box box = sim.makeBox();
+        box.setNMolecules(species, numAtoms);
+        new BoxInflate(box, sim.getSpace(), 0.8).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+        return box;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public double energyCell() {
+        pcEnergy.zeroSum();
+        pmCell.calculate(boxCell, id, pcEnergy);
+        return pcEnergy.getSum();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public double energyList() {
+        pcEnergy.zeroSum();
+        pmList.calculate(boxList, id, pcEnergy);
+        return pcEnergy.getSum();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public PotentialCalculation forceCell() {
+        pmCell.calculate(boxCell, id, pcForceCell);
+        return pcForceCell;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public PotentialCalculation forceList() {
+        pmList.calculate(boxList, id, pcForceList);
+        return pcForceList;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(BenchPairDispatch.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,106 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.IAtom;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.models.water.P2WaterSPCE;
+import etomica.models.water.SpeciesWater3P;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scaling of EwaldSummation and EwaldSummationPME with system
+ * size for SPC/E water at liquid density.  Both use the same alpha and
+ * real-space cutoff; the Ewald k-space cutoff and the PME grid (~1 Angstrom
+ * spacing, order 6) give similar accuracy.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BenchEwald {
+
+    @Param({"Ewald", "PME"})
+    public String method;
+
+    @Param({"256", "1000", "4000"})
+    public int numMolecules;
+
+    private PotentialSoft potential;
+    private Box box;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesWater3P species = new SpeciesWater3P(sim.getSpace(), false);
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        double boxLength = Math.cbrt(numMolecules / 0.0334);
+        box.getBoundary().setBoxSize(Vector.of(boxLength, boxLength, boxLength));
+        box.setNMolecules(species, numMolecules);
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+
+        EwaldSummation.MyCharge chargeO = new EwaldSummation.MyCharge(P2WaterSPCE.QO);
+        EwaldSummation.MyCharge chargeH = new EwaldSummation.MyCharge(P2WaterSPCE.QH);
+        AtomLeafAgentManager<EwaldSummation.MyCharge> atomAgentManager = new AtomLeafAgentManager<>(new AtomLeafAgentManager.AgentSource<EwaldSummation.MyCharge>() {
+            public EwaldSummation.MyCharge makeAgent(IAtom a, Box agentBox) {
+                return a.getType() == species.getOxygenType() ? chargeO : chargeH;
+            }
+
+            public void releaseAgent(EwaldSummation.MyCharge agent, IAtom atom, Box agentBox) {
+            }
+        }, box);
+
+        double rCut = 9;
+        double alpha = 0.3;
+        if (method.equals("PME")) {
+            int nGrid = Integer.highestOneBit((int) Math.ceil(boxLength) - 1) * 2;
+            potential = new EwaldSummationPME(box, atomAgentManager, sim.getSpace(), rCut, alpha, new int[]{nGrid, nGrid, nGrid}, 6);
+        }
+        else {
+            // exp(-kCut^2/(4 alpha^2)) ~ 1e-5
+            double kCut = 2 * alpha * Math.sqrt(-Math.log(1e-5));
+            EwaldSummation ewald = new EwaldSummation(box, atomAgentManager, sim.getSpace(), kCut, rCut);
+            ewald.setAlpha(alpha);
+            potential = ewald;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(time = 1, iterations = 3)
+    @Measurement(time = 3, iterations = 3)
+    public double energy() {
+        return potential.energy(box.getLeafList());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(time = 1, iterations = 3)
+    @Measurement(time = 3, iterations = 3)
+    public Vector[] gradient() {
+        return potential.gradient(box.getLeafList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(BenchEwald.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
@@ -9,6 +9,7 @@ import etomica.config.ConfigurationResourceFile;
 import etomica.data.AccumulatorAverageFixed;
 import etomica.data.DataPumpListener;
 import etomica.data.meter.MeterPressure;
+import etomica.potential.AtomEnergyCache;
 import etomica.tests.TestLJMC3D;
 import org.openjdk.jmh.annotations.*;
 
@@ -24,6 +25,9 @@ public class BenchSimLJMC3D {
     @Param({"200000"})
     private int numSteps;
 
+    @Param({"false", "true"})
+    private boolean energyCache;
+
     private TestLJMC3D sim;
     private MeterPressure pMeter;
 
@@ -36,6 +40,9 @@ public class BenchSimLJMC3D {
         );
 
         sim = new TestLJMC3D(numMolecules, numSteps, config);
+        if (energyCache) {
+            sim.mcMoveAtom.setEnergyCache(new AtomEnergyCache(sim.integrator));
+        }
 
         pMeter = new MeterPressure(sim.space);
         pMeter.setIntegrator(sim.integrator);
@@ -34,6 +34,7 @@ public class BenchSimLJMD3D {
         id = new IteratorDirective(IteratorDirective.Direction.UP);
         pc = sim.integrator.getForceSum();
         pm = (PotentialMasterList) sim.integrator.getPotentialMaster();
+        pm.getNeighborManager(sim.box).setDoPairSkinCheck(true);
 
     }
 
@@ -48,6 +49,16 @@ public class BenchSimLJMD3D {
         return sim.integrator.getStepCount();
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(time = 1, iterations = 5)
+    @Measurement(time = 3, iterations = 5)
+    public long integratorDoStep() {
+        // includes the neighbor list check (and any rebuild)
+        sim.integrator.doStep();
+        return sim.integrator.getStepCount();
+    }
 
     public static void main(String[] args) throws RunnerException {
 
@@ -0,0 +1,86 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial;
+
+import etomica.atom.IAtomList;
+import etomica.chem.elements.ElementSimple;
+import etomica.potential.P2LennardJones;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ClusterWheatleySoft for Lennard-Jones after a move that displaces
+ * a single molecule, with and without incremental f bond updates.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BenchClusterWheatleySoft {
+
+    @Param({"6", "7", "8", "9", "10"})
+    public int n;
+
+    @Param({"true", "false"})
+    public boolean incremental;
+
+    private ClusterWheatleySoft cluster;
+    private BoxCluster box;
+    private RandomMersenneTwister random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesSpheresMono species = new SpeciesSpheresMono(sim.getSpace(), new ElementSimple("A"));
+        sim.addSpecies(species);
+        MayerGeneralSpherical f = new MayerGeneralSpherical(new P2LennardJones(sim.getSpace()));
+        cluster = new ClusterWheatleySoft(n, f, 0);
+        cluster.setTemperature(1.5);
+        cluster.setDoIncrementalF(incremental);
+        box = new BoxCluster(new ClusterWeightAbs(cluster), sim.getSpace());
+        sim.addBox(box);
+        box.setNMolecules(species, n);
+        random = new RandomMersenneTwister(1);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < n; i++) {
+            atoms.get(i).getPosition().setX(i % 3, 0.9 * (i / 3));
+        }
+        box.trialNotify();
+        box.acceptNotify();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(time = 1, iterations = 3)
+    @Measurement(time = 3, iterations = 3)
+    public double singleMoleculeMove() {
+        IAtomList atoms = box.getLeafList();
+        Vector p = atoms.get(1 + random.nextInt(n - 1)).getPosition();
+        int d = random.nextInt(3);
+        double old = p.getX(d);
+        p.setX(d, old + 0.1 * (random.nextDouble() - 0.5));
+        box.trialNotify();
+        double v = cluster.value(box);
+        box.acceptNotify();
+        return v;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(BenchClusterWheatleySoft.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,82 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial;
+
+import etomica.graph.iterators.filters.IsomorphismFilter;
+import etomica.virial.cluster.VirialDiagrams;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generation of the virial diagrams, with isomorphs found either by
+ * canonical form lookup or by matching against graphs with the same signature.
+ * Matching is much slower and is only measured for n up to 6.
+ */
+@Fork(1)
+public class BenchVirialDiagrams {
+
+    @State(Scope.Benchmark)
+    public static class Canonical {
+        @Param({"6", "7", "8", "9"})
+        public int n;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            IsomorphismFilter.DEBUG_MODE = false;
+            IsomorphismFilter.USE_CANONICAL_FORM = true;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Matching {
+        @Param({"5", "6"})
+        public int n;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            IsomorphismFilter.DEBUG_MODE = false;
+            IsomorphismFilter.USE_CANONICAL_FORM = false;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int makeVirialDiagramsCanonical(Canonical state) {
+        return makeVirialDiagrams(state.n);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int makeVirialDiagramsMatching(Matching state) {
+        return makeVirialDiagrams(state.n);
+    }
+
+    private static int makeVirialDiagrams(int n) {
+        VirialDiagrams virialDiagrams = new VirialDiagrams(n, false, false);
+        virialDiagrams.setCacheDir(null);
+        virialDiagrams.setDoReeHoover(false);
+        virialDiagrams.makeVirialDiagrams();
+        return virialDiagrams.getVirialGraphs().size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+                .include(BenchVirialDiagrams.class.getSimpleName())
+                .build();
+
+        new Runner(opts).run();
+    }
+}
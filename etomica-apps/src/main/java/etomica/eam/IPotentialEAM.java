@@ -0,0 +1,50 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.eam;
+
+/**
+ * Functional form of an embedded-atom potential,
+ * U = sum_pairs u(r_ij) + sum_i f(rho_i), with rho_i = sum_j rho(r_ij).
+ * The pair functions take the squared separation and must return 0 beyond
+ * their cutoff.
+ *
+ * @see PotentialComputeEAM
+ */
+public interface IPotentialEAM {
+
+    /**
+     * Returns the pair energy.
+     */
+    double u(double r2);
+
+    /**
+     * Returns r du/dr.
+     *
+     * @param u the pair energy at r2, as returned by u(r2)
+     */
+    double du(double r2, double u);
+
+    /**
+     * Returns the contribution of one neighbor to an atom's density.
+     */
+    double rho(double r2);
+
+    /**
+     * Returns r drho/dr.
+     *
+     * @param rho the density contribution at r2, as returned by rho(r2)
+     */
+    double drho(double r2, double rho);
+
+    /**
+     * Returns the embedding energy for an atom with the given density.
+     */
+    double f(double rho);
+
+    /**
+     * Returns the derivative of the embedding energy with respect to density.
+     */
+    double df(double rho);
+}
@@ -28,10 +28,13 @@ import etomica.space.Vector;
  * Then call prepForGradient.  Then the gradient method should be called for
  * all pairs and summed appropriately.  To speed things up, disableEnergy may
  * be called.
+ * <p>
+ * Alternatively, {@link PotentialComputeEAM} can compute the energy and
+ * forces directly from the neighbor lists, using the IPotentialEAM methods.
  *
  * @author Andrew Schultz
  */
-public class P2EAM extends Potential2 implements PotentialSoft {
+public class P2EAM extends Potential2 implements PotentialSoft, IPotentialEAM {
     
     protected double n2, m2, eps, a, a2, Ceps, rc12, rc22;
     protected Boundary boundary;
@@ -108,6 +111,31 @@ public class P2EAM extends Potential2 implements PotentialSoft {
         return u;
     }
     
+    public double u(double r2) {
+        return r2 < rc12 ? eps * Math.pow(a2 / r2, n2) : 0;
+    }
+
+    public double du(double r2, double u) {
+        return -2 * n2 * u;
+    }
+
+    public double rho(double r2) {
+        return r2 < rc22 ? Math.pow(a2 / r2, m2) : 0;
+    }
+
+    public double drho(double r2, double rho) {
+        return -2 * m2 * rho;
+    }
+
+    public double f(double rho) {
+        return -Ceps * Math.sqrt(rho);
+    }
+
+    public double df(double rho) {
+        // an atom with no density has no neighbors to exert a force on it
+        return rho == 0 ? 0 : -0.5 * Ceps / Math.sqrt(rho);
+    }
+
     public double energy1() {
         double sum1 = 0;
         for (int i=0; i<rho.length; i++) {
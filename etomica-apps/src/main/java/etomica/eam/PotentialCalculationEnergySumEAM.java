@@ -12,14 +12,25 @@ import etomica.potential.PotentialCalculationEnergySum;
  * Evaluate the energy for the EAM model using the P2EAM potential.  This
  * potential calculation will explicitly include the embedding contribution
  * from the EAM potential.
+ * <p>
+ * If constructed with a {@link PotentialComputeEAM}, the EAM energy is
+ * computed from the neighbor lists (reusing its density buffer) when the sum
+ * is zeroed, and pairs given to the EAM potential are skipped.
  */
 public class PotentialCalculationEnergySumEAM extends PotentialCalculationEnergySum {
     
     protected final P2EAM p2;
+    protected final PotentialComputeEAM compute;
     protected double sum;
     
     public PotentialCalculationEnergySumEAM(P2EAM p2) {
         this.p2 = p2;
+        compute = null;
+    }
+
+    public PotentialCalculationEnergySumEAM(PotentialComputeEAM compute) {
+        p2 = null;
+        this.compute = compute;
     }
     
     /**
@@ -27,6 +38,7 @@ public class PotentialCalculationEnergySumEAM extends PotentialCalculationEnergy
      * atoms.
      */
     public void doCalculation(IAtomList atoms, IPotentialAtomic potential) {
+        if (compute != null && potential == compute.getPotential()) return;
         sum += potential.energy(atoms);
     }
     
@@ -34,6 +46,10 @@ public class PotentialCalculationEnergySumEAM extends PotentialCalculationEnergy
      * Sets the energy sum to zero, typically to begin a new energy-sum calculation.
      */
     public void zeroSum() {
+        if (compute != null) {
+            sum = compute.compute(null);
+            return;
+        }
         p2.reset();
         sum = 0.0;
     }
@@ -42,6 +58,6 @@ public class PotentialCalculationEnergySumEAM extends PotentialCalculationEnergy
      * Returns the current value of the energy sum.
      */
     public double getSum() {
-        return sum + p2.energy1();
+        return compute != null ? sum : sum + p2.energy1();
     }
 }
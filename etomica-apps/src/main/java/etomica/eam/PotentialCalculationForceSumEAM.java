@@ -0,0 +1,55 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.eam;
+
+import etomica.atom.IAtomList;
+import etomica.potential.IPotentialAtomic;
+import etomica.potential.PotentialCalculationForceSum;
+
+/**
+ * Force sum that handles an EAM potential with {@link PotentialComputeEAM}.
+ * The EAM forces are computed when the sum is reset (which integrators do
+ * just before asking the potential master to compute the forces); the
+ * potential master then adds the forces from any other potentials, while
+ * pairs given to the EAM potential are skipped.
+ */
+public class PotentialCalculationForceSumEAM extends PotentialCalculationForceSum {
+
+    protected final PotentialComputeEAM compute;
+
+    public PotentialCalculationForceSumEAM(PotentialComputeEAM compute) {
+        this.compute = compute;
+    }
+
+    /**
+     * Re-zeros the force vectors and then adds the forces from the EAM
+     * potential.
+     */
+    public void reset() {
+        super.reset();
+        compute.compute(integratorAgentManager);
+    }
+
+    public void doCalculation(IAtomList atoms, IPotentialAtomic potential) {
+        if (potential == compute.getPotential()) return;
+        super.doCalculation(atoms, potential);
+    }
+
+    /**
+     * Returns the energy (from the EAM potential only) computed along with
+     * the forces.
+     */
+    public double getEnergyEAM() {
+        return compute.getEnergy();
+    }
+
+    /**
+     * Returns the virial (from the EAM potential only) computed along with
+     * the forces.
+     */
+    public double getVirialEAM() {
+        return compute.getVirial();
+    }
+}
@@ -0,0 +1,222 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.eam;
+
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.nbr.list.NeighborListManager;
+import etomica.nbr.list.PotentialMasterList;
+import etomica.potential.IPotentialAtomic;
+import etomica.space.Boundary;
+import etomica.space.Vector;
+
+/**
+ * Computes the energy and forces of an embedded-atom potential directly from
+ * the up-neighbor lists of a PotentialMasterList, in two passes.  The first
+ * pass visits each pair once, accumulating the pair energy and the density of
+ * both atoms, and stores r du/dr and r drho/dr for the pair.  After the
+ * embedding energy and its derivative are computed for each atom, the second
+ * pass visits the pairs in the same order and computes the forces from the
+ * stored derivatives, so the potential functions are evaluated only once per
+ * pair.  The per-atom and per-pair arrays are kept and reused.
+ * <p>
+ * The potential (for instance, a {@link P2EAM}) must be added to the
+ * potential master for the appropriate atom types so that the neighbor lists
+ * include the pairs.  {@link PotentialCalculationForceSumEAM} and
+ * {@link PotentialCalculationEnergySumEAM} use this class to handle the EAM
+ * potential while the potential master handles any other potentials.
+ */
+public class PotentialComputeEAM {
+
+    protected final PotentialMasterList potentialMaster;
+    protected final Box box;
+    protected final IPotentialAtomic potential;
+    protected final IPotentialEAM functions;
+    protected final Vector dr;
+    protected double[] rho, dfdrho;
+    protected double[] pairDerivatives;
+    protected double energy, virial;
+
+    /**
+     * @param potentialMaster the potential master whose neighbor lists are used
+     * @param box             the box
+     * @param p2              the EAM potential, as added to the potential master
+     */
+    public PotentialComputeEAM(PotentialMasterList potentialMaster, Box box, P2EAM p2) {
+        this(potentialMaster, box, p2, p2);
+    }
+
+    /**
+     * @param potentialMaster the potential master whose neighbor lists are used
+     * @param box             the box
+     * @param potential       the potential added to the potential master for
+     *                        the EAM pairs
+     * @param functions       the functional form of the EAM potential
+     */
+    public PotentialComputeEAM(PotentialMasterList potentialMaster, Box box, IPotentialAtomic potential, IPotentialEAM functions) {
+        this.potentialMaster = potentialMaster;
+        this.box = box;
+        this.potential = potential;
+        this.functions = functions;
+        dr = box.getSpace().makeVector();
+        rho = new double[0];
+        dfdrho = new double[0];
+        pairDerivatives = new double[0];
+    }
+
+    /**
+     * Returns the potential that this class handles.
+     */
+    public IPotentialAtomic getPotential() {
+        return potential;
+    }
+
+    /**
+     * Returns the energy from the last call to compute.
+     */
+    public double getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Returns the virial (sum over pairs of r dU/dr) from the last call to
+     * compute with forces.
+     */
+    public double getVirial() {
+        return virial;
+    }
+
+    /**
+     * Returns the density of each atom (indexed by leaf index) from the last
+     * call to compute.
+     */
+    public double[] getDensities() {
+        return rho;
+    }
+
+    /**
+     * Computes the energy and, if forces is not null, adds the force on each
+     * atom to its agent.
+     *
+     * @param forces agent manager holding the force on each atom; may be null
+     * @return the energy
+     */
+    public double compute(AtomLeafAgentManager<Vector> forces) {
+        IAtomList atoms = box.getLeafList();
+        int nAtoms = atoms.size();
+        if (rho.length != nAtoms) {
+            rho = new double[nAtoms];
+            dfdrho = new double[nAtoms];
+        }
+        else {
+            for (int i = 0; i < nAtoms; i++) {
+                rho[i] = 0;
+            }
+        }
+        potential.setBox(box);
+        Boundary boundary = box.getBoundary();
+        NeighborListManager nbrManager = potentialMaster.getNeighborManager(box);
+        boolean[][] isEAM = isEAM();
+        boolean doForces = forces != null;
+
+        // first pass: pair energy and densities
+        energy = 0;
+        int nPairs = 0;
+        for (int i = 0; i < nAtoms; i++) {
+            IAtom atom = atoms.get(i);
+            boolean[] iEAM = isEAM[atom.getType().getIndex()];
+            IAtomList[] upLists = null;
+            Vector ipos = atom.getPosition();
+            for (int t = 0; t < iEAM.length; t++) {
+                if (!iEAM[t]) continue;
+                if (upLists == null) upLists = nbrManager.getUpList(atom);
+                IAtomList nbrs = upLists[t];
+                int nNbrs = nbrs.size();
+                if (doForces && pairDerivatives.length < 2 * (nPairs + nNbrs)) {
+                    double[] newDerivatives = new double[Math.max(2 * (nPairs + nNbrs), pairDerivatives.length * 3 / 2)];
+                    System.arraycopy(pairDerivatives, 0, newDerivatives, 0, 2 * nPairs);
+                    pairDerivatives = newDerivatives;
+                }
+                for (int j = 0; j < nNbrs; j++) {
+                    IAtom jAtom = nbrs.get(j);
+                    dr.Ev1Mv2(jAtom.getPosition(), ipos);
+                    boundary.nearestImage(dr);
+                    double r2 = dr.squared();
+                    double u = functions.u(r2);
+                    double rhoij = functions.rho(r2);
+                    energy += u;
+                    rho[i] += rhoij;
+                    rho[jAtom.getLeafIndex()] += rhoij;
+                    if (doForces) {
+                        pairDerivatives[2 * nPairs] = functions.du(r2, u) / r2;
+                        pairDerivatives[2 * nPairs + 1] = functions.drho(r2, rhoij) / r2;
+                        nPairs++;
+                    }
+                }
+            }
+        }
+
+        boolean[] isEAMType = new boolean[isEAM.length];
+        for (int t1 = 0; t1 < isEAM.length; t1++) {
+            for (int t2 = 0; t2 < isEAM.length; t2++) {
+                isEAMType[t1] |= isEAM[t1][t2];
+            }
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            if (!isEAMType[atoms.get(i).getType().getIndex()]) continue;
+            energy += functions.f(rho[i]);
+            if (doForces) dfdrho[i] = functions.df(rho[i]);
+        }
+        if (!doForces) return energy;
+
+        // second pass: forces, using the derivatives stored in the first pass
+        virial = 0;
+        nPairs = 0;
+        for (int i = 0; i < nAtoms; i++) {
+            IAtom atom = atoms.get(i);
+            boolean[] iEAM = isEAM[atom.getType().getIndex()];
+            IAtomList[] upLists = null;
+            Vector ipos = atom.getPosition();
+            Vector iForce = forces.getAgent(atom);
+            double dfi = dfdrho[i];
+            for (int t = 0; t < iEAM.length; t++) {
+                if (!iEAM[t]) continue;
+                if (upLists == null) upLists = nbrManager.getUpList(atom);
+                IAtomList nbrs = upLists[t];
+                int nNbrs = nbrs.size();
+                for (int j = 0; j < nNbrs; j++) {
+                    IAtom jAtom = nbrs.get(j);
+                    // (r dU/dr) / r^2
+                    double rdudr2 = pairDerivatives[2 * nPairs] + (dfi + dfdrho[jAtom.getLeafIndex()]) * pairDerivatives[2 * nPairs + 1];
+                    nPairs++;
+                    if (rdudr2 == 0) continue;
+                    dr.Ev1Mv2(jAtom.getPosition(), ipos);
+                    boundary.nearestImage(dr);
+                    virial += rdudr2 * dr.squared();
+                    iForce.PEa1Tv1(rdudr2, dr);
+                    forces.getAgent(jAtom).PEa1Tv1(-rdudr2, dr);
+                }
+            }
+        }
+        return energy;
+    }
+
+    /**
+     * Returns, for each pair of atom types, whether our potential applies to
+     * the pair (in which case the neighbor lists for that type hold the pairs).
+     */
+    protected boolean[][] isEAM() {
+        IPotentialAtomic[][] potentials = potentialMaster.getRangedPotentials();
+        boolean[][] isEAM = new boolean[potentials.length][potentials.length];
+        for (int t1 = 0; t1 < potentials.length; t1++) {
+            for (int t2 = 0; t2 < potentials.length; t2++) {
+                isEAM[t1][t2] = potentials[t1][t2] == potential;
+            }
+        }
+        return isEAM;
+    }
+}
@@ -12,6 +12,8 @@ import etomica.integrator.IntegratorVelocityVerlet;
 import etomica.potential.PotentialMaster;
 import etomica.space.Boundary;
 import etomica.space.Vector;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
 import etomica.util.random.IRandom;
 
 /**
@@ -175,4 +177,22 @@ public class IntegratorMDHarmonicMC extends IntegratorVelocityVerlet {
     public double getAcceptanceProbability() {
         return chiSum / nAttempted;
     }
+
+    /**
+     * Writes the integrator's state, including the acceptance statistics of
+     * the harmonic MC trials.
+     */
+    public void saveState(CheckpointOutput out) {
+        super.saveState(out);
+        out.putBoolean(firstTrial);
+        out.putInt(nAttempted);
+        out.putDouble(chiSum);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+        firstTrial = in.getBoolean();
+        nAttempted = in.getInt();
+        chiSum = in.getDouble();
+    }
 }
@@ -32,7 +32,7 @@ public class IntegratorKMC extends IntegratorBox{
     IRandom random;
     Simulation sim;
     ISpecies [] species;
-    Vector[] minPosition, currentSaddle, previousSaddle;
+    Vector[] minPosition, currentSaddle;
     double[] saddleVib;
     double massSec;
     double[] saddleEnergies;
@@ -49,6 +49,8 @@ public class IntegratorKMC extends IntegratorBox{
     SimulationGraphic graphic;
     XYZWriter xyzfile;
     BoxImposePbc imposePbc;
+    RateSelector rateSelector;
+    SaddleCatalogue saddles;
     
     public IntegratorKMC(Simulation _sim, PotentialMaster _potentialMaster, double _temperature, IRandom _random, ISpecies[] _species, Box box){
         super(_potentialMaster, _temperature, box);
@@ -70,6 +72,11 @@ public class IntegratorKMC extends IntegratorBox{
         
         //Dimer Searches from minimum
         goodSearch = 0;
+        saddles.clear();
+        for(int i=0; i<saddleEnergies.length; i++){
+            saddleEnergies[i] = 0;
+            saddleVib[i] = 0;
+        }
         while(search){
             loadConfiguration(stepCounter+"");
             randomizePositions();
@@ -160,14 +167,14 @@ public class IntegratorKMC extends IntegratorBox{
         saddleEnergies = new double[searchlimit];
         massSec = Math.sqrt(species[0].getAtomType(0).getMass()) * 0.000000000001;
         rates = new double[searchlimit];
+        rateSelector = new RateSelector(searchlimit);
+        saddles = new SaddleCatalogue(box.getMoleculeList().size(), space.D(), 0.5);
         beta = 1.0/(temperature*1.3806503E-023);
         stepCounter = 0;     
         imposePbc = new BoxImposePbc(box, space);
         currentSaddle = new Vector[box.getMoleculeList().size()];
-        previousSaddle = new Vector[box.getMoleculeList().size()];
         for(int i=0; i<currentSaddle.length; i++){
             currentSaddle[i] = space.makeVector();
-            previousSaddle[i] = space.makeVector();
         }
         
         try {
@@ -219,57 +226,41 @@ public class IntegratorKMC extends IntegratorBox{
         double rateSum = 0;
         minEnergy = Joule.UNIT.fromSim(minEnergy);
         for(int i=0; i<rates.length; i++){
-            if(saddleEnergies[i]==0){continue;}
+            if(saddleEnergies[i]==0){
+                rates[i] = 0;
+                rateSelector.setRate(i, 0);
+                continue;
+            }
             saddleEnergies[i] = Joule.UNIT.fromSim(saddleEnergies[i]);
             rates[i] = (minVib / saddleVib[i] / massSec)* Math.exp( -(saddleEnergies[i] - minEnergy)*beta);
-            rateSum += rates[i];
+            rateSelector.setRate(i, rates[i]);
         }
+        rateSum = rateSelector.getTotal();
         //compute residence time
         tau += -Math.log(random.nextDouble())/rateSum;
 
     }
     
+    /**
+     * Chooses one of the saddles, with probability proportional to its rate.
+     */
     public int chooseRate(){
-        int rt = 0;
-        double sum = 0;
-        double rand = random.nextDouble();
-        for(int q=0; q<rates.length; q++){
-            sum += rates[q];
-        }
-        double sumgrt = 0;
-        for(int i=0; i<rates.length; i++){
-            sumgrt += rates[i];
-            if(rand*sum<=sumgrt){
-                rt = i;
-                System.out.println("-----Choosing a rate-----");
-                for(int l=0; l<rates.length; l++){ 
-                    System.out.println("Rate "+l+": "+rates[l]+", v: "+minVib / saddleVib[i] / massSec);
-                }
-                System.out.println("Sum:    "+sum);
-                System.out.println("-------------------------");
-                System.out.println(rand*sum+" <= "+sumgrt);
-                break;
-            }
-        }
-        return rt;
+        return rateSelector.select(random.nextDouble());
     }
     
+    /**
+     * Checks the current configuration (a saddle) against those already found
+     * from this minimum, and adds it to them.
+     */
     private boolean checkUniqueSaddle(){    
         for(int p = 0; p<box.getMoleculeList().size(); p++){
             currentSaddle[p].E(box.getMoleculeList().get(p).getChildList().get(0).getPosition());
         }
-        for(int i=0; i<goodSearch; i++){
-            double positionDiff = 0;
-            loadConfiguration("s_"+i+"_saddle");
-            for(int j = 0; j<box.getMoleculeList().size(); j++){
-                previousSaddle[j].E(box.getMoleculeList().get(j).getChildList().get(0).getPosition());
-                previousSaddle[j].ME(currentSaddle[j]);
-                positionDiff += previousSaddle[j].squared();
-            }
-            if(positionDiff < 0.5){
-                System.out.println("Duplicate saddle found.");
-                return false;
-            }
+        boolean unique = saddles.find(currentSaddle, minPosition) < 0;
+        saddles.add(currentSaddle);
+        if(!unique){
+            System.out.println("Duplicate saddle found.");
+            return false;
         }
         System.out.println("Unique saddle found.");
         return true;  
@@ -38,7 +38,7 @@ public class IntegratorKMCCluster extends IntegratorBox{
     IRandom random;
     Simulation sim;
     ISpecies [] species;
-    Vector[] minPosition, currentSaddle, previousSaddle;
+    Vector[] minPosition, currentSaddle;
     double[] saddleVib;
     double[] saddleEnergies;
     double[] rates;
@@ -57,6 +57,8 @@ public class IntegratorKMCCluster extends IntegratorBox{
     SimulationGraphic graphic;
     XYZWriter xyzMin1, xyzMin2;
     BoxImposePbc imposePbc;
+    RateSelector rateSelector;
+    SaddleCatalogue saddles;
     MeterMeanSquareDisplacement msd1, msd2;
     FileReader fileReader, writeTau;
     BufferedReader buffReader;
@@ -109,6 +111,7 @@ public class IntegratorKMCCluster extends IntegratorBox{
         }
         
         searchNum = 0;
+        saddles.clear();
         for(int i=0; i<saddleEnergies.length; i++){
 
             loadConfiguration("s_"+i+"_saddle");
@@ -227,12 +230,12 @@ public class IntegratorKMCCluster extends IntegratorBox{
         kmcStep = 1;
         imposePbc = new BoxImposePbc(box, space);
         rates = new double[totalSearches];
+        rateSelector = new RateSelector(totalSearches);
+        saddles = new SaddleCatalogue(box.getMoleculeList().size(), space.D(), 0.5);
         beta = 1.0/(temperature*1.3806503E-023);
         currentSaddle = new Vector[box.getMoleculeList().size()];
-        previousSaddle = new Vector[box.getMoleculeList().size()];
         for(int i=0; i<currentSaddle.length; i++){
             currentSaddle[i] = space.makeVector();
-            previousSaddle[i] = space.makeVector();
         }
         
         createIntegrators();
@@ -276,11 +279,15 @@ public class IntegratorKMCCluster extends IntegratorBox{
         double rateSum = 0;
         minEnergy = Joule.UNIT.fromSim(minEnergy);
         for(int i=0; i<rates.length; i++){
-            if(saddleEnergies[i]==0){continue;}
+            if(saddleEnergies[i]==0){
+                rateSelector.setRate(i, 0);
+                continue;
+            }
             saddleEnergies[i] = Joule.UNIT.fromSim(saddleEnergies[i]);
             rates[i] = (minVib / saddleVib[i] / massSec) * Math.exp( -(saddleEnergies[i] - minEnergy)*beta);
-            rateSum += rates[i];
+            rateSelector.setRate(i, rates[i]);
         }
+        rateSum = rateSelector.getTotal();
         //compute residence time
         tau += -Math.log(random.nextDouble())/rateSum;
 
@@ -310,49 +317,29 @@ public class IntegratorKMCCluster extends IntegratorBox{
             saddleEnergies[i] = 0.0;
             saddleVib[i] = 0.0;
         }
+        rateSelector.reset();
     }
 
+    /**
+     * Chooses one of the saddles, with probability proportional to its rate.
+     */
     public int chooseRate(){
-        int rt = 0;
-        double sum = 0;
-        double rand = random.nextDouble();
-        for(int q=0; q<rates.length; q++){
-            sum += rates[q];
-        }
-        double sumgrt = 0;
-        for(int i=0; i<rates.length; i++){
-            sumgrt += rates[i];
-            if(rand*sum<=sumgrt){
-                rt = i;
-                System.out.println("-----Choosing a rate-----");
-                for(int l=0; l<rates.length; l++){ 
-                    System.out.println("Rate "+l+": "+rates[l]+", v: "+minVib / saddleVib[i] / massSec);
-                }
-                System.out.println("Sum:    "+sum);
-                System.out.println("-------------------------");
-                System.out.println(rand*sum+" <= "+sumgrt);
-                break;
-            }
-        }
-        return rt;
+        return rateSelector.select(random.nextDouble());
     }
     
+    /**
+     * Checks the current configuration (a saddle) against those already read
+     * for this step, and adds it to them.
+     */
     private boolean checkUniqueSaddle(){    
         for(int p = 0; p<box.getMoleculeList().size(); p++){
             currentSaddle[p].E(box.getMoleculeList().get(p).getChildList().get(0).getPosition());
         }
-        for(int i=0; i<searchNum; i++){
-            double positionDiff = 0;
-            loadConfiguration("s_"+i+"_saddle");
-            for(int j = 0; j<box.getMoleculeList().size(); j++){
-                previousSaddle[j].E(box.getMoleculeList().get(j).getChildList().get(0).getPosition());
-                previousSaddle[j].ME(currentSaddle[j]);
-                positionDiff += previousSaddle[j].squared();
-            }
-            if(positionDiff < 0.5){
-                System.out.println("Duplicate saddle found.");
-                return false;
-            }
+        boolean unique = saddles.find(currentSaddle, minPosition) < 0;
+        saddles.add(currentSaddle);
+        if(!unique){
+            System.out.println("Duplicate saddle found.");
+            return false;
         }
         System.out.println("Unique saddle found.");
         return true;  
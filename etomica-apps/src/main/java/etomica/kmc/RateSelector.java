@@ -0,0 +1,106 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.kmc;
+
+/**
+ * Holds the rates of a set of events and selects an event with probability
+ * proportional to its rate.  The rates are kept in a Fenwick (binary indexed)
+ * tree, so changing one rate and selecting an event each take O(log n) work,
+ * and the total rate is always available.
+ */
+public class RateSelector {
+
+    protected final double[] rates;
+    protected final double[] tree;
+    protected final int topBit;
+
+    /**
+     * @param nRates the number of events
+     */
+    public RateSelector(int nRates) {
+        rates = new double[nRates];
+        tree = new double[nRates + 1];
+        topBit = nRates == 0 ? 0 : Integer.highestOneBit(nRates);
+    }
+
+    public int getNumRates() {
+        return rates.length;
+    }
+
+    /**
+     * Sets the rate of event i.
+     */
+    public void setRate(int i, double rate) {
+        if (rate < 0 || Double.isNaN(rate)) {
+            throw new IllegalArgumentException("rate must be non-negative");
+        }
+        double delta = rate - rates[i];
+        rates[i] = rate;
+        for (int j = i + 1; j < tree.length; j += j & -j) {
+            tree[j] += delta;
+        }
+    }
+
+    public double getRate(int i) {
+        return rates[i];
+    }
+
+    /**
+     * @return the sum of the rates of events 0 through i-1
+     */
+    public double getPartialSum(int i) {
+        double sum = 0;
+        for (int j = i; j > 0; j -= j & -j) {
+            sum += tree[j];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of all rates
+     */
+    public double getTotal() {
+        return getPartialSum(rates.length);
+    }
+
+    /**
+     * Returns an event chosen with probability proportional to its rate,
+     * given a uniform random number between 0 and 1.  This is the first event
+     * i for which the sum of rates 0 through i exceeds u times the total, so
+     * events with a rate of 0 are never chosen (unless all rates are 0, in
+     * which case 0 is returned).
+     *
+     * @param u random number in [0,1)
+     */
+    public int select(double u) {
+        double target = u * getTotal();
+        // descend the tree, finding the largest prefix whose sum does not
+        // exceed the target
+        int pos = 0;
+        for (int step = topBit; step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] <= target) {
+                pos = next;
+                target -= tree[next];
+            }
+        }
+        if (pos >= rates.length) {
+            // round-off took us past the end; take the last event that can happen
+            pos = rates.length - 1;
+            while (pos > 0 && rates[pos] == 0) pos--;
+        }
+        return pos;
+    }
+
+    /**
+     * Sets all rates to 0.
+     */
+    public void reset() {
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = 0;
+            tree[i + 1] = 0;
+        }
+    }
+}
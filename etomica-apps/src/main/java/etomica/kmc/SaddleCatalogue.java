@@ -0,0 +1,170 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.kmc;
+
+import etomica.space.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory collection of saddle configurations, used to recognize a saddle
+ * that has already been found.  Two configurations are the same saddle if
+ * the sum (over atoms) of the squared distance between corresponding atoms
+ * is less than the tolerance.
+ * <p>
+ * For a match, every atom must be within sqrt(tolerance) of its position in
+ * the stored configuration.  Each stored configuration is hashed by the
+ * position of each of its atoms (on a grid with cells of size
+ * sqrt(tolerance)), so a query only needs to examine configurations that
+ * have its most-displaced atom (relative to a reference, typically the
+ * current minimum) in a neighboring cell.  The full distance is then
+ * computed only for those candidates.
+ */
+public class SaddleCatalogue {
+
+    protected final int nAtoms, D;
+    protected final double tolerance, cellSize;
+    protected final List<double[]> configurations;
+    protected final Map<Long, List<Integer>> cellMap;
+    protected final int[] cell;
+
+    /**
+     * @param nAtoms    the number of atoms in each configuration
+     * @param D         the dimension of space
+     * @param tolerance configurations whose summed squared atom displacement
+     *                  is less than this are the same
+     */
+    public SaddleCatalogue(int nAtoms, int D, double tolerance) {
+        this.nAtoms = nAtoms;
+        this.D = D;
+        this.tolerance = tolerance;
+        cellSize = Math.sqrt(tolerance);
+        configurations = new ArrayList<>();
+        cellMap = new HashMap<>();
+        cell = new int[D];
+    }
+
+    /**
+     * @return the number of configurations in the catalogue
+     */
+    public int size() {
+        return configurations.size();
+    }
+
+    /**
+     * Removes all configurations.
+     */
+    public void clear() {
+        configurations.clear();
+        cellMap.clear();
+    }
+
+    /**
+     * Adds a configuration to the catalogue.
+     *
+     * @return the index of the new configuration
+     */
+    public int add(Vector[] positions) {
+        double[] x = new double[nAtoms * D];
+        for (int i = 0; i < nAtoms; i++) {
+            for (int j = 0; j < D; j++) {
+                x[i * D + j] = positions[i].getX(j);
+            }
+        }
+        int index = configurations.size();
+        configurations.add(x);
+        for (int i = 0; i < nAtoms; i++) {
+            for (int j = 0; j < D; j++) {
+                cell[j] = (int) Math.floor(x[i * D + j] / cellSize);
+            }
+            cellMap.computeIfAbsent(key(i, cell), k -> new ArrayList<>()).add(index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of a configuration in the catalogue that matches the
+     * given one, or -1 if there is none.
+     *
+     * @param positions the configuration to look for
+     * @param reference positions used to choose the atom (the one displaced
+     *                  most from its reference position) whose cell is used
+     *                  to find candidates; may be null
+     */
+    public int find(Vector[] positions, Vector[] reference) {
+        int atom = 0;
+        if (reference != null) {
+            double maxR2 = -1;
+            for (int i = 0; i < nAtoms; i++) {
+                double r2 = positions[i].Mv1Squared(reference[i]);
+                if (r2 > maxR2) {
+                    maxR2 = r2;
+                    atom = i;
+                }
+            }
+        }
+        int[] base = new int[D];
+        for (int j = 0; j < D; j++) {
+            base[j] = (int) Math.floor(positions[atom].getX(j) / cellSize);
+        }
+        // loop over the 3^D neighboring cells
+        int nNbrs = 1;
+        for (int j = 0; j < D; j++) nNbrs *= 3;
+        for (int n = 0; n < nNbrs; n++) {
+            int m = n;
+            for (int j = 0; j < D; j++) {
+                cell[j] = base[j] + (m % 3) - 1;
+                m /= 3;
+            }
+            List<Integer> candidates = cellMap.get(key(atom, cell));
+            if (candidates == null) continue;
+            for (int index : candidates) {
+                if (matches(configurations.get(index), positions)) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    protected boolean matches(double[] x, Vector[] positions) {
+        double sum = 0;
+        for (int i = 0; i < nAtoms; i++) {
+            for (int j = 0; j < D; j++) {
+                double dx = x[i * D + j] - positions[i].getX(j);
+                sum += dx * dx;
+            }
+            if (sum >= tolerance) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies configuration i of the catalogue into positions.
+     */
+    public void getConfiguration(int i, Vector[] positions) {
+        double[] x = configurations.get(i);
+        for (int a = 0; a < nAtoms; a++) {
+            for (int j = 0; j < D; j++) {
+                positions[a].setX(j, x[a * D + j]);
+            }
+        }
+    }
+
+    /**
+     * Combines atom index and cell into a key.  Collisions are harmless, as
+     * candidates are always checked.
+     */
+    protected long key(int atom, int[] c) {
+        long k = atom;
+        for (int j = 0; j < D; j++) {
+            k = k * 1000003L + c[j];
+        }
+        return k;
+    }
+}
@@ -0,0 +1,215 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.normalmode;
+
+import etomica.math.numerical.FastFourierTransform3D;
+import etomica.normalmode.CoordinateDefinition.BasisCell;
+import etomica.space.Vector;
+
+/**
+ * Computes collective coordinates for all wave vectors at once using a
+ * Fourier transform over the grid of cells set up by
+ * CoordinateDefinition.initializeCoordinates.  Cell positions there are
+ * R = R0 + sum_d i_d a_d, so for a wave vector k commensurate with the grid,
+ * k.R = k.R0 + 2 pi sum_d m_d i_d / n_d, and the sum over cells in
+ * CoordinateDefinition.calcT is a discrete Fourier transform evaluated at
+ * grid point m, times a phase exp(-i k.R0).  One transform of each
+ * generalized coordinate therefore gives T for every wave vector, with work
+ * O(N log N) instead of O(N_k N).  The inverse (used to build a
+ * configuration from normal-mode amplitudes) works the same way.
+ * <p>
+ * Wave vectors that are not commensurate with the grid are handled by direct
+ * summation.
+ *
+ * @see CoordinateDefinition#setDoFFT(boolean)
+ */
+public class CellFourierTransform {
+
+    protected final CoordinateDefinition coordinateDefinition;
+    protected final BasisCell[] cells;
+    protected final int coordinateDim;
+    protected final int[] gridSize;
+    protected final Vector origin;
+    protected final Vector[] cellVectors;
+    protected final FastFourierTransform3D fft;
+    protected final double[][] gridRe, gridIm;
+
+    /**
+     * @param coordinateDefinition the coordinate definition, whose cells must
+     *                             have been set up by
+     *                             CoordinateDefinition.initializeCoordinates
+     * @param nCells               the number of cells in each direction
+     */
+    public CellFourierTransform(CoordinateDefinition coordinateDefinition, int[] nCells) {
+        this.coordinateDefinition = coordinateDefinition;
+        cells = coordinateDefinition.getBasisCells();
+        coordinateDim = coordinateDefinition.getCoordinateDim();
+        int D = nCells.length;
+        if (D > 3) {
+            throw new IllegalArgumentException("can only handle up to 3 dimensions");
+        }
+        gridSize = new int[]{1, 1, 1};
+        System.arraycopy(nCells, 0, gridSize, 0, D);
+        if (cells.length != gridSize[0] * gridSize[1] * gridSize[2]) {
+            throw new IllegalArgumentException("number of cells does not match the grid");
+        }
+
+        // cells were created with the last index varying fastest
+        origin = coordinateDefinition.space.makeVector();
+        origin.E(cells[0].cellPosition);
+        cellVectors = new Vector[D];
+        int stride = cells.length;
+        for (int d = 0; d < D; d++) {
+            stride /= nCells[d];
+            cellVectors[d] = coordinateDefinition.space.makeVector();
+            if (nCells[d] > 1) {
+                cellVectors[d].Ev1Mv2(cells[stride].cellPosition, origin);
+            }
+        }
+        checkGrid(nCells);
+
+        fft = new FastFourierTransform3D(gridSize[0], gridSize[1], gridSize[2]);
+        gridRe = new double[coordinateDim][cells.length];
+        gridIm = new double[coordinateDim][cells.length];
+    }
+
+    /**
+     * Checks that every cell sits where the grid says it should.
+     */
+    protected void checkGrid(int[] nCells) {
+        Vector r = coordinateDefinition.space.makeVector();
+        int[] idx = new int[nCells.length];
+        for (int iCell = 0; iCell < cells.length; iCell++) {
+            r.E(origin);
+            for (int d = 0; d < nCells.length; d++) {
+                r.PEa1Tv1(idx[d], cellVectors[d]);
+            }
+            double tol = 1e-9 * (1 + Math.sqrt(r.squared()));
+            if (Math.sqrt(r.Mv1Squared(cells[iCell].cellPosition)) > tol) {
+                throw new IllegalArgumentException("cells do not form a lattice grid");
+            }
+            for (int d = nCells.length - 1; d >= 0; d--) {
+                if (++idx[d] < nCells[d]) break;
+                idx[d] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the grid point corresponding to the wave vector,
+     * or -1 if the wave vector is not commensurate with the grid.
+     */
+    public int gridIndex(Vector k) {
+        int index = 0;
+        for (int d = 0; d < 3; d++) {
+            int m = 0;
+            if (d < cellVectors.length && gridSize[d] > 1) {
+                double x = k.dot(cellVectors[d]) * gridSize[d] / (2 * Math.PI);
+                long mx = Math.round(x);
+                if (Math.abs(x - mx) > 1e-6) return -1;
+                m = (int) (((mx % gridSize[d]) + gridSize[d]) % gridSize[d]);
+            }
+            index = index * gridSize[d] + m;
+        }
+        return index;
+    }
+
+    /**
+     * Calculates the complex T vector (see CoordinateDefinition.calcT) for
+     * each wave vector.
+     *
+     * @param waveVectors the wave vectors
+     * @param realT       outputs the real component of T for each wave vector
+     * @param imaginaryT  outputs the imaginary component of T for each wave
+     *                    vector
+     */
+    public void calcT(Vector[] waveVectors, double[][] realT, double[][] imaginaryT) {
+        for (int iCell = 0; iCell < cells.length; iCell++) {
+            double[] u = coordinateDefinition.calcU(cells[iCell].molecules);
+            for (int i = 0; i < coordinateDim; i++) {
+                gridRe[i][iCell] = u[i];
+                gridIm[i][iCell] = 0;
+            }
+        }
+        for (int i = 0; i < coordinateDim; i++) {
+            fft.forward(gridRe[i], gridIm[i]);
+        }
+
+        double sqrtCells = Math.sqrt(cells.length);
+        for (int iVector = 0; iVector < waveVectors.length; iVector++) {
+            Vector k = waveVectors[iVector];
+            int g = gridIndex(k);
+            if (g < 0) {
+                coordinateDefinition.calcT(k, realT[iVector], imaginaryT[iVector]);
+                continue;
+            }
+            // T = exp(-i k.R0) X(m) / sqrt(cells)
+            double kR0 = k.dot(origin);
+            double c = Math.cos(kR0) / sqrtCells;
+            double s = Math.sin(kR0) / sqrtCells;
+            for (int i = 0; i < coordinateDim; i++) {
+                double xr = gridRe[i][g];
+                double xi = gridIm[i][g];
+                realT[iVector][i] = xr * c + xi * s;
+                imaginaryT[iVector][i] = xi * c - xr * s;
+            }
+        }
+    }
+
+    /**
+     * Calculates the generalized coordinates of each cell from complex
+     * amplitudes C(k) for the given wave vectors:
+     * u(R) = Re[sum_k C(k) exp(i k.R)] / sqrt(cells).
+     *
+     * @param waveVectors the wave vectors
+     * @param realC       the real part of C for each wave vector
+     * @param imaginaryC  the imaginary part of C for each wave vector
+     * @param u           outputs the generalized coordinates for each cell
+     */
+    public void calcU(Vector[] waveVectors, double[][] realC, double[][] imaginaryC, double[][] u) {
+        for (int i = 0; i < coordinateDim; i++) {
+            for (int j = 0; j < cells.length; j++) {
+                gridRe[i][j] = 0;
+                gridIm[i][j] = 0;
+            }
+        }
+        for (int iCell = 0; iCell < cells.length; iCell++) {
+            for (int i = 0; i < coordinateDim; i++) {
+                u[iCell][i] = 0;
+            }
+        }
+        double sqrtCells = Math.sqrt(cells.length);
+        for (int iVector = 0; iVector < waveVectors.length; iVector++) {
+            Vector k = waveVectors[iVector];
+            int g = gridIndex(k);
+            if (g < 0) {
+                // not on the grid; sum directly
+                for (int iCell = 0; iCell < cells.length; iCell++) {
+                    double kR = k.dot(cells[iCell].cellPosition);
+                    double c = Math.cos(kR) / sqrtCells;
+                    double s = Math.sin(kR) / sqrtCells;
+                    for (int i = 0; i < coordinateDim; i++) {
+                        u[iCell][i] += realC[iVector][i] * c - imaginaryC[iVector][i] * s;
+                    }
+                }
+                continue;
+            }
+            // C exp(i k.R0) goes to grid point m
+            double kR0 = k.dot(origin);
+            double c = Math.cos(kR0);
+            double s = Math.sin(kR0);
+            for (int i = 0; i < coordinateDim; i++) {
+                gridRe[i][g] += realC[iVector][i] * c - imaginaryC[iVector][i] * s;
+                gridIm[i][g] += realC[iVector][i] * s + imaginaryC[iVector][i] * c;
+            }
+        }
+        for (int i = 0; i < coordinateDim; i++) {
+            fft.backward(gridRe[i], gridIm[i]);
+            for (int iCell = 0; iCell < cells.length; iCell++) {
+                u[iCell][i] += gridRe[i][iCell] / sqrtCells;
+            }
+        }
+    }
+}
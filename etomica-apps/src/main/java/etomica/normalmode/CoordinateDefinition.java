@@ -52,6 +52,8 @@ public abstract class CoordinateDefinition {
     }
     
     public void initializeCoordinates(int[] nCells) {
+        this.nCells = nCells.clone();
+        fourierTransform = null;
         MoleculeIteratorAllMolecules atomIterator = new MoleculeIteratorAllMolecules(box);
         IMoleculeList moleculeList = box.getMoleculeList();
         if (moleculeList.size() == 0) {
@@ -220,6 +222,57 @@ public abstract class CoordinateDefinition {
 
     }
 
+    /**
+     * Calculates the T vector (see calcT(Vector, double[], double[])) for
+     * each of the given wave vectors.  If doFFT is on, all of them come from
+     * a Fourier transform over the grid of cells.
+     *
+     * @param waveVectors the wave vectors
+     * @param realT       outputs the real component of T for each wave vector
+     * @param imaginaryT  outputs the imaginary component of T for each wave
+     *                    vector
+     */
+    public void calcT(Vector[] waveVectors, double[][] realT, double[][] imaginaryT) {
+        CellFourierTransform transform = getFourierTransform();
+        if (transform != null) {
+            transform.calcT(waveVectors, realT, imaginaryT);
+            return;
+        }
+        for (int iVector = 0; iVector < waveVectors.length; iVector++) {
+            calcT(waveVectors[iVector], realT[iVector], imaginaryT[iVector]);
+        }
+    }
+
+    /**
+     * Sets whether T vectors for many wave vectors (calcT(Vector[], ...)) are
+     * computed together via a Fourier transform over the grid of cells,
+     * which takes O(N log N) work instead of O(N_k N).  Results agree with
+     * the direct sum to round-off.  The cells must have been set up by this
+     * class's initializeCoordinates.  Off by default.
+     */
+    public void setDoFFT(boolean newDoFFT) {
+        if (newDoFFT && nCells == null) {
+            throw new RuntimeException("FFT requires cells set up by CoordinateDefinition.initializeCoordinates");
+        }
+        doFFT = newDoFFT;
+    }
+
+    public boolean isDoFFT() {
+        return doFFT;
+    }
+
+    /**
+     * Returns the object that transforms coordinates over the grid of cells,
+     * or null if doFFT is off.
+     */
+    public CellFourierTransform getFourierTransform() {
+        if (!doFFT) return null;
+        if (fourierTransform == null) {
+            fourierTransform = new CellFourierTransform(this, nCells);
+        }
+        return fourierTransform;
+    }
+
     public Box getBox() {
         return box;
     }
@@ -254,6 +307,9 @@ public abstract class CoordinateDefinition {
     protected final Basis basis;
     protected final MoleculeActionTranslateTo atomActionTranslateTo;
     protected BasisCell[] cells;
+    protected int[] nCells;
+    protected boolean doFFT;
+    protected CellFourierTransform fourierTransform;
     protected final Space space;
     
     protected static class SiteSource implements AtomLeafAgentManager.AgentSource<Vector> {
@@ -128,6 +128,13 @@ public class MCMoveHarmonic extends MCMoveBox {
             }
         }
         
+        CellFourierTransform fourierTransform = coordinateDefinition.getFourierTransform();
+        if (fourierTransform != null) {
+            // sum the wave vector contributions for all cells at once
+            doTrialFFT(fourierTransform, cells);
+            return true;
+        }
+
         double normalization = 1/Math.sqrt(cells.length);
         for (int iCell = 0; iCell<cells.length; iCell++) {
             if (isRejectable) {
@@ -168,6 +175,44 @@ public class MCMoveHarmonic extends MCMoveBox {
         return true;
     }
 
+    /**
+     * Sets the generalized coordinates of all cells from the random
+     * normal-mode coordinates using the CoordinateDefinition's Fourier
+     * transform.
+     */
+    protected void doTrialFFT(CellFourierTransform fourierTransform, BasisCell[] cells) {
+        int coordinateDim = coordinateDefinition.getCoordinateDim();
+        if (realC == null || realC.length != waveVectors.length) {
+            realC = new double[waveVectors.length][coordinateDim];
+            imaginaryC = new double[waveVectors.length][coordinateDim];
+        }
+        if (uCells == null || uCells.length != cells.length) {
+            uCells = new double[cells.length][coordinateDim];
+        }
+        for (int iVector=0; iVector<waveVectors.length; iVector++) {
+            for (int j=0; j<coordinateDim; j++) {
+                realC[iVector][j] = 0;
+                imaginaryC[iVector][j] = 0;
+            }
+            int nModes = isSelectMode ? modeNum.length : coordinateDim;
+            for (int m=0; m<nModes; m++) {
+                int i = isSelectMode ? modeNum[m] : m;
+                for (int j=0; j<coordinateDim; j++) {
+                    realC[iVector][j] += sqrtWVC[iVector]*eigenVectors[iVector][i][j]*rRand[iVector][i];
+                    imaginaryC[iVector][j] += sqrtWVC[iVector]*eigenVectors[iVector][i][j]*iRand[iVector][i];
+                }
+            }
+        }
+        fourierTransform.calcU(waveVectors, realC, imaginaryC, uCells);
+        for (int iCell = 0; iCell<cells.length; iCell++) {
+            if (isRejectable) {
+                double[] uNow = coordinateDefinition.calcU(cells[iCell].molecules);
+                System.arraycopy(uNow, 0, uOld[iCell], 0, coordinateDim);
+            }
+            coordinateDefinition.setToU(cells[iCell].molecules, uCells[iCell]);
+        }
+    }
+
     public double getChi(double temperature) {
         // return 1 to guarantee success
         return 1;
@@ -224,6 +269,7 @@ public class MCMoveHarmonic extends MCMoveBox {
     protected double temperature;
     protected boolean isRejectable;
     protected double[][] uOld;
+    protected double[][] realC, imaginaryC, uCells;
     protected int[] modeNum;
     protected boolean isSelectMode = false;
 
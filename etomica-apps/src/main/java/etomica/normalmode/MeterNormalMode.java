@@ -34,8 +34,6 @@ public class MeterNormalMode implements IDataSource, IAction, Serializable {
      */
     public void setCoordinateDefinition(CoordinateDefinition newCoordinateDefinition) {
         coordinateDefinition = newCoordinateDefinition;
-        realT = new double[coordinateDefinition.getCoordinateDim()];
-        imaginaryT = new double[coordinateDefinition.getCoordinateDim()];
     }
     
     /**
@@ -72,6 +70,8 @@ public class MeterNormalMode implements IDataSource, IAction, Serializable {
         numWaveVectors = waveVectors.length;
 
         int coordinateDim = coordinateDefinition.getCoordinateDim();
+        realT = new double[numWaveVectors][coordinateDim];
+        imaginaryT = new double[numWaveVectors][coordinateDim];
         DataDoubleArray[] S = new DataDoubleArray[numWaveVectors];
         for (int i=0; i<S.length; i++) {
             // real and imaginary parts
@@ -99,23 +99,26 @@ public class MeterNormalMode implements IDataSource, IAction, Serializable {
     }
     
     /**
-     * Calculating things and adds terms to the sums
+     * Calculating things and adds terms to the sums.  T for all wave vectors
+     * is computed together, via FFT if the CoordinateDefinition's doFFT is on.
      */
     public void actionPerformed() {
         callCount++;
         int coordinateDim = coordinateDefinition.getCoordinateDim();
 
+        coordinateDefinition.calcT(waveVectors, realT, imaginaryT);
+
         // |data.E(0)| here to calculate the current value rather than the sum
         // loop over wave vectors
         for (int iVector = 0; iVector < numWaveVectors; iVector++) {
+            double[] kRealT = realT[iVector];
+            double[] kImaginaryT = imaginaryT[iVector];
 
-            coordinateDefinition.calcT(waveVectors[iVector], realT, imaginaryT);
-            
             // add to S(k).  imaginary part of S is 0
             double[] sValues = ((DataDoubleArray)data.getData(iVector)).getData();
             for (int i=0; i<coordinateDim; i++) {
                 for (int j=0; j<coordinateDim; j++) {
-                    sValues[i*coordinateDim+j] += realT[i]*realT[j] + imaginaryT[i]*imaginaryT[j];
+                    sValues[i*coordinateDim+j] += kRealT[i]*kRealT[j] + kImaginaryT[i]*kImaginaryT[j];
                 }
             }
         }
@@ -164,5 +167,5 @@ public class MeterNormalMode implements IDataSource, IAction, Serializable {
     private DataGroup data;
     private int callCount;
 
-    protected double[] realT, imaginaryT;
+    protected double[][] realT, imaginaryT;
 }
@@ -11,6 +11,8 @@ import etomica.integrator.mcmove.MCMoveTrialCompletedEvent;
 import etomica.integrator.mcmove.MCMoveTrialInitiatedEvent;
 import etomica.potential.PotentialMaster;
 import etomica.simulation.Simulation;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
 import etomica.util.random.IRandom;
 
 /**
@@ -124,6 +126,34 @@ public class IntegratorTMMC extends IntegratorMC {
      * Accessor method for number of doStep calls between updating of weights.
      */
     public int getWeightUpdateInterval() {return weightUpdateInterval;}
+
+    /**
+     * Writes the integrator's state, including the collected transition
+     * matrix, the weights and the number of steps until the next weight
+     * update.
+     */
+    public void saveState(CheckpointOutput out) {
+        super.saveState(out);
+        out.putInt(doStepCount);
+        out.putInt(nStates);
+        for (int i = 0; i < nStates; i++) {
+            out.putDoubles(C[i]);
+            out.putDouble(weight[i]);
+        }
+    }
+
+    public void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+        doStepCount = in.getInt();
+        int n = in.getInt();
+        if (n != nStates) {
+            throw new IllegalStateException("checkpoint has " + n + " macrostates, but the integrator has " + nStates);
+        }
+        for (int i = 0; i < nStates; i++) {
+            in.getDoubles(C[i]);
+            weight[i] = in.getDouble();
+        }
+    }
     
     private static final long serialVersionUID = 1L;
     private double[][] C;
@@ -4,12 +4,26 @@
 
 package etomica.virial;
 
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.atom.IAtomOriented;
 import etomica.math.SpecialFunctions;
+import etomica.molecule.IMoleculeList;
+import etomica.space.IOrientation;
+import etomica.space.Vector;
+import etomica.space3d.IOrientationFull3D;
+
+import java.util.Arrays;
 
 
 /**
  * This class calculates the sum of all biconnected clusters using Wheatley's
  * recursive formulation.
+ * <p>
+ * Optionally (see setDoIncrementalF), f bonds are only recomputed for pairs
+ * involving a molecule that has moved (or rotated) since the bonds were last
+ * computed, so a move that displaces one molecule costs n-1 Mayer function
+ * evaluations rather than n(n-1)/2.
  * 
  * @author David Kofke and Andrew Schultz 
  */
@@ -28,6 +42,10 @@ public class ClusterWheatleySoft implements ClusterAbstract {
     protected ClusterWheatleySoftBD clusterBD;
     protected boolean debug = false;
     protected boolean doCaching = true;
+    protected boolean doIncrementalF = false;
+    // coordinates (and orientations) of each point when f bonds were last computed
+    protected double[] fCoords = new double[0];
+    protected BoxCluster fBox;
 
     public ClusterWheatleySoft(int nPoints, MayerFunction f, double tol) {
         this.n = nPoints;
@@ -51,10 +69,29 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         }
     }
 
+    /**
+     * Sets whether f bonds are only recomputed for pairs involving a molecule
+     * that moved since the bonds were last computed.  This is off by default.
+     * It may only be enabled if the Mayer function depends on nothing but the
+     * positions and orientations of the pair's atoms (and the temperature);
+     * Mayer functions whose parameters change during the simulation (such as
+     * MayerHardSphere.setSigma) or that depend on other state would be left
+     * with stale bonds.
+     */
+    public void setDoIncrementalF(boolean newDoIncrementalF) {
+        doIncrementalF = newDoIncrementalF;
+        fBox = null;
+    }
+
+    public boolean getDoIncrementalF() {
+        return doIncrementalF;
+    }
+
     public ClusterAbstract makeCopy() {
         ClusterWheatleySoft c = new ClusterWheatleySoft(n, f, tol);
         c.setTemperature(1/beta);
         c.setDoCaching(doCaching);
+        c.setDoIncrementalF(doIncrementalF);
         return c;
     }
 
@@ -107,14 +144,12 @@ public class ClusterWheatleySoft implements ClusterAbstract {
             if (i==j) continue; // 1-point set
             int k = i&~j; //strip j bit from i and set result to k
             if (k == (k&-k)) continue; // 2-point set; these fQ's were filled when bonds were computed, so skip
-            fQ[i] = fQ[k]; //initialize with previously-computed product of all pairs in partition, other than j
-            if (fQ[i] == 0) continue;
-            //loop over pairs formed from j and each point in partition; multiply by bond for each pair
-            //all such pairs will be with bits higher than j, as j is the lowest bit in i
-            for (int l=(j<<1); l<i; l=(l<<1)) {
-                if ((l&i)==0) continue; //l is not in partition
-                fQ[i] *= fQ[l | j];
+            double q = fQ[k]; //initialize with previously-computed product of all pairs in partition, other than j
+            //loop over pairs formed from j and each point in partition (each bit l in k); multiply by bond for each pair
+            for (int m=k; m!=0 && q!=0; m&=m-1) {
+                q *= fQ[(m & -m) | j];
             }
+            fQ[i] = q;
         }
     }
 
@@ -146,22 +181,20 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         calcFullFQ(box);
 
         int nf = 1<<n;
+        // Each sum below is over the proper subsets j of i that contain some
+        // required bits (jBits).  With rest = i^jBits, j = jBits|s where s
+        // runs over the proper subsets of rest, enumerated directly as
+        // s = (s-1)&rest; the complement of j within i is then rest^s.
+
         //Compute the fC's
         for(int i=1; i<nf; i++) {
-            fC[i] = fQ[i];
             int iLowBit = i & -i;
-            int inc = iLowBit<<1;
-            for(int j=iLowBit; j<i; j+=inc) {
-                int jComp = i & ~j;
-                while ((j|jComp) != i && j<i) {
-                    int jHighBits = j^iLowBit;
-                    int jlow = jHighBits & -jHighBits;
-                    j += jlow;
-                    jComp = (i & ~j);
-                }
-                if (j==i) break;
-                fC[i] -= fC[j] * fQ[jComp];//for fQ, flip the bits on j; use only those appearing in i
+            int rest = i ^ iLowBit;
+            double c = fQ[i];
+            for (int s=(rest-1)&rest; s!=rest; s=(s-1)&rest) {
+                c -= fC[iLowBit | s] * fQ[rest ^ s];//for fQ, flip the bits on j; use only those appearing in i
             }
+            fC[i] = c;
         }
 
         // find fA1
@@ -174,27 +207,19 @@ public class ClusterWheatleySoft implements ClusterAbstract {
         fB[1] = fC[1];
         for (int i=3; i<nf; i+=2) {
             // every set will contain 1
-            fA[i] = 0;
-            fB[i] = fC[i];
             int ii = i - 1;//all bits in i but lowest
             int iLow2Bit = (ii & -ii);//next lowest bit
             int jBits = 1 | iLow2Bit;
-            if (jBits==i) continue;
             //jBits has 1 and next lowest bit in i
-            int iii = ii ^ iLow2Bit;//i with 2 lowest bits off
-            int jInc = (iii & -iii);//3rd lowest bit, also increment for j
-            for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i containing jBits
-                int jComp = (i & ~j); //subset of i complementing j
-                while ((j|jComp) != i && j<i) {
-                    int jHighBits = j^jBits;
-                    int jlow = jHighBits & -jHighBits;
-                    j += jlow;
-                    jComp = (i & ~j);
+            int rest = i ^ jBits;
+            double a = 0;
+            if (rest != 0) {
+                for (int s=(rest-1)&rest; s!=rest; s=(s-1)&rest) {//sum over partitions of i containing jBits
+                    a += fB[jBits | s] * fC[(rest ^ s) | 1];
                 }
-                if (j==i) break;
-                fA[i] += fB[j] * fC[jComp|1];
             }
-            fB[i] -= fA[i];//remove from B graphs that contain articulation point at 0
+            fA[i] = a;
+            fB[i] = fC[i] - a;//remove from B graphs that contain articulation point at 0
         }
 
         for (int v=1; v<n; v++) {
@@ -208,62 +233,19 @@ public class ClusterWheatleySoft implements ClusterAbstract {
                 if (iLowBit == i) { //lowest bit is only bit; fA and fB are done
                     continue;
                 }
-                int jBits;
                 int ii = i ^ iLowBit;
                 int iLow2Bit = (ii & -ii);
-                if (iLowBit != vs1 && iLow2Bit != vs1) {
-                    //v is not in the lowest 2 bits
-                    // jBits is the lowest bit and v
-                    jBits = iLowBit | vs1;
-
-                    // we can only increment by the 2nd lowest
-                    int jInc = iLow2Bit;
-
-                    //at this point jBits has (lowest bit + v) or (v + next lowest bit)
-                    for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
-                        if ((j & jBits) != jBits) {
-                            //ensure jBits are in j
-                            j |= vs1;
-                            if (j==i) break;
-                        }
-                        int jComp = i & ~j;//subset of i complementing j
-                        while ((j|jComp) != i && j<i) {
-                            int jHighBits = j^jBits;
-                            int jlow = jHighBits & -jHighBits;
-                            j += jlow; // this might knock out the v bit
-                            j |= vs1;
-                            jComp = (i & ~j);
-                        }
-                        if (j==i) break;
-                        fA[i] += fB[j] * (fB[jComp|vs1] + fA[jComp|vs1]);
-                    }
+                // every j contains the lowest bit and v, or the lowest 2 bits if v is one of those
+                int jBits = (iLowBit != vs1 && iLow2Bit != vs1) ? (iLowBit | vs1) : (iLowBit | iLow2Bit);
+                int rest = i ^ jBits;
+                if (rest == 0) continue; // no bits left for jComp
+                double a = 0;
+                for (int s=(rest-1)&rest; s!=rest; s=(s-1)&rest) {//sum over partitions of i
+                    int jCompV = (rest ^ s) | vs1;
+                    a += fB[jBits | s] * (fB[jCompV] + fA[jCompV]);
                 }
-                else {
-                    //lowest 2 bits contain v
-                    // jBits is the lowest 2 bits
-                    // we can start at jBits and increment by the 3rd lowest bit
-                    jBits = iLowBit | iLow2Bit;
-                    if (jBits == i) continue; // no bits left for jComp
-                    
-                    int iii = ii ^ iLow2Bit;
-                    int jInc = (iii & -iii);
-
-                    //at this point jBits has (lowest bit + v) or (v + next lowest bit)
-                    for (int j=jBits; j<i; j+=jInc) {//sum over partitions of i
-                        // start=jBits and jInc ensure that every set includes jBits
-                        int jComp = i & ~j;//subset of i complementing j
-                        while ((j|jComp) != i && j<i) {
-                            int jHighBits = j^jBits;
-                            int jlow = jHighBits & -jHighBits;
-                            j += jlow;
-                            jComp = (i & ~j);
-                        }
-                        if (j==i) break;
-                        fA[i] += fB[j] * (fB[jComp|vs1] + fA[jComp|vs1]);
-                    }
-                }
-
-                fB[i] -= fA[i];//remove from B graphs that contain articulation point at v
+                fA[i] = a;
+                fB[i] -= a;//remove from B graphs that contain articulation point at v
             }
         }
         if (Math.abs(fB[nf-1]) < tol) {
@@ -284,24 +266,85 @@ public class ClusterWheatleySoft implements ClusterAbstract {
     protected void updateF(BoxCluster box) {
         CoordinatePairSet cPairs = box.getCPairSet();
         AtomPairSet aPairs = box.getAPairSet();
+        int moved = findMovedPoints(box);
+        if (moved == 0) return;
 
         f.setBox(box);
-        // recalculate all f values for all pairs
+        // recalculate f values for all pairs involving a point that moved
         for(int i=0; i<n-1; i++) {
+            boolean iMoved = (moved & (1<<i)) != 0;
             for(int j=i+1; j<n; j++) {
+                if (!iMoved && (moved & (1<<j)) == 0) continue;
                 double ff = f.f(aPairs.getAPair(i,j),cPairs.getr2(i,j), beta);
-                if (false && Double.isNaN(ff)) {
-                    f.f(aPairs.getAPair(i,j),cPairs.getr2(i,j), beta);
-                    throw new RuntimeException("oops");
-                }
 //                if (Math.abs(ff) < 1e-14) ff = 0;
                 fQ[(1<<i)|(1<<j)] = ff+1;
             }
         }
     }
 
+    /**
+     * Returns a bit mask of the points whose atoms have moved or rotated
+     * since the previous call, and records their current coordinates.  All
+     * points are returned if incremental updates are disabled, if the box is
+     * different or if the temperature changed.
+     */
+    protected int findMovedPoints(BoxCluster box) {
+        int all = (1<<n)-1;
+        if (!doIncrementalF) return all;
+        int moved = 0;
+        if (box != fBox) {
+            fBox = box;
+            moved = all;
+        }
+        IMoleculeList molecules = box.getMoleculeList();
+        int idx = 0;
+        for (int i=0; i<n; i++) {
+            IAtomList atoms = molecules.get(i).getChildList();
+            boolean iMoved = false;
+            for (int k=0; k<atoms.size(); k++) {
+                IAtom a = atoms.get(k);
+                iMoved |= updateCoords(a.getPosition(), idx);
+                idx += a.getPosition().getD();
+                if (a instanceof IAtomOriented) {
+                    IOrientation o = ((IAtomOriented)a).getOrientation();
+                    iMoved |= updateCoords(o.getDirection(), idx);
+                    idx += o.getDirection().getD();
+                    if (o instanceof IOrientationFull3D) {
+                        iMoved |= updateCoords(((IOrientationFull3D)o).getSecondaryDirection(), idx);
+                        idx += 3;
+                    }
+                }
+            }
+            if (iMoved) moved |= 1<<i;
+        }
+        return moved;
+    }
+
+    /**
+     * Stores v in fCoords at idx and returns true if it differs from what was
+     * there before.
+     */
+    private boolean updateCoords(Vector v, int idx) {
+        int D = v.getD();
+        if (idx + D > fCoords.length) {
+            int oldLength = fCoords.length;
+            fCoords = Arrays.copyOf(fCoords, 2*(idx + D));
+            Arrays.fill(fCoords, oldLength, fCoords.length, Double.NaN);
+        }
+        boolean changed = false;
+        for (int d=0; d<D; d++) {
+            double x = v.getX(d);
+            if (x != fCoords[idx+d]) {
+                fCoords[idx+d] = x;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
     public void setTemperature(double temperature) {
         beta = 1/temperature;
+        fBox = null;
         if (clusterBD != null) {
             clusterBD.setTemperature(temperature);
         }
@@ -44,21 +44,26 @@ public class ClusterWheatleySoftMix extends ClusterWheatleySoft {
         ClusterWheatleySoftMix c = new ClusterWheatleySoftMix(n, nTypes, mixF, tol);
         c.setTemperature(1/beta);
         c.setDoCaching(doCaching);
+        c.setDoIncrementalF(doIncrementalF);
         return c;
     }
 
     protected void updateF(BoxCluster box) {
         CoordinatePairSet cPairs = box.getCPairSet();
         AtomPairSet aPairs = box.getAPairSet();
+        int moved = findMovedPoints(box);
+        if (moved == 0) return;
         for (int i=0; i<mixF.length; i++) {
             for (int j=0; j<mixF[i].length; j++) {
                 mixF[i][j].setBox(box);
             }
         }
 
-        // recalculate all f values for all pairs
+        // recalculate f values for all pairs involving a point that moved
         for(int i=0; i<n-1; i++) {
+            boolean iMoved = (moved & (1<<i)) != 0;
             for(int j=i+1; j<n; j++) {
+                if (!iMoved && (moved & (1<<j)) == 0) continue;
                 double ff = fMap[i][j].f(aPairs.getAPair(i,j),cPairs.getr2(i,j), beta);
                 if (debug && (Double.isNaN(ff) || Double.isInfinite(ff))) {
                     System.err.println("oops in updateF "+i+" "+j+" "+ff);
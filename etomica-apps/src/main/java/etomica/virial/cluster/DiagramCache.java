@@ -0,0 +1,429 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import etomica.graph.model.Graph;
+import etomica.graph.model.GraphFactory;
+import etomica.graph.model.Node;
+
+/**
+ * Stores the finished diagram sets of a diagram generator (VirialDiagrams,
+ * VirialDiagramsPT, VirialDiagramsMix2, WertheimDiagrams2SiteRho or
+ * WertheimDiagrams3SiteRho) in a file, so that later runs with the same
+ * options can read them back instead of generating them again.
+ * <p>
+ * The file name holds the generator's key (its name, n and the options that
+ * affect generation) and a fingerprint of the code that generates the
+ * diagrams: the class files of this package and of the graph library.  Any
+ * rebuild that changes those classes therefore leaves old files unused
+ * rather than returning stale diagrams.  VERSION must be incremented when
+ * the file format changes, or when generation changes in a way the
+ * fingerprint does not see (code outside those packages).
+ * <p>
+ * Graphs are written once each, so graphs that appear in several sets (or in
+ * a cancel map) are again shared when the file is read.  Graphs are read
+ * with the graph library's current settings (such as
+ * MetadataImpl.edgeColorPairs for reverse edges), so the generator must
+ * make its usual settings before reading.
+ */
+public class DiagramCache {
+
+    public static final int VERSION = 2;
+
+    private static String codeFingerprint;
+    private static boolean fingerprintFailed;
+
+    protected final File file;
+    protected Graph[] graphs;
+    protected int[][] sets;
+    protected Object[] maps;
+
+    /**
+     * @param dir the cache directory, or null for no cache
+     * @param key identifies the generator and its options; see makeKey
+     */
+    public DiagramCache(File dir, String key) {
+        String fingerprint = dir == null ? null : getCodeFingerprint();
+        file = fingerprint == null ? null : new File(dir, key + "_" + fingerprint + ".dat");
+    }
+
+    /**
+     * Returns a key made of the name, n and the given options (as 0 and 1).
+     */
+    public static String makeKey(String name, int n, boolean... options) {
+        StringBuilder sb = new StringBuilder(name).append("_n").append(n).append("_");
+        for (boolean b : options) {
+            sb.append(b ? '1' : '0');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the cache file, or null if there is no cache directory or the
+     * code fingerprint could not be determined.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the cache file, if it exists.  Returns true if it was read; the
+     * contents are then available from getSet, getMap and getSetMap, in the
+     * order they were written.
+     */
+    public boolean read() {
+        if (file == null || !file.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) return false;
+            Graph[] newGraphs = new Graph[in.readInt()];
+            for (int i = 0; i < newGraphs.length; i++) {
+                newGraphs[i] = readGraph(in);
+            }
+            int[][] newSets = new int[in.readInt()][];
+            for (int i = 0; i < newSets.length; i++) {
+                newSets[i] = readIndices(in);
+            }
+            Object[] newMaps = new Object[in.readInt()];
+            for (int i = 0; i < newMaps.length; i++) {
+                int size = in.readInt();
+                if (size == -1) continue;
+                boolean setValues = in.readBoolean();
+                if (setValues) {
+                    Map<Graph,Set<Graph>> map = new HashMap<Graph,Set<Graph>>();
+                    for (int j = 0; j < size; j++) {
+                        Graph key = newGraphs[in.readInt()];
+                        int[] values = readIndices(in);
+                        Set<Graph> value = null;
+                        if (values != null) {
+                            value = new HashSet<Graph>();
+                            for (int k : values) {
+                                value.add(newGraphs[k]);
+                            }
+                        }
+                        map.put(key, value);
+                    }
+                    newMaps[i] = map;
+                }
+                else {
+                    Map<Graph,Graph> map = new HashMap<Graph,Graph>();
+                    for (int j = 0; j < size; j++) {
+                        Graph key = newGraphs[in.readInt()];
+                        int value = in.readInt();
+                        map.put(key, value == -1 ? null : newGraphs[value]);
+                    }
+                    newMaps[i] = map;
+                }
+            }
+            graphs = newGraphs;
+            sets = newSets;
+            maps = newMaps;
+        }
+        catch (IOException | RuntimeException e) {
+            System.err.println("Unable to read diagram cache " + file + ": " + e);
+            return false;
+        }
+        System.out.println("Read diagrams from cache " + file);
+        return true;
+    }
+
+    /**
+     * Adds the graphs of the ith set read from the file to the given set and
+     * returns it, or returns null if a null set was written.
+     */
+    public Set<Graph> getSet(int i, Set<Graph> set) {
+        if (sets[i] == null) return null;
+        for (int j : sets[i]) {
+            set.add(graphs[j]);
+        }
+        return set;
+    }
+
+    /**
+     * Returns the ith map read from the file, which must have been written
+     * with Graph values.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Graph,Graph> getMap(int i) {
+        return (Map<Graph,Graph>) maps[i];
+    }
+
+    /**
+     * Returns the ith map read from the file, which must have been written
+     * with Set values.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Graph,Set<Graph>> getSetMap(int i) {
+        return (Map<Graph,Set<Graph>>) maps[i];
+    }
+
+    /**
+     * Writes the sets and maps (whose values are each either a Graph or a
+     * Set of Graphs) to the cache file.  Null sets and maps are allowed.
+     * Nothing is written if there is no cache file, or if some coefficient
+     * cannot be stored as a fraction.
+     */
+    public void write(List<Set<Graph>> setList, List<Map<Graph,?>> mapList) {
+        if (file == null) return;
+        Map<Graph,Integer> graphIndex = new IdentityHashMap<Graph,Integer>();
+        List<Graph> graphList = new ArrayList<Graph>();
+        for (Set<Graph> set : setList) {
+            if (set == null) continue;
+            for (Graph g : set) {
+                addGraph(g, graphIndex, graphList);
+            }
+        }
+        for (Map<Graph,?> map : mapList) {
+            if (map == null) continue;
+            for (Map.Entry<Graph,?> entry : map.entrySet()) {
+                addGraph(entry.getKey(), graphIndex, graphList);
+                Object value = entry.getValue();
+                if (value instanceof Graph) {
+                    addGraph((Graph) value, graphIndex, graphList);
+                }
+                else if (value != null) {
+                    for (Graph g : asSet(value)) {
+                        addGraph(g, graphIndex, graphList);
+                    }
+                }
+            }
+        }
+        for (Graph g : graphList) {
+            if (g.coefficient().hasOverflow()) {
+                // coefficient can't be stored as a fraction
+                return;
+            }
+        }
+        file.getParentFile().mkdirs();
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(VERSION);
+            out.writeInt(graphList.size());
+            for (Graph g : graphList) {
+                writeGraph(out, g);
+            }
+            out.writeInt(setList.size());
+            for (Set<Graph> set : setList) {
+                writeIndices(out, set, graphIndex);
+            }
+            out.writeInt(mapList.size());
+            for (Map<Graph,?> map : mapList) {
+                if (map == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(map.size());
+                boolean setValues = false;
+                for (Object value : map.values()) {
+                    if (value != null) {
+                        setValues = !(value instanceof Graph);
+                        break;
+                    }
+                }
+                out.writeBoolean(setValues);
+                for (Map.Entry<Graph,?> entry : map.entrySet()) {
+                    out.writeInt(graphIndex.get(entry.getKey()));
+                    if (setValues) {
+                        writeIndices(out, asSet(entry.getValue()), graphIndex);
+                    }
+                    else {
+                        Graph value = (Graph) entry.getValue();
+                        out.writeInt(value == null ? -1 : graphIndex.get(value));
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Unable to write diagram cache " + file + ": " + e.getMessage());
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Set<Graph> asSet(Object value) {
+        return (Set<Graph>) value;
+    }
+
+    protected static void addGraph(Graph g, Map<Graph,Integer> graphIndex, List<Graph> graphList) {
+        if (graphIndex.containsKey(g)) return;
+        graphIndex.put(g, graphList.size());
+        graphList.add(g);
+    }
+
+    protected static void writeIndices(DataOutputStream out, Set<Graph> set, Map<Graph,Integer> graphIndex) throws IOException {
+        if (set == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(set.size());
+        for (Graph g : set) {
+            out.writeInt(graphIndex.get(g));
+        }
+    }
+
+    protected static int[] readIndices(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size == -1) return null;
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = in.readInt();
+        }
+        return indices;
+    }
+
+    protected static void writeGraph(DataOutputStream out, Graph g) throws IOException {
+        byte nodeCount = g.nodeCount();
+        out.writeByte(nodeCount);
+        for (Node node : g.nodes()) {
+            out.writeChar(node.getColor());
+            out.writeChar(node.getType());
+        }
+        out.writeInt(g.coefficient().getNumerator());
+        out.writeInt(g.coefficient().getDenominator());
+        int[] factors = g.factors();
+        out.writeInt(factors.length);
+        for (int f : factors) {
+            out.writeInt(f);
+        }
+        out.writeInt(g.edgeCount());
+        for (byte i = 0; i < nodeCount; i++) {
+            for (byte j = (byte)(i+1); j < nodeCount; j++) {
+                if (!g.hasEdge(i, j)) continue;
+                out.writeByte(i);
+                out.writeByte(j);
+                out.writeChar(g.getEdge(i, j).getColor());
+            }
+        }
+    }
+
+    protected static Graph readGraph(DataInputStream in) throws IOException {
+        byte nodeCount = in.readByte();
+        Node[] nodes = new Node[nodeCount];
+        for (byte i = 0; i < nodeCount; i++) {
+            char color = in.readChar();
+            char type = in.readChar();
+            nodes[i] = GraphFactory.createNode(i, color, type);
+        }
+        Graph g = GraphFactory.createGraph(nodes);
+        g.coefficient().setNumerator(in.readInt());
+        g.coefficient().setDenominator(in.readInt());
+        int[] factors = new int[in.readInt()];
+        for (int i = 0; i < factors.length; i++) {
+            factors[i] = in.readInt();
+        }
+        g.setNumFactors(factors.length);
+        g.addFactors(factors);
+        int nEdges = in.readInt();
+        for (int k = 0; k < nEdges; k++) {
+            byte i = in.readByte();
+            byte j = in.readByte();
+            g.putEdge(i, j);
+            g.getEdge(i, j).setColor(in.readChar());
+        }
+        g.createReverseEdges();
+        return g;
+    }
+
+    /**
+     * Returns a fingerprint (a hex digest) of the class files of this package
+     * and of the graph library, or null if they could not be read.
+     */
+    public static synchronized String getCodeFingerprint() {
+        if (codeFingerprint == null && !fingerprintFailed) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                addClassFiles(digest, DiagramCache.class, "etomica/virial/cluster/");
+                addClassFiles(digest, Graph.class, "etomica/graph/");
+                StringBuilder sb = new StringBuilder();
+                byte[] bytes = digest.digest();
+                for (int i = 0; i < 8; i++) {
+                    sb.append(String.format("%02x", bytes[i]));
+                }
+                codeFingerprint = sb.toString();
+            }
+            catch (IOException | URISyntaxException | NoSuchAlgorithmException | RuntimeException e) {
+                System.err.println("Unable to fingerprint diagram code, diagrams will not be cached: " + e);
+                fingerprintFailed = true;
+            }
+        }
+        return codeFingerprint;
+    }
+
+    /**
+     * Adds the names and contents of the class files under the given prefix,
+     * from the directory or jar holding the given class, to the digest.
+     */
+    protected static void addClassFiles(MessageDigest digest, Class<?> c, String prefix) throws IOException, URISyntaxException {
+        CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            throw new IOException("no code source for " + c.getName());
+        }
+        URL location = codeSource.getLocation();
+        Path path = Paths.get(location.toURI());
+        if (Files.isDirectory(path)) {
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(path.resolve(prefix))) {
+                classFiles = files.filter(f -> f.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+            }
+            for (Path f : classFiles) {
+                digest.update(path.relativize(f).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(f));
+            }
+        }
+        else {
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                List<ZipEntry> entries = new ArrayList<ZipEntry>();
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                    ZipEntry entry = e.nextElement();
+                    if (entry.getName().startsWith(prefix) && entry.getName().endsWith(".class")) {
+                        entries.add(entry);
+                    }
+                }
+                Collections.sort(entries, (e1, e2) -> e1.getName().compareTo(e2.getName()));
+                for (ZipEntry entry : entries) {
+                    digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                    long crc = entry.getCrc();
+                    for (int i = 0; i < 8; i++) {
+                        digest.update((byte) (crc >>> (8 * i)));
+                    }
+                }
+            }
+        }
+    }
+}
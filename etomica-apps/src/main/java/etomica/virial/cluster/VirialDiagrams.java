@@ -4,7 +4,9 @@
 
 package etomica.virial.cluster;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -115,6 +117,7 @@ public class VirialDiagrams {
     protected final char nodeColor = Metadata.COLOR_CODE_0;
     protected char[] flexColors;
     protected boolean allPermutations = false;
+    protected File cacheDir;
     public char fBond, bBond, eBond, excBond, mBond, mmBond, fmBond, efbcBond, ffBond, mxcBond, MxcBond;
 
     protected static int[][][] groupStart = new int[0][0][0];
@@ -162,9 +165,27 @@ public class VirialDiagrams {
         this.isInteractive = interactive;
         doReeHoover = true;
         doShortcut = false;
+        String cacheProperty = System.getProperty("etomica.virial.diagramCache");
+        if (cacheProperty != null) {
+            cacheDir = new File(cacheProperty);
+        }
         init();
     }
 
+    /**
+     * Sets the directory where finished diagram sets are stored and looked
+     * for, keyed by n and the options that affect diagram generation.  The
+     * default is taken from the etomica.virial.diagramCache system property;
+     * if null, diagrams are always generated.
+     */
+    public void setCacheDir(File newCacheDir) {
+        cacheDir = newCacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
     public void setDoReeHoover(boolean newDoReeHoover) {
         if (doKeepEBonds && newDoReeHoover) {
             throw new RuntimeException("can't have both Ree-Hoover and e-bond representation");
@@ -1300,6 +1321,14 @@ public class VirialDiagrams {
         }
     }
     
+    /**
+     * Generates the diagrams, or reads them from the cache directory (see
+     * setCacheDir).  Cached diagrams are keyed by n, the options that affect
+     * generation and a fingerprint of the class files of this package and of
+     * the graph library.  If generation comes to depend on other code, or on
+     * options not listed in getCache, DiagramCache.VERSION must be bumped
+     * (or the options added to the key) so that stale diagrams are not read.
+     */
     public void makeVirialDiagrams() {
         if (p != null) return;
 
@@ -1361,6 +1390,10 @@ public class VirialDiagrams {
         colorOrderMap.put(MxcBond, 8);
         colorOrderMap.put(excBond, 9);
 
+        if (readCache()) {
+            return;
+        }
+
         Property happyArticulation = new ArticulatedAt0(doExchange, multibody ? mmBond : '0');
 
         if (doShortcut && !multibody && !flex) {
@@ -2306,6 +2339,48 @@ outer:                      for (int i=1; i<biComp.size(); i++) {
         disconnectedPFinal.addAll(disconnectedP);
         disconnectedP = disconnectedPFinal;
 
+        writeCache();
+    }
+
+    /**
+     * Returns the cache for the diagrams with our options, or null if there
+     * is no cache directory or the diagrams should not be cached.
+     */
+    protected DiagramCache getCache() {
+        if (cacheDir == null || isInteractive) return null;
+        String key = DiagramCache.makeKey("VirialDiagrams", n, flex, multibody, doReeHoover, doShortcut,
+                doMinimalMulti, doMultiFromPair, doMinimalBC, doKeepEBonds, doExchange, doExchangeF,
+                doExchangeCondensing, doDisconnectedMatching, doNegativeExchange, doHB);
+        return new DiagramCache(cacheDir, key);
+    }
+
+    /**
+     * Reads the diagram sets from the cache, if they are there.  Returns true
+     * if the diagrams were read.
+     */
+    protected boolean readCache() {
+        DiagramCache cache = getCache();
+        if (cache == null || !cache.read()) return false;
+        p = cache.getSet(0, makeGraphList());
+        disconnectedP = cache.getSet(1, makeGraphList());
+        minMultiP = cache.getSet(2, makeGraphList());
+        fullMultiP = cache.getSet(3, makeGraphList());
+        trueMultiP = cache.getSet(4, makeGraphList());
+        rho = cache.getSet(5, new HashSet<Graph>());
+        lnfXi = cache.getSet(6, new HashSet<Graph>());
+        fullLnXi = cache.getSet(7, new HashSet<Graph>());
+        cancelMap = cache.getMap(0);
+        return true;
+    }
+
+    /**
+     * Writes the diagram sets to the cache.
+     */
+    protected void writeCache() {
+        DiagramCache cache = getCache();
+        if (cache == null) return;
+        cache.write(java.util.Arrays.asList(p, disconnectedP, minMultiP, fullMultiP, trueMultiP, rho, lnfXi, fullLnXi),
+                Collections.<Map<Graph,?>>singletonList(cancelMap));
     }
 
     public static final class ArticulatedAt0 implements Property {
@@ -4,7 +4,9 @@
 
 package etomica.virial.cluster;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -74,6 +76,7 @@ public class VirialDiagramsMix2 {
     protected boolean doDisconnectedMatching = true;
     public char fBond, eBond, excBond, efbcBond;
     protected boolean allPermutations = false;
+    protected File cacheDir;
     
     
     public static void main(String[] args) {
@@ -101,6 +104,10 @@ public class VirialDiagramsMix2 {
         this.isInteractive = interactive;
         doReeHoover = false;
         doShortcut = false;
+        String cacheProperty = System.getProperty("etomica.virial.diagramCache");
+        if (cacheProperty != null) {
+            cacheDir = new File(cacheProperty);
+        }
         ComparatorChain comp = new ComparatorChain();
         comp.addComparator(new ComparatorNumFieldNodes());
         comp.addComparator(new ComparatorBiConnected());
@@ -126,6 +133,18 @@ public class VirialDiagramsMix2 {
     public void setDoDisconnectedMatching(boolean newDoDisconnectedMatching) {
         doDisconnectedMatching = newDoDisconnectedMatching;
     }
+
+    /**
+     * Sets the directory where finished diagram sets are stored and looked
+     * for; see VirialDiagrams.setCacheDir.
+     */
+    public void setCacheDir(File newCacheDir) {
+        cacheDir = newCacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
     
     public Set<Graph> getExtraDisconnectedVirialGraphs(int[] numPoints) {
         if (p == null) {
@@ -189,7 +208,11 @@ public class VirialDiagramsMix2 {
         return false;
     }
         
-    public void makeRhoDiagrams() {
+    /**
+     * Sets the node colors, flexible colors and bond colors, and the metadata
+     * ordering that goes with them.
+     */
+    protected void initColors() {
         final char nodeA = Metadata.COLOR_CODE_0;
         final char nodeB = Metadata.COLOR_CODE_1;
         // we'll pretend that everything is flexible until the end
@@ -256,7 +279,13 @@ public class VirialDiagramsMix2 {
         Metadata.COLOR_MAP.put(efbcBond, "fuchsia");
         Metadata.COLOR_MAP.put(excBond, "red");
         Metadata.DASH_MAP.put(excBond, 3);
-        
+    }
+
+    public void makeRhoDiagrams() {
+        initColors();
+        final char nodeB = Metadata.COLOR_CODE_1;
+        char oneBond = 'o';
+
         Set<Graph> topSet = makeGraphList();
         // ==================================================== eXi ======================================================= //
         Set<Graph> eXi = new HashSet<Graph>();//set of full star diagrams with e bonds
@@ -370,7 +399,14 @@ public class VirialDiagramsMix2 {
         }
     } //end makeRhoDiagrams method
     
+    /**
+     * Generates the diagrams, or reads them from the cache directory (see
+     * setCacheDir and VirialDiagrams.makeVirialDiagrams).
+     */
     public void makeVirialDiagrams() {
+        if (readCache()) {
+            return;
+        }
         if (rhoA == null) {
             makeRhoDiagrams();
         }
@@ -678,7 +714,47 @@ public class VirialDiagramsMix2 {
         	topSet.addAll(cancel);
         	ClusterViewer.createView("cancelMap diagrams", topSet);
         }
+        writeCache();
     }// end makeVirialDiagrams method
+
+    /**
+     * Returns the cache for the diagrams with our options, or null if there
+     * is no cache directory or the diagrams should not be cached.
+     */
+    protected DiagramCache getCache() {
+        if (cacheDir == null || isInteractive) return null;
+        String key = DiagramCache.makeKey("VirialDiagramsMix2", n, flex[0], flex[1], doReeHoover, doShortcut,
+                doKeepEBonds, doDisconnectedMatching);
+        return new DiagramCache(cacheDir, key);
+    }
+
+    /**
+     * Reads the diagram sets from the cache, if they are there.  Returns true
+     * if the diagrams were read.
+     */
+    protected boolean readCache() {
+        DiagramCache cache = getCache();
+        if (cache == null) return false;
+        initColors();
+        if (!cache.read()) return false;
+        p = cache.getSet(0, flexColors.length > 0 ? makeGraphList() : new HashSet<Graph>());
+        disconnectedP = cache.getSet(1, new HashSet<Graph>());
+        rhoA = cache.getSet(2, new HashSet<Graph>());
+        rhoB = cache.getSet(3, new HashSet<Graph>());
+        lnfXi = cache.getSet(4, new HashSet<Graph>());
+        cancelMap = cache.getMap(0);
+        return true;
+    }
+
+    /**
+     * Writes the diagram sets to the cache.
+     */
+    protected void writeCache() {
+        DiagramCache cache = getCache();
+        if (cache == null) return;
+        cache.write(Arrays.asList(p, disconnectedP, rhoA, rhoB, lnfXi),
+                Collections.<Map<Graph,?>>singletonList(cancelMap));
+    }
     
     // add property class
     public static final class MaxIsomorphCriteriaMixture implements Property {
@@ -4,7 +4,9 @@
 
 package etomica.virial.cluster;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -108,6 +110,7 @@ public class VirialDiagramsPT {
     protected final char nodeColor = Metadata.COLOR_CODE_0;
     protected char[] flexColors;
     protected boolean allPermutations = false;
+    protected File cacheDir;
     public char fBond, bBond, eBond, excBond, mBond, mmBond, fmBond, efbcBond, ffBond, mxcBond, MxcBond, rBond;
     public char[] aBonds;
     protected int orderBeta;
@@ -159,9 +162,25 @@ public class VirialDiagramsPT {
         doReeHoover = true;
         doShortcut = false;
         orderBeta = 3;
+        String cacheProperty = System.getProperty("etomica.virial.diagramCache");
+        if (cacheProperty != null) {
+            cacheDir = new File(cacheProperty);
+        }
         init();
     }
 
+    /**
+     * Sets the directory where finished diagram sets are stored and looked
+     * for; see VirialDiagrams.setCacheDir.
+     */
+    public void setCacheDir(File newCacheDir) {
+        cacheDir = newCacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
     public void setDoReeHoover(boolean newDoReeHoover) {
         if (doKeepEBonds && newDoReeHoover) {
             throw new RuntimeException("can't have both Ree-Hoover and e-bond representation");
@@ -995,6 +1014,10 @@ public class VirialDiagramsPT {
         colorOrderMap.put(MxcBond, 8);
         colorOrderMap.put(excBond, 9);
 
+        if (readCache()) {
+            return;
+        }
+
         Property happyArticulation = new ArticulatedAt0(doExchange, multibody ? mmBond : '0');
 
         if (doShortcut && !multibody && !flex) {
@@ -1552,8 +1575,7 @@ outer:                      for (int i=1; i<biComp.size(); i++) {
         
         //JRE
         Split splitter = new Split();
-        rBond = 'r';
-        aBonds = new char[orderBeta];
+        initBetaBonds();
         Set<Graph> newP = null;
         if (orderBeta == 0) {
             newP = new HashSet<Graph>();
@@ -1566,9 +1588,6 @@ outer:                      for (int i=1; i<biComp.size(); i++) {
             }
         }
         else {
-            for (int j=0; j<orderBeta; j++) {
-                aBonds[j] = (char)('a'+j);
-            }
             char Xbond = (aBonds.length==1 || doExp) ? 'a' : 'A';
             Property discardCriteria = new DiscardCriteria(Xbond, 1, rBond, orderBeta);
             SplitParameters splitParameters = new SplitParameters(fBond, rBond, Xbond, discardCriteria);
@@ -1995,8 +2014,67 @@ outer:                      for (int i=1; i<biComp.size(); i++) {
         disconnectedPFinal.addAll(disconnectedP);
         disconnectedP = disconnectedPFinal;
 
+        writeCache();
     }
 
+    /**
+     * Sets the reference bond and the bonds for each order in beta.
+     */
+    protected void initBetaBonds() {
+        rBond = 'r';
+        aBonds = new char[orderBeta];
+        for (int j=0; j<orderBeta; j++) {
+            aBonds[j] = (char)('a'+j);
+        }
+    }
+
+    /**
+     * Returns the cache for the diagrams with our options, or null if there
+     * is no cache directory or the diagrams should not be cached.
+     */
+    protected DiagramCache getCache() {
+        if (cacheDir == null || isInteractive) return null;
+        String key = DiagramCache.makeKey("VirialDiagramsPT_beta" + orderBeta, n, flex, multibody, doReeHoover,
+                doShortcut, doMinimalMulti, doMultiFromPair, doMinimalBC, doKeepEBonds, doExchange, doExchangeF,
+                doExchangeCondensing, doDisconnectedMatching, doNegativeExchange, doHB, doExp);
+        return new DiagramCache(cacheDir, key);
+    }
+
+    /**
+     * Reads the diagram sets from the cache, if they are there.  Returns true
+     * if the diagrams were read.
+     */
+    protected boolean readCache() {
+        DiagramCache cache = getCache();
+        if (cache == null || !cache.read()) return false;
+        initBetaBonds();
+        p = cache.getSet(0, makeGraphList());
+        disconnectedP = cache.getSet(1, makeGraphList());
+        minMultiP = cache.getSet(2, makeGraphList());
+        fullMultiP = cache.getSet(3, makeGraphList());
+        trueMultiP = cache.getSet(4, makeGraphList());
+        rho = cache.getSet(5, new HashSet<Graph>());
+        lnfXi = cache.getSet(6, new HashSet<Graph>());
+        fullLnXi = cache.getSet(7, new HashSet<Graph>());
+        cancelMap = cache.getMap(0);
+        return true;
+    }
+
+    /**
+     * Writes the diagram sets to the cache.
+     */
+    protected void writeCache() {
+        DiagramCache cache = getCache();
+        if (cache == null) return;
+        cache.write(java.util.Arrays.asList(p, disconnectedP, minMultiP, fullMultiP, trueMultiP, rho, lnfXi, fullLnXi),
+                Collections.<Map<Graph,?>>singletonList(cancelMap));
+    }
+
+    /**
+     * Discards graphs whose order in beta exceeds the truncation order.  It
+     * keeps no state between checks, so Split can use it from several
+     * threads at once.
+     */
     public static class DiscardCriteria implements Property {
         private final int ii, orderBeta;
         private final char xX, rBond;
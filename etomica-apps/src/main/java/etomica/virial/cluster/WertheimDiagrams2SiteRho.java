@@ -6,7 +6,10 @@ package etomica.virial.cluster;
 
 import static etomica.graph.model.Metadata.COLOR_CODE_0;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -91,6 +94,7 @@ public class WertheimDiagrams2SiteRho {
     protected Set<Graph> lnfXi;
     protected Map<Graph,Set<Graph>> cancelMap;
     protected boolean doShortcut;
+    protected File cacheDir;
     protected char fBond, eBond, mBond, capFBond, fRBond, capFABBond,capFBABond;
 
     public static void main(String[] args) {
@@ -124,8 +128,24 @@ public class WertheimDiagrams2SiteRho {
         comp.addComparator(new ComparatorBiConnected());
         comp.addComparator(new ComparatorNumEdges());
         comp.addComparator(new ComparatorNumNodes());
+        String cacheProperty = System.getProperty("etomica.virial.diagramCache");
+        if (cacheProperty != null) {
+            cacheDir = new File(cacheProperty);
+        }
     }
     
+    /**
+     * Sets the directory where finished diagram sets are stored and looked
+     * for; see VirialDiagrams.setCacheDir.
+     */
+    public void setCacheDir(File newCacheDir) {
+        cacheDir = newCacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
     public void setDoShortcut(boolean newDoShortcut) {
         doShortcut = newDoShortcut;
         if (multibody && doShortcut) {
@@ -358,13 +378,12 @@ public class WertheimDiagrams2SiteRho {
         return graphList;
     }        
     
-    public void makeRhoDiagrams() {
-        char nodeColor = COLOR_CODE_0;
-        char[] flexColors = new char[0];
-        if (flex) {
-           flexColors = new char[]{nodeColor};
-        }
-
+    /**
+     * Sets the bond colors used by makeRhoDiagrams, the metadata ordering
+     * that goes with them and the association bond pair used for reverse
+     * edges.
+     */
+    protected void initRhoBonds() {
         final HashMap<Character,Integer> colorOrderMap = new HashMap<Character,Integer>();
             MetadataImpl.metaDataComparator = new Comparator<Metadata>() {
                 public int compare(Metadata m1, Metadata m2) {
@@ -389,18 +408,8 @@ public class WertheimDiagrams2SiteRho {
                 }
             };
 
-        GraphList topSet = makeGraphList();
-
         char oneBond = 'o';
         mBond = 'm';  // multi-body
-        lnfXi = new HashSet<Graph>();
-        IsoFree isoFree = new IsoFree();
-
-        MulFlexible mulFlex = new MulFlexible();
-        MulFlexibleParameters mfp = MulFlexibleParameters.makeParameters(flexColors, (byte)n);
-        MulScalarParameters msp = null;
-        MulScalar mulScalar = new MulScalar();
-
         fRBond = 'B';
         capFBond = 'U';
         capFABBond = 'F';
@@ -408,22 +417,49 @@ public class WertheimDiagrams2SiteRho {
         ArrayList<Character> associationBond = new ArrayList<Character>();
         associationBond.add(capFABBond);
         associationBond.add(capFBABond);
-        MetadataImpl.edgeColorPairs.add(associationBond);
-        
+        if (!MetadataImpl.edgeColorPairs.contains(associationBond)) {
+            MetadataImpl.edgeColorPairs.add(associationBond);
+        }
+
         if (doShortcut) {
-            // just take lnfXi to be the set of connected diagrams
             fBond = 'A';
             eBond = 'e';
+        }
+        else {
+            eBond = COLOR_CODE_0;//color of edge
+            fBond = 'f';
+        }
+        colorOrderMap.put(oneBond, 0);
+        colorOrderMap.put(mBond, 1);
+        colorOrderMap.put(eBond, 2);
+        colorOrderMap.put(fBond, 3);
+        colorOrderMap.put(fRBond, 4);
+        colorOrderMap.put(capFABBond, 5);
+        colorOrderMap.put(capFBABond, 6);
+        colorOrderMap.put(capFBond, 7);
+    }
 
-            colorOrderMap.put(oneBond, 0);
-            colorOrderMap.put(mBond, 1);
-            colorOrderMap.put(eBond, 2);
-            colorOrderMap.put(fBond, 3);
-            colorOrderMap.put(fRBond, 4);
-            colorOrderMap.put(capFABBond, 5);
-            colorOrderMap.put(capFBABond, 6);
-            colorOrderMap.put(capFBond, 7);
+    public void makeRhoDiagrams() {
+        char nodeColor = COLOR_CODE_0;
+        char[] flexColors = new char[0];
+        if (flex) {
+           flexColors = new char[]{nodeColor};
+        }
 
+        initRhoBonds();
+        GraphList topSet = makeGraphList();
+
+        char oneBond = 'o';
+        lnfXi = new HashSet<Graph>();
+        IsoFree isoFree = new IsoFree();
+
+        MulFlexible mulFlex = new MulFlexible();
+        MulFlexibleParameters mfp = MulFlexibleParameters.makeParameters(flexColors, (byte)n);
+        MulScalarParameters msp = null;
+        MulScalar mulScalar = new MulScalar();
+
+        if (doShortcut) {
+            // just take lnfXi to be the set of connected diagrams
             IsConnected isCon = new IsConnected();
             for (int i=1; i<n+1; i++) {
                 GraphIterator iter = new PropertyFilter(new StoredIterator((byte)i), isCon);
@@ -434,19 +470,7 @@ public class WertheimDiagrams2SiteRho {
             }
         }
         else {
-            
-            eBond = COLOR_CODE_0;//color of edge
-            fBond = 'f';
-
             Set<Graph> eXi = new HashSet<Graph>();//set of full star diagrams with e bonds
-            colorOrderMap.put(oneBond, 0);
-            colorOrderMap.put(mBond, 1);
-            colorOrderMap.put(eBond, 2);
-            colorOrderMap.put(fBond, 3);
-            colorOrderMap.put(fRBond, 4);
-            colorOrderMap.put(capFABBond, 5);
-            colorOrderMap.put(capFBABond, 6);
-            colorOrderMap.put(capFBond, 7);
             
             for (byte i=1; i<n+1; i++) {
                 Graph g = GraphFactory.createGraph(i, BitmapFactory.createBitmap(i,true));
@@ -656,14 +680,12 @@ public class WertheimDiagrams2SiteRho {
         rho0m1pow.addAll(rho0m1);
     }
     
-    public void makeWertheimDiagrams() {
-        
-        char nodeColor = COLOR_CODE_0;
-        char[] flexColors = new char[0];
-        if (flex) {
-           flexColors = new char[]{nodeColor};
-        }
-
+    /**
+     * Sets the metadata ordering used by makeWertheimDiagrams, along with the
+     * bond colors used when it takes the shortcut (for other cases,
+     * makeRhoDiagrams sets them).
+     */
+    protected void initWertheimBonds() {
         final HashMap<Character,Integer> colorOrderMap = new HashMap<Character,Integer>();
         MetadataImpl.metaDataComparator = new Comparator<Metadata>() {
 
@@ -689,10 +711,36 @@ public class WertheimDiagrams2SiteRho {
             }
         };
 
+        mBond = 'm';  // multi-body
+        if (doShortcut && !flex) {
+            char oneBond = 'o';
+            fBond = COLOR_CODE_0;
+            eBond = 'e';
+
+            colorOrderMap.put(oneBond, 0);
+            colorOrderMap.put(mBond, 1);
+            colorOrderMap.put(eBond, 2);
+            colorOrderMap.put(fBond, 3);
+        }
+    }
+
+    public void makeWertheimDiagrams() {
+        // generation changes MetadataImpl.rootPointsSpecial, so we make the
+        // key before starting
+        DiagramCache cache = getCache();
+        if (readCache(cache)) {
+            return;
+        }
+
+        char nodeColor = COLOR_CODE_0;
+        char[] flexColors = new char[0];
+        if (flex) {
+           flexColors = new char[]{nodeColor};
+        }
+
+        initWertheimBonds();
         GraphList topSet = makeGraphList();
 
-        char oneBond = 'o';
-        mBond = 'm';  // multi-body
         lnfXi = new HashSet<Graph>();
         IsoFree isoFree = new IsoFree();
 
@@ -703,14 +751,6 @@ public class WertheimDiagrams2SiteRho {
 
         if (doShortcut && !flex) {
             // just take lnfXi to be the set of connected diagrams
-            fBond = COLOR_CODE_0;
-            eBond = 'e';
-
-            colorOrderMap.put(oneBond, 0);
-            colorOrderMap.put(mBond, 1);
-            colorOrderMap.put(eBond, 2);
-            colorOrderMap.put(fBond, 3);
-
             // skip directly to p diagrams
             p = new HashSet<Graph>();
             IsBiconnected isBi = new IsBiconnected();
@@ -1207,5 +1247,58 @@ public class WertheimDiagrams2SiteRho {
         disconnectedPFinal.addAll(disconnectedP);
         disconnectedP = disconnectedPFinal;
 
+        writeCache(cache);
+    }
+
+    /**
+     * Returns the cache for the diagrams with our options, or null if there
+     * is no cache directory or the diagrams should not be cached.  The
+     * graph library settings that change the diagrams are part of the key.
+     */
+    protected DiagramCache getCache() {
+        if (cacheDir == null || isInteractive) return null;
+        String key = DiagramCache.makeKey("WertheimDiagrams2SiteRho", n, multibody, flex, bondDecomp, doShortcut,
+                doReeHoover, GraphImpl.useReverseEdges, MetadataImpl.rootPointsSpecial);
+        return new DiagramCache(cacheDir, key);
+    }
+
+    /**
+     * Reads the diagram sets from the cache, if they are there.  Returns true
+     * if the diagrams were read.  The bond colors, metadata ordering, reverse
+     * edge pairs and MetadataImpl.rootPointsSpecial are left as generating
+     * the diagrams would leave them.
+     */
+    protected boolean readCache(DiagramCache cache) {
+        if (cache == null || rho != null) return false;
+        initWertheimBonds();
+        if (!doShortcut || flex) {
+            initRhoBonds();
+        }
+        if (!cache.read()) return false;
+        if (!doShortcut || flex) {
+            MetadataImpl.rootPointsSpecial = false;
+        }
+        p = cache.getSet(0, makeGraphList());
+        cancelP = cache.getSet(1, new GraphList());
+        disconnectedP = cache.getSet(2, makeGraphList());
+        pWertheim2Site = cache.getSet(3, new HashSet<Graph>());
+        rho = cache.getSet(4, new HashSet<Graph>());
+        rho0 = cache.getSet(5, new HashSet<Graph>());
+        rhoA = cache.getSet(6, new HashSet<Graph>());
+        rhoB = cache.getSet(7, new HashSet<Graph>());
+        rhoAB = cache.getSet(8, new HashSet<Graph>());
+        rhoAB0 = cache.getSet(9, new HashSet<Graph>());
+        lnfXi = cache.getSet(10, new HashSet<Graph>());
+        cancelMap = cache.getSetMap(0);
+        return true;
+    }
+
+    /**
+     * Writes the diagram sets to the cache.
+     */
+    protected void writeCache(DiagramCache cache) {
+        if (cache == null) return;
+        cache.write(Arrays.asList(p, cancelP, disconnectedP, pWertheim2Site, rho, rho0, rhoA, rhoB, rhoAB, rhoAB0, lnfXi),
+                Collections.<Map<Graph,?>>singletonList(cancelMap));
     }
 }
@@ -6,9 +6,12 @@ package etomica.virial.cluster;
 
 import static etomica.graph.model.Metadata.COLOR_CODE_0;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -82,11 +85,12 @@ public class WertheimDiagrams3SiteRho {
     protected final boolean bondDecomp;
     protected final boolean isInteractive;
     protected boolean doReeHoover;
-    protected Set<Graph> p, cancelP, disconnectedP;
+    protected Set<Graph> p, cancelP, disconnectedP, pWertheim3Site;
     protected Set<Graph> rho, rho0, rho1, rhoA,rhoB,rhoC,rhoAB,rhoAC,rhoBC,rhoABC;
     protected Set<Graph> lnfXi;
     protected Map<Graph,Set<Graph>> cancelMap;
     protected boolean doShortcut;
+    protected File cacheDir;
     protected char fBond, eBond, mBond, mERBond, capFBond,mCapFBond, capF1Bond, mCapF1Bond, capF2Bond, mCapF2Bond, fRBond, capFACBond,mCapFACBond, capFBCBond,mCapFBCBond, capFCABond,mCapFCABond, capFCBBond,mCapFCBBond;
 
     public static void main(String[] args) {
@@ -122,8 +126,24 @@ public class WertheimDiagrams3SiteRho {
         comp.addComparator(new ComparatorBiConnected());
         comp.addComparator(new ComparatorNumEdges());
         comp.addComparator(new ComparatorNumNodes());
+        String cacheProperty = System.getProperty("etomica.virial.diagramCache");
+        if (cacheProperty != null) {
+            cacheDir = new File(cacheProperty);
+        }
     }
    
+    /**
+     * Sets the directory where finished diagram sets are stored and looked
+     * for; see VirialDiagrams.setCacheDir.
+     */
+    public void setCacheDir(File newCacheDir) {
+        cacheDir = newCacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
     public void setDoReeHoover(boolean newDoReeHoover) {
         doReeHoover = newDoReeHoover;
     }
@@ -394,13 +414,12 @@ public class WertheimDiagrams3SiteRho {
         return graphList;
     }       
    
-    public void makeRhoDiagrams() {
-        char nodeColor = COLOR_CODE_0;
-        char[] flexColors = new char[0];
-        if (flex) {
-           flexColors = new char[]{nodeColor};
-        }
-
+    /**
+     * Sets the bond colors used by makeRhoDiagrams, the metadata ordering
+     * that goes with them and the association bond pairs used for reverse
+     * edges.
+     */
+    protected void initRhoBonds() {
         final HashMap<Character,Integer> colorOrderMap = new HashMap<Character,Integer>();
         MetadataImpl.metaDataComparator = new Comparator<Metadata>() {
             public int compare(Metadata m1, Metadata m2) {
@@ -425,28 +444,8 @@ public class WertheimDiagrams3SiteRho {
             }
         };
 
-        GraphList topSet = makeGraphList();
-
         char oneBond = 'o';
         mBond = 'm';// multi-body
-        lnfXi = new HashSet<Graph>();
-        IsoFree isoFree = new IsoFree();
-
-        MulFlexible mulFlex = new MulFlexible();
-        MulFlexibleParameters mfp = MulFlexibleParameters.makeParameters(flexColors, (byte)n);
-        MulScalarParameters msp = null;
-        MulScalar mulScalar = new MulScalar();
-        
-        Metadata.COLORS.add("salmon");
-        Metadata.COLORS.add("moccasin");
-        Metadata.COLORS.add("steelblue");
-        Metadata.COLORS.add("springgreen");
-        Metadata.COLORS.add("lime");
-        Metadata.COLORS.add("deeppink");
-        Metadata.COLORS.add("gold");
-        Metadata.COLORS.add("seagreen");
-        Metadata.COLORS.add("mintcream");
-
         fRBond = 'B';
         capFBond = 'U';
         capF1Bond = 'W';
@@ -470,51 +469,94 @@ public class WertheimDiagrams3SiteRho {
 
         associationBondAC.add(capFACBond);
         associationBondAC.add(capFCABond);
-        MetadataImpl.edgeColorPairs.add(associationBondAC);
+        if (!MetadataImpl.edgeColorPairs.contains(associationBondAC)) {
+            MetadataImpl.edgeColorPairs.add(associationBondAC);
+        }
         ArrayList<Character> associationBondBC = new ArrayList<Character>();
         associationBondBC.add(capFBCBond);
         associationBondBC.add(capFCBBond);
-        MetadataImpl.edgeColorPairs.add(associationBondBC);
+        if (!MetadataImpl.edgeColorPairs.contains(associationBondBC)) {
+            MetadataImpl.edgeColorPairs.add(associationBondBC);
+        }
 
         
         if (multibody){
             ArrayList<Character> mAssociationBondAC = new ArrayList<Character>();
             mAssociationBondAC.add(mCapFACBond);
             mAssociationBondAC.add(mCapFCABond);
-            MetadataImpl.edgeColorPairs.add(mAssociationBondAC);
+            if (!MetadataImpl.edgeColorPairs.contains(mAssociationBondAC)) {
+                MetadataImpl.edgeColorPairs.add(mAssociationBondAC);
+            }
             ArrayList<Character> mAssociationBondBC = new ArrayList<Character>();
             mAssociationBondBC.add(mCapFBCBond);
             mAssociationBondBC.add(mCapFCBBond);
-            MetadataImpl.edgeColorPairs.add(mAssociationBondBC);
+            if (!MetadataImpl.edgeColorPairs.contains(mAssociationBondBC)) {
+                MetadataImpl.edgeColorPairs.add(mAssociationBondBC);
+            }
         }
-       
+
         if (doShortcut) {
-            // just take lnfXi to be the set of connected diagrams
             fBond = 'A';
             eBond = 'e';
+        }
+        else {
+            eBond = COLOR_CODE_0;//color of edge
+            fBond = 'f';
+        }
+        colorOrderMap.put(oneBond, 0);
+        colorOrderMap.put(mBond, 1);
+        colorOrderMap.put(eBond, 2);
+        colorOrderMap.put(fBond, 3);
+        colorOrderMap.put(fRBond, 4);
+        colorOrderMap.put(capFACBond, 5);
+        colorOrderMap.put(capFCABond, 6);
+        colorOrderMap.put(capFBCBond, 7);
+        colorOrderMap.put(capFCBBond, 8);
+        colorOrderMap.put(capFBond, 9);
+        colorOrderMap.put(capF1Bond, 10);
+        colorOrderMap.put(capF2Bond, 11);
+        if (multibody){
+            colorOrderMap.put(mCapFACBond, 12);
+            colorOrderMap.put(mCapFCABond, 13);
+            colorOrderMap.put(mCapFBCBond, 14);
+            colorOrderMap.put(mCapFCBBond, 15);
+            colorOrderMap.put(mCapFBond, 16);
+            colorOrderMap.put(mCapF1Bond, 17);
+            colorOrderMap.put(mCapF2Bond, 18);
+        }
+    }
 
-            colorOrderMap.put(oneBond, 0);
-            colorOrderMap.put(mBond, 1);
-            colorOrderMap.put(eBond, 2);
-            colorOrderMap.put(fBond, 3);
-            colorOrderMap.put(fRBond, 4);
-            colorOrderMap.put(capFACBond, 5);
-            colorOrderMap.put(capFCABond, 6);
-            colorOrderMap.put(capFBCBond, 7);
-            colorOrderMap.put(capFCBBond, 8);
-            colorOrderMap.put(capFBond, 9);
-            colorOrderMap.put(capF1Bond, 10);
-            colorOrderMap.put(capF2Bond, 11);
-            if (multibody){
-	            colorOrderMap.put(mCapFACBond, 12);
-	            colorOrderMap.put(mCapFCABond, 13);
-	            colorOrderMap.put(mCapFBCBond, 14);
-	            colorOrderMap.put(mCapFCBBond, 15);
-	            colorOrderMap.put(mCapFBond, 16);
-	            colorOrderMap.put(mCapF1Bond, 17);
-	            colorOrderMap.put(mCapF2Bond, 18);
-            }
+    public void makeRhoDiagrams() {
+        char nodeColor = COLOR_CODE_0;
+        char[] flexColors = new char[0];
+        if (flex) {
+           flexColors = new char[]{nodeColor};
+        }
+
+        initRhoBonds();
+        GraphList topSet = makeGraphList();
+
+        char oneBond = 'o';
+        lnfXi = new HashSet<Graph>();
+        IsoFree isoFree = new IsoFree();
+
+        MulFlexible mulFlex = new MulFlexible();
+        MulFlexibleParameters mfp = MulFlexibleParameters.makeParameters(flexColors, (byte)n);
+        MulScalarParameters msp = null;
+        MulScalar mulScalar = new MulScalar();
+        
+        Metadata.COLORS.add("salmon");
+        Metadata.COLORS.add("moccasin");
+        Metadata.COLORS.add("steelblue");
+        Metadata.COLORS.add("springgreen");
+        Metadata.COLORS.add("lime");
+        Metadata.COLORS.add("deeppink");
+        Metadata.COLORS.add("gold");
+        Metadata.COLORS.add("seagreen");
+        Metadata.COLORS.add("mintcream");
 
+        if (doShortcut) {
+            // just take lnfXi to be the set of connected diagrams
             IsConnected isCon = new IsConnected();
             for (int i=1; i<n+1; i++) {
                 GraphIterator iter = new PropertyFilter(new StoredIterator((byte)i), isCon);
@@ -525,32 +567,7 @@ public class WertheimDiagrams3SiteRho {
             }
         }
         else {
-           
-            eBond = COLOR_CODE_0;//color of edge
-            fBond = 'f';
-
             Set<Graph> eXi = new HashSet<Graph>();//set of full star diagrams with e bonds
-            colorOrderMap.put(oneBond, 0);
-            colorOrderMap.put(mBond, 1);
-            colorOrderMap.put(eBond, 2);
-            colorOrderMap.put(fBond, 3);
-            colorOrderMap.put(fRBond, 4);
-            colorOrderMap.put(capFACBond, 5);
-            colorOrderMap.put(capFCABond, 6);
-            colorOrderMap.put(capFBCBond, 7);
-            colorOrderMap.put(capFCBBond, 8);
-            colorOrderMap.put(capFBond, 9);
-            colorOrderMap.put(capF1Bond, 10);
-            colorOrderMap.put(capF2Bond, 11);
-            if (multibody){
-	            colorOrderMap.put(mCapFACBond, 12);
-	            colorOrderMap.put(mCapFCABond, 13);
-	            colorOrderMap.put(mCapFBCBond, 14);
-	            colorOrderMap.put(mCapFCBBond, 15);
-	            colorOrderMap.put(mCapFBond, 16);
-	            colorOrderMap.put(mCapF1Bond, 17);
-	            colorOrderMap.put(mCapF2Bond, 18);
-            }
             for (byte i=1; i<n+1; i++) {//1 means 1 point
                 Graph g = GraphFactory.createGraph(i, BitmapFactory.createBitmap(i,true));
                 g.coefficient().setDenominator((int)etomica.math.SpecialFunctions.factorial(i));
@@ -881,14 +898,12 @@ public class WertheimDiagrams3SiteRho {
     }
     
    
-    public void makeVirialDiagrams() {
-       
-        char nodeColor = COLOR_CODE_0;
-        char[] flexColors = new char[0];
-        if (flex) {
-           flexColors = new char[]{nodeColor};
-        }
-
+    /**
+     * Sets the metadata ordering used by makeVirialDiagrams, along with the
+     * bond colors used when it takes the shortcut (for other cases,
+     * makeRhoDiagrams sets them).
+     */
+    protected void initWertheimBonds() {
         final HashMap<Character,Integer> colorOrderMap = new HashMap<Character,Integer>();
         MetadataImpl.metaDataComparator = new Comparator<Metadata>() {
 
@@ -914,10 +929,36 @@ public class WertheimDiagrams3SiteRho {
             }
         };
 
+        mBond = 'm';  // multi-body
+        if (doShortcut && !flex) {
+            char oneBond = 'o';
+            fBond = COLOR_CODE_0;
+            eBond = 'e';
+
+            colorOrderMap.put(oneBond, 0);
+            colorOrderMap.put(mBond, 1);
+            colorOrderMap.put(eBond, 2);
+            colorOrderMap.put(fBond, 3);
+        }
+    }
+
+    public void makeVirialDiagrams() {
+        // generation changes MetadataImpl.rootPointsSpecial, so we make the
+        // key before starting
+        DiagramCache cache = getCache();
+        if (readCache(cache)) {
+            return;
+        }
+
+        char nodeColor = COLOR_CODE_0;
+        char[] flexColors = new char[0];
+        if (flex) {
+           flexColors = new char[]{nodeColor};
+        }
+
+        initWertheimBonds();
         GraphList topSet = makeGraphList();
 
-        char oneBond = 'o';
-        mBond = 'm';  // multi-body
         lnfXi = new HashSet<Graph>();
         IsoFree isoFree = new IsoFree();
 
@@ -928,14 +969,6 @@ public class WertheimDiagrams3SiteRho {
 
         if (doShortcut && !flex) {
             // just take lnfXi to be the set of connected diagrams
-            fBond = COLOR_CODE_0;
-            eBond = 'e';
-
-            colorOrderMap.put(oneBond, 0);
-            colorOrderMap.put(mBond, 1);
-            colorOrderMap.put(eBond, 2);
-            colorOrderMap.put(fBond, 3);
-
             // skip directly to p diagrams
             p = new HashSet<Graph>();
             IsBiconnected isBi = new IsBiconnected();
@@ -1131,7 +1164,7 @@ public class WertheimDiagrams3SiteRho {
 
             DecorateWertheim3SiteRho decorateWertheim3Site = new DecorateWertheim3SiteRho();
             DecorateWertheimParameters3Site dpWertheim3Site = new DecorateWertheimParameters3Site(mfp, capFACBond, capFBCBond, capFCABond, capFCBBond,mCapFACBond, mCapFBCBond, mCapFCABond, mCapFCBBond,rhoA,rhoB,rhoC,rhoAB,rhoAC,rhoBC,rhoABC);//decorate rho point with rho0C1
-            Set<Graph> pWertheim3Site = decorateWertheim3Site.apply(p, dpWertheim3Site);
+            pWertheim3Site = decorateWertheim3Site.apply(p, dpWertheim3Site);
             
             rhoA.clear();
             rhoB.clear();
@@ -1206,6 +1239,62 @@ public class WertheimDiagrams3SiteRho {
             // clear these out -- we don't need them and (in extreme cases) we might need the memory
             z.clear();
         }
+        writeCache(cache);
+    }
+
+    /**
+     * Returns the cache for the diagrams with our options, or null if there
+     * is no cache directory or the diagrams should not be cached.  The
+     * graph library settings that change the diagrams are part of the key.
+     */
+    protected DiagramCache getCache() {
+        if (cacheDir == null || isInteractive) return null;
+        String key = DiagramCache.makeKey("WertheimDiagrams3SiteRho", n, multibody, flex, bondDecomp, doShortcut,
+                doReeHoover, GraphImpl.useReverseEdges, MetadataImpl.rootPointsSpecial);
+        return new DiagramCache(cacheDir, key);
+    }
+
+    /**
+     * Reads the diagram sets from the cache, if they are there, and writes
+     * pWertheim3Site to its file as generating would.  Returns true if the
+     * diagrams were read.  The bond colors, metadata ordering, reverse edge
+     * pairs and MetadataImpl.rootPointsSpecial are left as generating the
+     * diagrams would leave them.
+     */
+    protected boolean readCache(DiagramCache cache) {
+        if (cache == null || rho != null) return false;
+        initWertheimBonds();
+        if (!doShortcut || flex) {
+            initRhoBonds();
+        }
+        if (!cache.read()) return false;
+        p = cache.getSet(0, new HashSet<Graph>());
+        pWertheim3Site = cache.getSet(1, new HashSet<Graph>());
+        rho = cache.getSet(2, new HashSet<Graph>());
+        rho0 = cache.getSet(3, new HashSet<Graph>());
+        rho1 = cache.getSet(4, new HashSet<Graph>());
+        rhoA = cache.getSet(5, new HashSet<Graph>());
+        rhoB = cache.getSet(6, new HashSet<Graph>());
+        rhoC = cache.getSet(7, new HashSet<Graph>());
+        rhoAB = cache.getSet(8, new HashSet<Graph>());
+        rhoAC = cache.getSet(9, new HashSet<Graph>());
+        rhoBC = cache.getSet(10, new HashSet<Graph>());
+        rhoABC = cache.getSet(11, new HashSet<Graph>());
+        lnfXi = cache.getSet(12, new HashSet<Graph>());
+        if (!doShortcut || flex) {
+            MetadataImpl.rootPointsSpecial = false;
+            writeSetToFile(pWertheim3Site, "pw"+n);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the diagram sets to the cache.
+     */
+    protected void writeCache(DiagramCache cache) {
+        if (cache == null) return;
+        cache.write(Arrays.asList(p, pWertheim3Site, rho, rho0, rho1, rhoA, rhoB, rhoC, rhoAB, rhoAC, rhoBC, rhoABC, lnfXi),
+                Collections.<Map<Graph,?>>emptyList());
     }
 
     protected static void writeSetToFile(Set<Graph> set, String fileName) {
@@ -537,10 +537,33 @@ public class SimulationVirialOverlap2 extends Simulation {
     }
     
     public void equilibrate(String fileName, long initSteps) {
+        long oldBlockSize = blockSize;
+        runEquilibration(initSteps);
+
+        if (refPref == -1) {
+            refPref = dvo.getOverlapAverage();
+            System.out.println("setting ref pref to "+refPref);
+            if (Double.isInfinite(refPref) || Double.isNaN(refPref)) {
+                dvo.getOverlapAverage();
+                throw new RuntimeException("oops");
+            }
+            useRefPref(refPref, fileName);
+        }
+        else {
+            dvo.reset();
+        }
+        finishEquilibration(oldBlockSize);
+    }
+
+    /**
+     * Runs the equilibration part of equilibrate (adjusting MC move step
+     * sizes and collecting data with the current alpha values), leaving
+     * the collected data in the accumulators.
+     */
+    protected void runEquilibration(long initSteps) {
         // run a short simulation to get reasonable MC Move step sizes and
         // (if needed) narrow in on a reference preference
         ai.setMaxSteps(initSteps);
-        long oldBlockSize = blockSize;
         // 1000 blocks
         long newBlockSize = initSteps*integratorOS.getNumSubSteps()/1000;
         if (newBlockSize < 1000) {
@@ -570,33 +593,36 @@ public class SimulationVirialOverlap2 extends Simulation {
         if (adjustable) {
             integratorOS.setAdjustStepFraction(true);
         }
+    }
 
-        if (refPref == -1) {
-            refPref = dvo.getOverlapAverage();
-            System.out.println("setting ref pref to "+refPref);
-            if (Double.isInfinite(refPref) || Double.isNaN(refPref)) {
-                dvo.getOverlapAverage();
-                throw new RuntimeException("oops");
+    /**
+     * Sets up the production alpha values for the given reference
+     * preference, and writes it to fileName (if not null).
+     */
+    protected void useRefPref(double newRefPref, String fileName) {
+        refPref = newRefPref;
+        dpVirialOverlap[0].setNumAlpha(numAlpha);
+        dpVirialOverlap[1].setNumAlpha(numAlpha);
+        setRefPref(refPref,1);
+        if (fileName != null) {
+            try {
+                FileWriter fileWriter = new FileWriter(fileName);
+                BufferedWriter bufWriter = new BufferedWriter(fileWriter);
+                bufWriter.write(String.valueOf(refPref)+"\n");
+                bufWriter.close();
+                fileWriter.close();
             }
-            dpVirialOverlap[0].setNumAlpha(numAlpha);
-            dpVirialOverlap[1].setNumAlpha(numAlpha);
-            setRefPref(refPref,1);
-            if (fileName != null) {
-                try {
-                    FileWriter fileWriter = new FileWriter(fileName);
-                    BufferedWriter bufWriter = new BufferedWriter(fileWriter);
-                    bufWriter.write(String.valueOf(refPref)+"\n");
-                    bufWriter.close();
-                    fileWriter.close();
-                }
-                catch (IOException e) {
-                    throw new RuntimeException("couldn't write to refpref file");
-                }
+            catch (IOException e) {
+                throw new RuntimeException("couldn't write to refpref file");
             }
         }
-        else {
-            dvo.reset();
-        }
+    }
+
+    /**
+     * Restores the production block size and turns off MC move step size
+     * adjustment after equilibration.
+     */
+    protected void finishEquilibration(long oldBlockSize) {
         setAccumulatorBlockSize(oldBlockSize);
         for (int i=0; i<2; i++) {
             integrators[i].getMoveManager().setEquilibrating(false);
@@ -611,6 +637,17 @@ public class SimulationVirialOverlap2 extends Simulation {
     }
 
     public void printResults(double refIntegral, String[] extraNames) {
+        printResults(dvo, accumulators, numExtraTargetClusters, refIntegral, extraNames);
+    }
+
+    /**
+     * Prints results from the given overlap data and reference and target
+     * accumulators.  This is used by printResults and also by
+     * SimulationVirialOverlapParallel with accumulators merged from several
+     * simulations.
+     */
+    protected static void printResults(DataVirialOverlap dvo, AccumulatorRatioAverageCovarianceFull[] accumulators,
+                                       int numExtraTargetClusters, double refIntegral, String[] extraNames) {
         double[] ratioAndError = dvo.getAverageAndError();
         double ratio = ratioAndError[0];
         double error = ratioAndError[1];
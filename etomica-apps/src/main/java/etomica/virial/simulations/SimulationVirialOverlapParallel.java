@@ -0,0 +1,355 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.simulations;
+
+import etomica.action.IAction;
+import etomica.data.AccumulatorRatioAverageCovarianceFull;
+import etomica.util.random.IRandom;
+import etomica.util.random.RandomMersenneTwister;
+import etomica.util.random.RandomNumberGeneratorUnix;
+import etomica.virial.overlap.DataVirialOverlap;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several independent SimulationVirialOverlap2 chains concurrently (one
+ * per thread) and merges their reference and target accumulators, so that a
+ * virial coefficient calculation scales with the number of cores.
+ * <p>
+ * Each chain is a complete overlap-sampling simulation built by a
+ * SimulationFactory, and must use a RandomMersenneTwister (the default).  The
+ * driver reseeds each chain's random number generator with a distinct seed
+ * array (the driver's seeds with the chain index appended), so the chains are
+ * statistically independent and the whole run is reproducible from the
+ * driver's seeds.  All chains use the same alpha
+ * (reference preference), which is determined from the merged data during
+ * equilibration, so that their overlap averages can be combined.
+ * <p>
+ * Usage mirrors SimulationVirialOverlap2:
+ * <pre>
+ * SimulationVirialOverlapParallel sim = new SimulationVirialOverlapParallel(nThreads, factory);
+ * sim.initRefPref(refFileName, steps/40);
+ * sim.equilibrate(refFileName, steps/20);
+ * sim.run(steps);
+ * sim.printResults(HSB);
+ * </pre>
+ * The number of steps given to each method is the total across all chains.
+ */
+public class SimulationVirialOverlapParallel {
+
+    protected final SimulationVirialOverlap2[] sims;
+    protected final int[] seeds;
+    protected final List<IAction> mergeActions;
+    protected final AccumulatorRatioAverageCovarianceFull[] accumulators;
+    protected DataVirialOverlap dvo;
+    protected long mergeInterval;
+    protected double refPref;
+
+    /**
+     * Creates the chains with seeds from /dev/urandom.
+     *
+     * @param nChains number of independent chains (and threads)
+     * @param factory makes each chain's simulation
+     */
+    public SimulationVirialOverlapParallel(int nChains, SimulationFactory factory) {
+        this(nChains, factory, RandomNumberGeneratorUnix.getRandSeedArray());
+    }
+
+    /**
+     * @param nChains number of independent chains (and threads)
+     * @param factory makes each chain's simulation
+     * @param seeds   seeds for the random number generators; chain i uses
+     *                these seeds with i appended
+     * @throws IllegalArgumentException if a chain's random number generator
+     *                                  is not a RandomMersenneTwister
+     */
+    public SimulationVirialOverlapParallel(int nChains, SimulationFactory factory, int[] seeds) {
+        if (nChains < 1) throw new IllegalArgumentException("need at least one chain");
+        this.seeds = seeds.clone();
+        sims = new SimulationVirialOverlap2[nChains];
+        for (int i = 0; i < nChains; i++) {
+            sims[i] = factory.makeSimulation(i);
+            for (int j = 0; j < i; j++) {
+                if (sims[j] == sims[i]) {
+                    throw new IllegalArgumentException("factory must make a new simulation for each chain");
+                }
+            }
+            IRandom random = sims[i].getRandom();
+            if (!(random instanceof RandomMersenneTwister)) {
+                throw new IllegalArgumentException("chain " + i + " uses " + random.getClass().getSimpleName()
+                        + ", which can't be reseeded; chains must use RandomMersenneTwister");
+            }
+            // the MC moves already hold the simulation's random, so reseed it in place
+            int[] chainSeeds = Arrays.copyOf(this.seeds, this.seeds.length + 1);
+            chainSeeds[this.seeds.length] = i;
+            ((RandomMersenneTwister) random).setSeedArray(chainSeeds);
+        }
+        accumulators = new AccumulatorRatioAverageCovarianceFull[2];
+        mergeActions = new ArrayList<>();
+        refPref = -1;
+    }
+
+    /**
+     * @return the seeds used to seed each chain's random number generator
+     */
+    public int[] getRandomSeeds() {
+        return seeds;
+    }
+
+    /**
+     * @return the simulations for the chains
+     */
+    public SimulationVirialOverlap2[] getSimulations() {
+        return sims;
+    }
+
+    /**
+     * @return the current reference preference (alpha), or -1 if it has not
+     * been determined yet
+     */
+    public double getRefPref() {
+        return refPref;
+    }
+
+    public void setAccumulatorBlockSize(long newBlockSize) {
+        for (SimulationVirialOverlap2 sim : sims) {
+            sim.setAccumulatorBlockSize(newBlockSize);
+        }
+    }
+
+    /**
+     * Sets the number of overlap steps each chain takes between merges during
+     * run.  Actions added via addMergeAction are performed after each merge,
+     * which can be used to report progress.  By default (0), data is only
+     * merged at the end of the run.
+     */
+    public void setMergeInterval(long newMergeInterval) {
+        mergeInterval = newMergeInterval;
+    }
+
+    public long getMergeInterval() {
+        return mergeInterval;
+    }
+
+    /**
+     * Adds an action that is performed each time the chains' data is merged
+     * during run.  Merged results are available from getDataVirialOverlap and
+     * getAccumulators.
+     */
+    public void addMergeAction(IAction action) {
+        mergeActions.add(action);
+    }
+
+    public void removeMergeAction(IAction action) {
+        mergeActions.remove(action);
+    }
+
+    /**
+     * Finds an initial reference preference, reading it from fileName if that
+     * file exists.  Otherwise, each chain runs its own short search (initSteps
+     * total, divided among the chains) and all chains continue from the
+     * median of their estimates; equilibrate then refines it with the merged
+     * data.
+     */
+    public void initRefPref(String fileName, long initSteps) {
+        if (fileName != null) {
+            try {
+                BufferedReader bufReader = new BufferedReader(new FileReader(fileName));
+                refPref = Double.parseDouble(bufReader.readLine());
+                bufReader.close();
+                System.out.println("setting ref pref (from file) to "+refPref);
+                for (SimulationVirialOverlap2 sim : sims) {
+                    sim.useRefPref(refPref, null);
+                }
+                return;
+            }
+            catch (IOException e) {
+                // file not there, which is ok.
+            }
+        }
+
+        long chainSteps = chainSteps(initSteps);
+        runChains(sim -> sim.initRefPref(null, chainSteps));
+        double[] chainRefPref = new double[sims.length];
+        for (int i = 0; i < sims.length; i++) {
+            chainRefPref[i] = sims[i].dpVirialOverlap[0].getAlphaCenter();
+        }
+        Arrays.sort(chainRefPref);
+        double initRefPref = chainRefPref[sims.length / 2];
+        System.out.println("setting initial ref pref to "+initRefPref);
+        for (SimulationVirialOverlap2 sim : sims) {
+            sim.setRefPref(initRefPref, 4);
+        }
+        refPref = -1;
+    }
+
+    /**
+     * Equilibrates each chain (initSteps total, divided among the chains).
+     * If the reference preference has not been determined yet, it is taken
+     * from the chains' merged data, used by all chains and written to
+     * fileName (if not null).
+     */
+    public void equilibrate(String fileName, long initSteps) {
+        long chainSteps = chainSteps(initSteps);
+        long[] oldBlockSize = new long[sims.length];
+        for (int i = 0; i < sims.length; i++) {
+            oldBlockSize[i] = sims[i].blockSize;
+            // keep the chains from deciding on their own
+            sims[i].refPref = refPref;
+        }
+        runChains(sim -> sim.runEquilibration(chainSteps));
+
+        if (refPref == -1) {
+            merge();
+            refPref = dvo.getOverlapAverage();
+            System.out.println("setting ref pref to "+refPref);
+            if (Double.isInfinite(refPref) || Double.isNaN(refPref)) {
+                throw new RuntimeException("oops");
+            }
+            for (int i = 0; i < sims.length; i++) {
+                sims[i].useRefPref(refPref, i == 0 ? fileName : null);
+            }
+        }
+        else {
+            for (SimulationVirialOverlap2 sim : sims) {
+                sim.dvo.reset();
+            }
+        }
+        for (int i = 0; i < sims.length; i++) {
+            sims[i].finishEquilibration(oldBlockSize[i]);
+        }
+        dvo = null;
+    }
+
+    /**
+     * Runs production (steps total, divided among the chains) and merges the
+     * chains' data.  Data accumulates over multiple calls.
+     */
+    public void run(long steps) {
+        long chainSteps = chainSteps(steps);
+        long interval = mergeInterval > 0 ? mergeInterval : chainSteps;
+        for (long done = 0; done < chainSteps; done += interval) {
+            long roundSteps = Math.min(interval, chainSteps - done);
+            runChains(sim -> {
+                sim.ai.setMaxSteps(roundSteps);
+                sim.ai.actionPerformed();
+            });
+            merge();
+            for (IAction action : mergeActions) {
+                action.actionPerformed();
+            }
+        }
+    }
+
+    /**
+     * Combines the reference and target accumulators from all chains.  This
+     * is done by run, but can be called again to pick up data collected by
+     * running the chains directly.
+     */
+    public void merge() {
+        SimulationVirialOverlap2 sim0 = sims[0];
+        for (int i = 0; i < 2; i++) {
+            if (accumulators[i] == null || accumulators[i].getBlockSize() != sim0.accumulators[i].getBlockSize()) {
+                accumulators[i] = new AccumulatorRatioAverageCovarianceFull(sim0.accumulators[i].getBlockSize());
+            }
+            // (re)initializes the sums for the current number of alpha values
+            accumulators[i].putDataInfo(sim0.dpVirialOverlap[i].getDataInfo());
+            for (SimulationVirialOverlap2 sim : sims) {
+                accumulators[i].merge(sim.accumulators[i]);
+            }
+        }
+        if (dvo == null || dvo.getAlphaSource() != sim0.dpVirialOverlap[0]) {
+            dvo = new DataVirialOverlap(sim0.dpVirialOverlap[0], accumulators[0], accumulators[1]);
+        }
+    }
+
+    /**
+     * @return the overlap data for the merged accumulators (as of the last
+     * merge)
+     */
+    public DataVirialOverlap getDataVirialOverlap() {
+        return dvo;
+    }
+
+    /**
+     * @return the merged reference and target accumulators (as of the last
+     * merge)
+     */
+    public AccumulatorRatioAverageCovarianceFull[] getAccumulators() {
+        return accumulators;
+    }
+
+    public void printResults(double refIntegral) {
+        printResults(refIntegral, null);
+    }
+
+    public void printResults(double refIntegral, String[] extraNames) {
+        SimulationVirialOverlap2.printResults(dvo, accumulators, sims[0].numExtraTargetClusters, refIntegral, extraNames);
+    }
+
+    protected long chainSteps(long totalSteps) {
+        return (totalSteps + sims.length - 1) / sims.length;
+    }
+
+    /**
+     * Performs the task for each chain, each in its own thread, and waits for
+     * all of them to finish.
+     */
+    protected void runChains(ChainTask task) {
+        if (sims.length == 1) {
+            task.run(sims[0]);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(sims.length);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SimulationVirialOverlap2 sim : sims) {
+                futures.add(executor.submit(() -> task.run(sim)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected interface ChainTask {
+        void run(SimulationVirialOverlap2 sim);
+    }
+
+    /**
+     * Makes the simulation for each chain.
+     */
+    public interface SimulationFactory {
+        /**
+         * Returns a new, initialized simulation for the given chain.  Each
+         * simulation must have its own species, clusters, Mayer functions
+         * and potentials, since these hold state and the chains run
+         * concurrently.
+         */
+        SimulationVirialOverlap2 makeSimulation(int chain);
+    }
+}
@@ -0,0 +1,105 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.eam;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.AtomType;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.chem.elements.Iron;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.list.PotentialMasterList;
+import etomica.potential.IteratorDirective;
+import etomica.potential.PotentialCalculationEnergySum;
+import etomica.potential.PotentialCalculationForceSum;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.units.ElectronVolt;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PotentialComputeEAMTest {
+
+    @Test
+    public void testEnergyAndForces() {
+        Space space = Space3D.getInstance();
+        Simulation sim = new Simulation(space);
+        SpeciesSpheresMono species = new SpeciesSpheresMono(space, Iron.INSTANCE);
+        species.setIsDynamic(true);
+        sim.addSpecies(species);
+        Box box = sim.makeBox();
+        box.setNMolecules(species, 256);
+        new BoxInflate(box, space, 0.085).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(space), space).initializeCoordinates(box);
+        RandomMersenneTwister random = new RandomMersenneTwister(5);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector p = atoms.get(i).getPosition();
+            for (int j = 0; j < 3; j++) {
+                p.setX(j, p.getX(j) + 0.2 * (random.nextDouble() - 0.5));
+            }
+        }
+
+        double rc = 5;
+        P2EAM p2 = new P2EAM(space, 8.7932, 8.14475, ElectronVolt.UNIT.toSim(0.0220225), 3.48501, 28.8474, rc, rc);
+        PotentialMasterList potentialMaster = new PotentialMasterList(sim, 1.2 * rc, space);
+        AtomType leafType = species.getLeafType();
+        potentialMaster.addPotential(p2, new AtomType[]{leafType, leafType});
+        potentialMaster.getNeighborManager(box).reset();
+        PotentialComputeEAM compute = new PotentialComputeEAM(potentialMaster, box, p2);
+        IteratorDirective id = new IteratorDirective();
+
+        // energy and forces the old way
+        PotentialCalculationEnergySumEAM pcEnergy = new PotentialCalculationEnergySumEAM(p2);
+        pcEnergy.zeroSum();
+        potentialMaster.calculate(box, id, pcEnergy);
+        double energy = pcEnergy.getSum();
+
+        p2.disableEnergy();
+        p2.reset();
+        potentialMaster.calculate(box, id, new PotentialCalculationEnergySum());
+        p2.enableEnergy();
+        p2.prepForGradient();
+        AtomLeafAgentManager<Vector> forces = new AtomLeafAgentManager<>(a -> space.makeVector(), box);
+        PotentialCalculationForceSum pcForce = new PotentialCalculationForceSum();
+        pcForce.setAgentManager(forces);
+        pcForce.reset();
+        potentialMaster.calculate(box, id, pcForce);
+
+        // and the new way
+        PotentialCalculationEnergySumEAM pcEnergyEAM = new PotentialCalculationEnergySumEAM(compute);
+        pcEnergyEAM.zeroSum();
+        potentialMaster.calculate(box, id, pcEnergyEAM);
+        Assertions.assertEquals(energy, pcEnergyEAM.getSum(), 1e-9 * Math.abs(energy));
+
+        AtomLeafAgentManager<Vector> forcesEAM = new AtomLeafAgentManager<>(a -> space.makeVector(), box);
+        PotentialCalculationForceSumEAM pcForceEAM = new PotentialCalculationForceSumEAM(compute);
+        pcForceEAM.setAgentManager(forcesEAM);
+        // compute twice to make sure the buffers are reset
+        for (int k = 0; k < 2; k++) {
+            pcForceEAM.reset();
+            potentialMaster.calculate(box, id, pcForceEAM);
+        }
+        Assertions.assertEquals(energy, pcForceEAM.getEnergyEAM(), 1e-9 * Math.abs(energy));
+        double maxForce = 0;
+        for (int i = 0; i < atoms.size(); i++) {
+            maxForce = Math.max(maxForce, Math.sqrt(forces.getAgent(atoms.get(i)).squared()));
+        }
+        Assertions.assertTrue(maxForce > 0);
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector f = forces.getAgent(atoms.get(i));
+            Vector fEAM = forcesEAM.getAgent(atoms.get(i));
+            for (int j = 0; j < 3; j++) {
+                Assertions.assertEquals(f.getX(j), fEAM.getX(j), 1e-9 * maxForce);
+            }
+        }
+    }
+}
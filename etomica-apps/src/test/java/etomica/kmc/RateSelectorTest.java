@@ -0,0 +1,52 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.kmc;
+
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RateSelectorTest {
+
+    /**
+     * Checks selection against a linear scan of the cumulative rates as
+     * rates are changed.
+     */
+    @Test
+    public void testSelect() {
+        int n = 37;
+        RateSelector selector = new RateSelector(n);
+        double[] rates = new double[n];
+        RandomMersenneTwister random = new RandomMersenneTwister(5);
+        for (int iter = 0; iter < 2000; iter++) {
+            int i = random.nextInt(n);
+            // some rates are 0, which should never be chosen
+            rates[i] = random.nextDouble() < 0.3 ? 0 : random.nextDouble();
+            selector.setRate(i, rates[i]);
+
+            double total = 0;
+            for (double r : rates) total += r;
+            Assertions.assertEquals(total, selector.getTotal(), 1e-12);
+
+            double u = random.nextDouble();
+            int expected = -1;
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                sum += rates[j];
+                if (sum > u * total) {
+                    expected = j;
+                    break;
+                }
+            }
+            int selected = selector.select(u);
+            if (expected >= 0) {
+                Assertions.assertEquals(expected, selected);
+            }
+            Assertions.assertTrue(total == 0 || rates[selected] > 0);
+        }
+        selector.reset();
+        Assertions.assertEquals(0, selector.getTotal());
+    }
+}
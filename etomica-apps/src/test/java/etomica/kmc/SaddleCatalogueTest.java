@@ -0,0 +1,63 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.kmc;
+
+import etomica.space.Vector;
+import etomica.space3d.Vector3D;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SaddleCatalogueTest {
+
+    /**
+     * Checks the catalogue against comparing with every stored configuration.
+     */
+    @Test
+    public void testFind() {
+        int nAtoms = 20;
+        double tolerance = 0.5;
+        RandomMersenneTwister random = new RandomMersenneTwister(7);
+        Vector[] minimum = new Vector[nAtoms];
+        for (int i = 0; i < nAtoms; i++) {
+            minimum[i] = new Vector3D(5 * random.nextDouble(), 5 * random.nextDouble(), 5 * random.nextDouble());
+        }
+        SaddleCatalogue catalogue = new SaddleCatalogue(nAtoms, 3, tolerance);
+        List<Vector[]> stored = new ArrayList<>();
+        for (int iter = 0; iter < 300; iter++) {
+            // move one atom (a hop) plus small displacements of the others
+            Vector[] saddle = new Vector[nAtoms];
+            int hopper = random.nextInt(nAtoms);
+            for (int i = 0; i < nAtoms; i++) {
+                saddle[i] = new Vector3D();
+                saddle[i].E(minimum[i]);
+                for (int j = 0; j < 3; j++) {
+                    double dx = 0.05 * random.nextGaussian();
+                    if (i == hopper) dx += random.nextInt(3) - 1;
+                    saddle[i].setX(j, saddle[i].getX(j) + dx);
+                }
+            }
+            boolean expected = false;
+            for (Vector[] s : stored) {
+                double sum = 0;
+                for (int i = 0; i < nAtoms; i++) {
+                    sum += s[i].Mv1Squared(saddle[i]);
+                }
+                if (sum < tolerance) {
+                    expected = true;
+                    break;
+                }
+            }
+            int found = catalogue.find(saddle, minimum);
+            Assertions.assertEquals(expected, found >= 0);
+            catalogue.add(saddle);
+            stored.add(saddle);
+        }
+        Assertions.assertEquals(300, catalogue.size());
+    }
+}
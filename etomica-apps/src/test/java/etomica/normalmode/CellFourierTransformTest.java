@@ -0,0 +1,111 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.normalmode;
+
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.lattice.crystal.BasisCubicFcc;
+import etomica.lattice.crystal.PrimitiveCubic;
+import etomica.normalmode.CoordinateDefinition.BasisCell;
+import etomica.simulation.Simulation;
+import etomica.space.BoundaryRectangularPeriodic;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CellFourierTransformTest {
+
+    private CoordinateDefinitionLeaf coordinateDefinition;
+    private Vector[] waveVectors;
+    private RandomMersenneTwister random;
+
+    @BeforeEach
+    public void setup() {
+        Space space = Space.getInstance(3);
+        Simulation sim = new Simulation(space);
+        SpeciesSpheresMono species = new SpeciesSpheresMono(sim, space);
+        sim.addSpecies(species);
+        // 4 and 3 cells, so that both the radix-2 and direct transforms are used
+        int[] nCells = new int[]{4, 3, 3};
+        double a = 1.6;
+        Box box = sim.makeBox(new BoundaryRectangularPeriodic(space, 1));
+        box.getBoundary().setBoxSize(Vector.of(nCells[0] * a, nCells[1] * a, nCells[2] * a));
+        box.setNMolecules(species, 4 * nCells[0] * nCells[1] * nCells[2]);
+        PrimitiveCubic primitive = new PrimitiveCubic(space, a);
+        coordinateDefinition = new CoordinateDefinitionLeaf(box, primitive, new BasisCubicFcc(), space);
+        coordinateDefinition.initializeCoordinates(nCells);
+
+        WaveVectorFactorySimple waveVectorFactory = new WaveVectorFactorySimple(primitive, space);
+        waveVectorFactory.makeWaveVectors(box);
+        waveVectors = waveVectorFactory.getWaveVectors();
+
+        random = new RandomMersenneTwister(3);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector p = atoms.get(i).getPosition();
+            for (int j = 0; j < 3; j++) {
+                p.setX(j, p.getX(j) + 0.1 * (random.nextDouble() - 0.5));
+            }
+        }
+    }
+
+    @Test
+    public void testCalcT() {
+        int n = waveVectors.length;
+        // add a wave vector that is not commensurate with the box
+        Vector[] k = new Vector[n + 1];
+        System.arraycopy(waveVectors, 0, k, 0, n);
+        k[n] = Vector.of(0.3, 0.2, 0.1);
+        int dim = coordinateDefinition.getCoordinateDim();
+        double[][] realT = new double[k.length][dim], imaginaryT = new double[k.length][dim];
+        double[][] realFFT = new double[k.length][dim], imaginaryFFT = new double[k.length][dim];
+        coordinateDefinition.calcT(k, realT, imaginaryT);
+        coordinateDefinition.setDoFFT(true);
+        coordinateDefinition.calcT(k, realFFT, imaginaryFFT);
+        Assertions.assertTrue(n > 10);
+        for (int i = 0; i < n; i++) {
+            Assertions.assertTrue(coordinateDefinition.getFourierTransform().gridIndex(k[i]) >= 0);
+        }
+        Assertions.assertEquals(-1, coordinateDefinition.getFourierTransform().gridIndex(k[n]));
+        for (int i = 0; i < k.length; i++) {
+            for (int j = 0; j < dim; j++) {
+                Assertions.assertEquals(realT[i][j], realFFT[i][j], 1e-10);
+                Assertions.assertEquals(imaginaryT[i][j], imaginaryFFT[i][j], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testCalcU() {
+        coordinateDefinition.setDoFFT(true);
+        CellFourierTransform transform = coordinateDefinition.getFourierTransform();
+        int dim = coordinateDefinition.getCoordinateDim();
+        double[][] realC = new double[waveVectors.length][dim], imaginaryC = new double[waveVectors.length][dim];
+        for (int i = 0; i < waveVectors.length; i++) {
+            for (int j = 0; j < dim; j++) {
+                realC[i][j] = random.nextGaussian();
+                imaginaryC[i][j] = random.nextGaussian();
+            }
+        }
+        BasisCell[] cells = coordinateDefinition.getBasisCells();
+        double[][] u = new double[cells.length][dim];
+        transform.calcU(waveVectors, realC, imaginaryC, u);
+        double normalization = 1 / Math.sqrt(cells.length);
+        for (int iCell = 0; iCell < cells.length; iCell++) {
+            for (int j = 0; j < dim; j++) {
+                double sum = 0;
+                for (int i = 0; i < waveVectors.length; i++) {
+                    double kR = waveVectors[i].dot(cells[iCell].cellPosition);
+                    sum += realC[i][j] * Math.cos(kR) - imaginaryC[i][j] * Math.sin(kR);
+                }
+                Assertions.assertEquals(sum * normalization, u[iCell][j], 1e-10);
+            }
+        }
+    }
+}
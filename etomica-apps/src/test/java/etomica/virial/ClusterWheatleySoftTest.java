@@ -0,0 +1,186 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial;
+
+import etomica.atom.IAtomList;
+import etomica.chem.elements.ElementSimple;
+import etomica.math.SpecialFunctions;
+import etomica.potential.P2LennardJones;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ClusterWheatleySoftTest {
+
+    private static BoxCluster makeBox(ClusterAbstract cluster, Space space, int n) {
+        Simulation sim = new Simulation(space);
+        SpeciesSpheresMono species = new SpeciesSpheresMono(space, new ElementSimple("A"));
+        sim.addSpecies(species);
+        BoxCluster box = new BoxCluster(new ClusterWeightAbs(cluster), space);
+        sim.addBox(box);
+        box.setNMolecules(species, n);
+        return box;
+    }
+
+    /**
+     * Returns true if the graph on n points with the given edges (bit
+     * i*n+j set for each edge i-j) is connected once the points in
+     * omit are removed.
+     */
+    private static boolean isConnected(long edges, int n, int omit) {
+        int all = ((1 << n) - 1) & ~omit;
+        int start = all & -all;
+        int reached = start;
+        int last = 0;
+        while (reached != last) {
+            last = reached;
+            for (int i = 0; i < n; i++) {
+                if ((reached & (1 << i)) == 0) continue;
+                for (int j = 0; j < n; j++) {
+                    if ((all & (1 << j)) != 0 && (edges & (1L << (i * n + j))) != 0) {
+                        reached |= 1 << j;
+                    }
+                }
+            }
+        }
+        return reached == all;
+    }
+
+    /**
+     * Sums the product of the given bonds over every biconnected graph on n
+     * points, enumerating all graphs explicitly.
+     */
+    private static double sumBiconnected(double[][] bonds, int n) {
+        int nPairs = n * (n - 1) / 2;
+        double sum = 0;
+        for (int g = 0; g < (1 << nPairs); g++) {
+            long edges = 0;
+            double product = 1;
+            int bit = 0;
+            for (int i = 0; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if ((g & (1 << bit)) != 0) {
+                        edges |= (1L << (i * n + j)) | (1L << (j * n + i));
+                        product *= bonds[i][j];
+                    }
+                    bit++;
+                }
+            }
+            if (!isConnected(edges, n, 0)) continue;
+            boolean biconnected = true;
+            for (int i = 0; i < n && biconnected; i++) {
+                biconnected = isConnected(edges, n, 1 << i);
+            }
+            if (biconnected) {
+                sum += product;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Checks hard spheres that all overlap against the known result: every f
+     * bond is -1 and the sum over biconnected graphs is -(n-2)!, so the
+     * cluster value is 1/n.
+     */
+    @Test
+    public void testHardSphereOverlap() {
+        Space space = Space.getInstance(3);
+        for (int n = 3; n <= 7; n++) {
+            ClusterWheatleySoft cluster = new ClusterWheatleySoft(n, new MayerHardSphere(1), 0);
+            cluster.setTemperature(1);
+            BoxCluster box = makeBox(cluster, space, n);
+            IAtomList atoms = box.getLeafList();
+            for (int i = 0; i < n; i++) {
+                atoms.get(i).getPosition().setX(i % 3, 0.1 * (1 + i / 3));
+            }
+            box.trialNotify();
+            Assertions.assertEquals(1.0 / n, cluster.value(box), 1e-14);
+        }
+    }
+
+    /**
+     * Checks the recursion against an explicit sum over all biconnected
+     * graphs for Lennard-Jones configurations.
+     */
+    @Test
+    public void testBiconnectedSum() {
+        int n = 5;
+        double temperature = 1.2;
+        Space space = Space.getInstance(3);
+        MayerFunction f = new MayerGeneralSpherical(new P2LennardJones(space));
+        ClusterWheatleySoft cluster = new ClusterWheatleySoft(n, f, 0);
+        cluster.setTemperature(temperature);
+        BoxCluster box = makeBox(cluster, space, n);
+        IAtomList atoms = box.getLeafList();
+        RandomMersenneTwister random = new RandomMersenneTwister(2);
+        double[][] bonds = new double[n][n];
+        for (int step = 0; step < 20; step++) {
+            for (int i = 1; i < n; i++) {
+                Vector p = atoms.get(i).getPosition();
+                for (int d = 0; d < 3; d++) {
+                    p.setX(d, 2 * (random.nextDouble() - 0.5));
+                }
+            }
+            box.trialNotify();
+            f.setBox(box);
+            for (int i = 0; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    bonds[i][j] = f.f(box.getAPairSet().getAPair(i, j), box.getCPairSet().getr2(i, j), 1 / temperature);
+                }
+            }
+            double expected = (1 - n) * sumBiconnected(bonds, n) / SpecialFunctions.factorial(n);
+            Assertions.assertEquals(expected, cluster.value(box), 1e-10 * Math.abs(expected));
+            box.acceptNotify();
+        }
+    }
+
+    /**
+     * Checks that incremental f bond updates give the same values as
+     * recomputing all bonds as molecules are moved, accepted and rejected.
+     */
+    @Test
+    public void testIncremental() {
+        int n = 6;
+        Space space = Space.getInstance(3);
+        MayerFunction f = new MayerGeneralSpherical(new P2LennardJones(space));
+        ClusterWheatleySoft incremental = new ClusterWheatleySoft(n, f, 0);
+        incremental.setDoIncrementalF(true);
+        ClusterWheatleySoft full = new ClusterWheatleySoft(n, f, 0);
+        incremental.setTemperature(1.2);
+        full.setTemperature(1.2);
+
+        BoxCluster box = makeBox(incremental, space, n);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < n; i++) {
+            atoms.get(i).getPosition().setX(i % 3, 0.9 * (i / 3));
+        }
+        box.trialNotify();
+        box.acceptNotify();
+
+        RandomMersenneTwister random = new RandomMersenneTwister(1);
+        Vector old = space.makeVector();
+        for (int step = 0; step < 1000; step++) {
+            Vector p = atoms.get(random.nextInt(n)).getPosition();
+            old.E(p);
+            int d = random.nextInt(3);
+            p.setX(d, p.getX(d) + 0.5 * (random.nextDouble() - 0.5));
+            box.trialNotify();
+            double expected = full.value(box);
+            Assertions.assertEquals(expected, incremental.value(box), 1e-12 * Math.abs(expected) + 1e-300);
+            if (random.nextInt(2) == 0) {
+                box.acceptNotify();
+            }
+            else {
+                p.E(old);
+                box.rejectNotify();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.cluster;
+
+import etomica.graph.iterators.filters.IsomorphismFilter;
+import etomica.graph.model.Graph;
+import etomica.graph.operations.ParallelApply;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class VirialDiagramsTest {
+
+    private static String dump(Collection<Graph> graphs) {
+        List<String> list = new ArrayList<>();
+        for (Graph g : graphs) {
+            list.add(g.toString());
+        }
+        Collections.sort(list);
+        return String.join("\n", list);
+    }
+
+    private static VirialDiagrams makeDiagrams(File cacheDir) {
+        VirialDiagrams virialDiagrams = new VirialDiagrams(5, true, true);
+        virialDiagrams.setCacheDir(cacheDir);
+        virialDiagrams.setDoReeHoover(false);
+        virialDiagrams.setDoMinimalMulti(true);
+        virialDiagrams.setDoMultiFromPair(true);
+        virialDiagrams.makeVirialDiagrams();
+        return virialDiagrams;
+    }
+
+    private static String dump(VirialDiagrams virialDiagrams) {
+        return dump(virialDiagrams.getVirialGraphs()) + "\n" + dump(virialDiagrams.getMSMCGraphs(true, false))
+                + "\n" + dump(virialDiagrams.getMSMCGraphs(false, true))
+                + "\n" + dump(virialDiagrams.getExtraDisconnectedVirialGraphs());
+    }
+
+    /**
+     * Checks that diagrams read from the cache match those generated.
+     */
+    @Test
+    public void testCache() throws IOException {
+        IsomorphismFilter.DEBUG_MODE = false;
+        File cacheDir = Files.createTempDirectory("diagrams").toFile();
+        try {
+            String generated = dump(makeDiagrams(cacheDir));
+            File[] files = cacheDir.listFiles();
+            Assertions.assertEquals(1, files.length);
+            String cached = dump(makeDiagrams(cacheDir));
+            Assertions.assertEquals(generated, cached);
+        }
+        finally {
+            for (File f : cacheDir.listFiles()) {
+                f.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    /**
+     * Checks that processing graphs in parallel yields the same diagrams.
+     */
+    @Test
+    public void testParallel() {
+        IsomorphismFilter.DEBUG_MODE = false;
+        boolean enabled = ParallelApply.enabled;
+        int minGraphs = ParallelApply.minGraphs;
+        try {
+            ParallelApply.enabled = false;
+            String sequential = dump(makeDiagrams(null));
+            ParallelApply.enabled = true;
+            ParallelApply.minGraphs = 2;
+            String parallel = dump(makeDiagrams(null));
+            Assertions.assertEquals(sequential, parallel);
+        }
+        finally {
+            ParallelApply.enabled = enabled;
+            ParallelApply.minGraphs = minGraphs;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.virial.cluster;
+
+import etomica.graph.iterators.filters.IsomorphismFilter;
+import etomica.graph.model.Graph;
+import etomica.graph.model.Metadata;
+import etomica.graph.model.impl.GraphImpl;
+import etomica.graph.model.impl.MetadataImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class WertheimDiagrams2SiteRhoTest {
+
+    private static String dump(Collection<Graph> graphs) {
+        List<String> list = new ArrayList<>();
+        for (Graph g : graphs) {
+            list.add(g.toString());
+        }
+        Collections.sort(list);
+        return String.join("\n", list);
+    }
+
+    private static String makeDiagrams(File cacheDir) {
+        MetadataImpl.rootPointsSpecial = true;
+        WertheimDiagrams2SiteRho diagrams = new WertheimDiagrams2SiteRho(3, false, false, 2, true);
+        diagrams.setCacheDir(cacheDir);
+        diagrams.makeWertheimDiagrams();
+        List<String> cancel = new ArrayList<>();
+        for (Map.Entry<Graph,Set<Graph>> entry : diagrams.getCancelMap().entrySet()) {
+            cancel.add(entry.getKey() + "=" + (entry.getValue() == null ? null : dump(entry.getValue())));
+        }
+        Collections.sort(cancel);
+        return dump(diagrams.getVirialGraphs()) + "\n" + dump(diagrams.getMSMCGraphs(false))
+                + "\n" + dump(diagrams.getExtraDisconnectedVirialGraphs()) + "\n" + cancel
+                + "\n" + MetadataImpl.rootPointsSpecial;
+    }
+
+    /**
+     * Checks that diagrams read from the cache match those generated, and
+     * that reading leaves the graph library settings as generating does.
+     */
+    @Test
+    public void testCache() throws IOException {
+        IsomorphismFilter.DEBUG_MODE = false;
+        boolean useReverseEdges = GraphImpl.useReverseEdges;
+        boolean rootPointsSpecial = MetadataImpl.rootPointsSpecial;
+        Comparator<Metadata> metaDataComparator = MetadataImpl.metaDataComparator;
+        int numEdgeColorPairs = MetadataImpl.edgeColorPairs.size();
+        File cacheDir = Files.createTempDirectory("diagrams").toFile();
+        try {
+            GraphImpl.useReverseEdges = true;
+            String generated = makeDiagrams(cacheDir);
+            File[] files = cacheDir.listFiles();
+            Assertions.assertEquals(1, files.length);
+            String cached = makeDiagrams(cacheDir);
+            Assertions.assertEquals(generated, cached);
+        }
+        finally {
+            GraphImpl.useReverseEdges = useReverseEdges;
+            MetadataImpl.rootPointsSpecial = rootPointsSpecial;
+            MetadataImpl.metaDataComparator = metaDataComparator;
+            while (MetadataImpl.edgeColorPairs.size() > numEdgeColorPairs) {
+                MetadataImpl.edgeColorPairs.remove(MetadataImpl.edgeColorPairs.size() - 1);
+            }
+            for (File f : cacheDir.listFiles()) {
+                f.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+}
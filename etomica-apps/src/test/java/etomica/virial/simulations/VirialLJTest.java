@@ -10,6 +10,7 @@ import etomica.potential.Potential2Spherical;
 import etomica.space.Space;
 import etomica.space3d.Space3D;
 import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomNumberGenerator;
 import etomica.virial.*;
 import etomica.virial.cluster.Standard;
 import org.junit.jupiter.api.Assertions;
@@ -67,4 +68,61 @@ public class VirialLJTest {
         // improvements to uncertainty estimation might alter this up or down, but it shouldn't change by much.
         Assertions.assertTrue(Math.abs(error - 0.0034) < 0.0003, "Ratio uncertainty within expected limits: "+error);
     }
+
+    @Test
+    public void testVirialLJParallel() {
+        final int nPoints = 3;
+        double temperature = 1;
+        long steps = 1000;
+        double sigmaHSRef = 1.5;
+
+        Space space = Space3D.getInstance();
+
+        SimulationVirialOverlapParallel sim = new SimulationVirialOverlapParallel(4, chain -> {
+            MayerHardSphere fRef = new MayerHardSphere(sigmaHSRef);
+            MayerEHardSphere eRef = new MayerEHardSphere(sigmaHSRef);
+            Potential2Spherical pTarget = new P2LennardJones(space, 1.0, 1.0);
+            MayerGeneralSpherical fTarget = new MayerGeneralSpherical(pTarget);
+            MayerESpherical eTarget = new MayerESpherical(pTarget);
+            ClusterAbstract targetCluster = Standard.virialCluster(nPoints, fTarget, nPoints > 3, eTarget, true);
+            targetCluster.setTemperature(temperature);
+            ClusterAbstract refCluster = Standard.virialCluster(nPoints, fRef, nPoints > 3, eRef, true);
+            refCluster.setTemperature(temperature);
+
+            SimulationVirialOverlap2 chainSim = new SimulationVirialOverlap2(space, new SpeciesSpheresMono(space, new ElementSimple("LJ")), temperature, refCluster, targetCluster);
+            chainSim.integratorOS.setAggressiveAdjustStepFraction(true);
+            chainSim.integratorOS.setNumSubSteps(1000);
+            return chainSim;
+        }, new int[]{1, 2, 3});
+        sim.initRefPref(null, steps / 100 * 4);
+        sim.equilibrate(null, steps / 40 * 4);
+        Assertions.assertTrue(Math.abs(sim.getRefPref() - 1.34) < 0.12, "Ref pref (alpha) within expected limits: " + sim.getRefPref());
+        for (SimulationVirialOverlap2 chainSim : sim.getSimulations()) {
+            Assertions.assertEquals(sim.getRefPref(), chainSim.refPref);
+        }
+
+        // the same total number of steps as testVirialLJ, spread across 4 chains
+        sim.run(steps);
+
+        double[] ratioAndError = sim.getDataVirialOverlap().getAverageAndError();
+        double ratio = ratioAndError[0];
+        double error = ratioAndError[1];
+        System.out.println("parallel ratio: " + ratioAndError[0] + " " + ratioAndError[1]);
+
+        Assertions.assertTrue(Math.abs(ratio - 0.0604) < 0.011, "Final ratio within expected limits: " + ratio);
+        // with the same total sampling, the uncertainty should be similar to the single chain
+        Assertions.assertTrue(Math.abs(error - 0.0034) < 0.0008, "Ratio uncertainty within expected limits: " + error);
+    }
+
+    @Test
+    public void testVirialLJParallelNeedsReseedableRandom() {
+        Space space = Space3D.getInstance();
+        MayerHardSphere fRef = new MayerHardSphere(1.5);
+        ClusterAbstract refCluster = Standard.virialCluster(3, fRef, false, new MayerEHardSphere(1.5), true);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SimulationVirialOverlapParallel(2, chain -> {
+            SimulationVirialOverlap2 chainSim = new SimulationVirialOverlap2(space, new SpeciesSpheresMono(space, new ElementSimple("LJ")), 1, refCluster, refCluster);
+            chainSim.setRandom(new RandomNumberGenerator(chain));
+            return chainSim;
+        }, new int[]{1, 2, 3}));
+    }
 }
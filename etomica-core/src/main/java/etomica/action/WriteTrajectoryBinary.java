@@ -0,0 +1,277 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.action;
+
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.integrator.Integrator;
+import etomica.integrator.IntegratorEvent;
+import etomica.integrator.IntegratorListener;
+import etomica.integrator.IntegratorMD;
+import etomica.space.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a box's trajectory to a binary file, one fixed-size frame per call
+ * to actionPerformed.  As an IntegratorListener, a frame is written every
+ * interval steps.  Each frame holds the integrator's step count and time, the
+ * box dimensions and the position (and optionally the velocity) of each leaf
+ * atom, as 4-byte floats or 8-byte doubles.  Because every frame has the same
+ * size, ConfigurationTrajectoryBinary can read any frame directly.
+ * <p>
+ * The file starts with a HEADER_SIZE byte header:
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    dimension
+ * int    number of atoms
+ * int    bytes per value (4 or 8)
+ * int    flags (VELOCITIES)
+ * long   number of frames
+ * </pre>
+ * followed by the frames:
+ * <pre>
+ * long   step
+ * double time
+ * double box size (dimension values)
+ * value  positions (atoms * dimension values)
+ * value  velocities (atoms * dimension values, if written)
+ * </pre>
+ * All values are little-endian.  The number of frames in the header is
+ * updated as each frame is written, so the file is readable (up to the last
+ * complete frame) even if the simulation dies.  The number of atoms in the
+ * box may not change.
+ *
+ * @see etomica.config.ConfigurationTrajectoryBinary
+ */
+public class WriteTrajectoryBinary implements IAction, IntegratorListener {
+
+    public static final int MAGIC = 0x4a525445; // "ETRJ"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int VELOCITIES = 1;
+
+    protected final Box box;
+    protected final Path path;
+    protected final boolean doublePrecision;
+    protected final boolean writeVelocities;
+    protected boolean doAppend;
+    protected long interval, intervalCount;
+    protected Integrator integrator;
+    protected FileChannel channel;
+    protected ByteBuffer frameBuffer, countBuffer;
+    protected int nAtoms;
+    protected long nFrames;
+
+    /**
+     * @param box             the box whose atoms are written
+     * @param fileName        the trajectory file
+     * @param doublePrecision writes coordinates as doubles if true, floats
+     *                        if false
+     * @param writeVelocities writes atom velocities after the positions
+     */
+    public WriteTrajectoryBinary(Box box, String fileName, boolean doublePrecision, boolean writeVelocities) {
+        this.box = box;
+        path = Paths.get(fileName);
+        this.doublePrecision = doublePrecision;
+        this.writeVelocities = writeVelocities;
+        interval = 1;
+        countBuffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sets whether frames are appended to an existing file (false by
+     * default).  The existing file must have the same dimension, number of
+     * atoms, precision and velocity setting.  This is useful for continuing
+     * a trajectory from a restarted simulation.
+     */
+    public void setIsAppend(boolean newDoAppend) {
+        doAppend = newDoAppend;
+    }
+
+    public boolean isAppend() {
+        return doAppend;
+    }
+
+    /**
+     * Sets the number of integrator steps between frames when used as an
+     * IntegratorListener.
+     */
+    public void setInterval(long newInterval) {
+        interval = newInterval;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets the integrator whose step count (and time, for IntegratorMD) is
+     * written with each frame.  This is set automatically when used as an
+     * IntegratorListener.
+     */
+    public void setIntegrator(Integrator newIntegrator) {
+        integrator = newIntegrator;
+    }
+
+    /**
+     * @return the number of frames in the file
+     */
+    public long getNumFrames() {
+        return nFrames;
+    }
+
+    public void integratorInitialized(IntegratorEvent e) {
+        integrator = e.getIntegrator();
+    }
+
+    public void integratorStepStarted(IntegratorEvent e) {}
+
+    public void integratorStepFinished(IntegratorEvent e) {
+        if (++intervalCount < interval) return;
+        intervalCount = 0;
+        integrator = e.getIntegrator();
+        actionPerformed();
+    }
+
+    /**
+     * Writes a frame with the current coordinates.
+     */
+    public void actionPerformed() {
+        IAtomList leafList = box.getLeafList();
+        int D = box.getSpace().D();
+        try {
+            if (channel == null) {
+                open(leafList.size(), D);
+            }
+            if (leafList.size() != nAtoms) {
+                throw new IllegalStateException("number of atoms changed from " + nAtoms + " to " + leafList.size());
+            }
+
+            ByteBuffer buffer = frameBuffer;
+            buffer.clear();
+            long step = integrator == null ? nFrames : integrator.getStepCount();
+            buffer.putLong(step);
+            buffer.putDouble(integrator instanceof IntegratorMD ? ((IntegratorMD) integrator).getCurrentTime() : step);
+            Vector boxSize = box.getBoundary().getBoxSize();
+            for (int j = 0; j < D; j++) {
+                buffer.putDouble(boxSize.getX(j));
+            }
+            for (int i = 0; i < nAtoms; i++) {
+                putVector(buffer, leafList.get(i).getPosition(), D);
+            }
+            if (writeVelocities) {
+                for (int i = 0; i < nAtoms; i++) {
+                    putVector(buffer, ((IAtomKinetic) leafList.get(i)).getVelocity(), D);
+                }
+            }
+            buffer.flip();
+
+            long offset = HEADER_SIZE + nFrames * buffer.limit();
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+            nFrames++;
+            countBuffer.clear();
+            countBuffer.putLong(nFrames).flip();
+            channel.write(countBuffer, 24);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected void putVector(ByteBuffer buffer, Vector v, int D) {
+        if (doublePrecision) {
+            for (int j = 0; j < D; j++) {
+                buffer.putDouble(v.getX(j));
+            }
+        }
+        else {
+            for (int j = 0; j < D; j++) {
+                buffer.putFloat((float) v.getX(j));
+            }
+        }
+    }
+
+    /**
+     * Opens the file, either writing a new header or (when appending)
+     * checking the existing one and discarding any incomplete frame.
+     */
+    protected void open(int numAtoms, int D) throws IOException {
+        nAtoms = numAtoms;
+        int bytesPerValue = doublePrecision ? 8 : 4;
+        int flags = writeVelocities ? VELOCITIES : 0;
+        int frameSize = frameSize(D, nAtoms, bytesPerValue, flags);
+        frameBuffer = ByteBuffer.allocateDirect(frameSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (doAppend && Files.exists(path) && Files.size(path) >= HEADER_SIZE) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) break;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != D
+                    || header.getInt() != nAtoms || header.getInt() != bytesPerValue || header.getInt() != flags) {
+                channel.close();
+                channel = null;
+                throw new IllegalStateException("can't append to " + path + "; it has a different format");
+            }
+            nFrames = Math.min(header.getLong(), (channel.size() - HEADER_SIZE) / frameSize);
+            channel.truncate(HEADER_SIZE + nFrames * frameSize);
+            return;
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(D);
+        header.putInt(nAtoms);
+        header.putInt(bytesPerValue);
+        header.putInt(flags);
+        header.putLong(0);
+        header.position(HEADER_SIZE);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        nFrames = 0;
+    }
+
+    /**
+     * Closes the file.  Writing another frame reopens it (appending).
+     */
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        channel = null;
+        doAppend = true;
+    }
+
+    /**
+     * @return the size (in bytes) of each frame for a file with the given
+     * parameters
+     */
+    public static int frameSize(int D, int nAtoms, int bytesPerValue, int flags) {
+        int nVectors = (flags & VELOCITIES) != 0 ? 2 : 1;
+        return 16 + 8 * D + nVectors * nAtoms * D * bytesPerValue;
+    }
+}
@@ -0,0 +1,241 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.config;
+
+import etomica.action.WriteTrajectoryBinary;
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.space.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads frames from a trajectory file written by WriteTrajectoryBinary and
+ * assigns them to a box.  Since all frames have the same size, any frame can
+ * be selected directly (setFrame), and the file is memory-mapped (in windows
+ * of many frames) so that reading a frame does not copy the file.  This
+ * allows meters to be applied to a trajectory after the simulation is done:
+ * <pre>
+ * ConfigurationTrajectoryBinary trajectory = new ConfigurationTrajectoryBinary("run.traj");
+ * for (long i = 0; i &lt; trajectory.getNumFrames(); i++) {
+ *     trajectory.setFrame(i);
+ *     trajectory.initializeCoordinates(box);
+ *     accumulator.putData(meter.getData());
+ * }
+ * trajectory.close();
+ * </pre>
+ * The box must have the same number of atoms as the trajectory.  Its
+ * boundary is set to the frame's box size, and velocities are assigned if
+ * the trajectory has them.
+ */
+public class ConfigurationTrajectoryBinary implements Configuration {
+
+    // maximum size of each mapped region
+    protected static final long WINDOW_SIZE = 1L << 28;
+
+    protected final String fileName;
+    protected final FileChannel channel;
+    protected final int D, nAtoms, bytesPerValue;
+    protected final boolean hasVelocities;
+    protected final int frameSize;
+    protected final long framesPerWindow;
+    protected MappedByteBuffer window;
+    protected long windowStart, windowFrames;
+    protected long frame;
+
+    public ConfigurationTrajectoryBinary(String fileName) {
+        this.fileName = fileName;
+        try {
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(WriteTrajectoryBinary.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IllegalArgumentException(fileName + " is not a trajectory file");
+                }
+            }
+            header.flip();
+            if (header.getInt() != WriteTrajectoryBinary.MAGIC) {
+                throw new IllegalArgumentException(fileName + " is not a trajectory file");
+            }
+            int version = header.getInt();
+            if (version != WriteTrajectoryBinary.VERSION) {
+                throw new IllegalArgumentException("can't read trajectory version " + version);
+            }
+            D = header.getInt();
+            nAtoms = header.getInt();
+            bytesPerValue = header.getInt();
+            int flags = header.getInt();
+            hasVelocities = (flags & WriteTrajectoryBinary.VELOCITIES) != 0;
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Cannot read " + fileName + ", caught IOException: " + e.getMessage());
+        }
+        frameSize = WriteTrajectoryBinary.frameSize(D, nAtoms, bytesPerValue, hasVelocities ? WriteTrajectoryBinary.VELOCITIES : 0);
+        framesPerWindow = Math.max(1, WINDOW_SIZE / frameSize);
+        windowStart = -1;
+    }
+
+    public int getDimension() {
+        return D;
+    }
+
+    public int getNumAtoms() {
+        return nAtoms;
+    }
+
+    public boolean hasVelocities() {
+        return hasVelocities;
+    }
+
+    /**
+     * @return true if coordinates are stored as doubles, false if floats
+     */
+    public boolean isDoublePrecision() {
+        return bytesPerValue == 8;
+    }
+
+    /**
+     * Returns the number of complete frames in the file.  This is checked
+     * each time, so a trajectory can be read while it is being written.
+     */
+    public long getNumFrames() {
+        try {
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (count.hasRemaining()) {
+                if (channel.read(count, 24 + count.position()) < 0) break;
+            }
+            count.flip();
+            return Math.min(count.getLong(), (channel.size() - WriteTrajectoryBinary.HEADER_SIZE) / frameSize);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Selects the frame used by initializeCoordinates.
+     */
+    public void setFrame(long newFrame) {
+        if (newFrame < 0) throw new IllegalArgumentException("frame must not be negative");
+        frame = newFrame;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return the integrator step count when the given frame was written
+     */
+    public long getStep(long iFrame) {
+        return frameBuffer(iFrame).getLong();
+    }
+
+    /**
+     * @return the integrator time (or step count, for integrators without a
+     * time) when the given frame was written
+     */
+    public double getTime(long iFrame) {
+        ByteBuffer buffer = frameBuffer(iFrame);
+        return buffer.getDouble(buffer.position() + 8);
+    }
+
+    /**
+     * Assigns the box size, positions and (if available) velocities from the
+     * current frame to the box.
+     */
+    public void initializeCoordinates(Box box) {
+        if (box.getSpace().D() != D) {
+            throw new IllegalArgumentException("trajectory is " + D + "-dimensional");
+        }
+        IAtomList leafList = box.getLeafList();
+        if (leafList.size() != nAtoms) {
+            throw new IllegalArgumentException("trajectory has " + nAtoms + " atoms, but the box has " + leafList.size());
+        }
+        ByteBuffer buffer = frameBuffer(frame);
+        buffer.position(buffer.position() + 16);
+        Vector boxSize = box.getSpace().makeVector();
+        for (int j = 0; j < D; j++) {
+            boxSize.setX(j, buffer.getDouble());
+        }
+        if (!boxSize.equals(box.getBoundary().getBoxSize())) {
+            box.getBoundary().setBoxSize(boxSize);
+        }
+        for (int i = 0; i < nAtoms; i++) {
+            getVector(buffer, leafList.get(i).getPosition());
+        }
+        if (hasVelocities) {
+            for (int i = 0; i < nAtoms; i++) {
+                if (leafList.get(i) instanceof IAtomKinetic) {
+                    getVector(buffer, ((IAtomKinetic) leafList.get(i)).getVelocity());
+                }
+                else {
+                    buffer.position(buffer.position() + D * bytesPerValue);
+                }
+            }
+        }
+    }
+
+    protected void getVector(ByteBuffer buffer, Vector v) {
+        if (bytesPerValue == 8) {
+            for (int j = 0; j < D; j++) {
+                v.setX(j, buffer.getDouble());
+            }
+        }
+        else {
+            for (int j = 0; j < D; j++) {
+                v.setX(j, buffer.getFloat());
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer positioned at the start of the given frame, mapping
+     * the window of the file that contains it if needed.
+     */
+    protected ByteBuffer frameBuffer(long iFrame) {
+        long start = (iFrame / framesPerWindow) * framesPerWindow;
+        if (start != windowStart || iFrame - windowStart >= windowFrames) {
+            long nFrames = getNumFrames();
+            if (iFrame >= nFrames) {
+                throw new IllegalArgumentException("frame " + iFrame + " is beyond the end of the trajectory (" + nFrames + " frames)");
+            }
+            windowFrames = Math.min(framesPerWindow, nFrames - start);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        WriteTrajectoryBinary.HEADER_SIZE + start * frameSize, windowFrames * frameSize);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            windowStart = start;
+        }
+        ByteBuffer buffer = window.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position((int) ((iFrame - windowStart) * frameSize));
+        return buffer;
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close() {
+        window = null;
+        windowStart = -1;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -150,11 +150,12 @@ public class AccumulatorAverageCollapsing extends AccumulatorAverage {
 
     protected void collapseBlocks() {
         int intCount = (int) count;
-        if (intCount % 2 == 1) {
+        boolean odd = intCount % 2 == 1;
+        if (odd) {
             // if we have an odd number of blocks, the last block will get
             // dropped.  So add its contribution to the "current" block.
-            currentBlockSum += blockSums[intCount - 1];
-            totalBlockSum -= blockSums[intCount - 1];
+            currentBlockSum += blockSums[intCount - 1] * blockSize;
+            totalBlockSum -= blockSums[intCount - 1] * blockSize;
         }
         totalSumBlockSq = 0;
         count /= 2;
@@ -172,10 +173,86 @@ public class AccumulatorAverageCollapsing extends AccumulatorAverage {
         for (int i = intCount; i < maxBlocks; i++) {
             blockSums[i] = 0;
         }
-        blockCountDown += blockSize;
+        if (!odd) {
+            // with an odd number of blocks, the dropped block fills the rest
+            // of the (larger) current block
+            blockCountDown += blockSize;
+        }
         blockSize *= 2;
     }
 
+    /**
+     * Adds the data collected by another accumulator (with the same nominal
+     * block size) to this one.  The accumulator with smaller blocks collapses
+     * (the other accumulator is not modified) until both have the same block
+     * size, and then enough to hold the blocks from both; the other
+     * accumulator's blocks are then taken to follow this accumulator's
+     * blocks.  Incomplete blocks are combined into this accumulator's
+     * incomplete block, as in AccumulatorAverageFixed.merge.  This allows
+     * independent accumulators (from separate threads or replicas) to be
+     * combined into one estimate.
+     *
+     * @param other the accumulator whose data is added to this one
+     */
+    public void merge(AccumulatorAverageCollapsing other) {
+        if (other.nominalBlockSize != nominalBlockSize) {
+            throw new IllegalArgumentException("block sizes must be equal to merge");
+        }
+        if (other.dataGroup == null) {
+            return;
+        }
+        if (dataGroup == null) {
+            throw new IllegalStateException("must receive DataInfo before merging");
+        }
+        // collapse a copy of the other accumulator's blocks
+        AccumulatorAverageCollapsing o = new AccumulatorAverageCollapsing(other.maxBlocks, (int) other.nominalBlockSize);
+        o.blockSums = other.blockSums.clone();
+        o.currentBlockSum = other.currentBlockSum;
+        o.totalSumSquare = other.totalSumSquare;
+        o.totalSumBlockSq = other.totalSumBlockSq;
+        o.correlationSum = other.correlationSum;
+        o.totalBlockSum = other.totalBlockSum;
+        o.count = other.count;
+        o.blockSize = other.blockSize;
+        o.blockCountDown = other.blockCountDown;
+
+        while (o.blockSize < blockSize) {
+            o.collapseBlocks();
+        }
+        while (blockSize < o.blockSize) {
+            collapseBlocks();
+        }
+        while (count + o.count >= maxBlocks) {
+            collapseBlocks();
+            o.collapseBlocks();
+        }
+
+        if (o.count > 0) {
+            if (count > 0) {
+                // the other accumulator's first block follows our last block
+                correlationSum += blockSums[(int) count - 1] * o.blockSums[0];
+            }
+            System.arraycopy(o.blockSums, 0, blockSums, (int) count, (int) o.count);
+            correlationSum += o.correlationSum;
+            totalSumBlockSq += o.totalSumBlockSq;
+            totalBlockSum += o.totalBlockSum;
+            count += o.count;
+        }
+        long otherPartial = o.blockSize - o.blockCountDown;
+        if (other.count > 0 || other.blockSize - other.blockCountDown > 0) {
+            mostRecent.E(other.mostRecent);
+        }
+        totalSumSquare += o.totalSumSquare;
+        if (otherPartial > 0) {
+            currentBlockSum += o.currentBlockSum;
+            blockCountDown -= otherPartial;
+            if (blockCountDown <= 0) {
+                currentBlockSum *= blockSize / (double) (blockSize - blockCountDown);
+                doBlockSum();
+            }
+        }
+    }
+
     /**
      * @return a DataGroup with Data instances holding the statistics kept by
      * this accumulator (as described in general comments for this class).
@@ -9,6 +9,8 @@ import etomica.data.types.DataGroup;
 import etomica.data.types.DataGroup.DataInfoGroup;
 import etomica.units.dimensions.CompoundDimension;
 import etomica.units.dimensions.Dimension;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
 
 /**
  * Class that does the work of AccumulatorAverageFixed and also calculates the
@@ -97,6 +99,37 @@ public class AccumulatorAverageCovariance extends AccumulatorAverageFixed {
         super.doBlockSum();
     }
 
+    /**
+     * Adds the statistics (including covariances) collected by another
+     * accumulator to this one.  Both accumulators must compute the same
+     * covariance (full or not).
+     *
+     * @see AccumulatorAverageFixed#merge(AccumulatorAverageFixed)
+     */
+    public void merge(AccumulatorAverageFixed other) {
+        if (other.sum != null && covSum != null) {
+            if (!(other instanceof AccumulatorAverageCovariance) || ((AccumulatorAverageCovariance) other).fullCovariance != fullCovariance) {
+                throw new IllegalArgumentException("can only merge an accumulator computing the same covariance");
+            }
+            // do these first since super.merge might complete a block
+            covSum.PE(((AccumulatorAverageCovariance) other).covSum);
+            blockCovSum.PE(((AccumulatorAverageCovariance) other).blockCovSum);
+        }
+        super.merge(other);
+    }
+
+    public void saveState(CheckpointOutput out) {
+        super.saveState(out);
+        out.putData(covSum);
+        out.putData(blockCovSum);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+        in.getData(covSum);
+        in.getData(blockCovSum);
+    }
+
     public IData getData() {
         if (average == null)
             return null;
@@ -7,6 +7,9 @@ package etomica.data;
 import etomica.data.types.DataGroup.DataInfoGroup;
 import etomica.math.function.Function;
 import etomica.math.function.IFunction;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
 
 /**
  * AccumulatorAverage that maintains a fixed block size.
@@ -14,7 +17,7 @@ import etomica.math.function.IFunction;
  * <p>
  * This accumulator accepts any type of Data
  */
-public class AccumulatorAverageFixed extends AccumulatorAverage {
+public class AccumulatorAverageFixed extends AccumulatorAverage implements Checkpointable {
 
     protected final IFunction negativeChop, sanityCheckBC;
     protected IData sum; //sum(value)
@@ -155,6 +158,100 @@ public class AccumulatorAverageFixed extends AccumulatorAverage {
         currentBlockSum.E(0.0);
     }
 
+    /**
+     * Adds the statistics collected by another accumulator to this one, as if
+     * the other accumulator's data had been added here after this
+     * accumulator's own data.  This allows independent simulations (perhaps
+     * running in separate threads) to be combined into a single estimate.
+     * Both accumulators must have the same block size and must have received
+     * the same kind of data.  Complete blocks are combined exactly.  The
+     * incomplete blocks are combined into this accumulator's incomplete
+     * block; if together they hold a full block (or more), they are recorded
+     * as one complete block with the average of their data.
+     *
+     * @param other the accumulator whose statistics are added to this one.
+     *              It is not modified.
+     */
+    public void merge(AccumulatorAverageFixed other) {
+        if (other.blockSize != blockSize) {
+            throw new IllegalArgumentException("block sizes must be equal to merge");
+        }
+        if (other.sum == null) {
+            return;
+        }
+        if (sum == null) {
+            throw new IllegalStateException("must receive DataInfo before merging");
+        }
+        if (other.count > 0) {
+            if (count > 0) {
+                // the other accumulator's first block follows our last block
+                work.E(mostRecentBlock);
+                work.TE(other.firstBlock);
+                correlationSum.PE(work);
+            }
+            else {
+                firstBlock.E(other.firstBlock);
+            }
+            correlationSum.PE(other.correlationSum);
+            sum.PE(other.sum);
+            sumBlockSquare.PE(other.sumBlockSquare);
+            mostRecentBlock.E(other.mostRecentBlock);
+            count += other.count;
+        }
+        long otherPartial = other.blockSize - other.blockCountDown;
+        if (other.count > 0 || otherPartial > 0) {
+            mostRecent.E(other.mostRecent);
+        }
+        sumSquare.PE(other.sumSquare);
+        if (otherPartial > 0) {
+            currentBlockSum.PE(other.currentBlockSum);
+            blockCountDown -= otherPartial;
+            if (blockCountDown <= 0) {
+                currentBlockSum.TE(blockSize / (double) (blockSize - blockCountDown));
+                doBlockSum();
+            }
+        }
+    }
+
+    /**
+     * Writes the accumulator's sums and counts, so that a restored
+     * accumulator continues as if it had collected the data itself.
+     */
+    public void saveState(CheckpointOutput out) {
+        out.putLong(putCount);
+        out.putLong(blockSize);
+        out.putLong(count);
+        out.putLong(blockCountDown);
+        out.putData(mostRecent);
+        out.putData(sum);
+        out.putData(sumBlockSquare);
+        out.putData(currentBlockSum);
+        out.putData(sumSquare);
+        out.putData(mostRecentBlock);
+        out.putData(correlationSum);
+        out.putData(firstBlock);
+    }
+
+    /**
+     * Restores the state written by saveState.  The accumulator must have
+     * already received the same kind of data (via putDataInfo) as the
+     * accumulator that was saved.
+     */
+    public void restoreState(CheckpointInput in) {
+        putCount = in.getLong();
+        blockSize = in.getLong();
+        count = in.getLong();
+        blockCountDown = in.getLong();
+        in.getData(mostRecent);
+        in.getData(sum);
+        in.getData(sumBlockSquare);
+        in.getData(currentBlockSum);
+        in.getData(sumSquare);
+        in.getData(mostRecentBlock);
+        in.getData(correlationSum);
+        in.getData(firstBlock);
+    }
+
     public IData getData() {
         if (sum == null)
             return null;
@@ -0,0 +1,194 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * AccumulatorAverageFixed that can take data from several threads at once.
+ * Each thread that puts data into the accumulator gets its own stripe (an
+ * AccumulatorAverageFixed of its own), so sampling does not lock or share any
+ * sums with other threads.  The statistics returned by getData are those of
+ * all stripes merged together (see AccumulatorAverageFixed.merge), with
+ * blocks from each thread following those of the threads that first put data
+ * before it.
+ * <p>
+ * Each stripe is guarded by its own StampedLock.  The stripe's thread takes
+ * the (uncontended) write lock while adding data, and getData (which may be
+ * called from any thread, during the run or at the end) takes the read lock
+ * while merging the stripe, so it always sees a complete sequence of
+ * samples.  A thread putting data only waits while its own stripe is being
+ * merged.
+ * <p>
+ * Since the sums are only combined when getData is called, the accumulator
+ * does not push data to its sinks as data is added; call getData (or
+ * getData(StatType)) to retrieve current results.  putDataInfo and
+ * setBlockSize must not be called while other threads are putting data.
+ * Strict block data and the block data sink are not supported.
+ */
+public class AccumulatorAverageFixedStriped extends AccumulatorAverageFixed {
+
+    protected List<Stripe> stripes;
+    protected ThreadLocal<Stripe> localStripe;
+    protected IDataInfo inputDataInfo;
+
+    public AccumulatorAverageFixedStriped() {
+        this(1000);
+    }
+
+    /**
+     * @param blockSize size of the block used by each stripe.
+     */
+    public AccumulatorAverageFixedStriped(long blockSize) {
+        super(blockSize);
+        stripes = new CopyOnWriteArrayList<>();
+        localStripe = ThreadLocal.withInitial(this::makeStripe);
+    }
+
+    protected Stripe makeStripe() {
+        Stripe stripe = new Stripe(blockSize);
+        if (inputDataInfo != null) {
+            stripe.putDataInfo(inputDataInfo);
+        }
+        stripes.add(stripe);
+        return stripe;
+    }
+
+    /**
+     * @return the number of threads that have put data into this accumulator
+     * since it was constructed.  Stripes are kept (and given the new DataInfo)
+     * when DataInfo changes, and reset only zeroes them.
+     */
+    public int getNumStripes() {
+        return stripes.size();
+    }
+
+    /**
+     * Adds the data to the calling thread's stripe.  Never returns data to
+     * push downstream.
+     */
+    protected IData processData(IData inputData) {
+        if (!active) return null;
+        Stripe stripe = localStripe.get();
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.accumulator.addData(inputData);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        return null;
+    }
+
+    public IDataInfo processDataInfo(IDataInfo incomingDataInfo) {
+        inputDataInfo = incomingDataInfo;
+        if (stripes != null) {
+            for (Stripe stripe : stripes) {
+                stripe.putDataInfo(incomingDataInfo);
+            }
+        }
+        return super.processDataInfo(incomingDataInfo);
+    }
+
+    /**
+     * Merges the stripes and returns the combined statistics.
+     */
+    public synchronized IData getData() {
+        if (sum == null) return null;
+        super.reset();
+        for (Stripe stripe : stripes) {
+            stripe.mergeInto(this);
+        }
+        return super.getData();
+    }
+
+    /**
+     * Merges the stripes and returns the total number of samples.
+     */
+    public synchronized long getSampleCount() {
+        getData();
+        return super.getSampleCount();
+    }
+
+    /**
+     * Merges the stripes and returns the total number of complete blocks.
+     */
+    public synchronized long getBlockCount() {
+        getData();
+        return super.getBlockCount();
+    }
+
+    public synchronized void reset() {
+        super.reset();
+        if (stripes == null) return;
+        for (Stripe stripe : stripes) {
+            stripe.reset();
+        }
+    }
+
+    public void setBlockSize(long newBlockSize) {
+        if (stripes != null) {
+            for (Stripe stripe : stripes) {
+                stripe.setBlockSize(newBlockSize);
+            }
+        }
+        super.setBlockSize(newBlockSize);
+    }
+
+    /**
+     * The accumulator used by one thread, along with the lock that guards it.
+     */
+    protected static class Stripe {
+        public final AccumulatorAverageFixed accumulator;
+        public final StampedLock lock;
+
+        public Stripe(long blockSize) {
+            accumulator = new AccumulatorAverageFixed(blockSize);
+            lock = new StampedLock();
+        }
+
+        public void putDataInfo(IDataInfo dataInfo) {
+            long stamp = lock.writeLock();
+            try {
+                accumulator.putDataInfo(dataInfo);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        public void reset() {
+            long stamp = lock.writeLock();
+            try {
+                accumulator.reset();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        public void setBlockSize(long newBlockSize) {
+            long stamp = lock.writeLock();
+            try {
+                accumulator.setBlockSize(newBlockSize);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Merges the stripe's accumulator into the target while holding the
+         * read lock, so the target receives some complete sequence of
+         * samples.
+         */
+        public void mergeInto(AccumulatorAverageFixed target) {
+            long stamp = lock.readLock();
+            try {
+                target.merge(accumulator);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -6,8 +6,11 @@ package etomica.data;
 
 import etomica.integrator.IntegratorEvent;
 import etomica.integrator.IntegratorListener;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
 
-public class DataPumpListener extends DataPump implements IntegratorListener {
+public class DataPumpListener extends DataPump implements IntegratorListener, Checkpointable {
 
     protected long interval;
     protected long intervalCount;
@@ -38,4 +41,12 @@ public class DataPumpListener extends DataPump implements IntegratorListener {
     public long getInterval() {
         return interval;
     }
+
+    public void saveState(CheckpointOutput out) {
+        out.putLong(intervalCount);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        intervalCount = in.getLong();
+    }
 }
@@ -0,0 +1,458 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import etomica.action.IAction;
+import etomica.atom.AtomType;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.data.*;
+import etomica.data.DataSourceUniform.LimitType;
+import etomica.data.types.DataDoubleArray;
+import etomica.data.types.DataDoubleArray.DataInfoDoubleArray;
+import etomica.data.types.DataFunction;
+import etomica.data.types.DataFunction.DataInfoFunction;
+import etomica.space.Boundary;
+import etomica.space.BoundaryRectangular;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.units.dimensions.Length;
+import etomica.units.dimensions.Null;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Meter for tabulation of the atomic radial distribution function (RDF), like
+ * {@link MeterRDF}, that finds pairs within xMax using a cell list so that
+ * each sample takes time proportional to the number of atoms.  Pairs of all
+ * atom types are binned in one sweep, and the partial RDF for any pair of
+ * types is available from {@link #makePartialDataSource}, while this meter's
+ * getData returns the RDF for all atoms.
+ * <p>
+ * The cells are rebuilt for each sample, with an edge length of at least
+ * xMax.  If the boundary is not rectangular, or if a periodic direction is too
+ * short to hold 3 cells, all pairs are examined instead.  The sweep can be
+ * done in parallel, with each thread keeping its own histogram; the
+ * histograms are merged at the end.
+ */
+public class MeterRDFCell implements IAction, IDataSource, DataSourceIndependent {
+
+    protected final Space space;
+    protected final DataSourceUniform xDataSource;
+    protected final DataTag tag;
+    protected Box box;
+    protected DataFunction data;
+    protected DataDoubleArray rData;
+    protected IDataInfo dataInfo;
+    protected double xMax;
+    protected int nTypes;
+    // histogram for each (unordered) pair of types, nBins for each
+    protected long[] gSum;
+    // sum over samples of the number of pairs of each type pair per volume
+    protected double[] pairDensitySum;
+    protected long callCount;
+    protected boolean doParallel;
+    protected long[][] chunkBins;
+    protected int[] cellHead, cellNext, atomCell, atomType;
+    protected final int[] nCells;
+    protected final boolean[] periodic;
+    protected int[] nbrOffsets;
+
+    public MeterRDFCell(Space space) {
+        this.space = space;
+
+        xDataSource = new DataSourceUniform("r", Length.DIMENSION);
+        xDataSource.setTypeMax(LimitType.HALF_STEP);
+        xDataSource.setTypeMin(LimitType.HALF_STEP);
+        tag = new DataTag();
+        nCells = new int[space.D()];
+        periodic = new boolean[space.D()];
+        cellNext = new int[0];
+        atomCell = new int[0];
+        atomType = new int[0];
+        reset();
+    }
+
+    public IDataInfo getDataInfo() {
+        return dataInfo;
+    }
+
+    public DataTag getTag() {
+        return tag;
+    }
+
+    /**
+     * Sets whether the pairs are binned in parallel.
+     */
+    public void setDoParallel(boolean doParallel) {
+        this.doParallel = doParallel;
+    }
+
+    public boolean getDoParallel() {
+        return doParallel;
+    }
+
+    /**
+     * Zero's out the RDF sums tracked by this meter.
+     */
+    public void reset() {
+        rData = (DataDoubleArray) xDataSource.getData();
+        xMax = xDataSource.getXMax();
+        data = new DataFunction(new int[]{rData.getLength()});
+        dataInfo = new DataInfoFunction("g(r)", Null.DIMENSION, this);
+        dataInfo.addTag(tag);
+        int nTypePairs = nTypes * (nTypes + 1) / 2;
+        gSum = new long[nTypePairs * rData.getLength()];
+        pairDensitySum = new double[nTypePairs];
+        callCount = 0;
+    }
+
+    protected boolean needReset() {
+        return rData != xDataSource.getData() || data.getLength() != rData.getLength() || xDataSource.getXMax() != xMax;
+    }
+
+    /**
+     * Returns the index of the (unordered) pair of types.
+     */
+    protected int typePairIndex(int t1, int t2) {
+        if (t1 > t2) {
+            int t = t1;
+            t1 = t2;
+            t2 = t;
+        }
+        return t1 * nTypes - t1 * (t1 - 1) / 2 + (t2 - t1);
+    }
+
+    /**
+     * Takes the RDF for the current configuration of the box.
+     */
+    public void actionPerformed() {
+        IAtomList atoms = box.getLeafList();
+        int nAtoms = atoms.size();
+        if (atomType.length < nAtoms) {
+            atomType = new int[nAtoms];
+            atomCell = new int[nAtoms];
+            cellNext = new int[nAtoms];
+        }
+        int maxType = -1;
+        for (int i = 0; i < nAtoms; i++) {
+            atomType[i] = atoms.get(i).getType().getIndex();
+            if (atomType[i] > maxType) maxType = atomType[i];
+        }
+        if (maxType + 1 > nTypes) {
+            nTypes = maxType + 1;
+            reset();
+        }
+        if (needReset()) {
+            reset();
+        }
+
+        int nChunks = doParallel ? Math.max(1, 4 * ForkJoinPool.getCommonPoolParallelism()) : 1;
+        if (chunkBins == null || chunkBins.length != nChunks || chunkBins[0].length != gSum.length) {
+            chunkBins = new long[nChunks][gSum.length];
+        }
+
+        boolean useCells = setupCells(nAtoms);
+        int nUnits = useCells ? cellHead.length : nAtoms;
+        nChunks = Math.min(nChunks, Math.max(nUnits, 1));
+        final int chunks = nChunks;
+        if (chunks == 1) {
+            binChunk(0, 0, nUnits, useCells);
+        }
+        else {
+            IntStream.range(0, chunks).parallel().forEach(iChunk -> {
+                binChunk(iChunk, (int) ((long) nUnits * iChunk / chunks), (int) ((long) nUnits * (iChunk + 1) / chunks), useCells);
+            });
+        }
+        for (int c = 0; c < chunks; c++) {
+            long[] bins = chunkBins[c];
+            for (int i = 0; i < bins.length; i++) {
+                gSum[i] += bins[i];
+            }
+        }
+
+        // number of pairs of each type pair, per volume
+        long[] typeCount = new long[nTypes];
+        for (int i = 0; i < nAtoms; i++) {
+            typeCount[atomType[i]]++;
+        }
+        double volume = box.getBoundary().volume();
+        for (int t1 = 0; t1 < nTypes; t1++) {
+            for (int t2 = t1; t2 < nTypes; t2++) {
+                long nPairs = t1 == t2 ? typeCount[t1] * (typeCount[t1] - 1) / 2 : typeCount[t1] * typeCount[t2];
+                pairDensitySum[typePairIndex(t1, t2)] += nPairs / volume;
+            }
+        }
+        callCount++;
+    }
+
+    /**
+     * Assigns the atoms to cells.  Returns false if cells cannot be used.
+     */
+    protected boolean setupCells(int nAtoms) {
+        Boundary boundary = box.getBoundary();
+        if (!(boundary instanceof BoundaryRectangular)) return false;
+        int D = space.D();
+        Vector boxSize = boundary.getBoxSize();
+        int nCellsTotal = 1;
+        for (int d = 0; d < D; d++) {
+            periodic[d] = boundary.getPeriodicity(d);
+            nCells[d] = (int) (boxSize.getX(d) / xMax);
+            if (nCells[d] < 1) nCells[d] = 1;
+            // with fewer than 3 cells, a cell could be its own neighbor
+            // across the boundary
+            if (periodic[d] && nCells[d] < 3) return false;
+            nCellsTotal *= nCells[d];
+        }
+        if (nCellsTotal > 2 * nAtoms + 8) {
+            // don't bother with a lot of empty cells
+            return false;
+        }
+        if (cellHead == null || cellHead.length != nCellsTotal) {
+            cellHead = new int[nCellsTotal];
+            nbrOffsets = null;
+        }
+        for (int c = 0; c < nCellsTotal; c++) {
+            cellHead[c] = -1;
+        }
+        IAtomList atoms = box.getLeafList();
+        for (int i = nAtoms - 1; i >= 0; i--) {
+            Vector r = atoms.get(i).getPosition();
+            int c = 0;
+            for (int d = 0; d < D; d++) {
+                int j = (int) Math.floor((r.getX(d) / boxSize.getX(d) + 0.5) * nCells[d]);
+                // atoms might be (slightly) outside the box
+                if (periodic[d]) {
+                    j = ((j % nCells[d]) + nCells[d]) % nCells[d];
+                }
+                else {
+                    j = Math.max(0, Math.min(nCells[d] - 1, j));
+                }
+                c = c * nCells[d] + j;
+            }
+            atomCell[i] = c;
+            cellNext[i] = cellHead[c];
+            cellHead[c] = i;
+        }
+        if (nbrOffsets == null) {
+            // half of the neighbor stencil (offsets that come after 0 in
+            // lexicographic order), so that each pair of cells is visited once
+            int nStencil = 1;
+            for (int d = 0; d < D; d++) nStencil *= 3;
+            nbrOffsets = new int[(nStencil - 1) / 2 * D];
+            int n = 0;
+            for (int s = nStencil / 2 + 1; s < nStencil; s++) {
+                int m = s;
+                for (int d = D - 1; d >= 0; d--) {
+                    nbrOffsets[n * D + d] = m % 3 - 1;
+                    m /= 3;
+                }
+                n++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bins the pairs for cells (or atoms, if not using cells) start through
+     * end-1 into chunkBins[iChunk].
+     */
+    protected void binChunk(int iChunk, int start, int end, boolean useCells) {
+        long[] bins = chunkBins[iChunk];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = 0;
+        }
+        Vector dr = space.makeVector();
+        Boundary boundary = box.getBoundary();
+        IAtomList atoms = box.getLeafList();
+        double xMaxSquared = xMax * xMax;
+        int nBins = rData.getLength();
+        if (!useCells) {
+            int nAtoms = atoms.size();
+            for (int i = start; i < end; i++) {
+                Vector ri = atoms.get(i).getPosition();
+                for (int j = i + 1; j < nAtoms; j++) {
+                    binPair(ri, j, atomType[i], dr, boundary, atoms, xMaxSquared, nBins, bins);
+                }
+            }
+            return;
+        }
+        int D = space.D();
+        int[] idx = new int[D];
+        int nNbrs = nbrOffsets.length / D;
+        for (int c = start; c < end; c++) {
+            int m = c;
+            for (int d = D - 1; d >= 0; d--) {
+                idx[d] = m % nCells[d];
+                m /= nCells[d];
+            }
+            for (int i = cellHead[c]; i >= 0; i = cellNext[i]) {
+                Vector ri = atoms.get(i).getPosition();
+                for (int j = cellNext[i]; j >= 0; j = cellNext[j]) {
+                    binPair(ri, j, atomType[i], dr, boundary, atoms, xMaxSquared, nBins, bins);
+                }
+            }
+            for (int n = 0; n < nNbrs; n++) {
+                int c2 = 0;
+                boolean ok = true;
+                for (int d = 0; d < D; d++) {
+                    int j = idx[d] + nbrOffsets[n * D + d];
+                    if (j < 0 || j >= nCells[d]) {
+                        if (!periodic[d] || nCells[d] == 1) {
+                            ok = false;
+                            break;
+                        }
+                        j = (j + nCells[d]) % nCells[d];
+                    }
+                    c2 = c2 * nCells[d] + j;
+                }
+                if (!ok) continue;
+                for (int i = cellHead[c]; i >= 0; i = cellNext[i]) {
+                    Vector ri = atoms.get(i).getPosition();
+                    for (int j = cellHead[c2]; j >= 0; j = cellNext[j]) {
+                        binPair(ri, j, atomType[i], dr, boundary, atoms, xMaxSquared, nBins, bins);
+                    }
+                }
+            }
+        }
+    }
+
+    protected void binPair(Vector ri, int j, int ti, Vector dr, Boundary boundary, IAtomList atoms, double xMaxSquared, int nBins, long[] bins) {
+        dr.Ev1Mv2(atoms.get(j).getPosition(), ri);
+        boundary.nearestImage(dr);
+        double r2 = dr.squared();
+        if (r2 < xMaxSquared) {
+            int index = xDataSource.getIndex(Math.sqrt(r2));
+            bins[typePairIndex(ti, atomType[j]) * nBins + index]++;
+        }
+    }
+
+    /**
+     * Computes g(r) into y from the histograms for the given type pairs (all
+     * type pairs if typePair is negative).
+     */
+    protected void computeRDF(int typePair, double[] y) {
+        int nBins = rData.getLength();
+        double pairDensity = 0;
+        for (int p = 0; p < pairDensitySum.length; p++) {
+            if (typePair < 0 || p == typePair) pairDensity += pairDensitySum[p];
+        }
+        double[] r = rData.getData();
+        double dx2 = 0.5 * (xMax - xDataSource.getXMin()) / r.length;
+        for (int i = 0; i < nBins; i++) {
+            long sum = 0;
+            for (int p = 0; p < pairDensitySum.length; p++) {
+                if (typePair < 0 || p == typePair) sum += gSum[p * nBins + i];
+            }
+            double vShell = space.sphereVolume(r[i] + dx2) - space.sphereVolume(r[i] - dx2);
+            y[i] = pairDensity == 0 ? 0 : sum / (pairDensity * vShell);
+        }
+    }
+
+    /**
+     * Returns the RDF for all atoms, averaged over the calls to
+     * actionPerformed since the meter was reset or had some parameter changed
+     * (xMax or # of bins).
+     */
+    public IData getData() {
+        if (needReset()) {
+            reset();
+            return data;
+        }
+        computeRDF(-1, data.getData());
+        return data;
+    }
+
+    /**
+     * Returns a data source for the partial RDF between atoms of the given
+     * types.
+     */
+    public IDataSource makePartialDataSource(AtomType type1, AtomType type2) {
+        return new PartialRDF(type1, type2);
+    }
+
+    public DataSourceUniform getXDataSource() {
+        return xDataSource;
+    }
+
+    public DataDoubleArray getIndependentData(int i) {
+        return (DataDoubleArray) xDataSource.getData();
+    }
+
+    public DataInfoDoubleArray getIndependentDataInfo(int i) {
+        return (DataInfoDoubleArray) xDataSource.getDataInfo();
+    }
+
+    public DataTag getIndependentTag() {
+        return xDataSource.getTag();
+    }
+
+    public int getIndependentArrayDimension() {
+        return 1;
+    }
+
+    public Box getBox() {
+        return box;
+    }
+
+    public void setBox(Box box) {
+        this.box = box;
+    }
+
+    /**
+     * Data source for the partial RDF between two types, using the histograms
+     * collected by the meter.
+     */
+    protected class PartialRDF implements IDataSource {
+        protected final int t1, t2;
+        protected final DataTag partialTag;
+        protected DataFunction partialData;
+        protected IDataInfo partialDataInfo;
+
+        public PartialRDF(AtomType type1, AtomType type2) {
+            t1 = type1.getIndex();
+            t2 = type2.getIndex();
+            partialTag = new DataTag();
+            makeData();
+        }
+
+        protected void makeData() {
+            partialData = new DataFunction(new int[]{rData.getLength()});
+            partialDataInfo = new DataInfoFunction("g(r)", Null.DIMENSION, MeterRDFCell.this);
+            partialDataInfo.addTag(partialTag);
+        }
+
+        public IData getData() {
+            if (needReset()) {
+                reset();
+            }
+            if (partialData.getLength() != rData.getLength()) {
+                makeData();
+            }
+            double[] y = partialData.getData();
+            if (Math.max(t1, t2) >= nTypes) {
+                // haven't seen these types yet
+                for (int i = 0; i < y.length; i++) {
+                    y[i] = 0;
+                }
+                return partialData;
+            }
+            computeRDF(typePairIndex(t1, t2), y);
+            return partialData;
+        }
+
+        public DataTag getTag() {
+            return partialTag;
+        }
+
+        public IDataInfo getDataInfo() {
+            if (partialData.getLength() != rData.getLength()) {
+                makeData();
+            }
+            return partialDataInfo;
+        }
+    }
+}
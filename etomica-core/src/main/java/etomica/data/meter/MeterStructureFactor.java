@@ -17,9 +17,20 @@ import etomica.space.Space;
 import etomica.space.Vector;
 import etomica.units.dimensions.Null;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
 /**
  * Meter for calculation of structure factor of atoms for all wave vectors less
  * than a cutoff.
+ * <p>
+ * Wave vectors made from the cutoff are integer combinations of the
+ * reciprocal basis vectors b_d, so exp(i k.r) for each atom is computed as a
+ * product of powers of exp(i b_d.r), which are built by repeated complex
+ * multiplication.  Only D sines and cosines are needed for each atom, instead
+ * of one for each wave vector.  Custom wave vectors (from setWaveVec) are
+ * handled directly.  The sum over atoms can be done in parallel, and the meter
+ * can keep a running average of the structure factor.
  *
  * @author Michael Sellers
  * @author Andrew Schultz
@@ -36,6 +47,16 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
     protected final DataTag tag, xTag;
     protected DataDoubleArray xData;
     protected DataInfoDoubleArray xDataInfo;
+    protected Vector[] basis;
+    protected int[] maxIdx;
+    // for each wave vector, the offsets (into each dimension's power table)
+    // of its reciprocal basis coefficients; null for custom wave vectors
+    protected int[] waveOffsets;
+    protected boolean doParallel;
+    protected double[][] chunkSums, chunkPowers;
+    protected boolean doAverage;
+    protected double[] structSum;
+    protected long nAverage;
 
     /**
      * Creates meter with default to compute the structure factor for all atoms
@@ -70,7 +91,7 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
         edges[2] = box.getBoundary().getEdgeVector(2);
         Primitive primitiveBox = new PrimitiveGeneral(space, edges);
         Primitive recip = primitiveBox.makeReciprocal();
-        Vector[] basis = recip.vectors();
+        basis = recip.vectors();
 
         double cutoff2 = cutoff*cutoff;
 
@@ -82,6 +103,11 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
             iMax[i] = 1+2*(int)(cutoff/Math.sqrt(basis[i].squared()));
         }
 
+        int D = space.D();
+        if (waveVec != null) {
+            maxIdx = new int[D];
+            waveOffsets = new int[waveVec.length * D];
+        }
         int[] idx = new int[space.D()];
         idx[0] = 0;
         idx[1] = 0;
@@ -109,9 +135,22 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
             if (waveVec != null) {
                 waveVec[nVec] = v;
                 x[nVec] = Math.sqrt(v.squared());
+                for (int i = 0; i < D; i++) {
+                    maxIdx[i] = Math.max(maxIdx[i], Math.abs(idx[i]));
+                    waveOffsets[nVec * D + i] = idx[i];
+                }
             }
             nVec++;
         }
+        if (waveVec != null) {
+            // now that we know how large each power table is, turn the
+            // coefficients into offsets
+            for (int k = 0; k < nVec; k++) {
+                for (int i = 0; i < D; i++) {
+                    waveOffsets[k * D + i] = 2 * (maxIdx[i] + waveOffsets[k * D + i]);
+                }
+            }
+        }
         return nVec;
 	}
 
@@ -122,6 +161,7 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
      */
 	public void setCutoff(double cutoff) {
 	    waveVec = null;
+	    waveOffsets = null;
 	    int nVec = makeWaveVector(cutoff);
         struct = new double[nVec];
 	    waveVec = new Vector[nVec];
@@ -133,6 +173,7 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
 	 * @param waveVec Sets a custom wave vector array.
 	 */
 	public void setWaveVec(Vector[] waveVec){
+	    waveOffsets = null;
 	    this.waveVec = space.makeVectorArray(waveVec.length);
 	    struct = new double[waveVec.length];
 		for(int i=0; i<waveVec.length; i++){
@@ -148,7 +189,82 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
 		this.atomList = atomList;
 	}
 
+    /**
+     * Sets whether the sum over atoms is done in parallel.
+     */
+    public void setDoParallel(boolean doParallel) {
+        this.doParallel = doParallel;
+    }
+
+    public boolean getDoParallel() {
+        return doParallel;
+    }
+
+    /**
+     * Sets whether the meter keeps a running average of the structure factor
+     * computed by getData.  The average is reset.
+     */
+    public void setDoAverage(boolean doAverage) {
+        this.doAverage = doAverage;
+        resetAverage();
+    }
+
+    public boolean getDoAverage() {
+        return doAverage;
+    }
+
+    /**
+     * Zeros the running average.
+     */
+    public void resetAverage() {
+        structSum = null;
+        nAverage = 0;
+    }
+
+    /**
+     * Returns the average structure factor for each wave vector, over the
+     * calls to getData since averaging was turned on (or reset).
+     */
+    public double[] getAverage() {
+        double[] avg = new double[struct.length];
+        for (int k = 0; k < avg.length && nAverage > 0; k++) {
+            avg[k] = structSum[k] / nAverage;
+        }
+        return avg;
+    }
+
+    /**
+     * Returns the number of samples in the running average.
+     */
+    public long getAverageCount() {
+        return nAverage;
+    }
+
     public IData getData() {
+        if (waveOffsets == null) {
+            computeDirect();
+        }
+        else {
+            computeRecurrence();
+        }
+        if (doAverage) {
+            if (structSum == null || structSum.length != struct.length) {
+                structSum = new double[struct.length];
+                nAverage = 0;
+            }
+            for (int k = 0; k < struct.length; k++) {
+                structSum[k] += struct[k];
+            }
+            nAverage++;
+        }
+        return data;
+    }
+
+    /**
+     * Computes the structure factor using cos and sin of k.r for every wave
+     * vector and atom.
+     */
+    protected void computeDirect() {
         long numAtoms = atomList.size();
         long n2 = numAtoms*numAtoms;
         for(int k=0; k<waveVec.length; k++){
@@ -161,7 +277,96 @@ public class MeterStructureFactor implements IDataSource, DataSourceIndependent
             }
             struct[k] = ((term1*term1) + (term2*term2))/n2;
         }
-        return data;
+    }
+
+    /**
+     * Computes the structure factor using powers of exp(i b_d.r).
+     */
+    protected void computeRecurrence() {
+        int numAtoms = atomList.size();
+        int nVec = waveVec.length;
+        int nChunks = doParallel ? Math.min(numAtoms, 4 * ForkJoinPool.getCommonPoolParallelism()) : 1;
+        if (nChunks < 1) nChunks = 1;
+        int D = space.D();
+        int powerLength = 0;
+        for (int d = 0; d < D; d++) {
+            powerLength += 2 * (2 * maxIdx[d] + 1);
+        }
+        if (chunkSums == null || chunkSums.length != nChunks || chunkSums[0].length != 2 * nVec
+                || chunkPowers[0].length != powerLength) {
+            chunkSums = new double[nChunks][2 * nVec];
+            chunkPowers = new double[nChunks][powerLength];
+        }
+        if (nChunks == 1) {
+            sumChunk(0, 0, numAtoms);
+        }
+        else {
+            final int chunks = nChunks;
+            IntStream.range(0, nChunks).parallel().forEach(iChunk -> {
+                sumChunk(iChunk, (int) ((long) numAtoms * iChunk / chunks), (int) ((long) numAtoms * (iChunk + 1) / chunks));
+            });
+        }
+        double n2 = (double) numAtoms * numAtoms;
+        for (int k = 0; k < nVec; k++) {
+            double re = 0, im = 0;
+            for (int c = 0; c < nChunks; c++) {
+                re += chunkSums[c][2 * k];
+                im += chunkSums[c][2 * k + 1];
+            }
+            struct[k] = (re * re + im * im) / n2;
+        }
+    }
+
+    /**
+     * Sums exp(i k.r) over atoms start through end-1 for each wave vector,
+     * into chunkSums[iChunk].
+     */
+    protected void sumChunk(int iChunk, int start, int end) {
+        double[] sum = chunkSums[iChunk];
+        double[] powers = chunkPowers[iChunk];
+        int D = space.D();
+        int nVec = waveVec.length;
+        for (int k = 0; k < 2 * nVec; k++) {
+            sum[k] = 0;
+        }
+        int[] tableStart = new int[D];
+        for (int d = 1; d < D; d++) {
+            tableStart[d] = tableStart[d - 1] + 2 * (2 * maxIdx[d - 1] + 1);
+        }
+        for (int i = start; i < end; i++) {
+            Vector r = atomList.get(i).getPosition();
+            // powers of exp(i b_d.r), from -maxIdx to +maxIdx
+            for (int d = 0; d < D; d++) {
+                double x = basis[d].dot(r);
+                double c = Math.cos(x), s = Math.sin(x);
+                int p0 = tableStart[d] + 2 * maxIdx[d];
+                double re = 1, im = 0;
+                powers[p0] = 1;
+                powers[p0 + 1] = 0;
+                for (int m = 1; m <= maxIdx[d]; m++) {
+                    double newRe = re * c - im * s;
+                    im = re * s + im * c;
+                    re = newRe;
+                    powers[p0 + 2 * m] = re;
+                    powers[p0 + 2 * m + 1] = im;
+                    powers[p0 - 2 * m] = re;
+                    powers[p0 - 2 * m + 1] = -im;
+                }
+            }
+            for (int k = 0; k < nVec; k++) {
+                int j = tableStart[0] + waveOffsets[k * D];
+                double re = powers[j], im = powers[j + 1];
+                for (int d = 1; d < D; d++) {
+                    j = tableStart[d] + waveOffsets[k * D + d];
+                    double pRe = powers[j], pIm = powers[j + 1];
+                    double newRe = re * pRe - im * pIm;
+                    im = re * pIm + im * pRe;
+                    re = newRe;
+                }
+                sum[2 * k] += re;
+                sum[2 * k + 1] += im;
+            }
+        }
     }
 
     public DataTag getTag() {
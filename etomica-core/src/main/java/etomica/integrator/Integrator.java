@@ -5,6 +5,10 @@
 package etomica.integrator;
 
 import etomica.space.Vector;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.metrics.Metric;
+import etomica.util.metrics.MetricsRegistry;
 
 /**
  * Integrator implements the algorithm used to move the atoms around and
@@ -22,6 +26,7 @@ public abstract class Integrator {
     protected int interval;
     protected long stepCount;
     private int iieCount;
+    private Metric stepMetric;
 
     public Integrator() {
         setEventInterval(1);
@@ -54,6 +59,7 @@ public abstract class Integrator {
      * time step, or a Monte Carlo trial.
      */
     public final void doStep() {
+        long t0 = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
         stepCount++;
         --iieCount;
         if (iieCount == 0) {
@@ -66,6 +72,12 @@ public abstract class Integrator {
             eventManager.stepFinished();
             iieCount = interval;
         }
+        if (MetricsRegistry.ENABLED) {
+            if (stepMetric == null) {
+                stepMetric = MetricsRegistry.getInstance().get("integrator." + getClass().getSimpleName() + ".step");
+            }
+            stepMetric.addTime(System.nanoTime() - t0);
+        }
     }
 
     /**
@@ -126,6 +138,29 @@ public abstract class Integrator {
         iieCount = interval;
     }
 
+    /**
+     * Writes the step count and the count toward the next interval event.
+     * Integrator does not implement Checkpointable itself; subclasses that
+     * do should extend this (and restoreState) to write any additional state
+     * they keep as they run.  Quantities that reset() recomputes need not be
+     * written.
+     */
+    protected void saveState(CheckpointOutput out) {
+        out.putLong(stepCount);
+        // when called from an interval event, the count is 0 and will be
+        // set to interval as soon as the listeners return
+        out.putInt(iieCount == 0 ? interval : iieCount);
+    }
+
+    /**
+     * Restores the state written by saveState.  The integrator should
+     * already have been reset.
+     */
+    protected void restoreState(CheckpointInput in) {
+        stepCount = in.getLong();
+        iieCount = in.getInt();
+    }
+
     /**
      * Integrator agent that holds a force vector. Used to indicate that an atom
      * could be under the influence of a force.
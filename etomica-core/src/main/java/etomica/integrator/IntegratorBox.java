@@ -16,6 +16,8 @@ import etomica.space.Space;
 import etomica.units.dimensions.Dimension;
 import etomica.units.dimensions.Dimensioned;
 import etomica.units.dimensions.Temperature;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
 
 import java.util.Objects;
 
@@ -155,4 +157,19 @@ public abstract class IntegratorBox extends Integrator {
         meterPE = mpe;
     }
 
+    protected void saveState(CheckpointOutput out) {
+        super.saveState(out);
+        out.putDouble(currentPotentialEnergy);
+    }
+
+    /**
+     * Restores the state written by saveState, including the potential
+     * energy (which might have accumulated round-off differing from the
+     * value reset() computes).
+     */
+    protected void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+        currentPotentialEnergy = in.getDouble();
+    }
+
 }
@@ -4,11 +4,25 @@
 
 package etomica.integrator;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
+/**
+ * Holds an integrator's listeners and notifies them of integrator events.
+ * <p>
+ * Listeners are held in arrays that are replaced (not modified) when a
+ * listener is added or removed, so firing an event does not allocate
+ * anything.  Listeners are notified in order of priority (lower values
+ * first; listeners with equal priority are notified in the order they were
+ * added).  A listener can be given an interval, in which case it is notified
+ * of only every interval-th step (initialization and force events are always
+ * passed on).
+ */
 public class IntegratorEventManager {
 
-    protected final ArrayList<IntegratorListener> listeners = new ArrayList<IntegratorListener>();
+    private static final Entry[] EMPTY = new Entry[0];
+    private volatile Entry[] entries = EMPTY;
+    // entries whose listeners are IntegratorListenerMD
+    private volatile Entry[] mdEntries = EMPTY;
     private final IntegratorEvent event;
     private boolean eventing;
 
@@ -17,25 +31,76 @@ public class IntegratorEventManager {
     }
 
     public IntegratorListener[] getListeners() {
-        return this.listeners.toArray(new IntegratorListener[]{});
+        Entry[] myEntries = entries;
+        IntegratorListener[] listeners = new IntegratorListener[myEntries.length];
+        for (int i = 0; i < myEntries.length; i++) {
+            listeners[i] = myEntries[i].listener;
+        }
+        return listeners;
     }
 
     /**
      * Adds the given listener to this event manager.
      */
     public void addListener(IntegratorListener newListener) {
+        addListener(newListener, 0, 1);
+    }
+
+    /**
+     * Adds the given listener to this event manager.
+     *
+     * @param priority listeners with lower priority are notified first
+     * @param interval the listener is notified of the start and finish of
+     *                 every interval-th step
+     */
+    public synchronized void addListener(IntegratorListener newListener, int priority, int interval) {
         if (newListener == null) throw new NullPointerException("Cannot add null as a listener to Integrator");
-        if (listeners.contains(newListener)) {
-            throw new RuntimeException(newListener + " is already an interval action");
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be positive");
         }
-        listeners.add(newListener);
+        for (Entry entry : entries) {
+            if (entry.listener.equals(newListener)) {
+                throw new RuntimeException(newListener + " is already an interval action");
+            }
+        }
+        Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+        // insert after all entries with the same or lower priority
+        int i = newEntries.length - 1;
+        while (i > 0 && newEntries[i - 1].priority > priority) {
+            newEntries[i] = newEntries[i - 1];
+            i--;
+        }
+        newEntries[i] = new Entry(newListener, priority, interval);
+        setEntries(newEntries);
     }
 
     /**
      * Removes the given listener from this event manager.
      */
-    public void removeListener(IntegratorListener listener) {
-        listeners.remove(listener);
+    public synchronized void removeListener(IntegratorListener listener) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].listener.equals(listener)) {
+                Entry[] newEntries = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, newEntries, 0, i);
+                System.arraycopy(entries, i + 1, newEntries, i, newEntries.length - i);
+                setEntries(newEntries);
+                return;
+            }
+        }
+    }
+
+    private void setEntries(Entry[] newEntries) {
+        int nMD = 0;
+        for (Entry entry : newEntries) {
+            if (entry.listener instanceof IntegratorListenerMD) nMD++;
+        }
+        Entry[] newMDEntries = new Entry[nMD];
+        nMD = 0;
+        for (Entry entry : newEntries) {
+            if (entry.listener instanceof IntegratorListenerMD) newMDEntries[nMD++] = entry;
+        }
+        entries = newEntries;
+        mdEntries = newMDEntries;
     }
 
     /**
@@ -46,47 +111,70 @@ public class IntegratorEventManager {
     }
 
     public void stepStarted() {
+        Entry[] myEntries = entries;
+        if (myEntries.length == 0) return;
         eventing = true;
-        for (IntegratorListener listener : listeners) {
-            listener.integratorStepStarted(event);
+        for (int i = 0; i < myEntries.length; i++) {
+            Entry entry = myEntries[i];
+            if (entry.count + 1 >= entry.interval) {
+                entry.listener.integratorStepStarted(event);
+            }
         }
         eventing = false;
     }
 
     public void stepFinished() {
+        Entry[] myEntries = entries;
+        if (myEntries.length == 0) return;
         eventing = true;
-        for (IntegratorListener listener : listeners) {
-            listener.integratorStepFinished(event);
+        for (int i = 0; i < myEntries.length; i++) {
+            Entry entry = myEntries[i];
+            if (++entry.count >= entry.interval) {
+                entry.count = 0;
+                entry.listener.integratorStepFinished(event);
+            }
         }
         eventing = false;
     }
 
     public void initialized() {
+        Entry[] myEntries = entries;
         eventing = true;
-        for (IntegratorListener listener : listeners) {
-            listener.integratorInitialized(event);
+        for (int i = 0; i < myEntries.length; i++) {
+            myEntries[i].listener.integratorInitialized(event);
         }
         eventing = false;
     }
 
     public void forcePrecomputed() {
+        Entry[] myEntries = mdEntries;
+        if (myEntries.length == 0) return;
         eventing = true;
-        for (IntegratorListener l : listeners) {
-            if (l instanceof IntegratorListenerMD) {
-                ((IntegratorListenerMD) l).integratorForcePrecomputed(event);
-            }
+        for (int i = 0; i < myEntries.length; i++) {
+            ((IntegratorListenerMD) myEntries[i].listener).integratorForcePrecomputed(event);
         }
         eventing = false;
     }
 
     public void forceComputed() {
+        Entry[] myEntries = mdEntries;
+        if (myEntries.length == 0) return;
         eventing = true;
-        for (IntegratorListener l : listeners) {
-            if (l instanceof IntegratorListenerMD) {
-                ((IntegratorListenerMD) l).integratorForceComputed(event);
-            }
+        for (int i = 0; i < myEntries.length; i++) {
+            ((IntegratorListenerMD) myEntries[i].listener).integratorForceComputed(event);
         }
         eventing = false;
     }
-}
 
+    private static class Entry {
+        final IntegratorListener listener;
+        final int priority, interval;
+        int count;
+
+        Entry(IntegratorListener listener, int priority, int interval) {
+            this.listener = listener;
+            this.priority = priority;
+            this.interval = interval;
+        }
+    }
+}
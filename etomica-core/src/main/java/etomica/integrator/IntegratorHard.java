@@ -17,6 +17,7 @@ import etomica.potential.*;
 import etomica.simulation.Simulation;
 import etomica.space.Vector;
 import etomica.util.Debug;
+import etomica.util.IEventQueue;
 import etomica.util.TreeLinker;
 import etomica.util.TreeList;
 import etomica.util.random.IRandom;
@@ -41,7 +42,7 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
     protected final IteratorDirective upList = new IteratorDirective(IteratorDirective.Direction.UP);
     protected final IteratorDirective downList = new IteratorDirective(IteratorDirective.Direction.DOWN);
     protected final AtomArrayList listToUpdate = new AtomArrayList();
-    protected final TreeList eventList = new TreeList();
+    protected IEventQueue eventList = new TreeList();
     private final ReverseCollisionHandler reverseCollisionHandler;
     private final CollisionHandlerUp collisionHandlerUp;
     private final CollisionHandlerDown collisionHandlerDown;
@@ -259,6 +260,27 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
         return collisionCount;
     }
 
+    /**
+     * @return the queue holding pending collision events
+     */
+    public IEventQueue getEventQueue() {
+        return eventList;
+    }
+
+    /**
+     * Sets the queue used to hold pending collision events.  The default,
+     * TreeList, is an unbalanced binary tree; HeapList guarantees O(log n)
+     * insertion and removal and is preferable for large systems, where
+     * clustered collision times make the tree deep.  Any events already
+     * pending are recomputed and placed in the new queue.
+     */
+    public void setEventQueue(IEventQueue newEventQueue) {
+        eventList.reset();
+        eventList = newEventQueue;
+        collisionHandlerDown.eventList = newEventQueue;
+        resetCollisionTimes();
+    }
+
     /**
      * Updates collision times/partners for collider and partner, and 
      * for atoms that were to collide with one of them.  This method 
@@ -281,7 +303,7 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
 
         Agent agent = agentManager.getAgent(colliders.atom0);
         if (agent.collisionPotential != null) {
-            agent.eventLinker.remove();
+            eventList.remove(agent.eventLinker);
         }
         agent.resetCollisionFull();
         upList.setTargetAtom(colliders.atom0);
@@ -297,7 +319,7 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
 
         agent = agentManager.getAgent(colliders.atom1);
         if (agent.collisionPotential != null) {
-            agent.eventLinker.remove();
+            eventList.remove(agent.eventLinker);
         }
         agent.resetCollisionFull();
         upList.setTargetAtom(colliders.atom1);
@@ -327,7 +349,7 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
         processReverseList();
 
         if (agent.collisionPotential != null) {
-            agent.eventLinker.remove();
+            eventList.remove(agent.eventLinker);
         }
         agent.resetCollisionFull();
         upList.setTargetAtom(a);
@@ -352,7 +374,7 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
             IAtom reverseAtom = listToUpdate.get(i);
             Agent agent = agentManager.getAgent(reverseAtom);
             if (agent.collisionPotential != null) {
-                agent.eventLinker.remove();
+                eventList.remove(agent.eventLinker);
             }
             // reset collision, but not a "full" reset
             // this atom thought it would collide with something and now it
@@ -613,11 +635,11 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
 	//sets collision times of atoms downlist of given atom to minimum of their current
 	//value and their value with given atom
 	private static final class CollisionHandlerDown implements PotentialCalculation {
-        final TreeList eventList;
+        IEventQueue eventList;
         double collisionTimeStep;
         private final AtomLeafAgentManager<Agent> integratorAgentManager;
 
-        CollisionHandlerDown(TreeList list, AtomLeafAgentManager<Agent> integratorAgentManager) {
+        CollisionHandlerDown(IEventQueue list, AtomLeafAgentManager<Agent> integratorAgentManager) {
             eventList = list;
             this.integratorAgentManager = integratorAgentManager;
         }
@@ -638,7 +660,7 @@ public class IntegratorHard extends IntegratorMD implements INeighborListListene
 						System.out.println("setting down time "+collisionTime+" for atoms "+atoms);
 					}
                     if (aia.collisionPotential != null) {
-                        aia.eventLinker.remove();
+                        eventList.remove(aia.eventLinker);
                     }
                     aia.setCollision(collisionTime, atoms.get(1), pHard);
                     eventList.add(aia.eventLinker);
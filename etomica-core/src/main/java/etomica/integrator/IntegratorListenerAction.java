@@ -5,12 +5,15 @@
 package etomica.integrator;
 
 import etomica.action.IAction;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
 
 /**
  * An IntegratorListener that performs an action after every integrator step,
  * optionally with a given interval of integrator steps.
  */
-public final class IntegratorListenerAction implements IntegratorListener {
+public final class IntegratorListenerAction implements IntegratorListener, Checkpointable {
 
     private final IAction action;
     private int interval;
@@ -52,4 +55,12 @@ public final class IntegratorListenerAction implements IntegratorListener {
         return action;
     }
 
+    public void saveState(CheckpointOutput out) {
+        out.putInt(intervalCount);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        intervalCount = in.getInt();
+    }
+
 }
@@ -9,8 +9,17 @@ import etomica.integrator.mcmove.*;
 import etomica.potential.PotentialMaster;
 import etomica.simulation.Simulation;
 import etomica.util.EventManager;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
+import etomica.util.metrics.Metric;
+import etomica.util.metrics.MetricsRegistry;
 import etomica.util.random.IRandom;
 
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Integrator to perform Metropolis Monte Carlo sampling. Works with a set of
  * MCMove instances that are added to the integrator. A step performed by the
@@ -22,7 +31,7 @@ import etomica.util.random.IRandom;
  * @see MCMove
  */
 
-public class IntegratorMC extends IntegratorBox {
+public class IntegratorMC extends IntegratorBox implements Checkpointable {
 
     public static boolean dodebug;
     protected final IRandom random;
@@ -30,6 +39,7 @@ public class IntegratorMC extends IntegratorBox {
     private final MCMoveEvent trialEvent, trialFailedEvent;
     private final MCMoveEvent acceptedEvent, rejectedEvent;
     protected MCMoveManager moveManager;
+    private final Map<MCMove, Metric[]> moveMetrics = new IdentityHashMap<>();
 
     /**
      * @param sim             Simulation where this integrator is used
@@ -84,12 +94,16 @@ public class IntegratorMC extends IntegratorBox {
         MCMoveBox move = (MCMoveBox) moveManager.selectMove();
         if (move == null)
             return;
+        long t0 = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
 
         //perform the trial
         //returns false if the trial cannot be attempted; for example an
         // atom-displacement trial in a box with no molecules
         if (!move.doTrial()) {
             moveEventManager.fireEvent(trialFailedEvent);
+            if (MetricsRegistry.ENABLED) {
+                moveMetrics(move)[0].addTime(System.nanoTime() - t0);
+            }
             return;
         }
 
@@ -115,7 +129,27 @@ public class IntegratorMC extends IntegratorBox {
             currentPotentialEnergy += move.energyChange();
             //notify listeners of outcome
             moveEventManager.fireEvent(acceptedEvent);
+            if (MetricsRegistry.ENABLED) {
+                moveMetrics(move)[1].increment();
+            }
+        }
+        if (MetricsRegistry.ENABLED) {
+            moveMetrics(move)[0].addTime(System.nanoTime() - t0);
+        }
+    }
+
+    /**
+     * Returns the metrics (trials and accepted trials) for the given move.
+     */
+    protected Metric[] moveMetrics(MCMove move) {
+        Metric[] metrics = moveMetrics.get(move);
+        if (metrics == null) {
+            String name = "mcmove." + move.getClass().getSimpleName();
+            MetricsRegistry registry = MetricsRegistry.getInstance();
+            metrics = new Metric[]{registry.get(name), registry.get(name + ".accepted")};
+            moveMetrics.put(move, metrics);
         }
+        return metrics;
     }
 
     /**
@@ -136,6 +170,32 @@ public class IntegratorMC extends IntegratorBox {
         moveManager.recomputeMoveFrequencies();
     }
 
+    /**
+     * Writes the integrator's state and that of each move's tracker
+     * (acceptance statistics and, for MCMoveStepTracker, the adjusted step
+     * size).
+     */
+    public void saveState(CheckpointOutput out) {
+        super.saveState(out);
+        List<MCMove> moves = moveManager.getMCMoves();
+        out.putInt(moves.size());
+        for (MCMove move : moves) {
+            move.getTracker().saveState(out);
+        }
+    }
+
+    public void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+        List<MCMove> moves = moveManager.getMCMoves();
+        int nMoves = in.getInt();
+        if (nMoves != moves.size()) {
+            throw new IllegalStateException("checkpoint has " + nMoves + " moves, but the integrator has " + moves.size());
+        }
+        for (MCMove move : moves) {
+            move.getTracker().restoreState(in);
+        }
+    }
+
     /**
      * @return moveEventManager that fires move events
      */
@@ -22,6 +22,8 @@ import etomica.space.Vector;
 import etomica.units.dimensions.Dimensioned;
 import etomica.units.dimensions.Time;
 import etomica.util.Debug;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
 import etomica.util.random.IRandom;
 
 /**
@@ -607,6 +609,32 @@ public abstract class IntegratorMD extends IntegratorBox implements BoxEventList
         meterTemperature = meter;
     }
 
+    /**
+     * Writes the integrator's state, including the elapsed time, kinetic
+     * energy, thermostat count and hybrid MC statistics.
+     */
+    protected void saveState(CheckpointOutput out) {
+        super.saveState(out);
+        out.putDouble(currentTime);
+        out.putDouble(currentKineticEnergy);
+        out.putInt(thermostatCount);
+        out.putDouble(oldEnergy);
+        out.putDouble(oldPotentialEnergy);
+        out.putLong(nAccepted);
+        out.putLong(nRejected);
+    }
+
+    protected void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+        currentTime = in.getDouble();
+        currentKineticEnergy = in.getDouble();
+        thermostatCount = in.getInt();
+        oldEnergy = in.getDouble();
+        oldPotentialEnergy = in.getDouble();
+        nAccepted = in.getLong();
+        nRejected = in.getLong();
+    }
+
     public void boxMoleculeAdded(BoxMoleculeEvent e) {
 
         IMolecule mole = e.getMolecule();
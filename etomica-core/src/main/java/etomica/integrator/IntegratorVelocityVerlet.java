@@ -15,9 +15,12 @@ import etomica.simulation.Simulation;
 import etomica.space.Tensor;
 import etomica.space.Vector;
 import etomica.util.Debug;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
 import etomica.util.random.IRandom;
 
-public class IntegratorVelocityVerlet extends IntegratorMD implements AgentSource<Vector> {
+public class IntegratorVelocityVerlet extends IntegratorMD implements AgentSource<Vector>, Checkpointable {
 
     protected PotentialCalculationForceSum forceSum;;
     protected final IteratorDirective allAtoms;
@@ -152,6 +155,18 @@ public class IntegratorVelocityVerlet extends IntegratorMD implements AgentSourc
         eventManager.forceComputed();
     }
 
+    /**
+     * Writes the integrator's state.  Forces are not written; reset()
+     * recomputes them from the restored configuration.
+     */
+    public void saveState(CheckpointOutput out) {
+        super.saveState(out);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        super.restoreState(in);
+    }
+
 //--------------------------------------------------------------
     
     public Vector makeAgent(IAtom a, Box agentBox) {
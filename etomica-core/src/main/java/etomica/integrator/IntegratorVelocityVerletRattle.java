@@ -90,6 +90,22 @@ public class IntegratorVelocityVerletRattle extends IntegratorVelocityVerletShak
                 r.PEa1Tv1(timeStep,v);         // r += p*dt/m
             }
 
+            if (bondConstraints == null) {
+                continue;
+            }
+            if (useMatrixShake) {
+                IAtomList childList = molecule.getChildList();
+                MatrixShake matrixShake = bondConstraints.getMatrixShake(space, childList);
+                int iterations = matrixShake.shake(childList, drOld, box.getBoundary(), shakeTol, maxIterations);
+                if (iterations < 0) {
+                    System.err.println("failed to converge in shake for molecule "+i);
+                    iterations = maxIterations;
+                }
+                numIterations += iterations;
+                matrixShake.correctVelocities(childList, drOld, 1.0/timeStep);
+                continue;
+            }
+
             IAtomList childList = molecule.getChildList();
             int[][] bondedAtoms = bondConstraints.bondedAtoms;
             Boundary boundary = box.getBoundary();
@@ -209,6 +225,11 @@ public class IntegratorVelocityVerletRattle extends IntegratorVelocityVerletShak
             if (bondConstraints == null) {
                 continue;
             }
+            if (useMatrixShake) {
+                bondConstraints.getMatrixShake(space, molecule.getChildList()).rattle(molecule.getChildList(), box.getBoundary());
+                numIterations++;
+                continue;
+            }
             
             IAtomList childList = molecule.getChildList();
             int[][] bondedAtoms = bondConstraints.bondedAtoms;
@@ -289,6 +310,10 @@ public class IntegratorVelocityVerletRattle extends IntegratorVelocityVerletShak
                 continue;
             }
             bondConstraints.redistributeForces(molecule, agentManager);
+            if (useMatrixShake) {
+                bondConstraints.getMatrixShake(space, molecule.getChildList()).rattle(molecule.getChildList(), box.getBoundary());
+                continue;
+            }
             
             IAtomList childList = molecule.getChildList();
             int[][] bondedAtoms = bondConstraints.bondedAtoms;
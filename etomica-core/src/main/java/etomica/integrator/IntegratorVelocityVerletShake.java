@@ -13,6 +13,7 @@ import etomica.potential.PotentialCalculationForceSum;
 import etomica.potential.PotentialMaster;
 import etomica.simulation.Simulation;
 import etomica.space.Boundary;
+import etomica.space.Space;
 import etomica.space.Vector;
 import etomica.species.ISpecies;
 import etomica.species.SpeciesAgentManager;
@@ -37,6 +38,7 @@ public class IntegratorVelocityVerletShake extends IntegratorMD implements Speci
     protected final Vector dr;
     protected double shakeTol;
     protected int maxIterations;
+    protected boolean useMatrixShake;
     protected boolean[][] moved;
     protected Vector[] drOld;
     protected final Vector temp;
@@ -63,6 +65,7 @@ public class IntegratorVelocityVerletShake extends IntegratorMD implements Speci
         shakeAgentManager = new SpeciesAgentManager(this, sim);
         setShakeTolerance(1e-14);
         setMaxIterations(20);
+        setUseMatrixShake(true);
         moved = new boolean[2][0];
         drOld = new Vector[0];
         temp = space.makeVector();
@@ -106,6 +109,20 @@ public class IntegratorVelocityVerletShake extends IntegratorMD implements Speci
         maxIterations = newMaxIterations;
     }
 
+    /**
+     * Sets whether the constraints of each molecule are satisfied together
+     * (by Newton's method; see {@link MatrixShake}) or one bond at a time.
+     * For matrix SHAKE, maxIterations is the maximum number of Newton
+     * iterations.
+     */
+    public void setUseMatrixShake(boolean newUseMatrixShake) {
+        useMatrixShake = newUseMatrixShake;
+    }
+
+    public boolean getUseMatrixShake() {
+        return useMatrixShake;
+    }
+
     protected void doStepInternal() {
         currentTime += timeStep;
 
@@ -156,6 +173,18 @@ public class IntegratorVelocityVerletShake extends IntegratorMD implements Speci
                 v.Ea1Tv1(-1.0, temp);
             }
 
+            if (bondConstraints == null) {
+                continue;
+            }
+            if (useMatrixShake) {
+                IAtomList childList = molecule.getChildList();
+                MatrixShake matrixShake = bondConstraints.getMatrixShake(space, childList);
+                if (matrixShake.shake(childList, drOld, box.getBoundary(), shakeTol, maxIterations) < 0) {
+                    System.err.println("failed to converge in shake for molecule "+i);
+                }
+                continue;
+            }
+
             IAtomList childList = molecule.getChildList();
             int[][] bondedAtoms = bondConstraints.bondedAtoms;
             Boundary boundary = box.getBoundary();
@@ -287,6 +316,7 @@ public class IntegratorVelocityVerletShake extends IntegratorMD implements Speci
     public static class BondConstraints {
         public final int[][] bondedAtoms;
         public final double[] bondLengths;
+        protected MatrixShake matrixShake;
         public BondConstraints(int[][] bondedAtoms, double[] bondLengths) {
             if (bondedAtoms.length != bondLengths.length) {
                 throw new IllegalArgumentException("different number of bonded pairs and lengths");
@@ -295,6 +325,17 @@ public class IntegratorVelocityVerletShake extends IntegratorMD implements Speci
             this.bondLengths = bondLengths;
         }
 
+        /**
+         * Returns the matrix SHAKE solver for this species, creating it (using
+         * the masses of the given atoms) if needed.
+         */
+        public MatrixShake getMatrixShake(Space space, IAtomList childList) {
+            if (matrixShake == null) {
+                matrixShake = new MatrixShake(space, this, childList);
+            }
+            return matrixShake;
+        }
+
         // redistribute forces to constrained atoms
         // do nothing by default, allow subclasses to override
         public void redistributeForces(IMolecule molecule, AtomLeafAgentManager<Vector> agentManager) {}
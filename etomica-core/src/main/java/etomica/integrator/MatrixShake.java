@@ -0,0 +1,206 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.integrator.IntegratorVelocityVerletShake.BondConstraints;
+import etomica.space.Boundary;
+import etomica.space.Space;
+import etomica.space.Vector;
+
+/**
+ * Satisfies all of the bond constraints of a molecule simultaneously (matrix
+ * SHAKE), rather than one bond at a time.  The position constraints are
+ * solved by Newton's method, with the constraint forces along the bond
+ * vectors from the start of the step; the velocity constraints (RATTLE) are
+ * linear and are solved directly.  Each Newton iteration (and the velocity
+ * solve) is an LU decomposition of an nBonds x nBonds matrix, which is the
+ * product of a mass-coupling matrix (depending only on the topology and
+ * masses, and so computed once per species) and the dot products of the
+ * bond vectors.
+ * <p>
+ * Newton's method converges quadratically, so coupled constraints (water,
+ * chains) converge in a few iterations even when the per-bond iteration
+ * would take many (or fail to converge, for larger time steps).
+ */
+public class MatrixShake {
+
+    protected final int[][] bondedAtoms;
+    protected final double[] bondLengths;
+    protected final double[] rMass;
+    // coupling[k][l] is the change in bond k (per unit of bond l's vector) from a unit constraint force along bond l
+    protected final double[][] coupling;
+    protected final double[][] a;
+    protected final double[] b, lambda;
+    protected final Vector[] dr;
+    protected final Vector dv;
+
+    /**
+     * @param space       the space
+     * @param constraints the bonds and bond lengths for the species
+     * @param childList   the atoms of one molecule of the species, used only
+     *                    to get the masses
+     */
+    public MatrixShake(Space space, BondConstraints constraints, IAtomList childList) {
+        bondedAtoms = constraints.bondedAtoms;
+        bondLengths = constraints.bondLengths;
+        int nBonds = bondedAtoms.length;
+        rMass = new double[childList.size()];
+        for (int i = 0; i < rMass.length; i++) {
+            rMass[i] = childList.get(i).getType().rm();
+        }
+        coupling = new double[nBonds][nBonds];
+        for (int k = 0; k < nBonds; k++) {
+            int k1 = bondedAtoms[k][0], k2 = bondedAtoms[k][1];
+            for (int l = 0; l < nBonds; l++) {
+                int l1 = bondedAtoms[l][0], l2 = bondedAtoms[l][1];
+                double c = 0;
+                if (k2 == l2) c += rMass[k2];
+                if (k2 == l1) c -= rMass[k2];
+                if (k1 == l1) c += rMass[k1];
+                if (k1 == l2) c -= rMass[k1];
+                coupling[k][l] = c;
+            }
+        }
+        a = new double[nBonds][nBonds];
+        b = new double[nBonds];
+        lambda = new double[nBonds];
+        dr = new Vector[nBonds];
+        for (int k = 0; k < nBonds; k++) {
+            dr[k] = space.makeVector();
+        }
+        dv = space.makeVector();
+    }
+
+    /**
+     * Moves the atoms along the old bond vectors so that all bond lengths are
+     * satisfied to within the given (relative) tolerance.
+     *
+     * @param childList     the atoms of the molecule
+     * @param drOld         the bond vectors at the start of the step
+     * @param boundary      the boundary, used for nearest images
+     * @param tol           the tolerance on (l^2-r^2)/l^2 for each bond
+     * @param maxIterations the maximum number of Newton iterations
+     * @return the number of iterations taken, or -1 if the constraints were
+     * not satisfied within maxIterations
+     */
+    public int shake(IAtomList childList, Vector[] drOld, Boundary boundary, double tol, int maxIterations) {
+        int nBonds = bondedAtoms.length;
+        for (int k = 0; k < nBonds; k++) {
+            lambda[k] = 0;
+        }
+        for (int iter = 0; iter < maxIterations; iter++) {
+            boolean success = true;
+            for (int k = 0; k < nBonds; k++) {
+                dr[k].Ev1Mv2(childList.get(bondedAtoms[k][1]).getPosition(), childList.get(bondedAtoms[k][0]).getPosition());
+                boundary.nearestImage(dr[k]);
+                double bl2 = bondLengths[k] * bondLengths[k];
+                b[k] = bl2 - dr[k].squared();
+                if (Math.abs(b[k] / bl2) > tol) {
+                    success = false;
+                }
+            }
+            if (success) {
+                return iter;
+            }
+            for (int k = 0; k < nBonds; k++) {
+                double drDotDrOld = dr[k].dot(drOld[k]);
+                if (drDotDrOld / (bondLengths[k] * bondLengths[k]) < 0.1) {
+                    throw new RuntimeException("bond " + k + " rotated too far in one step, dr " + dr[k] + " drOld " + drOld[k]);
+                }
+                for (int l = 0; l < nBonds; l++) {
+                    a[k][l] = coupling[k][l] == 0 ? 0 : 2 * coupling[k][l] * dr[k].dot(drOld[l]);
+                }
+            }
+            solve();
+            for (int l = 0; l < nBonds; l++) {
+                lambda[l] += b[l];
+                childList.get(bondedAtoms[l][1]).getPosition().PEa1Tv1(b[l] * rMass[bondedAtoms[l][1]], drOld[l]);
+                childList.get(bondedAtoms[l][0]).getPosition().PEa1Tv1(-b[l] * rMass[bondedAtoms[l][0]], drOld[l]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the velocity change corresponding to the position change from the
+     * last call to shake, scaled by fac (1/timeStep, for RATTLE).
+     */
+    public void correctVelocities(IAtomList childList, Vector[] drOld, double fac) {
+        for (int l = 0; l < bondedAtoms.length; l++) {
+            int i1 = bondedAtoms[l][0], i2 = bondedAtoms[l][1];
+            ((IAtomKinetic) childList.get(i2)).getVelocity().PEa1Tv1(fac * lambda[l] * rMass[i2], drOld[l]);
+            ((IAtomKinetic) childList.get(i1)).getVelocity().PEa1Tv1(-fac * lambda[l] * rMass[i1], drOld[l]);
+        }
+    }
+
+    /**
+     * Adjusts the velocities of the atoms (along the bond vectors) so that
+     * the velocity along each bond is 0.
+     */
+    public void rattle(IAtomList childList, Boundary boundary) {
+        int nBonds = bondedAtoms.length;
+        for (int k = 0; k < nBonds; k++) {
+            IAtomKinetic atom1 = (IAtomKinetic) childList.get(bondedAtoms[k][0]);
+            IAtomKinetic atom2 = (IAtomKinetic) childList.get(bondedAtoms[k][1]);
+            dr[k].Ev1Mv2(atom2.getPosition(), atom1.getPosition());
+            boundary.nearestImage(dr[k]);
+            dv.Ev1Mv2(atom2.getVelocity(), atom1.getVelocity());
+            b[k] = -dr[k].dot(dv);
+        }
+        for (int k = 0; k < nBonds; k++) {
+            for (int l = 0; l < nBonds; l++) {
+                a[k][l] = coupling[k][l] == 0 ? 0 : coupling[k][l] * dr[k].dot(dr[l]);
+            }
+        }
+        solve();
+        for (int l = 0; l < nBonds; l++) {
+            int i1 = bondedAtoms[l][0], i2 = bondedAtoms[l][1];
+            ((IAtomKinetic) childList.get(i2)).getVelocity().PEa1Tv1(b[l] * rMass[i2], dr[l]);
+            ((IAtomKinetic) childList.get(i1)).getVelocity().PEa1Tv1(-b[l] * rMass[i1], dr[l]);
+        }
+    }
+
+    /**
+     * Solves a x = b by LU decomposition with partial pivoting, leaving x in
+     * b.  a is overwritten.
+     */
+    protected void solve() {
+        int n = b.length;
+        for (int j = 0; j < n; j++) {
+            int p = j;
+            for (int i = j + 1; i < n; i++) {
+                if (Math.abs(a[i][j]) > Math.abs(a[p][j])) p = i;
+            }
+            if (a[p][j] == 0) {
+                throw new RuntimeException("bond constraints are singular (redundant or linear)");
+            }
+            if (p != j) {
+                double[] t = a[p];
+                a[p] = a[j];
+                a[j] = t;
+                double tb = b[p];
+                b[p] = b[j];
+                b[j] = tb;
+            }
+            for (int i = j + 1; i < n; i++) {
+                double f = a[i][j] / a[j][j];
+                if (f == 0) continue;
+                for (int k = j + 1; k < n; k++) {
+                    a[i][k] -= f * a[j][k];
+                }
+                b[i] -= f * b[j];
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double s = b[i];
+            for (int k = i + 1; k < n; k++) {
+                s -= a[i][k] * b[k];
+            }
+            b[i] = s / a[i][i];
+        }
+    }
+}
@@ -11,6 +11,7 @@ import etomica.atom.iterator.AtomIterator;
 import etomica.atom.iterator.AtomIteratorSinglet;
 import etomica.box.Box;
 import etomica.data.meter.MeterPotentialEnergy;
+import etomica.potential.AtomEnergyCache;
 import etomica.potential.PotentialMaster;
 import etomica.space.Space;
 import etomica.space.Vector;
@@ -35,6 +36,7 @@ public class MCMoveAtom extends MCMoveBoxStep {
     protected AtomSource atomSource;
     protected boolean fixOverlap;
     protected Space space;
+    protected AtomEnergyCache energyCache;
 
     /**
      * Constructs the move with default stepSize = 1.0, stepSizeMax = 15.0, fixOverlap = false
@@ -94,8 +96,13 @@ public class MCMoveAtom extends MCMoveBoxStep {
     public boolean doTrial() {
         atom = atomSource.getAtom();
         if (atom == null) return false;
-        energyMeter.setTarget(atom);
-        uOld = energyMeter.getDataAsScalar();
+        if (energyCache != null) {
+            uOld = energyCache.getEnergy(atom);
+        }
+        else {
+            energyMeter.setTarget(atom);
+            uOld = energyMeter.getDataAsScalar();
+        }
         if (uOld > 1e8 && !fixOverlap) {
             throw new RuntimeException("atom " + atom + " in box " + box + " has an overlap");
         }
@@ -106,7 +113,7 @@ public class MCMoveAtom extends MCMoveBoxStep {
     }//end of doTrial
 
     public double getChi(double temperature) {
-        uNew = energyMeter.getDataAsScalar();
+        uNew = energyCache != null ? energyCache.computeEnergy(atom) : energyMeter.getDataAsScalar();
         return Math.exp(-(uNew - uOld) / temperature);
     }
 
@@ -133,6 +140,21 @@ public class MCMoveAtom extends MCMoveBoxStep {
         atomSource.setBox(p);
     }
 
+    /**
+     * Sets a cache of atom energies used to find the atom's energy before
+     * the trial, so that only the energy after the trial needs to be
+     * computed.  The cache must have been made for the integrator this move
+     * is added to.  Pass null to compute both energies directly (the
+     * default).
+     */
+    public void setEnergyCache(AtomEnergyCache newEnergyCache) {
+        energyCache = newEnergyCache;
+    }
+
+    public AtomEnergyCache getEnergyCache() {
+        return energyCache;
+    }
+
     /**
      * The AtomSource is used to select the atom at the beginning of the trial
      *
@@ -4,6 +4,9 @@
 
 package etomica.integrator.mcmove;
 
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+
 /**
  * This Class tracks acceptance statistics for an MCMove and also manages the
  * move's step size.  Given an acceptance target, it can adjust the 
@@ -234,4 +237,32 @@ public class MCMoveStepTracker extends MCMoveTracker {
     public void setNoisyAdjustment(boolean isNoisy) {
         noisyAdjustment = isNoisy;
     }
+
+    /**
+     * Writes the acceptance statistics, the state of the step size
+     * adjustment and the move's current step size.
+     */
+    public void saveState(CheckpointOutput out) {
+        out.putBoolean(mcMove != null);
+        if (mcMove != null) {
+            out.putDouble(mcMove.getStepSize());
+        }
+        super.saveState(out);
+        out.putLong(adjustInterval);
+        out.putDouble(adjustStep);
+        out.putLong(lastAdjust);
+        out.putBoolean(tunable);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        // setting the step size can reset the adjustment, so do that first
+        if (in.getBoolean()) {
+            mcMove.setStepSize(in.getDouble());
+        }
+        super.restoreState(in);
+        adjustInterval = in.getLong();
+        adjustStep = in.getDouble();
+        lastAdjust = in.getLong();
+        tunable = in.getBoolean();
+    }
 }
@@ -4,6 +4,9 @@
 
 package etomica.integrator.mcmove;
 
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
 
 /**
  * This class is responsible for tracking acceptance statistics for an MCMove.
@@ -12,7 +15,7 @@ package etomica.integrator.mcmove;
  *
  * @author Andrew Schultz
  */
-public class MCMoveTracker {
+public class MCMoveTracker implements Checkpointable {
 
     /**
      * Updates statistics regarding the acceptance rate of this move.  This 
@@ -54,7 +57,19 @@ public class MCMoveTracker {
         nTrials = nAccept = 0;
         chiSum = 0;
     }
-    
+
+    public void saveState(CheckpointOutput out) {
+        out.putLong(nTrials);
+        out.putLong(nAccept);
+        out.putDouble(chiSum);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        nTrials = in.getLong();
+        nAccept = in.getLong();
+        chiSum = in.getDouble();
+    }
+
     protected long nTrials, nAccept;
     protected double chiSum;
 }
@@ -0,0 +1,178 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.math.numerical;
+
+/**
+ * In-place complex fast Fourier transform of data on a 3D grid.  Dimensions
+ * whose size is a power of 2 are transformed with the radix-2 FFT; any other
+ * size is handled with a direct transform along that dimension (n^2 work per
+ * line).  Data for grid point (i,j,k) is held at element (i*n1 + j)*n2 + k of
+ * the real and imaginary arrays.
+ * <p>
+ * Neither transform is normalized: forward computes
+ * X(m) = sum_k x(k) exp(-2 pi i m.k/n) and backward uses exp(+2 pi i m.k/n),
+ * so backward(forward(x)) = n0*n1*n2 x.
+ * <p>
+ * Twiddle factors and scratch space are allocated by the constructor, so the
+ * transforms themselves do not allocate.
+ */
+public class FastFourierTransform3D {
+
+    protected final int[] n;
+    protected final double[][] cosTable, sinTable;
+    protected final int[][] bitReverse;
+    protected final double[] lineRe, lineIm;
+
+    public FastFourierTransform3D(int n0, int n1, int n2) {
+        n = new int[]{n0, n1, n2};
+        cosTable = new double[3][];
+        sinTable = new double[3][];
+        bitReverse = new int[3][];
+        int maxN = 0;
+        for (int d = 0; d < 3; d++) {
+            int nd = n[d];
+            if (nd < 1) {
+                throw new IllegalArgumentException("grid size must be positive");
+            }
+            maxN = Math.max(maxN, nd);
+            boolean powerOf2 = (nd & (nd - 1)) == 0;
+            // the direct transform needs all n twiddle factors
+            int nTable = powerOf2 ? nd / 2 : nd;
+            cosTable[d] = new double[nTable];
+            sinTable[d] = new double[nTable];
+            for (int k = 0; k < nTable; k++) {
+                cosTable[d][k] = Math.cos(2 * Math.PI * k / nd);
+                sinTable[d][k] = Math.sin(2 * Math.PI * k / nd);
+            }
+            if (!powerOf2) continue;
+            bitReverse[d] = new int[nd];
+            int bits = Integer.numberOfTrailingZeros(nd);
+            for (int i = 0; i < nd; i++) {
+                bitReverse[d][i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+        }
+        lineRe = new double[maxN];
+        lineIm = new double[maxN];
+    }
+
+    /**
+     * Returns the size of the grid in each dimension.
+     */
+    public int[] getSize() {
+        return n;
+    }
+
+    /**
+     * Performs the forward transform (exp(-2 pi i m.k/n)) in place.
+     */
+    public void forward(double[] re, double[] im) {
+        transform(re, im, false);
+    }
+
+    /**
+     * Performs the backward transform (exp(+2 pi i m.k/n)) in place, without
+     * the 1/(n0*n1*n2) normalization.
+     */
+    public void backward(double[] re, double[] im) {
+        transform(re, im, true);
+    }
+
+    protected void transform(double[] re, double[] im, boolean backward) {
+        int n0 = n[0], n1 = n[1], n2 = n[2];
+        if (re.length < n0 * n1 * n2 || im.length < n0 * n1 * n2) {
+            throw new IllegalArgumentException("arrays are too small for the grid");
+        }
+        // contiguous lines along dimension 2
+        for (int i = 0; i < n0 * n1; i++) {
+            transformLine(re, im, i * n2, 1, 2, backward);
+        }
+        // dimension 1
+        for (int i = 0; i < n0; i++) {
+            for (int k = 0; k < n2; k++) {
+                transformLine(re, im, i * n1 * n2 + k, n2, 1, backward);
+            }
+        }
+        // dimension 0
+        for (int j = 0; j < n1 * n2; j++) {
+            transformLine(re, im, j, n1 * n2, 0, backward);
+        }
+    }
+
+    /**
+     * Transforms the line of data starting at offset with the given stride
+     * along dimension d, using the iterative radix-2 algorithm.
+     */
+    protected void transformLine(double[] re, double[] im, int offset, int stride, int d, boolean backward) {
+        int nd = n[d];
+        if (nd == 1) return;
+        int[] rev = bitReverse[d];
+        if (rev == null) {
+            transformLineDirect(re, im, offset, stride, d, backward);
+            return;
+        }
+        for (int i = 0; i < nd; i++) {
+            lineRe[rev[i]] = re[offset + i * stride];
+            lineIm[rev[i]] = im[offset + i * stride];
+        }
+        double[] cos = cosTable[d];
+        double[] sin = sinTable[d];
+        double sign = backward ? 1 : -1;
+        for (int size = 2; size <= nd; size *= 2) {
+            int half = size / 2;
+            int step = nd / size;
+            for (int start = 0; start < nd; start += size) {
+                for (int k = 0; k < half; k++) {
+                    double c = cos[k * step];
+                    double s = sign * sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = lineRe[b] * c - lineIm[b] * s;
+                    double ti = lineRe[b] * s + lineIm[b] * c;
+                    lineRe[b] = lineRe[a] - tr;
+                    lineIm[b] = lineIm[a] - ti;
+                    lineRe[a] += tr;
+                    lineIm[a] += ti;
+                }
+            }
+        }
+        for (int i = 0; i < nd; i++) {
+            re[offset + i * stride] = lineRe[i];
+            im[offset + i * stride] = lineIm[i];
+        }
+    }
+
+    /**
+     * Transforms the line of data starting at offset with the given stride
+     * along dimension d by direct summation, for sizes that are not a power
+     * of 2.
+     */
+    protected void transformLineDirect(double[] re, double[] im, int offset, int stride, int d, boolean backward) {
+        int nd = n[d];
+        double[] cos = cosTable[d];
+        double[] sin = sinTable[d];
+        double sign = backward ? 1 : -1;
+        for (int m = 0; m < nd; m++) {
+            double sumRe = 0, sumIm = 0;
+            int k = 0;
+            for (int j = 0; j < nd; j++) {
+                double xr = re[offset + j * stride];
+                double xi = im[offset + j * stride];
+                double c = cos[k];
+                double s = sign * sin[k];
+                sumRe += xr * c - xi * s;
+                sumIm += xr * s + xi * c;
+                // k = m*j mod nd
+                k += m;
+                if (k >= nd) k -= nd;
+            }
+            lineRe[m] = sumRe;
+            lineIm[m] = sumIm;
+        }
+        for (int i = 0; i < nd; i++) {
+            re[offset + i * stride] = lineRe[i];
+            im[offset + i * stride] = lineIm[i];
+        }
+    }
+}
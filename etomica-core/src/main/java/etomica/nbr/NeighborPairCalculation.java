@@ -0,0 +1,61 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.nbr;
+
+import etomica.atom.AtomPair;
+import etomica.atom.IAtom;
+import etomica.potential.IPotentialAtomic;
+import etomica.potential.PotentialCalculation;
+
+/**
+ * NeighborIterator action that passes each neighbor pair accepted by the
+ * appropriate criterion on to a PotentialCalculation.  A single AtomPair is
+ * reused for every pair, so iterating over neighbors this way does not
+ * allocate.  The criteria, potentials and calculation must be set (via
+ * reset) before each target atom is handled.
+ * <p>
+ * The NeighborIterator passes pairs as (target, other) for up neighbors and
+ * as (other, target) for down neighbors.  An instance constructed for up
+ * neighbors therefore looks up the criterion and potential using the type of
+ * the second atom, and one constructed for down neighbors uses the first.
+ */
+public class NeighborPairCalculation implements NeighborIterator.AtomPairConsumer {
+
+    private final AtomPair pair;
+    private final boolean up;
+    private NeighborCriterion[] criteria;
+    private IPotentialAtomic[] potentials;
+    private PotentialCalculation pc;
+
+    /**
+     * @param up true if this instance will receive up neighbors (target atom
+     *           first), false if it will receive down neighbors (target atom
+     *           second)
+     */
+    public NeighborPairCalculation(boolean up) {
+        this.up = up;
+        pair = new AtomPair();
+    }
+
+    /**
+     * Sets the criteria and potentials (indexed by the other atom's type
+     * index) applicable to the target atom, and the calculation to perform.
+     */
+    public void reset(NeighborCriterion[] newCriteria, IPotentialAtomic[] newPotentials, PotentialCalculation newPc) {
+        criteria = newCriteria;
+        potentials = newPotentials;
+        pc = newPc;
+    }
+
+    public void accept(IAtom atom0, IAtom atom1) {
+        int otherType = (up ? atom1 : atom0).getType().getIndex();
+        NeighborCriterion criterion = criteria[otherType];
+        if (criterion != null && criterion.accept(atom0, atom1)) {
+            pair.atom0 = atom0;
+            pair.atom1 = atom1;
+            pc.doCalculation(pair, potentials[otherType]);
+        }
+    }
+}
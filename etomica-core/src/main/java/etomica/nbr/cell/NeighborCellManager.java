@@ -45,6 +45,8 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
     protected final Vector v;
     protected final int[] numCells;
     protected boolean suppressBoxLengthWarning;
+    protected boolean incrementalAssignment;
+    protected boolean latticeRebuilt = true;
     
     /**
      * Constructs manager for neighbor cells in the given box.  The number of
@@ -93,6 +95,28 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
         return doApplyPBC;
     }
 
+    /**
+     * Sets whether assignCellAll should only move atoms whose cell has
+     * changed since the last assignment, rather than emptying every cell and
+     * re-inserting every atom.  Each atom's current cell is already held by
+     * the agent manager, so this costs nothing extra; the atoms still need to
+     * be located, but only the atoms that migrated touch the cells'
+     * occupant lists.  Cells are always fully reassigned after the lattice
+     * itself is rebuilt.
+     * <p>
+     * Incremental assignment leaves the order of atoms within a cell
+     * dependent on the history of the simulation (rather than their leaf
+     * index), which changes the order in which neighbors are found and so
+     * the round-off in sums over them.  Off by default.
+     */
+    public void setIncrementalAssignment(boolean newIncrementalAssignment) {
+        incrementalAssignment = newIncrementalAssignment;
+    }
+
+    public boolean getIncrementalAssignment() {
+        return incrementalAssignment;
+    }
+
     public CellLattice getLattice() {
         return lattice;
     }
@@ -139,7 +163,8 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
         // and the atom assignments need to change too.
         //FIXME but only if we have multi-atomic molecules.  For monatomic
         // molecules, we would only need to call this if the lattice size
-        // changes
+        // changes.  With incremental assignment, only atoms whose cell changed
+        // are moved.
         boolean savedDoApplyPBC = doApplyPBC;
         doApplyPBC = true;
         assignCellAll();
@@ -192,6 +217,7 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
         //only update the lattice (expensive) if the number of cells changed
         if (latticeNeedsUpdate) {
             lattice.setSize(numCells);
+            latticeRebuilt = true;
             return true;
         }
         return false;
@@ -207,17 +233,34 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
         // happens, our call into checkDimensions should 
         checkDimensions();
 
+        IAtomList leafList = box.getLeafList();
+        int count = leafList.size();
+        if (incrementalAssignment && !latticeRebuilt) {
+            for (int i=0; i<count; i++) {
+                IAtom atom = leafList.get(i);
+                Cell oldCell = agentManager.getAgent(atom);
+                Cell atomCell = findCell(atom);
+                if (atomCell != oldCell) {
+                    if (oldCell != null) {
+                        oldCell.removeAtom(atom);
+                    }
+                    atomCell.addAtom(atom);
+                    agentManager.setAgent(atom, atomCell);
+                }
+            }
+            return;
+        }
+
         Object[] allCells = lattice.sites();
         for (int i=0; i<allCells.length; i++) {
             ((Cell)allCells[i]).occupants().clear();
         }
 
-        IAtomList leafList = box.getLeafList();
-        int count = leafList.size();
         for (int i=0; i<count; i++) {
             IAtom atom = leafList.get(i);
             assignCell(atom);
         }
+        latticeRebuilt = false;
     }
     
     public Cell getCell(IAtom atom) {
@@ -230,15 +273,7 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
      * agentManager.
      */
     public void assignCell(IAtom atom) {
-        Cell atomCell;
-        if (doApplyPBC) {
-            v.E(atom.getPosition());
-            v.PE(box.getBoundary().centralImage(v));
-            atomCell = (Cell)lattice.site(v);
-        }
-        else {
-            atomCell = (Cell)lattice.site(atom.getPosition());
-        }
+        Cell atomCell = findCell(atom);
         if (Debug.ON && Debug.DEBUG_NOW && Debug.anyAtom(new AtomSetSinglet(atom))) {
             System.out.println("assigning "+atom+" at "+atom.getPosition()+" to "+atomCell);
         }
@@ -246,6 +281,19 @@ public class NeighborCellManager implements BoxCellManager, BoundaryEventListene
         agentManager.setAgent(atom, atomCell);
     }
 
+    /**
+     * Returns the cell the given atom's position falls in, without changing
+     * any assignments.
+     */
+    protected Cell findCell(IAtom atom) {
+        if (doApplyPBC) {
+            v.E(atom.getPosition());
+            v.PE(box.getBoundary().centralImage(v));
+            return (Cell)lattice.site(v);
+        }
+        return (Cell)lattice.site(atom.getPosition());
+    }
+
     public IListener<MCMoveEvent> makeMCMoveListener() {
         return new MyMCMoveListener(box,this);
     }
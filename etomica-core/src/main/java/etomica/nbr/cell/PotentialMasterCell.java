@@ -33,6 +33,8 @@ public class PotentialMasterCell extends PotentialMasterNbr {
     private final BoxAgentSourceCellManager cellManagerSource;
     private final BoxAgentManager<NeighborCellManager> neighborCellManagers;
     private final BoxAgentManager<NeighborIterator> neighborIterators;
+    private final NeighborPairCalculation upCalculation, downCalculation;
+    private final AtomSetSinglet atomSetSinglet;
 
     /**
      * Creates PotentialMasterCell with default (1.0) range.  Range
@@ -59,6 +61,9 @@ public class PotentialMasterCell extends PotentialMasterNbr {
         this.cellManagerSource = boxAgentSource;
         this.neighborCellManagers = new BoxAgentManager<>(boxAgentSource, sim);
         this.neighborIterators = new BoxAgentManager<NeighborIterator>(sim, box -> new NeighborIteratorCell(neighborCellManagers.getAgent(box)));
+        upCalculation = new NeighborPairCalculation(true);
+        downCalculation = new NeighborPairCalculation(false);
+        atomSetSinglet = new AtomSetSinglet();
         setRange(range);
     }
 
@@ -211,21 +216,9 @@ public class PotentialMasterCell extends PotentialMasterNbr {
         NeighborCriterion[] myCriteria = criteria[atom.getType().getIndex()];
         IPotentialAtomic[] potentials = rangedPotentials[atom.getType().getIndex()];
 
-        neighborIterator.forEachNeighbor(atom, direction,
-                (targetAtom, otherAtom) -> {
-                    NeighborCriterion criterion = myCriteria[otherAtom.getType().getIndex()];
-                    if (criterion != null && criterion.accept(targetAtom, otherAtom)) {
-                        pc.doCalculation(new AtomPair(targetAtom, otherAtom), potentials[otherAtom.getType().getIndex()]);
-                    }
-                },
-                (otherAtom, targetAtom) -> {
-                    NeighborCriterion criterion = myCriteria[otherAtom.getType().getIndex()];
-                    if (criterion != null && criterion.accept(otherAtom, targetAtom)) {
-                        pc.doCalculation(new AtomPair(otherAtom, targetAtom), potentials[otherAtom.getType().getIndex()]);
-                    }
-                }
-        );
-
+        upCalculation.reset(myCriteria, potentials, pc);
+        downCalculation.reset(myCriteria, potentials, pc);
+        neighborIterator.forEachNeighbor(atom, direction, upCalculation, downCalculation);
     }
 
     private void calculate1Body(IAtom atom, PotentialCalculation pc) {
@@ -234,7 +227,8 @@ public class PotentialMasterCell extends PotentialMasterNbr {
             List<NeighborCriterion> criteria1 = criteria1Body[atom.getType().getIndex()];
             for (int i = 0; i < potentials1.size(); i++) {
                 if (criteria1.get(i).accept(atom, null)) {
-                    pc.doCalculation(new AtomSetSinglet(atom), potentials1.get(i));
+                    atomSetSinglet.atom = atom;
+                    pc.doCalculation(atomSetSinglet, potentials1.get(i));
                 }
             }
         }
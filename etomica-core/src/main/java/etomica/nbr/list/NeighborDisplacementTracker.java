@@ -0,0 +1,216 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.nbr.list;
+
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.box.BoxAtomIndexEvent;
+import etomica.box.BoxEventListener;
+import etomica.box.BoxMoleculeEvent;
+import etomica.space.Vector;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Tracks how far each leaf atom in a box has moved since the neighbor lists
+ * were last constructed.  Reference positions are held in one packed array
+ * per dimension, indexed by leaf index, so the displacement check is a
+ * single pass over the atoms with no agent lookups or virtual calls to
+ * neighbor criteria.
+ * <p>
+ * With a skin s (neighbor range minus interaction range), the distance
+ * between two atoms can have decreased by at most the sum of their
+ * displacements, so the neighbor lists remain valid as long as the sum of
+ * the two largest displacements is less than s.
+ * <p>
+ * Atoms added to the box take their reference position when they are added,
+ * and reference positions follow atoms whose leaf index changes.
+ */
+public class NeighborDisplacementTracker implements BoxEventListener {
+
+    // atoms per task when checking in parallel
+    protected static final int CHUNK_SIZE = 4096;
+
+    protected final Box box;
+    protected final int D;
+    protected double[][] reference;
+    protected boolean parallel;
+    protected double largest2, secondLargest2;
+
+    public NeighborDisplacementTracker(Box box) {
+        this.box = box;
+        D = box.getSpace().D();
+        reference = new double[D][0];
+        box.getEventManager().addListener(this);
+    }
+
+    /**
+     * Sets whether the displacement check is split among threads.  This only
+     * pays off for large systems.
+     */
+    public void setParallel(boolean newParallel) {
+        parallel = newParallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Records the current position of every leaf atom as its reference
+     * position.
+     */
+    public void reset() {
+        IAtomList atoms = box.getLeafList();
+        int n = atoms.size();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            Vector p = atoms.get(i).getPosition();
+            for (int d = 0; d < D; d++) {
+                reference[d][i] = p.getX(d);
+            }
+        }
+    }
+
+    /**
+     * Finds the two largest displacements since the last reset and returns
+     * their sum, which is the largest amount by which any pair separation
+     * can have decreased.
+     */
+    public double computeMaxPairDisplacement() {
+        IAtomList atoms = box.getLeafList();
+        int n = atoms.size();
+        double max1 = 0, max2 = 0;
+        if (parallel && n > 2 * CHUNK_SIZE) {
+            int nChunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            double[][] chunkMax = new double[nChunks][];
+            IntStream.range(0, nChunks).parallel().forEach(c ->
+                    chunkMax[c] = largestTwo(atoms, c * CHUNK_SIZE, Math.min(n, (c + 1) * CHUNK_SIZE)));
+            for (double[] m : chunkMax) {
+                for (double r2 : m) {
+                    if (r2 > max1) {
+                        max2 = max1;
+                        max1 = r2;
+                    }
+                    else if (r2 > max2) {
+                        max2 = r2;
+                    }
+                }
+            }
+        }
+        else {
+            double[] m = largestTwo(atoms, 0, n);
+            max1 = m[0];
+            max2 = m[1];
+        }
+        largest2 = max1;
+        secondLargest2 = max2;
+        return Math.sqrt(max1) + Math.sqrt(max2);
+    }
+
+    /**
+     * Returns the two largest squared displacements among atoms start to
+     * end-1.
+     */
+    protected double[] largestTwo(IAtomList atoms, int start, int end) {
+        double max1 = 0, max2 = 0;
+        if (D == 3) {
+            double[] x0 = reference[0], y0 = reference[1], z0 = reference[2];
+            for (int i = start; i < end; i++) {
+                Vector p = atoms.get(i).getPosition();
+                double dx = p.getX(0) - x0[i];
+                double dy = p.getX(1) - y0[i];
+                double dz = p.getX(2) - z0[i];
+                double r2 = dx * dx + dy * dy + dz * dz;
+                if (r2 > max2) {
+                    if (r2 > max1) {
+                        max2 = max1;
+                        max1 = r2;
+                    }
+                    else {
+                        max2 = r2;
+                    }
+                }
+            }
+        }
+        else {
+            for (int i = start; i < end; i++) {
+                Vector p = atoms.get(i).getPosition();
+                double r2 = 0;
+                for (int d = 0; d < D; d++) {
+                    double dx = p.getX(d) - reference[d][i];
+                    r2 += dx * dx;
+                }
+                if (r2 > max2) {
+                    if (r2 > max1) {
+                        max2 = max1;
+                        max1 = r2;
+                    }
+                    else {
+                        max2 = r2;
+                    }
+                }
+            }
+        }
+        return new double[]{max1, max2};
+    }
+
+    /**
+     * @return the largest displacement found by the last call to
+     * computeMaxPairDisplacement
+     */
+    public double getLargestDisplacement() {
+        return Math.sqrt(largest2);
+    }
+
+    /**
+     * @return the square of the largest displacement found by the last call
+     * to computeMaxPairDisplacement
+     */
+    public double getLargestDisplacementSquared() {
+        return largest2;
+    }
+
+    /**
+     * @return the second largest displacement found by the last call to
+     * computeMaxPairDisplacement
+     */
+    public double getSecondLargestDisplacement() {
+        return Math.sqrt(secondLargest2);
+    }
+
+    protected void ensureCapacity(int n) {
+        if (reference[0].length < n) {
+            int newSize = Math.max(n, reference[0].length * 3 / 2);
+            for (int d = 0; d < D; d++) {
+                reference[d] = Arrays.copyOf(reference[d], newSize);
+            }
+        }
+    }
+
+    public void boxMoleculeAdded(BoxMoleculeEvent e) {
+        IAtomList childList = e.getMolecule().getChildList();
+        for (int i = 0; i < childList.size(); i++) {
+            IAtom atom = childList.get(i);
+            int idx = atom.getLeafIndex();
+            ensureCapacity(idx + 1);
+            Vector p = atom.getPosition();
+            for (int d = 0; d < D; d++) {
+                reference[d][idx] = p.getX(d);
+            }
+        }
+    }
+
+    public void boxAtomLeafIndexChanged(BoxAtomIndexEvent e) {
+        int oldIndex = e.getIndex();
+        int newIndex = e.getAtom().getLeafIndex();
+        ensureCapacity(Math.max(oldIndex, newIndex) + 1);
+        for (int d = 0; d < D; d++) {
+            reference[d][newIndex] = reference[d][oldIndex];
+        }
+    }
+}
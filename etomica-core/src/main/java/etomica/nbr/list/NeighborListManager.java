@@ -22,6 +22,8 @@ import etomica.nbr.cell.NeighborCellManager;
 import etomica.potential.IPotentialAtomic;
 import etomica.space.Space;
 import etomica.util.Debug;
+import etomica.util.metrics.Metric;
+import etomica.util.metrics.MetricsRegistry;
 
 import java.util.List;
 import java.util.stream.IntStream;
@@ -47,6 +49,7 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
     private final NeighborListEventManager eventManager;
     private final CellLattice lattice;
     private final NeighborCellManager cellManager;
+    protected final NeighborDisplacementTracker displacementTracker;
     protected Box box;
     protected boolean initialized;
     private long numUnsafe;
@@ -56,6 +59,8 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
     private int iieCount;
     private boolean quiet;
     private boolean maintainDownLists = false;
+    private boolean doPairSkinCheck;
+    private Metric updateMetric;
 
     private static final boolean isParallel = Boolean.parseBoolean(System.getProperty("etomica.nbr.parallel"));
 
@@ -87,6 +92,9 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
             }
         });
 
+        displacementTracker = new NeighborDisplacementTracker(box);
+        displacementTracker.setParallel(isParallel);
+
         pbcEnforcer = new BoxImposePbc(space);
         pbcEnforcer.setBox(box);
         pbcEnforcer.setApplyToMolecules(false);
@@ -100,6 +108,32 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
         return cellManager;
     }
 
+    /**
+     * Returns the tracker used to check atom displacements against the
+     * neighbor skin.
+     */
+    public NeighborDisplacementTracker getDisplacementTracker() {
+        return displacementTracker;
+    }
+
+    /**
+     * Sets whether the decision to rebuild the lists considers the two atoms
+     * that moved the most together.  By default, the lists are rebuilt when
+     * any atom moves farther than safetyFactor*skin, as the criteria would
+     * decide individually.  With the pair check, the lists are rebuilt when
+     * the two largest displacements add up to more than 2*safetyFactor*skin,
+     * which is just as safe but rebuilds less often when only a few atoms
+     * move far.  The check only applies when all criteria are simple
+     * displacement criteria.
+     */
+    public void setDoPairSkinCheck(boolean newDoPairSkinCheck) {
+        doPairSkinCheck = newDoPairSkinCheck;
+    }
+
+    public boolean getDoPairSkinCheck() {
+        return doPairSkinCheck;
+    }
+
     public boolean getDoApplyPBC() {
         return doApplyPBC;
     }
@@ -148,8 +182,23 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
 
         boolean needUpdate = false;
         boolean unsafe = false;
+        double[] skin = (Debug.ON && Debug.DEBUG_NOW) ? null : potentialMaster.getSimpleCriteriaSkin();
+        if (skin != null) {
+            // all criteria are simple displacement checks, so we can check
+            // everything at once.  The lists remain valid as long as the two
+            // atoms that moved the most could not have closed the skin.
+            double maxPairDisplacement = displacementTracker.computeMaxPairDisplacement();
+            if (doPairSkinCheck) {
+                needUpdate = maxPairDisplacement > 2 * skin[1] * skin[0];
+            }
+            else {
+                double limit = skin[0] * skin[1];
+                needUpdate = displacementTracker.getLargestDisplacementSquared() > limit * limit;
+            }
+            unsafe = !quiet && maxPairDisplacement > skin[0];
+        }
         IAtomList leafList = box.getLeafList();
-        int nLeaf = leafList.size();
+        int nLeaf = skin == null ? leafList.size() : 0;
         for (int j = 0; j < nLeaf; j++) {
             IAtom atom = leafList.get(j);
 
@@ -184,11 +233,18 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
                     System.err.println();
                 }
             }
+            long t0 = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
             if (doApplyPBC) {
                 pbcEnforcer.actionPerformed();
             }
             neighborSetup();
             numUpdates++;
+            if (MetricsRegistry.ENABLED) {
+                if (updateMetric == null) {
+                    updateMetric = MetricsRegistry.getInstance().get("nbrlist.update");
+                }
+                updateMetric.addTime(System.nanoTime() - t0);
+            }
             eventManager.neighborsUpdated();
         }
     }
@@ -248,6 +304,8 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
             }
         }
 
+        displacementTracker.reset();
+
         cellManager.setDoApplyPBC(!doApplyPBC);
         cellManager.assignCellAll();
 
@@ -466,6 +524,7 @@ public class NeighborListManager implements IntegratorListener, AgentSource<Atom
     }
 
     public void dispose() {
+        box.getEventManager().removeListener(displacementTracker);
         agentManager1Body.dispose();
         agentManager2Body.dispose();
     }
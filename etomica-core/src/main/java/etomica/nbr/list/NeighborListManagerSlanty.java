@@ -56,6 +56,7 @@ public class NeighborListManagerSlanty extends NeighborListManager {
                 agentManager1Body.getAgent(atom).setIsInteracting(criteria.get(i).accept(atom, null), i);
             }
         }
+        displacementTracker.reset();
         
         IAtomList atomList = box.getLeafList();
         for (int iAtom = 0; iAtom<atomList.size()-1; iAtom++) {
@@ -14,13 +14,22 @@ import etomica.nbr.*;
 import etomica.nbr.cell.NeighborCellManager;
 import etomica.potential.*;
 import etomica.simulation.Simulation;
+import etomica.space.Boundary;
 import etomica.space.Space;
+import etomica.space.Tensor;
+import etomica.space.Vector;
 import etomica.species.ISpecies;
 import etomica.util.Debug;
+import etomica.util.metrics.Metric;
+import etomica.util.metrics.MetricsRegistry;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * PotentialMaster used to implement neighbor listing.  Instance of this
@@ -31,12 +40,22 @@ public class PotentialMasterList extends PotentialMasterNbr {
     private final Space space;
     private final AtomSetSinglet atomSetSinglet;
     private final AtomPair atomPair;
+    private final AtomArrayList nBodyAtomList;
     private final NeighborListAgentSource neighborListAgentSource;
     private final BoxAgentManager<NeighborListManager> neighborListAgentManager;
     private double range;
     private int cellRange;
     private double maxPotentialRange = 0;
     private double safetyFactor = 0.4;
+    private boolean isParallel = Boolean.parseBoolean(System.getProperty("etomica.nbr.parallel"));
+    private final Map<Class<?>, Boolean> simplePairClasses = new HashMap<>();
+    private final Map<Class<?>, Boolean> simpleCriterionClasses = new HashMap<>();
+    private final Map<Class<?>, Metric> calculateMetrics = new HashMap<>();
+    private IPotentialAtomic[][] pairMetricPotentials;
+    private Metric[][] pairMetrics;
+    private Vector[] chunkDr, chunkGradient;
+    private Tensor[] chunkPressureTensor;
+    private double[] chunkSum;
 
     /**
      * Default constructor uses range of 1.0.
@@ -57,6 +76,7 @@ public class PotentialMasterList extends PotentialMasterNbr {
         neighborListAgentManager = new BoxAgentManager<>(neighborListAgentSource, sim);
         atomSetSinglet = new AtomSetSinglet();
         atomPair = new AtomPair();
+        nBodyAtomList = new AtomArrayList();
         cellRange = 2;
 
         // setRange last.  that should always be OK since anyone can call
@@ -153,6 +173,41 @@ public class PotentialMasterList extends PotentialMasterNbr {
         }
     }
 
+    /**
+     * @return true if full-box energy, force and virial calculations are
+     * spread across threads
+     */
+    public boolean isParallel() {
+        return isParallel;
+    }
+
+    /**
+     * Sets whether full-box calculations are spread across threads (using
+     * the common fork-join pool).  The default is taken from the
+     * etomica.nbr.parallel system property, which also enables parallel
+     * neighbor list construction.
+     * <p>
+     * The parallel path is used for PotentialCalculationEnergySum,
+     * PotentialCalculationVirialSum, PotentialCalculationForceSum and
+     * PotentialCalculationForcePressureSum (but not subclasses) when every
+     * potential is a pair potential that extends Potential2SoftSpherical
+     * without overriding its energy, virial or gradient methods, and there are
+     * no 1-body or intramolecular potentials.  Otherwise the calculation is
+     * performed serially.  Atoms are divided into chunks, each handled by one
+     * thread.  For forces, each atom sums the force from its up and down
+     * neighbors, so each thread only writes the forces of its own atoms and
+     * no locking or reduction is needed (at the cost of computing each pair
+     * twice).  Energies, virials and pressure tensors are summed per chunk
+     * and then added together in order, so results can differ from the
+     * serial calculation by round-off.  As in the serial calculation, pairs
+     * closer than 1e-5 (r2 < 1e-10) contribute no force or pressure, since
+     * Potential2SoftSpherical.gradient returns zero for them; their energy
+     * and virial are included.
+     */
+    public void setParallel(boolean newIsParallel) {
+        isParallel = newIsParallel;
+    }
+
     public NeighborListManager getNeighborManager(Box box) {
         // we didn't have the simulation when we made the agent manager.
         // setting the simulation after the first time is a quick return
@@ -312,10 +367,53 @@ public class PotentialMasterList extends PotentialMasterNbr {
         }
     }
 
+    /**
+     * Returns the smallest neighbor skin (neighbor range minus interaction
+     * range) and the smallest safety factor of the ranged criteria, or null
+     * if some criterion has its own rule for when neighbor lists need
+     * updating (in which case each criterion must be asked about each atom).
+     */
+    double[] getSimpleCriteriaSkin() {
+        double skin = Double.POSITIVE_INFINITY;
+        double safety = Double.POSITIVE_INFINITY;
+        for (NeighborCriterion[] criteriaI : criteria) {
+            for (NeighborCriterion c : criteriaI) {
+                if (c == null) continue;
+                if (!isSimpleCriterion(c)) return null;
+                CriterionSimple rangedCriterion = getRangedCriterion(c);
+                skin = Math.min(skin, rangedCriterion.getNeighborRange() - rangedCriterion.getInteractionRange());
+                safety = Math.min(safety, rangedCriterion.getSafetyFactor());
+            }
+        }
+        if (skin == Double.POSITIVE_INFINITY) return null;
+        return new double[]{skin, safety};
+    }
+
+    /**
+     * Returns true if the criterion is a CriterionSimple, or adapters around
+     * one, that use CriterionSimple's update check unmodified.
+     */
+    private boolean isSimpleCriterion(NeighborCriterion criterion) {
+        return simpleCriterionClasses.computeIfAbsent(criterion.getClass(), c -> {
+            if (c == CriterionSimple.class) return true;
+            if (!CriterionAdapter.class.isAssignableFrom(c)) return false;
+            try {
+                return c.getMethod("needUpdate", IAtom.class).getDeclaringClass() == CriterionAdapter.class
+                        && c.getMethod("reset", IAtom.class).getDeclaringClass() == CriterionAdapter.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }) && (!(criterion instanceof CriterionAdapter)
+                || isSimpleCriterion(((CriterionAdapter) criterion).getWrappedCriterion()));
+    }
+
     public void calculate(Box box, PotentialCalculation pc, boolean includeLrc) {
         // invoke setBox on all potentials
         setBoxForPotentials(box);
         NeighborListManager nbrManager = neighborListAgentManager.getAgent(box);
+        if (isParallel && calculateParallel(box, pc, nbrManager)) {
+            return;
+        }
         IAtomList atoms = box.getLeafList();
         for (int i = 0; i < atoms.size(); i++) {
             calculateUp(atoms.get(i), pc, nbrManager);
@@ -353,7 +451,11 @@ public class PotentialMasterList extends PotentialMasterNbr {
                 throw new IllegalArgumentException("When there is no target, iterator directive must be up");
             }
 
+            long t0 = MetricsRegistry.ENABLED ? System.nanoTime() : 0;
             calculate(box, pc, id.includeLrc);
+            if (MetricsRegistry.ENABLED) {
+                calculateMetric(pc).addTime(System.nanoTime() - t0);
+            }
         } else {
             NeighborListManager neighborManager = neighborListAgentManager.getAgent(box);
             if (id.direction() != IteratorDirective.Direction.UP) {
@@ -425,10 +527,41 @@ public class PotentialMasterList extends PotentialMasterNbr {
         }
     }
 
+    /**
+     * Returns the metric for full-box calculations with the given
+     * PotentialCalculation's class.
+     */
+    private Metric calculateMetric(PotentialCalculation pc) {
+        Metric metric = calculateMetrics.get(pc.getClass());
+        if (metric == null) {
+            metric = MetricsRegistry.getInstance().get("calculate." + pc.getClass().getSimpleName());
+            calculateMetrics.put(pc.getClass(), metric);
+        }
+        return metric;
+    }
+
+    /**
+     * Returns the metric counting pairs for the ranged potential between the
+     * given atom types, looking it up again only if the potential changed.
+     */
+    private Metric pairMetric(int typeIdx1, int typeIdx2) {
+        if (pairMetrics == null) {
+            pairMetrics = new Metric[rangedPotentials.length][rangedPotentials.length];
+            pairMetricPotentials = new IPotentialAtomic[rangedPotentials.length][rangedPotentials.length];
+        }
+        IPotentialAtomic p = rangedPotentials[typeIdx1][typeIdx2];
+        if (pairMetricPotentials[typeIdx1][typeIdx2] != p) {
+            pairMetrics[typeIdx1][typeIdx2] = MetricsRegistry.getInstance().get("pairs." + p.getClass().getSimpleName());
+            pairMetricPotentials[typeIdx1][typeIdx2] = p;
+        }
+        return pairMetrics[typeIdx1][typeIdx2];
+    }
+
     private void calculateUp(IAtom atom, PotentialCalculation pc, NeighborListManager neighborManager) {
         calculate1Body(atom, pc, neighborManager);
 
-        IPotentialAtomic[] potentials = rangedPotentials[atom.getType().getIndex()];
+        int typeIdx = atom.getType().getIndex();
+        IPotentialAtomic[] potentials = rangedPotentials[typeIdx];
         for (int i = 0; i < potentials.length; i++) {
             if (potentials[i] == null) continue;
             IAtomList list = neighborManager.getUpList(atom)[i];
@@ -438,6 +571,9 @@ public class PotentialMasterList extends PotentialMasterNbr {
                 atomPair.atom1 = list.get(j);
                 pc.doCalculation(atomPair, potentials[i]);
             }
+            if (MetricsRegistry.ENABLED) {
+                pairMetric(typeIdx, i).add(nNeighbors);
+            }
         }
     }
 
@@ -476,7 +612,7 @@ public class PotentialMasterList extends PotentialMasterNbr {
         }
     }
 
-    private static void calculateNBody(IAtom atom, IteratorDirective.Direction direction, PotentialCalculation pc, NeighborListManager neighborManager, IPotentialAtomic potential, int i) {
+    private void calculateNBody(IAtom atom, IteratorDirective.Direction direction, PotentialCalculation pc, NeighborListManager neighborManager, IPotentialAtomic potential, int i) {
         // do the calculation considering the current Atom as the
         // "central" Atom.
         doNBodyStuff(atom, pc, i, potential, neighborManager);
@@ -501,17 +637,178 @@ public class PotentialMasterList extends PotentialMasterNbr {
      * Invokes the PotentialCalculation for the given Atom with its up and down
      * neighbors as a single AtomSet.
      */
-    private static void doNBodyStuff(IAtom atom, PotentialCalculation pc, int potentialIndex,
+    private void doNBodyStuff(IAtom atom, PotentialCalculation pc, int potentialIndex,
                               IPotentialAtomic potential, NeighborListManager neighborManager) {
         IAtomList upList = neighborManager.getUpList(atom)[potentialIndex];
         IAtomList downList = neighborManager.getDownList(atom)[potentialIndex];
 
-        // Pre-sizing avoids array reallocs in addAll, it can simply do System.arrayCopy each time
-        AtomArrayList atomList = new AtomArrayList(upList.size() + downList.size() + 1);
-        atomList.add(atom);
-        atomList.addAll(upList);
-        atomList.addAll(downList);
-        pc.doCalculation(atomList, potential);
+        // the list is reused for every atom; ensuring capacity up front lets
+        // addAll simply do System.arrayCopy each time
+        nBodyAtomList.clear();
+        nBodyAtomList.ensureCapacity(upList.size() + downList.size() + 1);
+        nBodyAtomList.add(atom);
+        nBodyAtomList.addAll(upList);
+        nBodyAtomList.addAll(downList);
+        pc.doCalculation(nBodyAtomList, potential);
     }
 
+    /**
+     * Performs the calculation for all pairs in the box on multiple threads,
+     * if the calculation and potentials allow it (see setParallel).
+     *
+     * @return true if the calculation was performed, false if it needs to be
+     * done serially
+     */
+    private boolean calculateParallel(Box box, PotentialCalculation pc, NeighborListManager nbrManager) {
+        Class<?> pcClass = pc.getClass();
+        boolean doEnergy = pcClass == PotentialCalculationEnergySum.class;
+        boolean doVirial = pcClass == PotentialCalculationVirialSum.class;
+        boolean doPressure = pcClass == PotentialCalculationForcePressureSum.class;
+        boolean doForce = doPressure || pcClass == PotentialCalculationForceSum.class;
+        if (!(doEnergy || doVirial || doForce) || !isPairwiseSimple()) {
+            return false;
+        }
+        if (doForce) {
+            nbrManager.ensureDownLists();
+        }
+
+        IAtomList atoms = box.getLeafList();
+        int nAtoms = atoms.size();
+        if (nAtoms == 0) {
+            return true;
+        }
+        int nChunks = Math.min(nAtoms, 4 * ForkJoinPool.getCommonPoolParallelism());
+        if (chunkSum == null || chunkSum.length != nChunks) {
+            chunkSum = new double[nChunks];
+            chunkDr = new Vector[nChunks];
+            chunkGradient = new Vector[nChunks];
+            chunkPressureTensor = new Tensor[nChunks];
+            for (int i = 0; i < nChunks; i++) {
+                chunkDr[i] = space.makeVector();
+                chunkGradient[i] = space.makeVector();
+                chunkPressureTensor[i] = space.makeTensor();
+            }
+        }
+        Boundary boundary = box.getBoundary();
+        AtomLeafAgentManager<Vector> forceManager = doForce ? ((PotentialCalculationForceSum) pc).getAgentManager() : null;
+
+        IntStream.range(0, nChunks).parallel().forEach(iChunk -> {
+            Vector dr = chunkDr[iChunk];
+            Vector gradient = chunkGradient[iChunk];
+            Tensor pressureTensor = chunkPressureTensor[iChunk];
+            pressureTensor.E(0);
+            double sum = 0;
+            int start = (int) ((long) nAtoms * iChunk / nChunks);
+            int end = (int) ((long) nAtoms * (iChunk + 1) / nChunks);
+            for (int i = start; i < end; i++) {
+                IAtom atom = atoms.get(i);
+                Vector ri = atom.getPosition();
+                IPotentialAtomic[] potentials = rangedPotentials[atom.getType().getIndex()];
+                IAtomList[] upLists = nbrManager.getUpList(atom);
+                IAtomList[] downLists = doForce ? nbrManager.getDownList(atom) : null;
+                Vector fi = doForce ? forceManager.getAgent(atom) : null;
+                for (int p = 0; p < potentials.length; p++) {
+                    Potential2SoftSpherical p2 = (Potential2SoftSpherical) potentials[p];
+                    if (p2 == null) continue;
+                    IAtomList list = upLists[p];
+                    for (int j = 0; j < list.size(); j++) {
+                        dr.Ev1Mv2(list.get(j).getPosition(), ri);
+                        boundary.nearestImage(dr);
+                        double r2 = dr.squared();
+                        if (doEnergy) {
+                            sum += p2.u(r2);
+                            continue;
+                        }
+                        double du = p2.du(r2);
+                        if (doVirial) {
+                            sum += du;
+                            continue;
+                        }
+                        // Potential2SoftSpherical.gradient is zero here
+                        if (r2 < 1.e-10) continue;
+                        fi.PEa1Tv1(du / r2, dr);
+                        if (doPressure) {
+                            gradient.Ea1Tv1(-du / r2, dr);
+                            pressureTensor.PEv1v2(gradient, dr);
+                        }
+                    }
+                    if (!doForce) continue;
+                    list = downLists[p];
+                    for (int j = 0; j < list.size(); j++) {
+                        dr.Ev1Mv2(list.get(j).getPosition(), ri);
+                        boundary.nearestImage(dr);
+                        double r2 = dr.squared();
+                        if (r2 < 1.e-10) continue;
+                        fi.PEa1Tv1(p2.du(r2) / r2, dr);
+                    }
+                }
+            }
+            chunkSum[iChunk] = sum;
+        });
+
+        if (MetricsRegistry.ENABLED) {
+            // count pairs as the serial calculation does, from the up lists
+            for (int i = 0; i < nAtoms; i++) {
+                IAtom atom = atoms.get(i);
+                int typeIdx = atom.getType().getIndex();
+                IPotentialAtomic[] potentials = rangedPotentials[typeIdx];
+                IAtomList[] upLists = nbrManager.getUpList(atom);
+                for (int p = 0; p < potentials.length; p++) {
+                    if (potentials[p] != null) {
+                        pairMetric(typeIdx, p).add(upLists[p].size());
+                    }
+                }
+            }
+        }
+
+        double sum = 0;
+        for (int i = 0; i < nChunks; i++) {
+            sum += chunkSum[i];
+        }
+        if (doEnergy) {
+            ((PotentialCalculationEnergySum) pc).addToSum(sum);
+        }
+        else if (doVirial) {
+            ((PotentialCalculationVirialSum) pc).addToSum(sum);
+        }
+        else if (doPressure) {
+            Tensor pressureTensor = ((PotentialCalculationForcePressureSum) pc).getPressureTensor();
+            for (int i = 0; i < nChunks; i++) {
+                pressureTensor.PE(chunkPressureTensor[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if all potentials are pair potentials that the parallel
+     * path can evaluate directly from u(r2) and du(r2), and there are no
+     * 1-body or intramolecular potentials.
+     */
+    private boolean isPairwiseSimple() {
+        for (int i = 0; i < rangedPotentials.length; i++) {
+            if (!rangedPotentials1Body[i].isEmpty()) return false;
+            for (IPotentialAtomic p : rangedPotentials[i]) {
+                if (p != null && !isSimplePair(p)) return false;
+            }
+        }
+        for (int i = 0; i < simulation.getSpeciesCount(); i++) {
+            if (getIntraPotentials(simulation.getSpecies(i)).getPotentials().length > 0) return false;
+        }
+        return true;
+    }
+
+    private boolean isSimplePair(IPotentialAtomic p) {
+        return simplePairClasses.computeIfAbsent(p.getClass(), c -> {
+            if (!Potential2SoftSpherical.class.isAssignableFrom(c)) return false;
+            try {
+                return c.getMethod("energy", IAtomList.class).getDeclaringClass() == Potential2SoftSpherical.class
+                        && c.getMethod("virial", IAtomList.class).getDeclaringClass() == Potential2SoftSpherical.class
+                        && c.getMethod("gradient", IAtomList.class).getDeclaringClass() == Potential2SoftSpherical.class
+                        && c.getMethod("gradient", IAtomList.class, Tensor.class).getDeclaringClass() == Potential2SoftSpherical.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        });
+    }
 }
@@ -26,6 +26,8 @@ public class PotentialMasterSite extends PotentialMasterNbr {
     private final BoxAgentManager<NeighborIterator> neighborIterators;
     private int cellRange;
     private final BoxAgentManager<NeighborSiteManager> neighborSiteManagers;
+    private final NeighborPairCalculation upCalculation, downCalculation;
+    private final AtomSetSinglet atomSetSinglet;
 
 	/**
 	 * Invokes superclass constructor, specifying IteratorFactoryCell
@@ -41,6 +43,9 @@ public class PotentialMasterSite extends PotentialMasterNbr {
         super(sim);
         this.neighborSiteManagers = new BoxAgentManager<>(sim, box -> new NeighborSiteManager(box, nCells));
         this.neighborIterators = new BoxAgentManager<>(sim, box -> new NeighborIteratorSite(neighborSiteManagers.getAgent(box), box));
+        upCalculation = new NeighborPairCalculation(true);
+        downCalculation = new NeighborPairCalculation(false);
+        atomSetSinglet = new AtomSetSinglet();
 	}
     
     /**
@@ -168,21 +173,9 @@ public class PotentialMasterSite extends PotentialMasterNbr {
         NeighborCriterion[] myCriteria = criteria[atom.getType().getIndex()];
         IPotentialAtomic[] potentials = rangedPotentials[atom.getType().getIndex()];
 
-        neighborIterator.forEachNeighbor(atom, direction,
-                (targetAtom, otherAtom) -> {
-                    NeighborCriterion criterion = myCriteria[otherAtom.getType().getIndex()];
-                    if (criterion != null && criterion.accept(targetAtom, otherAtom)) {
-                        pc.doCalculation(new AtomPair(targetAtom, otherAtom), potentials[otherAtom.getType().getIndex()]);
-                    }
-                },
-                (otherAtom, targetAtom) -> {
-                    NeighborCriterion criterion = myCriteria[otherAtom.getType().getIndex()];
-                    if (criterion != null && criterion.accept(otherAtom, targetAtom)) {
-                        pc.doCalculation(new AtomPair(otherAtom, targetAtom), potentials[otherAtom.getType().getIndex()]);
-                    }
-                }
-        );
-
+        upCalculation.reset(myCriteria, potentials, pc);
+        downCalculation.reset(myCriteria, potentials, pc);
+        neighborIterator.forEachNeighbor(atom, direction, upCalculation, downCalculation);
     }
 
     private void calculate1Body(IAtom atom, PotentialCalculation pc) {
@@ -191,7 +184,8 @@ public class PotentialMasterSite extends PotentialMasterNbr {
             List<NeighborCriterion> criteria1 = criteria1Body[atom.getType().getIndex()];
             for (int i = 0; i < potentials1.size(); i++) {
                 if (criteria1.get(i).accept(atom, null)) {
-                    pc.doCalculation(new AtomSetSinglet(atom), potentials1.get(i));
+                    atomSetSinglet.atom = atom;
+                    pc.doCalculation(atomSetSinglet, potentials1.get(i));
                 }
             }
         }
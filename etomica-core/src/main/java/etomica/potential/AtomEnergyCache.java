@@ -0,0 +1,455 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.atom.iterator.AtomIterator;
+import etomica.box.Box;
+import etomica.integrator.IntegratorMC;
+import etomica.integrator.mcmove.MCMoveEvent;
+import etomica.integrator.mcmove.MCMoveTrialCompletedEvent;
+import etomica.util.IListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Caches the energy of each atom in a box (its 1-body energy and its share of
+ * every pair it belongs to), so that a single-atom Monte Carlo trial only
+ * needs to compute the energy of the new configuration.  The cache holds the
+ * energy of each pair an atom belongs to, so when a move is accepted, the
+ * energies of the moved atom's old and new partners can be updated without
+ * computing the old energies again.
+ * <p>
+ * The cache is constructed for an IntegratorMC and listens to that
+ * integrator's move events, so that it hears about every accepted move.
+ * Moves that use the cache (MCMoveAtom with setEnergyCache) compute the new
+ * energy with computeEnergy; when such a move is accepted, the pair energies
+ * found then are used directly.  For other accepted moves, the affected atoms
+ * are recomputed the next time the cache is used.  Atoms added to or removed
+ * from the box are handled as well.  Call dispose when the cache is no longer
+ * needed.
+ * <p>
+ * Only 1-body and 2-body potentials can be cached.  Long-range corrections
+ * are not included.  With setCheckEnergies(true), each cached energy is
+ * checked against a direct calculation, which is useful for testing a new
+ * move or potential with the cache.
+ */
+public class AtomEnergyCache implements AtomLeafAgentManager.AgentSource<AtomEnergyCache.AtomEnergy> {
+
+    protected final IntegratorMC integrator;
+    protected final PotentialMaster potentialMaster;
+    protected final Box box;
+    protected final IListener<MCMoveEvent> moveListener;
+    protected final AtomLeafAgentManager<AtomEnergy> agentManager;
+    protected final IteratorDirective id;
+    protected final PotentialCalculationEnergySum energySum;
+    protected final List<AtomEnergy> stale;
+    protected boolean allStale;
+    protected boolean checkEnergies;
+    protected double checkTolerance;
+
+    // pair energies from the last call to computeEnergy
+    protected AtomEnergy pendingAtom;
+    protected double pendingSelf;
+    protected int nPending;
+    protected AtomEnergy[] pendingPartners;
+    protected double[] pendingEnergies;
+
+    /**
+     * Creates a cache for the integrator's box and potential master, and
+     * registers it with the integrator's move event manager.
+     */
+    public AtomEnergyCache(IntegratorMC integrator) {
+        this.integrator = integrator;
+        potentialMaster = integrator.getPotentialMaster();
+        box = integrator.getBox();
+        id = new IteratorDirective();
+        id.setIncludeLrc(false);
+        energySum = new PotentialCalculationEnergySum();
+        stale = new ArrayList<>();
+        pendingPartners = new AtomEnergy[16];
+        pendingEnergies = new double[16];
+        checkTolerance = 1e-8;
+        allStale = true;
+        agentManager = new AtomLeafAgentManager<>(this, box);
+        moveListener = evt -> {
+            if (evt instanceof MCMoveTrialCompletedEvent) {
+                if (((MCMoveTrialCompletedEvent) evt).isAccepted()) {
+                    moveAccepted(evt.getMCMove().affectedAtoms(box));
+                }
+                pendingAtom = null;
+                nPending = 0;
+            }
+        };
+        integrator.getMoveEventManager().addListener(moveListener);
+    }
+
+    /**
+     * Unregisters the cache from the integrator and the box.  The cache
+     * should not be used afterwards.
+     */
+    public void dispose() {
+        integrator.getMoveEventManager().removeListener(moveListener);
+        agentManager.dispose();
+    }
+
+    public Box getBox() {
+        return box;
+    }
+
+    /**
+     * Sets whether each energy returned by getEnergy is checked against a
+     * direct calculation.  An IllegalStateException is thrown if they differ
+     * by more than the tolerance (relative to the magnitude of the energy).
+     */
+    public void setCheckEnergies(boolean newCheckEnergies) {
+        checkEnergies = newCheckEnergies;
+    }
+
+    public boolean getCheckEnergies() {
+        return checkEnergies;
+    }
+
+    public void setCheckTolerance(double newCheckTolerance) {
+        checkTolerance = newCheckTolerance;
+    }
+
+    public double getCheckTolerance() {
+        return checkTolerance;
+    }
+
+    /**
+     * Discards all cached energies.  They will be recomputed the next time
+     * the cache is used.  This must be called if atoms are moved without an
+     * MC move event (configuration changes, box size changes outside of a
+     * move, potential changes, etc.).
+     */
+    public void reset() {
+        allStale = true;
+        nPending = 0;
+        pendingAtom = null;
+    }
+
+    /**
+     * Marks the atom's cached energy as out of date, perhaps because it was
+     * moved outside of an MC move.  Its energy and those of its partners are
+     * recomputed the next time the cache is used.
+     */
+    public void notifyAtomMoved(IAtom atom) {
+        AtomEnergy agent = agentManager.getAgent(atom);
+        if (agent != null && agent.atom == atom && !agent.stale) {
+            agent.stale = true;
+            stale.add(agent);
+        }
+    }
+
+    /**
+     * Returns the (cached) energy of the atom: its 1-body energy and the sum
+     * of the energies of all the pairs it belongs to.
+     */
+    public double getEnergy(IAtom atom) {
+        update();
+        AtomEnergy agent = agentManager.getAgent(atom);
+        double u = agent.uSelf;
+        for (int i = 0; i < agent.n; i++) {
+            u += agent.uPair[i];
+        }
+        if (checkEnergies) {
+            energySum.zeroSum();
+            setTarget(atom);
+            potentialMaster.calculate(box, id, energySum);
+            double uDirect = energySum.getSum();
+            if (!(Math.abs(u - uDirect) <= checkTolerance * (1 + Math.abs(uDirect))) && !(u == uDirect)) {
+                throw new IllegalStateException("cached energy " + u + " for " + atom + " does not match direct calculation " + uDirect);
+            }
+        }
+        return u;
+    }
+
+    /**
+     * Computes the energy of the atom in the current configuration, without
+     * changing the cache.  The pair energies are kept so that they can be
+     * used to update the cache if the atom's move is accepted.
+     */
+    public double computeEnergy(IAtom atom) {
+        update();
+        pendingAtom = agentManager.getAgent(atom);
+        pendingSelf = 0;
+        nPending = 0;
+        setTarget(atom);
+        potentialMaster.calculate(box, id, pendingCalc);
+        double u = pendingSelf;
+        for (int i = 0; i < nPending; i++) {
+            u += pendingEnergies[i];
+        }
+        return u;
+    }
+
+    /**
+     * Brings the cache up to date: recomputes everything if needed, or
+     * otherwise the energies of atoms that have been marked as stale.
+     */
+    protected void update() {
+        if (allStale) {
+            rebuild();
+            return;
+        }
+        for (int i = 0; i < stale.size(); i++) {
+            AtomEnergy agent = stale.get(i);
+            agent.stale = false;
+            clearPairs(agent);
+            setTarget(agent.atom);
+            potentialMaster.calculate(box, id, pairCalc);
+        }
+        stale.clear();
+    }
+
+    protected void setTarget(IAtom atom) {
+        id.setTargetAtom(atom);
+        id.setDirection(atom == null ? IteratorDirective.Direction.UP : null);
+    }
+
+    protected void rebuild() {
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            AtomEnergy agent = agentManager.getAgent(atoms.get(i));
+            agent.uSelf = 0;
+            Arrays.fill(agent.partners, 0, agent.n, null);
+            agent.n = 0;
+            agent.stale = false;
+        }
+        stale.clear();
+        setTarget(null);
+        potentialMaster.calculate(box, id, pairCalc);
+        allStale = false;
+    }
+
+    /**
+     * Updates the cache for an accepted move, using the pair energies from
+     * computeEnergy if they apply.
+     */
+    protected void moveAccepted(AtomIterator affectedAtoms) {
+        if (allStale) return;
+        int nAffected = affectedAtoms.size();
+        if (nAffected > box.getLeafList().size() / 4) {
+            // cheaper to start over
+            allStale = true;
+            return;
+        }
+        affectedAtoms.reset();
+        for (IAtom atom = affectedAtoms.nextAtom(); atom != null; atom = affectedAtoms.nextAtom()) {
+            AtomEnergy agent = agentManager.getAgent(atom);
+            if (agent == null || agent.atom != atom) {
+                // atom was removed from the box
+                continue;
+            }
+            if (nAffected == 1 && agent == pendingAtom && !agent.stale) {
+                applyPending(agent);
+            }
+            else if (!agent.stale) {
+                agent.stale = true;
+                stale.add(agent);
+            }
+        }
+    }
+
+    /**
+     * Replaces the atom's pair energies with those found by computeEnergy.
+     * Most partners are typically the same before and after a move, so their
+     * pairs are updated in place.
+     */
+    protected void applyPending(AtomEnergy agent) {
+        // mark existing partners with their position in our list
+        boolean duplicates = false;
+        for (int i = 0; i < agent.n; i++) {
+            duplicates = duplicates || agent.partners[i].mark != 0;
+            agent.partners[i].mark = i + 1;
+        }
+        if (duplicates) {
+            // more than one pair with some partner; just start over
+            for (int i = 0; i < agent.n; i++) {
+                agent.partners[i].mark = 0;
+            }
+            clearPairs(agent);
+            for (int i = 0; i < nPending; i++) {
+                addPair(agent, pendingPartners[i], pendingEnergies[i]);
+            }
+            agent.uSelf = pendingSelf;
+            return;
+        }
+        agent.uSelf = pendingSelf;
+        for (int i = 0; i < nPending; i++) {
+            AtomEnergy partner = pendingPartners[i];
+            int slot = partner.mark - 1;
+            if (slot >= 0) {
+                agent.uPair[slot] = pendingEnergies[i];
+                partner.uPair[agent.reverse[slot]] = pendingEnergies[i];
+                partner.mark = -1;
+            }
+            else if (slot == -1) {
+                addPair(agent, partner, pendingEnergies[i]);
+                partner.mark = -1;
+            }
+            else {
+                // a second pair with the same partner (from another potential)
+                addPair(agent, partner, pendingEnergies[i]);
+            }
+        }
+        // remove pairs with partners that are gone, and unmark the others
+        for (int i = agent.n - 1; i >= 0; i--) {
+            AtomEnergy partner = agent.partners[i];
+            if (partner.mark > 0) {
+                partner.removeSlot(agent.reverse[i]);
+                agent.removeSlot(i);
+            }
+            partner.mark = 0;
+        }
+    }
+
+    /**
+     * Adds a pair energy to both atoms' lists.
+     */
+    protected static void addPair(AtomEnergy a, AtomEnergy b, double u) {
+        a.ensureCapacity();
+        b.ensureCapacity();
+        int ia = a.n++, ib = b.n++;
+        a.partners[ia] = b;
+        a.uPair[ia] = u;
+        a.reverse[ia] = ib;
+        b.partners[ib] = a;
+        b.uPair[ib] = u;
+        b.reverse[ib] = ia;
+    }
+
+    /**
+     * Removes all of the atom's pair energies, from its own list and from
+     * its partners' lists.
+     */
+    protected static void clearPairs(AtomEnergy a) {
+        for (int i = a.n - 1; i >= 0; i--) {
+            a.partners[i].removeSlot(a.reverse[i]);
+            a.partners[i] = null;
+        }
+        a.n = 0;
+        a.uSelf = 0;
+    }
+
+    public AtomEnergy makeAgent(IAtom a, Box agentBox) {
+        AtomEnergy agent = new AtomEnergy(a);
+        if (!allStale) {
+            // the atom probably isn't where it will be yet; compute it later
+            agent.stale = true;
+            stale.add(agent);
+        }
+        return agent;
+    }
+
+    public void releaseAgent(AtomEnergy agent, IAtom atom, Box agentBox) {
+        clearPairs(agent);
+        if (agent.stale) {
+            stale.remove(agent);
+        }
+        if (pendingAtom == agent) {
+            pendingAtom = null;
+        }
+    }
+
+    /**
+     * Records 1-body and pair energies into the cache.
+     */
+    protected final PotentialCalculation pairCalc = new PotentialCalculation() {
+        public void doCalculation(IAtomList atoms, IPotentialAtomic potential) {
+            double u = potential.energy(atoms);
+            if (atoms.size() == 1) {
+                agentManager.getAgent(atoms.get(0)).uSelf += u;
+            }
+            else if (atoms.size() == 2) {
+                if (u == 0) return;
+                addPair(agentManager.getAgent(atoms.get(0)), agentManager.getAgent(atoms.get(1)), u);
+            }
+            else {
+                throw new IllegalStateException("only 1-body and 2-body energies can be cached");
+            }
+        }
+    };
+
+    /**
+     * Records pair energies for the target atom without changing the cache.
+     */
+    protected final PotentialCalculation pendingCalc = new PotentialCalculation() {
+        public void doCalculation(IAtomList atoms, IPotentialAtomic potential) {
+            double u = potential.energy(atoms);
+            if (atoms.size() == 1) {
+                pendingSelf += u;
+            }
+            else if (atoms.size() == 2) {
+                if (u == 0) return;
+                AtomEnergy partner = agentManager.getAgent(atoms.get(0));
+                if (partner == pendingAtom) partner = agentManager.getAgent(atoms.get(1));
+                if (nPending == pendingPartners.length) {
+                    pendingPartners = Arrays.copyOf(pendingPartners, nPending * 2);
+                    pendingEnergies = Arrays.copyOf(pendingEnergies, nPending * 2);
+                }
+                pendingPartners[nPending] = partner;
+                pendingEnergies[nPending] = u;
+                nPending++;
+            }
+            else {
+                throw new IllegalStateException("only 1-body and 2-body energies can be cached");
+            }
+        }
+    };
+
+    /**
+     * Cached energies for one atom.  Each pair is held by both atoms;
+     * reverse[i] is the position of this atom in partners[i]'s list.
+     */
+    public static class AtomEnergy {
+        protected final IAtom atom;
+        protected double uSelf;
+        protected int n;
+        protected AtomEnergy[] partners;
+        protected double[] uPair;
+        protected int[] reverse;
+        protected boolean stale;
+        // scratch used while updating pairs
+        protected int mark;
+
+        public AtomEnergy(IAtom atom) {
+            this.atom = atom;
+            partners = new AtomEnergy[8];
+            uPair = new double[8];
+            reverse = new int[8];
+        }
+
+        protected void ensureCapacity() {
+            if (n == partners.length) {
+                partners = Arrays.copyOf(partners, n * 2);
+                uPair = Arrays.copyOf(uPair, n * 2);
+                reverse = Arrays.copyOf(reverse, n * 2);
+            }
+        }
+
+        /**
+         * Removes the pair at the given position from this atom's list only,
+         * filling the hole with the last pair.
+         */
+        protected void removeSlot(int slot) {
+            int last = --n;
+            if (slot != last) {
+                AtomEnergy moved = partners[last];
+                partners[slot] = moved;
+                uPair[slot] = uPair[last];
+                reverse[slot] = reverse[last];
+                moved.reverse[reverse[slot]] = slot;
+            }
+            partners[last] = null;
+        }
+    }
+}
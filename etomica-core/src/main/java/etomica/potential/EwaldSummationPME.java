@@ -0,0 +1,746 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.math.numerical.FastFourierTransform3D;
+import etomica.molecule.IMolecule;
+import etomica.molecule.IMoleculeList;
+import etomica.potential.EwaldSummation.MyCharge;
+import etomica.space.Space;
+import etomica.space.Tensor;
+import etomica.space.Vector;
+import org.apache.commons.math3.special.Erf;
+
+import java.util.Arrays;
+
+/**
+ * Smooth particle-mesh Ewald summation (Essmann et al., J. Chem. Phys. 103,
+ * 8577 (1995)) for the electrostatic energy of a rectangular periodic box.
+ * This computes the same quantity as {@link EwaldSummation} (real-space,
+ * Fourier, self and intramolecular correction terms, with charges taken from
+ * the same agent manager), but the Fourier part spreads the charges onto a
+ * grid with cardinal B-splines and uses FFTs, so that it scales as
+ * N log N instead of N times the number of k-vectors.  The real-space part
+ * uses cell lists, so it scales as N.
+ * <p>
+ * The grid may have any size in each direction, but sizes that are powers of
+ * 2 are much faster, since FastFourierTransform3D uses a direct transform
+ * for other sizes.  Accuracy is controlled by alpha, the real-space cutoff
+ * (which must not exceed half the box length), the grid spacing and the
+ * spline order; a grid spacing of ~1 Angstrom with order 6 is usually
+ * comparable to a conventional Ewald sum with the same alpha.
+ * <p>
+ * As with EwaldSummation, the real-space part can instead be handled by a
+ * PotentialMaster (with neighbor lists) via {@link #makeP2EwaldReal()}.
+ */
+public class EwaldSummationPME implements PotentialSoft {
+
+    protected final Space space;
+    protected final AtomLeafAgentManager<MyCharge> atomAgentManager;
+    protected final Box box;
+    protected final IMoleculeList moleculeList;
+    protected double alpha, alpha2;
+    protected double rCutRealES, rCutSquared;
+    protected final double sqrtPI = Math.sqrt(Math.PI);
+    protected boolean doRealSum = true;
+
+    protected final int order;
+    protected final int[] gridSize;
+    protected final FastFourierTransform3D fft;
+    protected final double[] gridRe, gridIm;
+    // |b(m)|^2 from Essmann eq 4.4, for each dimension
+    protected final double[][] bsplineModuli;
+    // influence function, cached for the box size and alpha used to compute it
+    protected final double[] influence;
+    protected final double[] influenceBoxSize;
+    protected double influenceAlpha;
+
+    // per-atom scratch: charges, spline weights and their derivatives, and
+    // grid indices for each dimension
+    protected double[] charges;
+    protected double[][] theta, dtheta;
+    protected int[][] gridIndex;
+    protected Vector[] gradient;
+    protected final double[] splineScratch, dsplineScratch;
+
+    // real-space cell list
+    protected int[] cellHead, cellNext;
+    // erfc(x) and its derivative tabulated for x up to alpha*rCut
+    protected double[] erfcTable, erfcSlopeTable;
+    protected static final double ERFC_TABLE_SCALE = 1024;
+
+    protected final Vector rAB;
+    protected final double[] kVector = new double[3];
+    protected double lastVirial;
+
+    /**
+     * @param box              the box
+     * @param atomAgentManager holds the charge of each atom
+     * @param _space           the space
+     * @param rCutRealES       real-space cutoff
+     * @param alpha            Ewald splitting parameter (as for EwaldSummation)
+     * @param gridSize         number of grid points in each direction;
+     *                         powers of 2 are fastest
+     * @param order            order of the B-splines (at least 3; 4 to 8 are
+     *                         typical)
+     */
+    public EwaldSummationPME(Box box, AtomLeafAgentManager<MyCharge> atomAgentManager, Space _space,
+                             double rCutRealES, double alpha, int[] gridSize, int order) {
+        if (_space.D() != 3) {
+            throw new IllegalArgumentException("PME is only implemented for 3D");
+        }
+        if (order < 3) {
+            throw new IllegalArgumentException("spline order must be at least 3");
+        }
+        this.box = box;
+        this.atomAgentManager = atomAgentManager;
+        this.space = _space;
+        this.order = order;
+        this.gridSize = gridSize.clone();
+        moleculeList = box.getMoleculeList();
+        setRCut(rCutRealES);
+        setAlpha(alpha);
+
+        fft = new FastFourierTransform3D(gridSize[0], gridSize[1], gridSize[2]);
+        int nGrid = gridSize[0] * gridSize[1] * gridSize[2];
+        gridRe = new double[nGrid];
+        gridIm = new double[nGrid];
+        influence = new double[nGrid];
+        influenceBoxSize = new double[3];
+        splineScratch = new double[order];
+        dsplineScratch = new double[order];
+        bsplineModuli = new double[3][];
+        for (int d = 0; d < 3; d++) {
+            bsplineModuli[d] = computeBSplineModuli(gridSize[d]);
+        }
+
+        charges = new double[0];
+        theta = new double[3][0];
+        dtheta = new double[3][0];
+        gridIndex = new int[3][0];
+        gradient = new Vector[0];
+        cellHead = new int[0];
+        cellNext = new int[0];
+        rAB = space.makeVector();
+    }
+
+    /**
+     * Sets a new value of rCutRealES.  This does not alter alpha.
+     */
+    public void setRCut(double newRCutRealES) {
+        rCutRealES = newRCutRealES;
+        rCutSquared = rCutRealES * rCutRealES;
+        makeErfcTable();
+    }
+
+    /**
+     * Returns real-space cutoff
+     */
+    public double getRCut() {
+        return rCutRealES;
+    }
+
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+        alpha2 = alpha * alpha;
+        makeErfcTable();
+    }
+
+    /**
+     * Tabulates erfc for the real-space sum, which would otherwise dominate
+     * the cost of the whole calculation.
+     */
+    protected void makeErfcTable() {
+        int n = (int) Math.ceil(alpha * rCutRealES * ERFC_TABLE_SCALE) + 2;
+        erfcTable = new double[n];
+        erfcSlopeTable = new double[n];
+        for (int i = 0; i < n; i++) {
+            double x = i / ERFC_TABLE_SCALE;
+            erfcTable[i] = Erf.erfc(x);
+            erfcSlopeTable[i] = -2 / sqrtPI * Math.exp(-x * x) / ERFC_TABLE_SCALE;
+        }
+    }
+
+    /**
+     * Returns erfc(x) (for x >= 0) by cubic Hermite interpolation of the
+     * tabulated values and derivatives.  The error is ~1e-14.
+     */
+    protected double erfc(double x) {
+        double s = x * ERFC_TABLE_SCALE;
+        int i = (int) s;
+        if (i >= erfcTable.length - 1) return Erf.erfc(x);
+        double t = s - i;
+        double t1 = 1 - t;
+        return t1 * t1 * ((1 + 2 * t) * erfcTable[i] + t * erfcSlopeTable[i])
+                + t * t * ((3 - 2 * t) * erfcTable[i + 1] - t1 * erfcSlopeTable[i + 1]);
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public int[] getGridSize() {
+        return gridSize;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Fills spline with M_order(w + order - 1 - j) for j = 0..order-1 and
+     * dspline with the derivatives.  M_order(w + order - 1 - j) is the
+     * weight for grid point floor(u) - order + 1 + j, where w = u - floor(u).
+     */
+    protected void fillBSpline(double w, double[] spline, double[] dspline) {
+        spline[order - 1] = 0;
+        spline[1] = w;
+        spline[0] = 1 - w;
+        for (int k = 3; k < order; k++) {
+            bSplineRecursion(w, k, spline);
+        }
+        dspline[0] = -spline[0];
+        for (int j = 1; j < order; j++) {
+            dspline[j] = spline[j - 1] - spline[j];
+        }
+        bSplineRecursion(w, order, spline);
+    }
+
+    /**
+     * Raises the order of the spline values from k-1 to k.
+     */
+    private static void bSplineRecursion(double w, int k, double[] spline) {
+        double div = 1.0 / (k - 1);
+        spline[k - 1] = div * w * spline[k - 2];
+        for (int j = 1; j < k - 1; j++) {
+            spline[k - j - 1] = div * ((w + j) * spline[k - j - 2] + (k - j - w) * spline[k - j - 1]);
+        }
+        spline[0] = div * (1 - w) * spline[0];
+    }
+
+    /**
+     * Returns |b(m)|^2 for m = 0..n-1.  Zeros (which occur at m=n/2 for odd
+     * orders) are replaced by the average of their neighbors.
+     */
+    protected double[] computeBSplineModuli(int n) {
+        double[] spline = new double[order];
+        double[] dspline = new double[order];
+        fillBSpline(0, spline, dspline);
+        // M_order(k+1) for k = 0..order-2 is spline[order-2-k]
+        double[] moduli = new double[n];
+        for (int m = 0; m < n; m++) {
+            double sc = 0, ss = 0;
+            for (int k = 0; k < order - 1; k++) {
+                double arg = 2 * Math.PI * m * k / n;
+                sc += spline[order - 2 - k] * Math.cos(arg);
+                ss += spline[order - 2 - k] * Math.sin(arg);
+            }
+            moduli[m] = sc * sc + ss * ss;
+        }
+        for (int m = 0; m < n; m++) {
+            if (moduli[m] < 1e-7) {
+                moduli[m] = 0.5 * (moduli[(m - 1 + n) % n] + moduli[(m + 1) % n]);
+            }
+        }
+        return moduli;
+    }
+
+    /**
+     * Recomputes the influence function if the box size or alpha changed
+     * since it was last computed.
+     */
+    protected void updateInfluence() {
+        Vector boxSize = box.getBoundary().getBoxSize();
+        if (alpha == influenceAlpha && boxSize.getX(0) == influenceBoxSize[0]
+                && boxSize.getX(1) == influenceBoxSize[1] && boxSize.getX(2) == influenceBoxSize[2]) {
+            return;
+        }
+        for (int d = 0; d < 3; d++) {
+            influenceBoxSize[d] = boxSize.getX(d);
+        }
+        influenceAlpha = alpha;
+        double volume = box.getBoundary().volume();
+        double piOverAlpha2 = Math.PI * Math.PI / alpha2;
+        int n0 = gridSize[0], n1 = gridSize[1], n2 = gridSize[2];
+        for (int i = 0; i < n0; i++) {
+            double mx = (i <= n0 / 2 ? i : i - n0) / influenceBoxSize[0];
+            for (int j = 0; j < n1; j++) {
+                double my = (j <= n1 / 2 ? j : j - n1) / influenceBoxSize[1];
+                for (int k = 0; k < n2; k++) {
+                    double mz = (k <= n2 / 2 ? k : k - n2) / influenceBoxSize[2];
+                    int idx = (i * n1 + j) * n2 + k;
+                    double m2 = mx * mx + my * my + mz * mz;
+                    if (m2 == 0) {
+                        influence[idx] = 0;
+                        continue;
+                    }
+                    double b = bsplineModuli[0][i] * bsplineModuli[1][j] * bsplineModuli[2][k];
+                    influence[idx] = Math.exp(-piOverAlpha2 * m2) / (Math.PI * volume * m2 * b);
+                }
+            }
+        }
+    }
+
+    protected void ensureCapacity(int nAtoms) {
+        if (charges.length >= nAtoms) return;
+        charges = new double[nAtoms];
+        for (int d = 0; d < 3; d++) {
+            theta[d] = new double[nAtoms * order];
+            dtheta[d] = new double[nAtoms * order];
+            gridIndex[d] = new int[nAtoms * order];
+        }
+        int oldLength = gradient.length;
+        gradient = Arrays.copyOf(gradient, nAtoms);
+        for (int i = oldLength; i < nAtoms; i++) {
+            gradient[i] = space.makeVector();
+        }
+        cellNext = new int[nAtoms];
+    }
+
+    protected void loadCharges() {
+        IAtomList atoms = box.getLeafList();
+        int nAtoms = atoms.size();
+        ensureCapacity(nAtoms);
+        for (int i = 0; i < nAtoms; i++) {
+            charges[i] = atomAgentManager.getAgent(atoms.get(i)).charge;
+        }
+    }
+
+    // *********************************************************************************************//
+    // *************************************  Real-space ******************************************//
+    // *********************************************************************************************//
+
+    public double uReal() {
+        loadCharges();
+        return computeReal(false, null);
+    }
+
+    /**
+     * Computes the real-space energy of intermolecular pairs within the
+     * cutoff.  If doGradient, the gradient is added to the gradient array,
+     * the virial is added to lastVirial and, if pressureTensor is not null,
+     * the pairs' contributions are added to it.
+     */
+    protected double computeReal(boolean doGradient, Tensor pressureTensor) {
+        IAtomList atoms = box.getLeafList();
+        int nAtoms = atoms.size();
+        Vector boxSize = box.getBoundary().getBoxSize();
+        int[] nCells = new int[3];
+        int totalCells = 1;
+        for (int d = 0; d < 3; d++) {
+            if (2 * rCutRealES > boxSize.getX(d) * (1 + 1e-10)) {
+                throw new IllegalStateException("real-space cutoff " + rCutRealES + " exceeds half the box length " + boxSize.getX(d));
+            }
+            nCells[d] = (int) Math.floor(boxSize.getX(d) / rCutRealES);
+            totalCells *= nCells[d];
+        }
+        boolean useCells = nCells[0] >= 3 && nCells[1] >= 3 && nCells[2] >= 3;
+        double u = 0;
+        if (!useCells) {
+            for (int i = 0; i < nAtoms; i++) {
+                if (charges[i] == 0) continue;
+                for (int j = i + 1; j < nAtoms; j++) {
+                    u += realPair(atoms, i, j, doGradient, pressureTensor);
+                }
+            }
+            return u;
+        }
+
+        if (cellHead.length < totalCells) {
+            cellHead = new int[totalCells];
+        }
+        Arrays.fill(cellHead, 0, totalCells, -1);
+        for (int i = 0; i < nAtoms; i++) {
+            if (charges[i] == 0) continue;
+            Vector r = atoms.get(i).getPosition();
+            int cell = 0;
+            for (int d = 0; d < 3; d++) {
+                int c = (int) Math.floor((r.getX(d) / boxSize.getX(d) + 0.5) * nCells[d]);
+                c = ((c % nCells[d]) + nCells[d]) % nCells[d];
+                cell = cell * nCells[d] + c;
+            }
+            cellNext[i] = cellHead[cell];
+            cellHead[cell] = i;
+        }
+
+        for (int cx = 0; cx < nCells[0]; cx++) {
+            for (int cy = 0; cy < nCells[1]; cy++) {
+                for (int cz = 0; cz < nCells[2]; cz++) {
+                    int cell = (cx * nCells[1] + cy) * nCells[2] + cz;
+                    for (int i = cellHead[cell]; i >= 0; i = cellNext[i]) {
+                        for (int j = cellNext[i]; j >= 0; j = cellNext[j]) {
+                            u += realPair(atoms, i, j, doGradient, pressureTensor);
+                        }
+                    }
+                    // the 13 cells "after" this one
+                    for (int dx = 0; dx <= 1; dx++) {
+                        for (int dy = dx == 0 ? 0 : -1; dy <= 1; dy++) {
+                            for (int dz = (dx == 0 && dy == 0) ? 1 : -1; dz <= 1; dz++) {
+                                int cell2 = ((((cx + dx) % nCells[0]) * nCells[1] + (cy + dy + nCells[1]) % nCells[1]) * nCells[2])
+                                        + (cz + dz + nCells[2]) % nCells[2];
+                                for (int i = cellHead[cell]; i >= 0; i = cellNext[i]) {
+                                    for (int j = cellHead[cell2]; j >= 0; j = cellNext[j]) {
+                                        u += realPair(atoms, i, j, doGradient, pressureTensor);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return u;
+    }
+
+    protected double realPair(IAtomList atoms, int i, int j, boolean doGradient, Tensor pressureTensor) {
+        double qq = charges[i] * charges[j];
+        if (qq == 0) return 0;
+        IAtom atomA = atoms.get(i);
+        IAtom atomB = atoms.get(j);
+        if (atomA.getParentGroup() == atomB.getParentGroup()) return 0;
+        rAB.Ev1Mv2(atomA.getPosition(), atomB.getPosition());
+        box.getBoundary().nearestImage(rAB);
+        double r2 = rAB.squared();
+        if (r2 > rCutSquared) return 0;
+        double r = Math.sqrt(r2);
+        double erfc = erfc(alpha * r);
+        if (doGradient) {
+            double B = erfc + 2.0 * alpha * r / sqrtPI * Math.exp(-alpha2 * r2);
+            double realCoeff = -qq * B / (r2 * r);
+            gradient[i].PEa1Tv1(realCoeff, rAB);
+            gradient[j].PEa1Tv1(-realCoeff, rAB);
+            lastVirial += realCoeff * r2;
+            if (pressureTensor != null) {
+                addPairTensor(pressureTensor, -realCoeff, rAB);
+            }
+        }
+        return qq * erfc / r;
+    }
+
+    /**
+     * Adds a*v v to the tensor
+     */
+    protected static void addPairTensor(Tensor tensor, double a, Vector v) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                tensor.PE(i, j, a * v.getX(i) * v.getX(j));
+            }
+        }
+    }
+
+    // *********************************************************************************************//
+    // *************************************  Fourier-space ****************************************//
+    // *********************************************************************************************//
+
+    public double uFourier() {
+        loadCharges();
+        return computeFourier(false, null);
+    }
+
+    /**
+     * Computes the reciprocal-space energy with the particle mesh.  If
+     * doGradient, the gradient is added to the gradient array, the virial
+     * is added to lastVirial and, if pressureTensor is not null, the
+     * reciprocal-space contribution is added to it.
+     */
+    protected double computeFourier(boolean doGradient, Tensor pressureTensor) {
+        IAtomList atoms = box.getLeafList();
+        int nAtoms = atoms.size();
+        Vector boxSize = box.getBoundary().getBoxSize();
+        updateInfluence();
+        int n0 = gridSize[0], n1 = gridSize[1], n2 = gridSize[2];
+        int nGrid = n0 * n1 * n2;
+        Arrays.fill(gridRe, 0, nGrid, 0);
+        Arrays.fill(gridIm, 0, nGrid, 0);
+
+        // spread charges onto the grid
+        for (int i = 0; i < nAtoms; i++) {
+            double q = charges[i];
+            if (q == 0) continue;
+            Vector r = atoms.get(i).getPosition();
+            int offset = i * order;
+            for (int d = 0; d < 3; d++) {
+                int n = gridSize[d];
+                double u = (r.getX(d) / boxSize.getX(d) + 0.5) * n;
+                double fl = Math.floor(u);
+                fillBSpline(u - fl, splineScratch, dsplineScratch);
+                System.arraycopy(splineScratch, 0, theta[d], offset, order);
+                System.arraycopy(dsplineScratch, 0, dtheta[d], offset, order);
+                int k0 = (int) fl - order + 1;
+                for (int j = 0; j < order; j++) {
+                    gridIndex[d][offset + j] = (((k0 + j) % n) + n) % n;
+                }
+            }
+            for (int jx = 0; jx < order; jx++) {
+                double qx = q * theta[0][offset + jx];
+                int ix = gridIndex[0][offset + jx] * n1;
+                for (int jy = 0; jy < order; jy++) {
+                    double qxy = qx * theta[1][offset + jy];
+                    int ixy = (ix + gridIndex[1][offset + jy]) * n2;
+                    for (int jz = 0; jz < order; jz++) {
+                        gridRe[ixy + gridIndex[2][offset + jz]] += qxy * theta[2][offset + jz];
+                    }
+                }
+            }
+        }
+
+        fft.forward(gridRe, gridIm);
+
+        double u = 0;
+        boolean doVirial = doGradient;
+        for (int i = 0; i < n0; i++) {
+            double kx = 2 * Math.PI * (i <= n0 / 2 ? i : i - n0) / boxSize.getX(0);
+            for (int j = 0; j < n1; j++) {
+                double ky = 2 * Math.PI * (j <= n1 / 2 ? j : j - n1) / boxSize.getX(1);
+                for (int k = 0; k < n2; k++) {
+                    int idx = (i * n1 + j) * n2 + k;
+                    double g = influence[idx];
+                    double eM = 0.5 * g * (gridRe[idx] * gridRe[idx] + gridIm[idx] * gridIm[idx]);
+                    u += eM;
+                    gridRe[idx] *= g;
+                    gridIm[idx] *= g;
+                    if (!doVirial || g == 0) continue;
+                    double kz = 2 * Math.PI * (k <= n2 / 2 ? k : k - n2) / boxSize.getX(2);
+                    double k2 = kx * kx + ky * ky + kz * kz;
+                    lastVirial += eM * (0.5 * k2 / alpha2 - 1);
+                    if (pressureTensor != null) {
+                        double c = -2 * eM * (1 + 0.25 * k2 / alpha2) / k2;
+                        kVector[0] = kx;
+                        kVector[1] = ky;
+                        kVector[2] = kz;
+                        for (int a = 0; a < 3; a++) {
+                            pressureTensor.PE(a, a, eM);
+                            for (int b = 0; b < 3; b++) {
+                                pressureTensor.PE(a, b, c * kVector[a] * kVector[b]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (!doGradient) return u;
+
+        // convolved potential on the grid
+        fft.backward(gridRe, gridIm);
+
+        for (int i = 0; i < nAtoms; i++) {
+            double q = charges[i];
+            if (q == 0) continue;
+            int offset = i * order;
+            double gx = 0, gy = 0, gz = 0;
+            for (int jx = 0; jx < order; jx++) {
+                double tx = theta[0][offset + jx], dtx = dtheta[0][offset + jx];
+                int ix = gridIndex[0][offset + jx] * n1;
+                for (int jy = 0; jy < order; jy++) {
+                    double ty = theta[1][offset + jy], dty = dtheta[1][offset + jy];
+                    int ixy = (ix + gridIndex[1][offset + jy]) * n2;
+                    for (int jz = 0; jz < order; jz++) {
+                        double phi = gridRe[ixy + gridIndex[2][offset + jz]];
+                        double tz = theta[2][offset + jz];
+                        gx += dtx * ty * tz * phi;
+                        gy += tx * dty * tz * phi;
+                        gz += tx * ty * dtheta[2][offset + jz] * phi;
+                    }
+                }
+            }
+            Vector gi = gradient[i];
+            gi.setX(0, gi.getX(0) + q * gx * n0 / boxSize.getX(0));
+            gi.setX(1, gi.getX(1) + q * gy * n1 / boxSize.getX(1));
+            gi.setX(2, gi.getX(2) + q * gz * n2 / boxSize.getX(2));
+        }
+        return u;
+    }
+
+    // *********************************************************************************************//
+    // ********************** self-correction Part************************************************* //
+    // *********************************************************************************************//
+
+    public double uSelf() {
+        loadCharges();
+        int nAtoms = box.getLeafList().size();
+        double uSelf = 0;
+        for (int i = 0; i < nAtoms; i++) {
+            uSelf += charges[i] * charges[i];
+        }
+        return -alpha / sqrtPI * uSelf;
+    }
+
+    public double uBondCorr() {
+        loadCharges();
+        return computeBondCorr(false, null);
+    }
+
+    protected double computeBondCorr(boolean doGradient, Tensor pressureTensor) {
+        double uCorr = 0;
+        for (int i = 0; i < moleculeList.size(); i++) {
+            IMolecule molecule = moleculeList.get(i);
+            IAtomList childList = molecule.getChildList();
+            int numSites = childList.size();
+            for (int siteA = 0; siteA < numSites; siteA++) {
+                IAtom atomA = childList.get(siteA);
+                double chargeA = charges[atomA.getLeafIndex()];
+                if (chargeA == 0) continue;
+                for (int siteB = siteA + 1; siteB < numSites; siteB++) {
+                    IAtom atomB = childList.get(siteB);
+                    double chargeB = charges[atomB.getLeafIndex()];
+                    if (chargeB == 0) continue;
+                    rAB.Ev1Mv2(atomA.getPosition(), atomB.getPosition());
+                    box.getBoundary().nearestImage(rAB);
+                    double r2 = rAB.squared();
+                    double r = Math.sqrt(r2);
+                    double erf = Erf.erf(alpha * r);
+                    uCorr -= chargeA * chargeB * erf / r;
+                    if (doGradient) {
+                        double B = 2 * alpha / sqrtPI * Math.exp(-alpha2 * r2) - erf / r;
+                        double coeffAB = -chargeA * chargeB * B / r2;
+                        gradient[atomA.getLeafIndex()].PEa1Tv1(coeffAB, rAB);
+                        gradient[atomB.getLeafIndex()].PEa1Tv1(-coeffAB, rAB);
+                        lastVirial += coeffAB * r2;
+                        if (pressureTensor != null) {
+                            addPairTensor(pressureTensor, -coeffAB, rAB);
+                        }
+                    }
+                }
+            }
+        }
+        return uCorr;
+    }
+
+    public double energy(IAtomList atoms) {
+        loadCharges();
+        double real = doRealSum ? computeReal(false, null) : 0;
+        return real + computeFourier(false, null) + uSelf() + computeBondCorr(false, null);
+    }
+
+    /**
+     * Returns the virial, sum(r . dU/dr), for all atoms in the box.  This
+     * requires a full gradient calculation.
+     */
+    public double virial(IAtomList atoms) {
+        gradient(atoms, null);
+        return lastVirial;
+    }
+
+    /**
+     * Returns the gradient of the energy with respect to the position of
+     * every atom in the box, indexed by leaf index.
+     */
+    public Vector[] gradient(IAtomList atoms) {
+        return gradient(atoms, null);
+    }
+
+    /**
+     * Returns the gradient as for {@link #gradient(IAtomList)} and adds the
+     * contribution of the electrostatic interactions to the given pressure
+     * tensor (if it is not null), following the same convention as
+     * Potential2SoftSpherical.
+     */
+    public Vector[] gradient(IAtomList atoms, Tensor pressureTensor) {
+        loadCharges();
+        int nAtoms = box.getLeafList().size();
+        for (int i = 0; i < nAtoms; i++) {
+            gradient[i].E(0);
+        }
+        lastVirial = 0;
+        if (doRealSum) {
+            computeReal(true, pressureTensor);
+        }
+        computeFourier(true, pressureTensor);
+        computeBondCorr(true, pressureTensor);
+        return gradient;
+    }
+
+    public double getRange() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    public int nBody() {
+        return 0;
+    }
+
+    public void setBox(Box box) {
+    }
+
+    /**
+     * Returns a pair potential for the real-space part, suitable for use
+     * with a PotentialMaster (and neighbor lists).  This PME potential will
+     * then omit the real-space part.
+     */
+    public P2EwaldReal makeP2EwaldReal() {
+        doRealSum = false;
+        return new P2EwaldReal();
+    }
+
+    /**
+     * Real-space part of the Ewald sum for a pair of atoms in different
+     * molecules.
+     */
+    public class P2EwaldReal implements PotentialSoft {
+
+        protected final Vector[] gradient2;
+        protected final Vector dr;
+
+        public P2EwaldReal() {
+            gradient2 = new Vector[2];
+            gradient2[0] = space.makeVector();
+            gradient2[1] = space.makeVector();
+            dr = space.makeVector();
+        }
+
+        public double energy(IAtomList atoms) {
+            double qq = atomAgentManager.getAgent(atoms.get(0)).charge * atomAgentManager.getAgent(atoms.get(1)).charge;
+            dr.Ev1Mv2(atoms.get(0).getPosition(), atoms.get(1).getPosition());
+            box.getBoundary().nearestImage(dr);
+            double r2 = dr.squared();
+            if (r2 > rCutSquared) return 0;
+            double r = Math.sqrt(r2);
+            return qq * erfc(alpha * r) / r;
+        }
+
+        public double getRange() {
+            return rCutRealES;
+        }
+
+        public void setBox(Box box) {
+        }
+
+        public int nBody() {
+            return 2;
+        }
+
+        public double virial(IAtomList atoms) {
+            gradient(atoms);
+            return gradient2[0].dot(dr);
+        }
+
+        public Vector[] gradient(IAtomList atoms) {
+            double qq = atomAgentManager.getAgent(atoms.get(0)).charge * atomAgentManager.getAgent(atoms.get(1)).charge;
+            dr.Ev1Mv2(atoms.get(0).getPosition(), atoms.get(1).getPosition());
+            box.getBoundary().nearestImage(dr);
+            double r2 = dr.squared();
+            if (r2 > rCutSquared) {
+                gradient2[0].E(0);
+                gradient2[1].E(0);
+                return gradient2;
+            }
+            double r = Math.sqrt(r2);
+            double B = erfc(alpha * r) + 2.0 * alpha * r / sqrtPI * Math.exp(-alpha2 * r2);
+            double realCoeff = -qq * B / (r2 * r);
+            gradient2[0].Ea1Tv1(realCoeff, dr);
+            gradient2[1].Ea1Tv1(-realCoeff, dr);
+            return gradient2;
+        }
+
+        public Vector[] gradient(IAtomList atoms, Tensor pressureTensor) {
+            gradient(atoms);
+            pressureTensor.MEv1v2(gradient2[0], dr);
+            return gradient2;
+        }
+    }
+}
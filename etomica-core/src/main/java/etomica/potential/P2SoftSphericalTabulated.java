@@ -0,0 +1,249 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.box.Box;
+import etomica.space.Space;
+
+/**
+ * Wraps a soft-spherical potential and replaces it with an interpolation
+ * table, so that the energy and its derivatives can be computed without
+ * calling expensive functions (exp, pow, etc.) for each pair.
+ * <p>
+ * The energy is tabulated as a function of s = r^2 on a uniform grid between
+ * rMin^2 and rMax^2, along with its first derivative (and, for quintic
+ * interpolation, its second derivative) with respect to s.  Within each
+ * interval the energy is a cubic or quintic Hermite polynomial in s, and du
+ * and d2u are taken from the derivatives of that same polynomial, so that the
+ * forces are consistent with the energy.  Separations outside the table are
+ * handed to the wrapped potential.
+ * <p>
+ * The maximum absolute error in u, du and d2u (measured at 1/4, 1/2 and 3/4
+ * of the way through each interval) is computed at construction and is
+ * available from getMaxErrorU, getMaxErrorDU and getMaxErrorD2U.
+ */
+public class P2SoftSphericalTabulated extends Potential2SoftSpherical {
+
+    public enum Interpolation {
+        /**
+         * Cubic Hermite interpolation using u and du/ds at each grid point.
+         */
+        CUBIC(4),
+        /**
+         * Quintic Hermite interpolation using u, du/ds and d2u/ds2 at each
+         * grid point.
+         */
+        QUINTIC(6);
+
+        final int nCoefficients;
+
+        Interpolation(int nCoefficients) {
+            this.nCoefficients = nCoefficients;
+        }
+    }
+
+    protected final Potential2SoftSpherical potential;
+    protected final Interpolation interpolation;
+    protected final double r2Min, r2Max, ds, dsInv;
+    protected final int nIntervals, nc;
+    protected final double[] c;
+    protected double maxErrorU, maxErrorDU, maxErrorD2U;
+
+    /**
+     * Creates a table with quintic interpolation.
+     *
+     * @param potential the potential to tabulate
+     * @param rMin      the smallest separation in the table
+     * @param rMax      the largest separation in the table
+     * @param nPoints   the number of grid points
+     */
+    public P2SoftSphericalTabulated(Space space, Potential2SoftSpherical potential, double rMin, double rMax, int nPoints) {
+        this(space, potential, rMin, rMax, nPoints, Interpolation.QUINTIC);
+    }
+
+    /**
+     * @param potential     the potential to tabulate
+     * @param rMin          the smallest separation in the table
+     * @param rMax          the largest separation in the table
+     * @param nPoints       the number of grid points
+     * @param interpolation the type of interpolation within each interval
+     */
+    public P2SoftSphericalTabulated(Space space, Potential2SoftSpherical potential, double rMin, double rMax, int nPoints, Interpolation interpolation) {
+        super(space);
+        if (rMin <= 0 || rMax <= rMin) {
+            throw new IllegalArgumentException("need 0 < rMin < rMax");
+        }
+        if (nPoints < 2) {
+            throw new IllegalArgumentException("need at least 2 points");
+        }
+        this.potential = potential;
+        this.interpolation = interpolation;
+        r2Min = rMin * rMin;
+        r2Max = rMax * rMax;
+        nIntervals = nPoints - 1;
+        ds = (r2Max - r2Min) / nIntervals;
+        dsInv = 1 / ds;
+        nc = interpolation.nCoefficients;
+        c = new double[nIntervals * nc];
+        makeTable();
+        computeErrors();
+    }
+
+    /**
+     * Computes the polynomial coefficients (in t = (s-s_i)/ds) for each
+     * interval.
+     */
+    protected void makeTable() {
+        int nPoints = nIntervals + 1;
+        double[] y = new double[nPoints], y1 = new double[nPoints], y2 = new double[nPoints];
+        for (int i = 0; i < nPoints; i++) {
+            // the last point is computed as r2Max so that round-off doesn't take us past rMax
+            double s = i == nIntervals ? r2Max : r2Min + i * ds;
+            double du = potential.du(s);
+            y[i] = potential.u(s);
+            // r du/dr = 2 s du/ds, r^2 d2u/dr2 = 4 s^2 d2u/ds2 + 2 s du/ds
+            y1[i] = du / (2 * s) * ds;
+            y2[i] = (potential.d2u(s) - du) / (4 * s * s) * ds * ds;
+        }
+        for (int i = 0; i < nIntervals; i++) {
+            int j = i * nc;
+            if (interpolation == Interpolation.CUBIC) {
+                double delta = y[i + 1] - y[i] - y1[i];
+                double d1 = y1[i + 1] - y1[i];
+                c[j] = y[i];
+                c[j + 1] = y1[i];
+                c[j + 2] = 3 * delta - d1;
+                c[j + 3] = -2 * delta + d1;
+            }
+            else {
+                double a2 = 0.5 * y2[i];
+                double delta = y[i + 1] - y[i] - y1[i] - a2;
+                double d1 = y1[i + 1] - y1[i] - 2 * a2;
+                double d2 = y2[i + 1] - 2 * a2;
+                c[j] = y[i];
+                c[j + 1] = y1[i];
+                c[j + 2] = a2;
+                c[j + 3] = 10 * delta - 4 * d1 + 0.5 * d2;
+                c[j + 4] = -15 * delta + 7 * d1 - d2;
+                c[j + 5] = 6 * delta - 3 * d1 + 0.5 * d2;
+            }
+        }
+    }
+
+    /**
+     * Compares the interpolated and exact values within each interval.  The
+     * error in u is largest at the midpoint, while the errors in the
+     * derivatives peak closer to the grid points.
+     */
+    protected void computeErrors() {
+        maxErrorU = maxErrorDU = maxErrorD2U = 0;
+        for (int i = 0; i < nIntervals; i++) {
+            for (int k = 1; k < 4; k++) {
+                double s = r2Min + (i + 0.25 * k) * ds;
+                maxErrorU = Math.max(maxErrorU, Math.abs(u(s) - potential.u(s)));
+                maxErrorDU = Math.max(maxErrorDU, Math.abs(du(s) - potential.du(s)));
+                maxErrorD2U = Math.max(maxErrorD2U, Math.abs(d2u(s) - potential.d2u(s)));
+            }
+        }
+    }
+
+    /**
+     * Returns the wrapped potential.
+     */
+    public Potential2SoftSpherical getWrappedPotential() {
+        return potential;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * Returns the largest error in u found at construction.
+     */
+    public double getMaxErrorU() {
+        return maxErrorU;
+    }
+
+    /**
+     * Returns the largest error in du (r du/dr) found at construction.
+     */
+    public double getMaxErrorDU() {
+        return maxErrorDU;
+    }
+
+    /**
+     * Returns the largest error in d2u (r^2 d2u/dr2) found at construction.
+     */
+    public double getMaxErrorD2U() {
+        return maxErrorD2U;
+    }
+
+    public void setBox(Box box) {
+        potential.setBox(box);
+        super.setBox(box);
+    }
+
+    public double u(double r2) {
+        if (r2 < r2Min || r2 >= r2Max) return potential.u(r2);
+        double x = (r2 - r2Min) * dsInv;
+        int i = Math.min((int) x, nIntervals - 1);
+        double t = x - i;
+        int j = i * nc;
+        if (nc == 4) {
+            return c[j] + t * (c[j + 1] + t * (c[j + 2] + t * c[j + 3]));
+        }
+        return c[j] + t * (c[j + 1] + t * (c[j + 2] + t * (c[j + 3] + t * (c[j + 4] + t * c[j + 5]))));
+    }
+
+    public double du(double r2) {
+        if (r2 < r2Min || r2 >= r2Max) return potential.du(r2);
+        double x = (r2 - r2Min) * dsInv;
+        int i = Math.min((int) x, nIntervals - 1);
+        double t = x - i;
+        int j = i * nc;
+        double dydt;
+        if (nc == 4) {
+            dydt = c[j + 1] + t * (2 * c[j + 2] + t * 3 * c[j + 3]);
+        }
+        else {
+            dydt = c[j + 1] + t * (2 * c[j + 2] + t * (3 * c[j + 3] + t * (4 * c[j + 4] + t * 5 * c[j + 5])));
+        }
+        return 2 * r2 * dydt * dsInv;
+    }
+
+    public double d2u(double r2) {
+        if (r2 < r2Min || r2 >= r2Max) return potential.d2u(r2);
+        double x = (r2 - r2Min) * dsInv;
+        int i = Math.min((int) x, nIntervals - 1);
+        double t = x - i;
+        int j = i * nc;
+        double dydt, d2ydt2;
+        if (nc == 4) {
+            dydt = c[j + 1] + t * (2 * c[j + 2] + t * 3 * c[j + 3]);
+            d2ydt2 = 2 * c[j + 2] + t * 6 * c[j + 3];
+        }
+        else {
+            dydt = c[j + 1] + t * (2 * c[j + 2] + t * (3 * c[j + 3] + t * (4 * c[j + 4] + t * 5 * c[j + 5])));
+            d2ydt2 = 2 * c[j + 2] + t * (6 * c[j + 3] + t * (12 * c[j + 4] + t * 20 * c[j + 5]));
+        }
+        double dyds = dydt * dsInv;
+        return 4 * r2 * r2 * d2ydt2 * dsInv * dsInv + 2 * r2 * dyds;
+    }
+
+    /**
+     * Returns the value of uInt for the wrapped potential.
+     */
+    public double uInt(double rC) {
+        return potential.uInt(rC);
+    }
+
+    /**
+     * Returns the range of the wrapped potential.
+     */
+    public double getRange() {
+        return potential.getRange();
+    }
+}
@@ -53,6 +53,15 @@ public class PotentialCalculationEnergySum implements PotentialCalculation, Pote
 		sum = 0.0;
 	}
 
+	/**
+	 * Adds the given energy to the sum.  This is used by a PotentialMaster
+	 * that computes the energy of some pairs itself (for instance, in
+	 * parallel) rather than calling doCalculation for each pair.
+	 */
+	public void addToSum(double energy) {
+		sum += energy;
+	}
+
 	/**
 	 * Returns the current value of the energy sum.
 	 */
@@ -20,6 +20,13 @@ public class PotentialCalculationForceSum implements PotentialCalculation {
         integratorAgentManager = agentManager;
     }
 
+    /**
+     * @return the agent manager holding the force on each atom
+     */
+    public AtomLeafAgentManager<Vector> getAgentManager() {
+        return integratorAgentManager;
+    }
+
     /**
      * Re-zeros the force vectors.
      *
@@ -34,6 +34,15 @@ public class PotentialCalculationVirialSum implements PotentialCalculation {
 		return this;
 	}
 
+    /**
+     * Adds the given virial to the sum.  This is used by a PotentialMaster
+     * that computes the virial of some pairs itself (for instance, in
+     * parallel) rather than calling doCalculation for each pair.
+     */
+    public void addToSum(double virial) {
+        sum += virial;
+    }
+
     private static final long serialVersionUID = 1L;
 
 	/**
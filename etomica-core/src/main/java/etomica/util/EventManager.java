@@ -4,25 +4,35 @@
 
 package etomica.util;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
 
 /**
  * Class to take care of listener lists and event firing for simulation elements.
  * A class can make an instance of this manager as a field, and delegate any
  * listener management functions to it.
+ * <p>
+ * Listeners are held in an array that is replaced (not modified) when a
+ * listener is added or removed, so firing an event does not allocate or lock
+ * anything, and returns immediately if there are no listeners.  Listeners are
+ * notified in order of priority (lower values first; listeners with equal
+ * priority are notified in the order they were added).  A listener can also
+ * be given an interval, in which case it is notified of only every interval-th
+ * event.
  */
 public class EventManager<E extends IEvent> {
-    private final List<IListener<E>> listeners;
 
-    public EventManager() {
-        this.listeners = new ArrayList<>();
-    }
+    @SuppressWarnings("unchecked")
+    private volatile Entry<E>[] entries = new Entry[0];
 
     public void fireEvent(E e) {
-        for(IListener<E> listener : listeners) {
-            listener.actionPerformed(e);
+        Entry<E>[] myEntries = entries;
+        for (int i = 0; i < myEntries.length; i++) {
+            Entry<E> entry = myEntries[i];
+            if (entry.interval > 1) {
+                if (++entry.count < entry.interval) continue;
+                entry.count = 0;
+            }
+            entry.listener.actionPerformed(e);
         }
     }
 
@@ -30,15 +40,57 @@ public class EventManager<E extends IEvent> {
      * Adds the given listener to this event manager.
      */
     public void addListener(IListener<E> listener) {
-        listeners.add(listener);
+        addListener(listener, 0, 1);
     }
 
     /**
-     * Removes the given listener from this event manager.
+     * Adds the given listener to this event manager.
+     *
+     * @param priority listeners with lower priority are notified first
+     * @param interval the listener is notified of every interval-th event
      */
-    public void removeListener(IListener<E> listener) {
-        this.listeners.remove(listener);
+    public synchronized void addListener(IListener<E> listener, int priority, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        Entry<E>[] oldEntries = entries;
+        Entry<E>[] newEntries = Arrays.copyOf(oldEntries, oldEntries.length + 1);
+        // insert after all entries with the same or lower priority
+        int i = oldEntries.length;
+        while (i > 0 && newEntries[i - 1].priority > priority) {
+            newEntries[i] = newEntries[i - 1];
+            i--;
+        }
+        newEntries[i] = new Entry<>(listener, priority, interval);
+        entries = newEntries;
+    }
 
+    /**
+     * Removes the given listener from this event manager.
+     */
+    public synchronized void removeListener(IListener<E> listener) {
+        Entry<E>[] oldEntries = entries;
+        for (int i = 0; i < oldEntries.length; i++) {
+            if (oldEntries[i].listener.equals(listener)) {
+                @SuppressWarnings("unchecked")
+                Entry<E>[] newEntries = new Entry[oldEntries.length - 1];
+                System.arraycopy(oldEntries, 0, newEntries, 0, i);
+                System.arraycopy(oldEntries, i + 1, newEntries, i, newEntries.length - i);
+                entries = newEntries;
+                return;
+            }
+        }
     }
 
+    private static class Entry<E extends IEvent> {
+        final IListener<E> listener;
+        final int priority, interval;
+        int count;
+
+        Entry(IListener<E> listener, int priority, int interval) {
+            this.listener = listener;
+            this.priority = priority;
+            this.interval = interval;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util;
+
+import java.util.Arrays;
+
+/**
+ * HeapList is an indexed binary min-heap of TreeLinkers, ordered by sortKey.
+ * Each linker records its position in the heap (heapIndex), so that adding
+ * or removing an arbitrary linker takes O(log n) time regardless of the
+ * distribution of sort keys, and the first element is found in O(1).
+ * TreeList, by contrast, is an unbalanced tree whose depth can approach n
+ * when many keys are clustered.
+ * <p>
+ * As with TreeList, do not add a linker which is already in the heap and do
+ * not remove a linker that is not in the heap.
+ */
+public class HeapList implements IEventQueue, java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private TreeLinker[] heap;
+    private int size;
+
+    public HeapList() {
+        heap = new TreeLinker[16];
+    }
+
+    public void add(TreeLinker newNode) {
+        if (Debug.ON && newNode.heapIndex != -1) {
+            throw new RuntimeException("attempting to add a node to the heap which is already part of a heap");
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        siftUp(newNode, size);
+        size++;
+    }
+
+    public void remove(TreeLinker oldNode) {
+        int i = oldNode.heapIndex;
+        if (Debug.ON && (i < 0 || i >= size || heap[i] != oldNode)) {
+            throw new RuntimeException("attempting to remove a node which is not part of this heap");
+        }
+        size--;
+        TreeLinker last = heap[size];
+        heap[size] = null;
+        oldNode.heapIndex = -1;
+        if (last == oldNode) {
+            return;
+        }
+        if (i > 0 && last.sortKey < heap[(i - 1) >> 1].sortKey) {
+            siftUp(last, i);
+        }
+        else {
+            siftDown(last, i);
+        }
+    }
+
+    /**
+     * returns the object from the heap associated with the lowest sort-key,
+     * or null if the heap is empty
+     * @return first object in the heap
+     */
+    public Object firstElement() {
+        return size == 0 ? null : heap[0].obj;
+    }
+
+    /**
+     * @return the number of linkers in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            heap[i].heapIndex = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * checks the heap for consistency of indices and ordering by sortKey.
+     */
+    public void check() {
+        for (int i = 0; i < size; i++) {
+            if (heap[i].heapIndex != i) {
+                System.out.println("node " + heap[i] + " at " + i + " thinks it is at " + heap[i].heapIndex);
+                throw new IllegalStateException("heap index inconsistent");
+            }
+            if (i > 0 && heap[(i - 1) >> 1].sortKey > heap[i].sortKey) {
+                System.out.println("node " + heap[i] + " parent " + heap[(i - 1) >> 1]);
+                throw new IllegalStateException("node should not have a lower sortKey than its parent");
+            }
+        }
+    }
+
+    /**
+     * Moves node up from position i until its parent has a lower sortKey.
+     */
+    private void siftUp(TreeLinker node, int i) {
+        double key = node.sortKey;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            TreeLinker p = heap[parent];
+            if (p.sortKey <= key) {
+                break;
+            }
+            heap[i] = p;
+            p.heapIndex = i;
+            i = parent;
+        }
+        heap[i] = node;
+        node.heapIndex = i;
+    }
+
+    /**
+     * Moves node down from position i until its children have higher
+     * sortKeys.
+     */
+    private void siftDown(TreeLinker node, int i) {
+        double key = node.sortKey;
+        int half = size >> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            TreeLinker c = heap[child];
+            int right = child + 1;
+            if (right < size && heap[right].sortKey < c.sortKey) {
+                child = right;
+                c = heap[child];
+            }
+            if (key <= c.sortKey) {
+                break;
+            }
+            heap[i] = c;
+            c.heapIndex = i;
+            i = child;
+        }
+        heap[i] = node;
+        node.heapIndex = i;
+    }
+}
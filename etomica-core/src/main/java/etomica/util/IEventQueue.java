@@ -0,0 +1,46 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util;
+
+/**
+ * Priority queue of TreeLinkers ordered by their sortKey, used to hold
+ * pending events (such as collisions in IntegratorHard).  The linker's
+ * sortKey must not be changed while it is in the queue, except by shifting
+ * every key in the queue by the same amount (which preserves the order).
+ *
+ * @see TreeList
+ * @see HeapList
+ */
+public interface IEventQueue {
+
+    /**
+     * Adds the given linker to the queue.  The linker must not already be
+     * in the queue.
+     */
+    void add(TreeLinker newNode);
+
+    /**
+     * Removes the given linker from the queue.  The linker must be in the
+     * queue.
+     */
+    void remove(TreeLinker oldNode);
+
+    /**
+     * @return the object associated with the lowest sortKey, or null if the
+     * queue is empty
+     */
+    Object firstElement();
+
+    /**
+     * Removes all linkers from the queue.
+     */
+    void reset();
+
+    /**
+     * Checks the queue for internal consistency, throwing an
+     * IllegalStateException if a problem is found.
+     */
+    void check();
+}
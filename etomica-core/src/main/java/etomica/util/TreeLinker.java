@@ -8,6 +8,8 @@ package etomica.util;
 /**
  * Linker used in the binary tree TreeList.  TreeLinkers point to the
  * TreeLinker above, to the left and right of them within the tree.
+ * The same linker can instead be held by a HeapList, which records the
+ * linker's position in the heap in heapIndex.
  * 
  * @author andrew
  */
@@ -15,6 +17,7 @@ public class TreeLinker {
     public final Object obj;
     public TreeLinker previous, nextLeft, nextRight;
     public double sortKey;
+    public int heapIndex = -1;
 
     /**
      * Constructor throws exception if given atom is null.  Only
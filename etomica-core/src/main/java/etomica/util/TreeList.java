@@ -21,7 +21,7 @@ package etomica.util;
  * an object that is not in the tree.  Do not taunt the tree.  Turning
  * on Debug will attempt to catch problems.
  */
-public class TreeList implements java.io.Serializable {
+public class TreeList implements IEventQueue, java.io.Serializable {
 
     private static final long serialVersionUID = 1L;
     private TreeLinker head;
@@ -62,7 +62,7 @@ public class TreeList implements java.io.Serializable {
         newNode.nextRight = newNode.nextLeft = null;
     }
 
-    static public void remove(TreeLinker oldNode) {
+    public void remove(TreeLinker oldNode) {
         oldNode.remove();
     }
 
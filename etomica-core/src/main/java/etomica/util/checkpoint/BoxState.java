@@ -0,0 +1,236 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.checkpoint;
+
+import etomica.atom.IAtom;
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.atom.IAtomOriented;
+import etomica.atom.IAtomOrientedKinetic;
+import etomica.box.Box;
+import etomica.molecule.IMolecule;
+import etomica.molecule.IMoleculeKinetic;
+import etomica.molecule.IMoleculeList;
+import etomica.molecule.IMoleculeOriented;
+import etomica.molecule.IMoleculeOrientedKinetic;
+import etomica.molecule.IMoleculePositioned;
+import etomica.simulation.Simulation;
+import etomica.space.Boundary;
+import etomica.space.BoundaryDeformablePeriodic;
+import etomica.space.IOrientation;
+import etomica.space.Vector;
+import etomica.space3d.IOrientationFull3D;
+
+/**
+ * Writes and restores a box's boundary, the number of molecules of each
+ * species, and the coordinates (positions, velocities, orientations and
+ * angular velocities, as available) of each molecule and atom.  Molecules are
+ * written in the order of the box's molecule lists, so that a box restored
+ * from a checkpoint has its molecules in the same order.
+ */
+class BoxState implements Checkpointable {
+
+    // bits describing the coordinates a molecule or atom holds
+    protected static final int POSITION = 1, VELOCITY = 2, ORIENTATION = 4, ORIENTATION_FULL = 8, ANGULAR_VELOCITY = 16;
+
+    protected final Simulation sim;
+    protected final Box box;
+    protected final Vector work, work2;
+
+    BoxState(Simulation sim, Box box) {
+        this.sim = sim;
+        this.box = box;
+        work = box.getSpace().makeVector();
+        work2 = box.getSpace().makeVector();
+    }
+
+    public Box getBox() {
+        return box;
+    }
+
+    public void saveState(CheckpointOutput out) {
+        int D = box.getSpace().D();
+        out.putInt(D);
+        Boundary boundary = box.getBoundary();
+        boolean deformable = boundary instanceof BoundaryDeformablePeriodic;
+        out.putBoolean(deformable);
+        if (deformable) {
+            for (int i = 0; i < D; i++) {
+                out.putVector(boundary.getEdgeVector(i));
+            }
+        }
+        else {
+            out.putVector(boundary.getBoxSize());
+        }
+
+        int nSpecies = sim.getSpeciesCount();
+        out.putInt(nSpecies);
+        for (int i = 0; i < nSpecies; i++) {
+            out.putInt(box.getNMolecules(sim.getSpecies(i)));
+        }
+        for (int i = 0; i < nSpecies; i++) {
+            IMoleculeList molecules = box.getMoleculeList(sim.getSpecies(i));
+            for (int j = 0; j < molecules.size(); j++) {
+                IMolecule molecule = molecules.get(j);
+                int flags = moleculeFlags(molecule);
+                out.putByte((byte) flags);
+                if ((flags & POSITION) != 0) {
+                    out.putVector(((IMoleculePositioned) molecule).getPosition());
+                }
+                if ((flags & VELOCITY) != 0) {
+                    out.putVector(((IMoleculeKinetic) molecule).getVelocity());
+                }
+                if ((flags & ORIENTATION) != 0) {
+                    putOrientation(out, ((IMoleculeOriented) molecule).getOrientation());
+                }
+                if ((flags & ANGULAR_VELOCITY) != 0) {
+                    out.putVector(((IMoleculeOrientedKinetic) molecule).getAngularVelocity());
+                }
+                IAtomList atoms = molecule.getChildList();
+                out.putInt(atoms.size());
+                for (int k = 0; k < atoms.size(); k++) {
+                    IAtom atom = atoms.get(k);
+                    flags = atomFlags(atom);
+                    out.putByte((byte) flags);
+                    out.putVector(atom.getPosition());
+                    if ((flags & VELOCITY) != 0) {
+                        out.putVector(((IAtomKinetic) atom).getVelocity());
+                    }
+                    if ((flags & ORIENTATION) != 0) {
+                        putOrientation(out, ((IAtomOriented) atom).getOrientation());
+                    }
+                    if ((flags & ANGULAR_VELOCITY) != 0) {
+                        out.putVector(((IAtomOrientedKinetic) atom).getAngularVelocity());
+                    }
+                }
+            }
+        }
+    }
+
+    public void restoreState(CheckpointInput in) {
+        int D = box.getSpace().D();
+        if (in.getInt() != D) {
+            throw new IllegalStateException("checkpoint is for a box with a different dimension");
+        }
+        Boundary boundary = box.getBoundary();
+        boolean deformable = in.getBoolean();
+        if (deformable != boundary instanceof BoundaryDeformablePeriodic) {
+            throw new IllegalStateException("checkpoint is for a box with a different kind of boundary");
+        }
+        if (deformable) {
+            Vector[] edges = new Vector[D];
+            boolean changed = false;
+            for (int i = 0; i < D; i++) {
+                edges[i] = box.getSpace().makeVector();
+                in.getVector(edges[i]);
+                changed = changed || !edges[i].equals(boundary.getEdgeVector(i));
+            }
+            if (changed) {
+                ((BoundaryDeformablePeriodic) boundary).setEdgeVectors(edges);
+            }
+        }
+        else {
+            in.getVector(work);
+            if (!work.equals(boundary.getBoxSize())) {
+                boundary.setBoxSize(work);
+            }
+        }
+
+        int nSpecies = in.getInt();
+        if (nSpecies != sim.getSpeciesCount()) {
+            throw new IllegalStateException("checkpoint has " + nSpecies + " species, but the simulation has " + sim.getSpeciesCount());
+        }
+        for (int i = 0; i < nSpecies; i++) {
+            box.setNMolecules(sim.getSpecies(i), in.getInt());
+        }
+        for (int i = 0; i < nSpecies; i++) {
+            IMoleculeList molecules = box.getMoleculeList(sim.getSpecies(i));
+            for (int j = 0; j < molecules.size(); j++) {
+                IMolecule molecule = molecules.get(j);
+                int flags = moleculeFlags(molecule);
+                checkFlags(in.getByte(), flags);
+                if ((flags & POSITION) != 0) {
+                    in.getVector(((IMoleculePositioned) molecule).getPosition());
+                }
+                if ((flags & VELOCITY) != 0) {
+                    in.getVector(((IMoleculeKinetic) molecule).getVelocity());
+                }
+                if ((flags & ORIENTATION) != 0) {
+                    getOrientation(in, ((IMoleculeOriented) molecule).getOrientation());
+                }
+                if ((flags & ANGULAR_VELOCITY) != 0) {
+                    in.getVector(((IMoleculeOrientedKinetic) molecule).getAngularVelocity());
+                }
+                IAtomList atoms = molecule.getChildList();
+                int nAtoms = in.getInt();
+                if (nAtoms != atoms.size()) {
+                    throw new IllegalStateException("checkpoint molecule has " + nAtoms + " atoms, but " + molecule + " has " + atoms.size());
+                }
+                for (int k = 0; k < nAtoms; k++) {
+                    IAtom atom = atoms.get(k);
+                    flags = atomFlags(atom);
+                    checkFlags(in.getByte(), flags);
+                    in.getVector(atom.getPosition());
+                    if ((flags & VELOCITY) != 0) {
+                        in.getVector(((IAtomKinetic) atom).getVelocity());
+                    }
+                    if ((flags & ORIENTATION) != 0) {
+                        getOrientation(in, ((IAtomOriented) atom).getOrientation());
+                    }
+                    if ((flags & ANGULAR_VELOCITY) != 0) {
+                        in.getVector(((IAtomOrientedKinetic) atom).getAngularVelocity());
+                    }
+                }
+            }
+        }
+    }
+
+    protected static int moleculeFlags(IMolecule molecule) {
+        int flags = 0;
+        if (molecule instanceof IMoleculePositioned) flags |= POSITION;
+        if (molecule instanceof IMoleculeKinetic) flags |= VELOCITY;
+        if (molecule instanceof IMoleculeOriented) {
+            flags |= ORIENTATION;
+            if (((IMoleculeOriented) molecule).getOrientation() instanceof IOrientationFull3D) flags |= ORIENTATION_FULL;
+        }
+        if (molecule instanceof IMoleculeOrientedKinetic) flags |= ANGULAR_VELOCITY;
+        return flags;
+    }
+
+    protected static int atomFlags(IAtom atom) {
+        int flags = POSITION;
+        if (atom instanceof IAtomKinetic) flags |= VELOCITY;
+        if (atom instanceof IAtomOriented) {
+            flags |= ORIENTATION;
+            if (((IAtomOriented) atom).getOrientation() instanceof IOrientationFull3D) flags |= ORIENTATION_FULL;
+        }
+        if (atom instanceof IAtomOrientedKinetic) flags |= ANGULAR_VELOCITY;
+        return flags;
+    }
+
+    protected static void checkFlags(int stored, int expected) {
+        if (stored != expected) {
+            throw new IllegalStateException("checkpoint coordinates (" + stored + ") do not match the box's (" + expected + ")");
+        }
+    }
+
+    protected void putOrientation(CheckpointOutput out, IOrientation orientation) {
+        out.putVector(orientation.getDirection());
+        if (orientation instanceof IOrientationFull3D) {
+            out.putVector(((IOrientationFull3D) orientation).getSecondaryDirection());
+        }
+    }
+
+    protected void getOrientation(CheckpointInput in, IOrientation orientation) {
+        in.getVector(work);
+        if (orientation instanceof IOrientationFull3D) {
+            in.getVector(work2);
+            ((IOrientationFull3D) orientation).setDirections(work, work2);
+        }
+        else {
+            orientation.setDirection(work);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.checkpoint;
+
+import etomica.action.IAction;
+import etomica.box.Box;
+import etomica.integrator.Integrator;
+import etomica.integrator.IntegratorBox;
+import etomica.nbr.PotentialMasterNbr;
+import etomica.potential.PotentialMaster;
+import etomica.simulation.Simulation;
+import etomica.util.random.IRandom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the state of a simulation to a compact, versioned binary file and
+ * restores it, so that a long run can be stopped and restarted.  The state
+ * written includes each registered box (boundary, number of molecules and all
+ * coordinates), the simulation's random number generator, each registered
+ * integrator (step count, energies and, for IntegratorMC, the statistics and
+ * step sizes of its moves) and any other registered Checkpointable, such as
+ * accumulators and integrator listeners.  Only integrators that implement
+ * Checkpointable (IntegratorMC, IntegratorVelocityVerlet and their
+ * subclasses) can be registered; other integrators keep state the
+ * Checkpoint would not restore.
+ * <p>
+ * The restarting program must construct the simulation exactly as the
+ * original did (same species, potentials, integrators, moves, listeners and
+ * accumulators, registered with the Checkpoint in the same way) and then call
+ * restore before running.  Typical use:
+ * <pre>
+ * Checkpoint checkpoint = new Checkpoint(sim, "run.chk");
+ * checkpoint.addBox(box);
+ * checkpoint.addIntegrator(integrator);
+ * checkpoint.add("energy", accumulatorPE);
+ * checkpoint.add("energyPump", pumpListener);
+ * if (checkpoint.exists()) checkpoint.restore();
+ * // must be the last listener added
+ * integrator.getEventManager().addListener(new IntegratorListenerAction(checkpoint, 100000));
+ * activityIntegrate.setMaxSteps(totalSteps - integrator.getStepCount());
+ * </pre>
+ * <p>
+ * Quantities the integrators and potential masters derive from the
+ * configuration (energies, forces, cell and neighbor lists) are not written.
+ * To make a restarted run bit-identical to an uninterrupted one, the running
+ * simulation restores itself from the state it just wrote (see
+ * {@link #setResync(boolean)}), so that both runs recompute that derived
+ * state from the same configuration.  This holds as long as
+ * <ul>
+ * <li>the listener that performs the checkpoint is the integrator's last
+ * listener (listeners after it would see the current step in the running
+ * simulation but not in the restarted one);
+ * <li>molecules have not been removed from the box (removal permutes the
+ * box's atom list, which cannot be reconstructed; the restarted run is still
+ * a valid continuation, but not bit-identical);
+ * <li>cell managers do not use incremental assignment.
+ * </ul>
+ * The file is written to a temporary file that then replaces the previous
+ * checkpoint, so an interrupted write leaves the previous checkpoint intact.
+ */
+public class Checkpoint implements IAction {
+
+    public static final int MAGIC = 0x4b434345; // "ECCK" (little-endian)
+    public static final int VERSION = 1;
+
+    protected final Simulation sim;
+    protected final Path path;
+    protected final List<BoxState> boxes;
+    protected final List<Integrator> integrators;
+    protected final Map<String, Checkpointable> states;
+    protected final List<IAction> restoreActions;
+    protected boolean resync;
+
+    /**
+     * Creates a checkpoint for the given simulation, written to fileName.
+     * The simulation's random number generator is registered if it is
+     * Checkpointable (as RandomMersenneTwister is).
+     */
+    public Checkpoint(Simulation sim, String fileName) {
+        this.sim = sim;
+        path = Paths.get(fileName);
+        boxes = new ArrayList<>();
+        integrators = new ArrayList<>();
+        states = new LinkedHashMap<>();
+        restoreActions = new ArrayList<>();
+        resync = true;
+        IRandom random = sim.getRandom();
+        if (random instanceof Checkpointable) {
+            states.put("random", (Checkpointable) random);
+        }
+    }
+
+    /**
+     * Registers a box, whose boundary, number of molecules and coordinates
+     * are saved and restored.
+     */
+    public void addBox(Box box) {
+        boxes.add(new BoxState(sim, box));
+    }
+
+    /**
+     * Registers an integrator.  Integrators are reset (after the boxes are
+     * restored) and then their own state is restored, so that counters and
+     * energies continue from where the checkpointed run left off.
+     *
+     * @throws IllegalArgumentException if the integrator is not Checkpointable
+     */
+    public void addIntegrator(Integrator integrator) {
+        if (!(integrator instanceof Checkpointable)) {
+            throw new IllegalArgumentException(integrator + " does not support checkpointing");
+        }
+        integrators.add(integrator);
+    }
+
+    /**
+     * Registers an object whose state is saved and restored.  The name
+     * identifies the object's state in the file and must be unique.
+     */
+    public void add(String name, Checkpointable state) {
+        if (states.containsKey(name)) {
+            throw new IllegalArgumentException("already have state named " + name);
+        }
+        states.put(name, state);
+    }
+
+    /**
+     * Adds an action to be performed after all state has been restored.  This
+     * can be used to rebuild derived state the Checkpoint does not know
+     * about (such as an AtomEnergyCache).
+     */
+    public void addRestoreAction(IAction action) {
+        restoreActions.add(action);
+    }
+
+    /**
+     * Sets whether the simulation restores itself from the checkpoint after
+     * writing it (true by default).  Restoring recomputes derived state
+     * (energies, forces, cell and neighbor lists) the same way a restarted
+     * simulation does, which is needed for the restarted run to be
+     * bit-identical.  Turning this off makes writing cheaper, but the
+     * restarted run then only agrees with the uninterrupted one to round-off.
+     */
+    public void setResync(boolean newResync) {
+        resync = newResync;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    /**
+     * @return true if the checkpoint file exists
+     */
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    public String getFileName() {
+        return path.toString();
+    }
+
+    /**
+     * Writes the checkpoint (and restores from it if resync is on).
+     */
+    public void actionPerformed() {
+        ByteBuffer bytes = save();
+        write(bytes);
+        if (resync) {
+            bytes.rewind();
+            restore(bytes);
+        }
+    }
+
+    /**
+     * Reads the checkpoint file and restores the simulation's state from it.
+     */
+    public void restore() {
+        restore(read());
+    }
+
+    /**
+     * Returns a buffer containing the complete checkpoint.
+     */
+    public ByteBuffer save() {
+        CheckpointOutput out = new CheckpointOutput();
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(boxes.size() + integrators.size() + states.size());
+        for (BoxState boxState : boxes) {
+            putSection(out, "box" + boxState.getBox().getIndex(), boxState);
+        }
+        for (int i = 0; i < integrators.size(); i++) {
+            Integrator integrator = integrators.get(i);
+            if (!(integrator instanceof Checkpointable)) {
+                throw new IllegalStateException(integrator + " does not support checkpointing");
+            }
+            putSection(out, "integrator" + i, (Checkpointable) integrator);
+        }
+        for (Map.Entry<String, Checkpointable> entry : states.entrySet()) {
+            putSection(out, entry.getKey(), entry.getValue());
+        }
+        ByteBuffer buffer = out.getBuffer();
+        buffer.flip();
+        return buffer;
+    }
+
+    protected void putSection(CheckpointOutput out, String name, Checkpointable state) {
+        out.putString(name);
+        int lengthOffset = out.position();
+        out.putInt(0);
+        state.saveState(out);
+        out.putInt(lengthOffset, out.position() - lengthOffset - 4);
+    }
+
+    /**
+     * Restores the simulation's state from a buffer written by save.
+     */
+    public void restore(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IllegalStateException(path + " is not a checkpoint file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("can't read checkpoint version " + version);
+        }
+        int nSections = buffer.getInt();
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        CheckpointInput header = new CheckpointInput(buffer);
+        for (int i = 0; i < nSections; i++) {
+            String name = header.getString();
+            int length = buffer.getInt();
+            ByteBuffer section = buffer.slice();
+            section.limit(length);
+            sections.put(name, section);
+            buffer.position(buffer.position() + length);
+        }
+
+        // integrators that have never been reset will set themselves up when
+        // first reset, which might involve the configuration (randomizing
+        // velocities, for instance), so get that out of the way first
+        for (Integrator integrator : integrators) {
+            if (!integrator.isInitialized()) {
+                integrator.reset();
+            }
+        }
+        for (BoxState boxState : boxes) {
+            restoreSection(sections, "box" + boxState.getBox().getIndex(), boxState);
+        }
+        for (Integrator integrator : integrators) {
+            if (integrator instanceof IntegratorBox) {
+                PotentialMaster potentialMaster = ((IntegratorBox) integrator).getPotentialMaster();
+                if (potentialMaster instanceof PotentialMasterNbr) {
+                    ((PotentialMasterNbr) potentialMaster).getBoxCellManager(((IntegratorBox) integrator).getBox()).assignCellAll();
+                }
+            }
+        }
+        for (int i = 0; i < integrators.size(); i++) {
+            Integrator integrator = integrators.get(i);
+            integrator.reset();
+            restoreSection(sections, "integrator" + i, (Checkpointable) integrator);
+        }
+        for (Map.Entry<String, Checkpointable> entry : states.entrySet()) {
+            restoreSection(sections, entry.getKey(), entry.getValue());
+        }
+        for (IAction action : restoreActions) {
+            action.actionPerformed();
+        }
+    }
+
+    protected void restoreSection(Map<String, ByteBuffer> sections, String name, Checkpointable state) {
+        ByteBuffer section = sections.get(name);
+        if (section == null) {
+            throw new IllegalStateException("checkpoint does not contain " + name);
+        }
+        CheckpointInput in = new CheckpointInput(section);
+        state.restoreState(in);
+        if (in.remaining() != 0) {
+            throw new IllegalStateException("state for " + name + " was not completely read");
+        }
+    }
+
+    /**
+     * Writes the buffer to a temporary file, forces it to disk and then moves
+     * it to the checkpoint file.
+     */
+    protected void write(ByteBuffer buffer) {
+        Path tmpPath = Paths.get(path + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected ByteBuffer read() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException(path + " is too large to be a checkpoint");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return buffer;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.checkpoint;
+
+import etomica.data.IData;
+import etomica.data.types.DataDouble;
+import etomica.data.types.DataDoubleArray;
+import etomica.data.types.DataGroup;
+import etomica.data.types.DataTensor;
+import etomica.data.types.DataVector;
+import etomica.space.Vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads state written by CheckpointOutput.  Methods that fill an existing
+ * array, vector or data object throw an IllegalStateException if the stored
+ * length does not match, which generally means the simulation being restored
+ * was not constructed the same way as the one that was checkpointed.
+ */
+public class CheckpointInput {
+
+    protected final ByteBuffer buffer;
+
+    public CheckpointInput(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the number of bytes that have not been read yet
+     */
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    public int getInt() {
+        return buffer.getInt();
+    }
+
+    public long getLong() {
+        return buffer.getLong();
+    }
+
+    public double getDouble() {
+        return buffer.getDouble();
+    }
+
+    public boolean getBoolean() {
+        return buffer.get() != 0;
+    }
+
+    public byte getByte() {
+        return buffer.get();
+    }
+
+    public String getString() {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a new array holding the ints written by putInts (or null if
+     * null was written).
+     */
+    public int[] getInts() {
+        int n = buffer.getInt();
+        if (n < 0) return null;
+        int[] a = new int[n];
+        buffer.asIntBuffer().get(a);
+        buffer.position(buffer.position() + 4 * n);
+        return a;
+    }
+
+    /**
+     * Fills the given array with the ints written by putInts.
+     */
+    public void getInts(int[] a) {
+        checkLength(buffer.getInt(), a.length);
+        buffer.asIntBuffer().get(a);
+        buffer.position(buffer.position() + 4 * a.length);
+    }
+
+    /**
+     * Fills the given array with the doubles written by putDoubles.
+     */
+    public void getDoubles(double[] a) {
+        checkLength(buffer.getInt(), a.length);
+        buffer.asDoubleBuffer().get(a);
+        buffer.position(buffer.position() + 8 * a.length);
+    }
+
+    /**
+     * Reads the vector's elements (written by putVector).
+     */
+    public void getVector(Vector v) {
+        for (int i = 0; i < v.getD(); i++) {
+            v.setX(i, buffer.getDouble());
+        }
+    }
+
+    /**
+     * Reads values written by putData into the given data.  If null was
+     * written, the data is not modified.
+     *
+     * @throws IllegalStateException if the data is null or has a different
+     * length than the data that was written
+     */
+    public void getData(IData data) {
+        int n = buffer.getInt();
+        if (n < 0) return;
+        if (data == null) {
+            throw new IllegalStateException("no data to restore "+n+" values into (has the data info been set?)");
+        }
+        checkLength(n, data.getLength());
+        readValues(data);
+    }
+
+    protected void readValues(IData data) {
+        if (data instanceof DataDouble) {
+            ((DataDouble) data).x = buffer.getDouble();
+        }
+        else if (data instanceof DataDoubleArray) {
+            double[] x = ((DataDoubleArray) data).getData();
+            buffer.asDoubleBuffer().get(x);
+            buffer.position(buffer.position() + 8 * x.length);
+        }
+        else if (data instanceof DataGroup) {
+            DataGroup group = (DataGroup) data;
+            for (int i = 0; i < group.getNData(); i++) {
+                readValues(group.getData(i));
+            }
+        }
+        else if (data instanceof DataVector) {
+            getVector(((DataVector) data).x);
+        }
+        else if (data instanceof DataTensor) {
+            DataTensor tensor = (DataTensor) data;
+            int D = tensor.x.D();
+            for (int i = 0; i < D; i++) {
+                for (int j = 0; j < D; j++) {
+                    tensor.x.setComponent(i, j, buffer.getDouble());
+                }
+            }
+        }
+        else {
+            throw new IllegalArgumentException("don't know how to restore " + data.getClass().getName());
+        }
+    }
+
+    protected void checkLength(int n, int expected) {
+        if (n != expected) {
+            throw new IllegalStateException("checkpoint has " + n + " values, but expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.checkpoint;
+
+import etomica.data.IData;
+import etomica.space.Vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Growable buffer that Checkpointable objects write their state to.  Values
+ * are stored in binary (little-endian), so doubles are written and read back
+ * exactly.
+ */
+public class CheckpointOutput {
+
+    protected ByteBuffer buffer;
+
+    public CheckpointOutput() {
+        this(1 << 16);
+    }
+
+    public CheckpointOutput(int initialCapacity) {
+        buffer = ByteBuffer.allocate(initialCapacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the underlying buffer.  Bytes written so far are those between
+     * 0 and the buffer's position.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public int position() {
+        return buffer.position();
+    }
+
+    protected void ensureCapacity(int nBytes) {
+        if (buffer.remaining() < nBytes) {
+            int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + nBytes);
+            ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+    }
+
+    public void putInt(int i) {
+        ensureCapacity(4);
+        buffer.putInt(i);
+    }
+
+    /**
+     * Overwrites the int at the given byte offset (which must have already
+     * been written).
+     */
+    public void putInt(int offset, int i) {
+        buffer.putInt(offset, i);
+    }
+
+    public void putLong(long l) {
+        ensureCapacity(8);
+        buffer.putLong(l);
+    }
+
+    public void putDouble(double x) {
+        ensureCapacity(8);
+        buffer.putDouble(x);
+    }
+
+    public void putBoolean(boolean b) {
+        ensureCapacity(1);
+        buffer.put(b ? (byte) 1 : (byte) 0);
+    }
+
+    public void putByte(byte b) {
+        ensureCapacity(1);
+        buffer.put(b);
+    }
+
+    public void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes the length of the array followed by its elements.  A null
+     * array is written with length -1.
+     */
+    public void putInts(int[] a) {
+        if (a == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(a.length);
+        ensureCapacity(4 * a.length);
+        buffer.asIntBuffer().put(a);
+        buffer.position(buffer.position() + 4 * a.length);
+    }
+
+    /**
+     * Writes the length of the array followed by its elements.  A null
+     * array is written with length -1.
+     */
+    public void putDoubles(double[] a) {
+        if (a == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(a.length);
+        ensureCapacity(8 * a.length);
+        buffer.asDoubleBuffer().put(a);
+        buffer.position(buffer.position() + 8 * a.length);
+    }
+
+    /**
+     * Writes the vector's elements (without a length).
+     */
+    public void putVector(Vector v) {
+        int D = v.getD();
+        ensureCapacity(8 * D);
+        for (int i = 0; i < D; i++) {
+            buffer.putDouble(v.getX(i));
+        }
+    }
+
+    /**
+     * Writes the length of the data followed by its values.  Null data is
+     * written with length -1.
+     */
+    public void putData(IData data) {
+        if (data == null) {
+            putInt(-1);
+            return;
+        }
+        int n = data.getLength();
+        putInt(n);
+        ensureCapacity(8 * n);
+        for (int i = 0; i < n; i++) {
+            buffer.putDouble(data.getValue(i));
+        }
+    }
+}
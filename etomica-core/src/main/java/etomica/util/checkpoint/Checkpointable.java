@@ -0,0 +1,28 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.checkpoint;
+
+/**
+ * Interface for objects whose state can be written to a checkpoint and read
+ * back.  Only state that changes as the simulation runs (counters, sums,
+ * random number generator state, adjusted step sizes) needs to be written;
+ * settings made while constructing the simulation are expected to be made
+ * again before restoring.  restoreState must read exactly what saveState
+ * wrote, in the same order.
+ *
+ * @see Checkpoint
+ */
+public interface Checkpointable {
+
+    /**
+     * Writes this object's state to out.
+     */
+    void saveState(CheckpointOutput out);
+
+    /**
+     * Reads this object's state (as written by saveState) from in.
+     */
+    void restoreState(CheckpointInput in);
+}
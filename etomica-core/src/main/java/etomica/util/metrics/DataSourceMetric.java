@@ -0,0 +1,46 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.metrics;
+
+import etomica.data.DataSourceScalar;
+import etomica.units.dimensions.Null;
+
+/**
+ * Data source that returns the count, total time or mean time of a metric,
+ * so that it can be pumped into accumulators, plots or data streams.  Times
+ * are in seconds.
+ */
+public class DataSourceMetric extends DataSourceScalar {
+
+    public enum Quantity {COUNT, TIME, MEAN_TIME}
+
+    protected final Metric metric;
+    protected final Quantity quantity;
+
+    /**
+     * @param name     the name of the metric (in the MetricsRegistry)
+     * @param quantity the quantity to return
+     */
+    public DataSourceMetric(String name, Quantity quantity) {
+        this(MetricsRegistry.getInstance().get(name), quantity);
+    }
+
+    public DataSourceMetric(Metric metric, Quantity quantity) {
+        super(metric.getName() + " " + quantity.name().toLowerCase().replace('_', ' '), Null.DIMENSION);
+        this.metric = metric;
+        this.quantity = quantity;
+    }
+
+    public double getDataAsScalar() {
+        switch (quantity) {
+            case COUNT:
+                return metric.getCount();
+            case TIME:
+                return metric.getTime();
+            default:
+                return metric.getMeanTime();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events, along with (for timed events) the total time they took.
+ * Updates may come from multiple threads.
+ *
+ * @see MetricsRegistry
+ */
+public class Metric {
+
+    protected final String name;
+    protected final LongAdder count, nanos;
+
+    public Metric(String name) {
+        this.name = name;
+        count = new LongAdder();
+        nanos = new LongAdder();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts one event.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Counts n events.
+     */
+    public void add(long n) {
+        count.add(n);
+    }
+
+    /**
+     * Counts one event that took the given time.
+     *
+     * @param elapsedNanos the time taken, in nanoseconds
+     */
+    public void addTime(long elapsedNanos) {
+        count.increment();
+        nanos.add(elapsedNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the total time taken by the events, in seconds.
+     */
+    public double getTime() {
+        return nanos.sum() * 1e-9;
+    }
+
+    /**
+     * Returns the average time taken by each event, in seconds.
+     */
+    public double getMeanTime() {
+        long n = count.sum();
+        return n == 0 ? Double.NaN : getTime() / n;
+    }
+
+    public void reset() {
+        count.reset();
+        nanos.reset();
+    }
+
+    public String toString() {
+        long n = getCount();
+        double t = getTime();
+        return t == 0 ? name + " " + n : name + " " + n + " " + t + "s";
+    }
+}
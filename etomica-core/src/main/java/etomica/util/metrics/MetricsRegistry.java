@@ -0,0 +1,90 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of counters and timers recorded by the simulation's hot paths
+ * (integrator steps, MC moves, neighbor list updates, pair evaluations and
+ * full-box potential calculations).
+ * <p>
+ * Recording is off unless the etomica.metrics system property is true
+ * (-Detomica.metrics=true); since ENABLED is a constant, the checks in the
+ * instrumented code cost nothing when recording is off.  Metrics can be
+ * queried by name, printed with toString, or shown using
+ * {@link DataSourceMetric}.
+ * <p>
+ * Metric names used by etomica:
+ * <ul>
+ * <li>integrator.[class].step -- time of each integrator step (including
+ * any sub-integrators)
+ * <li>mcmove.[class] -- time of each trial of the move, including the
+ * acceptance decision
+ * <li>mcmove.[class].accepted -- number of accepted trials
+ * <li>nbrlist.update -- time of each neighbor list update
+ * <li>pairs.[class] -- number of pairs given to the potential by
+ * PotentialMasterList for full-box calculations (not counted when the
+ * calculation is done in parallel)
+ * <li>calculate.[class] -- time of each full-box calculation by
+ * PotentialMasterList for the potential calculation class (for example,
+ * calculate.PotentialCalculationForceSum is the time for force sweeps)
+ * </ul>
+ */
+public class MetricsRegistry {
+
+    public static final boolean ENABLED = Boolean.getBoolean("etomica.metrics");
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    protected final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry used by etomica's instrumented code.
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the metric with the given name, creating it if needed.
+     */
+    public Metric get(String name) {
+        Metric metric = metrics.get(name);
+        if (metric != null) return metric;
+        return metrics.computeIfAbsent(name, Metric::new);
+    }
+
+    /**
+     * Returns the metrics, sorted by name.
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(metrics));
+    }
+
+    /**
+     * Zeros all metrics.
+     */
+    public void reset() {
+        for (Metric metric : metrics.values()) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * Returns a listing of all metrics, one per line.
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Metric metric : getMetrics().values()) {
+            sb.append(metric).append("\n");
+        }
+        return sb.toString();
+    }
+}
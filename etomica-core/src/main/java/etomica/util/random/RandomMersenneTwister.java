@@ -48,6 +48,9 @@ package etomica.util.random;
 */
 
 import etomica.meta.annotations.IgnoreProperty;
+import etomica.util.checkpoint.CheckpointInput;
+import etomica.util.checkpoint.CheckpointOutput;
+import etomica.util.checkpoint.Checkpointable;
 
 /**
  * Mersenne Twister RNG.  seed initialization and nextInt() methods written in
@@ -60,7 +63,7 @@ import etomica.meta.annotations.IgnoreProperty;
  * @author Makoto Matsumoto
  * @author Andrew Schultz
  */
-public class RandomMersenneTwister implements IRandom {
+public class RandomMersenneTwister implements IRandom, Checkpointable {
 
     /* Period parameters */
     static final protected int N = 624;
@@ -309,4 +312,26 @@ public class RandomMersenneTwister implements IRandom {
 
         return y / shiftFac;
     }
+
+    /**
+     * Writes the generator's complete state (not just its seeds), so that
+     * a restored generator continues the same sequence.
+     */
+    public void saveState(CheckpointOutput out) {
+        out.putInts(mt);
+        out.putInt(mti);
+        out.putBoolean(hasNextGaussian);
+        out.putDouble(nextGaussian);
+        out.putInt(savedSeed);
+        out.putInts(savedSeedArray);
+    }
+
+    public void restoreState(CheckpointInput in) {
+        in.getInts(mt);
+        mti = in.getInt();
+        hasNextGaussian = in.getBoolean();
+        nextGaussian = in.getDouble();
+        savedSeed = in.getInt();
+        savedSeedArray = in.getInts();
+    }
 }
@@ -0,0 +1,155 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.action;
+
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.config.ConfigurationTrajectoryBinary;
+import etomica.simulation.Simulation;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteTrajectoryBinaryTest {
+
+    private static final int N_FRAMES = 5;
+
+    private Path file;
+    private Simulation sim;
+    private SpeciesSpheresMono species;
+    private Box box;
+    private double[][][] positions, velocities;
+    private double[] boxSizes;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = Files.createTempFile("etomica", ".traj");
+        sim = new Simulation(Space3D.getInstance());
+        sim.setRandom(new RandomMersenneTwister(1));
+        species = new SpeciesSpheresMono(sim, sim.getSpace());
+        species.setIsDynamic(true);
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        box.setNMolecules(species, 20);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Writes frames with random coordinates (and box sizes), remembering what
+     * was written.
+     */
+    private void writeFrames(WriteTrajectoryBinary writer, int nFrames) {
+        IAtomList atoms = box.getLeafList();
+        positions = new double[nFrames][atoms.size()][3];
+        velocities = new double[nFrames][atoms.size()][3];
+        boxSizes = new double[nFrames];
+        for (int k = 0; k < nFrames; k++) {
+            boxSizes[k] = 5 + k;
+            box.getBoundary().setBoxSize(Vector.of(boxSizes[k], boxSizes[k], boxSizes[k]));
+            for (int i = 0; i < atoms.size(); i++) {
+                for (int j = 0; j < 3; j++) {
+                    positions[k][i][j] = (sim.getRandom().nextDouble() - 0.5) * boxSizes[k];
+                    velocities[k][i][j] = sim.getRandom().nextGaussian();
+                }
+                atoms.get(i).getPosition().E(positions[k][i]);
+                ((IAtomKinetic) atoms.get(i)).getVelocity().E(velocities[k][i]);
+            }
+            writer.actionPerformed();
+        }
+    }
+
+    private void checkFrame(ConfigurationTrajectoryBinary trajectory, int k, double tol) {
+        trajectory.setFrame(k);
+        trajectory.initializeCoordinates(box);
+        assertEquals(boxSizes[k], box.getBoundary().getBoxSize().getX(1));
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            for (int j = 0; j < 3; j++) {
+                double x = atoms.get(i).getPosition().getX(j);
+                double v = ((IAtomKinetic) atoms.get(i)).getVelocity().getX(j);
+                if (tol == 0) {
+                    assertEquals(positions[k][i][j], x);
+                    assertEquals(velocities[k][i][j], v);
+                }
+                else {
+                    assertEquals(positions[k][i][j], x, tol);
+                    assertEquals(velocities[k][i][j], v, tol);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDouble() {
+        WriteTrajectoryBinary writer = new WriteTrajectoryBinary(box, file.toString(), true, true);
+        writeFrames(writer, N_FRAMES);
+        writer.close();
+
+        ConfigurationTrajectoryBinary trajectory = new ConfigurationTrajectoryBinary(file.toString());
+        assertEquals(N_FRAMES, trajectory.getNumFrames());
+        assertTrue(trajectory.isDoublePrecision());
+        assertTrue(trajectory.hasVelocities());
+        for (int k : new int[]{3, 0, 4, 1, 2}) {
+            checkFrame(trajectory, k, 0);
+            assertEquals(k, trajectory.getStep(k));
+        }
+        trajectory.close();
+    }
+
+    @Test
+    void testFloat() {
+        WriteTrajectoryBinary writer = new WriteTrajectoryBinary(box, file.toString(), false, true);
+        writeFrames(writer, N_FRAMES);
+        writer.close();
+
+        ConfigurationTrajectoryBinary trajectory = new ConfigurationTrajectoryBinary(file.toString());
+        assertFalse(trajectory.isDoublePrecision());
+        assertEquals(WriteTrajectoryBinary.HEADER_SIZE + N_FRAMES * WriteTrajectoryBinary.frameSize(3, 20, 4, WriteTrajectoryBinary.VELOCITIES),
+                file.toFile().length());
+        for (int k = N_FRAMES - 1; k >= 0; k--) {
+            checkFrame(trajectory, k, 1e-5);
+        }
+        trajectory.close();
+    }
+
+    @Test
+    void testAppend() {
+        WriteTrajectoryBinary writer = new WriteTrajectoryBinary(box, file.toString(), true, true);
+        writeFrames(writer, 2);
+        writer.close();
+
+        // a new writer continues the existing file
+        writer = new WriteTrajectoryBinary(box, file.toString(), true, true);
+        writer.setIsAppend(true);
+        writeFrames(writer, N_FRAMES);
+        assertEquals(2 + N_FRAMES, writer.getNumFrames());
+
+        // the file can be read while it is still open for writing
+        ConfigurationTrajectoryBinary trajectory = new ConfigurationTrajectoryBinary(file.toString());
+        assertEquals(2 + N_FRAMES, trajectory.getNumFrames());
+        trajectory.setFrame(2 + 3);
+        trajectory.initializeCoordinates(box);
+        assertEquals(positions[3][7][2], box.getLeafList().get(7).getPosition().getX(2));
+        trajectory.close();
+        writer.close();
+    }
+}
@@ -67,4 +67,34 @@ class AccumulatorAverageCollapsingTest {
         double error = accData.getValue(accumulator.ERROR.index);
         Assertions.assertTrue(error / 0.0023 + 0.0023 / error - 2 < 0.2, "error " + error);
     }
+
+    @Test
+    public void testMerge() {
+        AccumulatorAverageCollapsing all = new AccumulatorAverageCollapsing(400);
+        AccumulatorAverageCollapsing first = new AccumulatorAverageCollapsing(400);
+        AccumulatorAverageCollapsing second = new AccumulatorAverageCollapsing(400);
+        for (AccumulatorAverageCollapsing acc : new AccumulatorAverageCollapsing[]{all, first, second}) {
+            acc.putDataInfo(new DataDouble.DataInfoDouble("test", Null.DIMENSION));
+        }
+        DataDouble rawData = new DataDouble();
+        RandomNumberGenerator rng = new RandomNumberGenerator(4);
+        // first ends with 392 blocks of 128; second with 389 blocks of 128 and
+        // a partial block.  merging needs blocks of 256, as all has.
+        for (int i=0; i<100000; i++) {
+            rawData.x = 0.5 + (rawData.x-0.5)*0.95 + (rng.nextDouble() - 0.5)*0.05;
+            all.putData(rawData);
+            (i < 196*256 ? first : second).putData(rawData);
+        }
+        Assertions.assertEquals(128, first.getBlockSize());
+        first.merge(second);
+        Assertions.assertEquals(all.getBlockSize(), first.getBlockSize());
+        Assertions.assertEquals(all.getBlockCount(), first.getBlockCount());
+        Assertions.assertEquals(all.getSampleCount(), first.getSampleCount());
+
+        IData allData = all.getData();
+        IData mergedData = first.getData();
+        for (AccumulatorAverage.StatType stat : AccumulatorAverage.statChoices()) {
+            Assertions.assertEquals(allData.getValue(stat.index), mergedData.getValue(stat.index), 1e-10, stat.toString());
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data;
+
+import etomica.data.types.DataDouble;
+import etomica.units.dimensions.Null;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AccumulatorAverageFixedStripedTest {
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        int nThreads = 4, nSamples = 100000;
+        AccumulatorAverageFixedStriped striped = new AccumulatorAverageFixedStriped(10);
+        striped.putDataInfo(new DataDouble.DataInfoDouble("test", Null.DIMENSION));
+        AccumulatorAverageFixed[] single = new AccumulatorAverageFixed[nThreads];
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            single[t] = new AccumulatorAverageFixed(10);
+            single[t].putDataInfo(new DataDouble.DataInfoDouble("test", Null.DIMENSION));
+            AccumulatorAverageFixed mine = single[t];
+            int seed = t + 1;
+            threads[t] = new Thread(() -> {
+                DataDouble rawData = new DataDouble();
+                RandomMersenneTwister rng = new RandomMersenneTwister(seed);
+                for (int i = 0; i < nSamples; i++) {
+                    rawData.x = rng.nextDouble();
+                    striped.putData(rawData);
+                    mine.putData(rawData);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        // read while the threads are writing
+        while (threads[0].isAlive()) {
+            IData data = striped.getData();
+            long n = striped.getSampleCount();
+            Assertions.assertTrue(n >= 0 && n <= nThreads * nSamples);
+            Assertions.assertTrue(n == 0 || (data.getValue(AccumulatorAverage.AVERAGE.index) > 0 && data.getValue(AccumulatorAverage.AVERAGE.index) < 1));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(nThreads, striped.getNumStripes());
+        Assertions.assertEquals(nThreads * nSamples, striped.getSampleCount());
+        Assertions.assertEquals(nThreads * nSamples / 10, striped.getBlockCount());
+        for (int t = 1; t < nThreads; t++) {
+            single[0].merge(single[t]);
+        }
+        IData expected = single[0].getData();
+        IData data = striped.getData();
+        for (AccumulatorAverage.StatType stat : new AccumulatorAverage.StatType[]{AccumulatorAverage.AVERAGE, AccumulatorAverage.STANDARD_DEVIATION}) {
+            Assertions.assertEquals(expected.getValue(stat.index), data.getValue(stat.index), 1e-10, stat.toString());
+        }
+        Assertions.assertEquals(expected.getValue(AccumulatorAverage.ERROR.index), data.getValue(AccumulatorAverage.ERROR.index), 1e-6);
+    }
+}
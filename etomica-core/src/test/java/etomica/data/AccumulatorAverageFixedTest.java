@@ -62,4 +62,31 @@ class AccumulatorAverageFixedTest {
         double error = accData.getValue(accumulator.ERROR.index);
         Assertions.assertTrue(error / 1.35e-4 + 1.35e-4 / error - 2 < 0.02, "error " + error);
     }
+
+    @Test
+    public void testMerge() {
+        AccumulatorAverageFixed all = new AccumulatorAverageFixed(10);
+        AccumulatorAverageFixed first = new AccumulatorAverageFixed(10);
+        AccumulatorAverageFixed second = new AccumulatorAverageFixed(10);
+        for (AccumulatorAverageFixed acc : new AccumulatorAverageFixed[]{all, first, second}) {
+            acc.putDataInfo(new DataDouble.DataInfoDouble("test", Null.DIMENSION));
+        }
+        DataDouble rawData = new DataDouble();
+        RandomMersenneTwister rng = new RandomMersenneTwister(4);
+        for (int i=0; i<100005; i++) {
+            rawData.x = 0.5 + (rawData.x-0.5)*0.95 + (rng.nextDouble() - 0.5)*0.05;
+            all.putData(rawData);
+            (i < 50000 ? first : second).putData(rawData);
+        }
+        first.merge(second);
+        Assertions.assertEquals(all.getBlockCount(), first.getBlockCount());
+        Assertions.assertEquals(all.getSampleCount(), first.getSampleCount());
+
+        IData allData = all.getData();
+        IData mergedData = first.getData();
+        for (AccumulatorAverage.StatType stat : AccumulatorAverage.statChoices()) {
+            Assertions.assertEquals(allData.getValue(stat.index), mergedData.getValue(stat.index), 1e-10, stat.toString());
+        }
+    }
 }
+
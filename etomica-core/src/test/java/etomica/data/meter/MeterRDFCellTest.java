@@ -0,0 +1,74 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import etomica.atom.AtomType;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.data.types.DataFunction;
+import etomica.simulation.Simulation;
+import etomica.space.BoundaryRectangularPeriodic;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MeterRDFCellTest {
+
+    @Test
+    public void testRDF() {
+        Space space = Space3D.getInstance();
+        Simulation sim = new Simulation(space);
+        SpeciesSpheresMono species1 = new SpeciesSpheresMono(sim, space);
+        SpeciesSpheresMono species2 = new SpeciesSpheresMono(sim, space);
+        sim.addSpecies(species1);
+        sim.addSpecies(species2);
+        Box box = sim.makeBox(new BoundaryRectangularPeriodic(space, 1));
+        box.getBoundary().setBoxSize(Vector.of(10, 11, 12));
+        box.setNMolecules(species1, 300);
+        box.setNMolecules(species2, 200);
+        RandomMersenneTwister random = new RandomMersenneTwister(5);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector p = atoms.get(i).getPosition();
+            for (int j = 0; j < 3; j++) {
+                p.setX(j, (random.nextDouble() - 0.5) * box.getBoundary().getBoxSize().getX(j));
+            }
+        }
+        AtomType type1 = species1.getLeafType();
+
+        // cells (3 or more in each direction), then all pairs
+        for (double xMax : new double[]{3, 4.5}) {
+            MeterRDF meter = new MeterRDF(space);
+            meter.getXDataSource().setXMax(xMax);
+            meter.setBox(box);
+            MeterRDF meter11 = new MeterRDF(space);
+            meter11.getXDataSource().setXMax(xMax);
+            meter11.setAtomType(type1);
+            meter11.setBox(box);
+            MeterRDFCell meterCell = new MeterRDFCell(space);
+            meterCell.getXDataSource().setXMax(xMax);
+            meterCell.setBox(box);
+            meter.actionPerformed();
+            meter11.actionPerformed();
+            meterCell.actionPerformed();
+            meterCell.setDoParallel(true);
+            meterCell.actionPerformed();
+
+            double[] g = ((DataFunction) meter.getData()).getData();
+            double[] g11 = ((DataFunction) meter11.getData()).getData();
+            double[] gCell = ((DataFunction) meterCell.getData()).getData();
+            double[] g11Cell = ((DataFunction) meterCell.makePartialDataSource(type1, type1).getData()).getData();
+            Assertions.assertEquals(g.length, gCell.length);
+            for (int i = 0; i < g.length; i++) {
+                Assertions.assertEquals(g[i], gCell[i], 1e-10);
+                Assertions.assertEquals(g11[i], g11Cell[i], 1e-10);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.data.meter;
+
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.data.types.DataFunction;
+import etomica.simulation.Simulation;
+import etomica.space.BoundaryRectangularPeriodic;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MeterStructureFactorTest {
+
+    @Test
+    public void testRecurrence() {
+        Space space = Space3D.getInstance();
+        Simulation sim = new Simulation(space);
+        SpeciesSpheresMono species = new SpeciesSpheresMono(sim, space);
+        sim.addSpecies(species);
+        Box box = sim.makeBox(new BoundaryRectangularPeriodic(space, 1));
+        box.getBoundary().setBoxSize(Vector.of(8, 9, 10));
+        box.setNMolecules(species, 500);
+        RandomMersenneTwister random = new RandomMersenneTwister(7);
+        IAtomList atoms = box.getLeafList();
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector p = atoms.get(i).getPosition();
+            for (int j = 0; j < 3; j++) {
+                p.setX(j, (random.nextDouble() - 0.5) * box.getBoundary().getBoxSize().getX(j));
+            }
+        }
+
+        MeterStructureFactor meter = new MeterStructureFactor(space, box, 4);
+        MeterStructureFactor meterDirect = new MeterStructureFactor(space, box, 4);
+        Vector[] waveVectors = new Vector[meter.getDataInfo().getLength()];
+        for (int k = 0; k < waveVectors.length; k++) {
+            waveVectors[k] = Vector.of(meter.waveVec[k].toArray());
+        }
+        Assertions.assertTrue(waveVectors.length > 100);
+        meterDirect.setWaveVec(waveVectors);
+        double[] direct = ((DataFunction) meterDirect.getData()).getData().clone();
+
+        meter.setDoAverage(true);
+        double[] s = ((DataFunction) meter.getData()).getData().clone();
+        meter.setDoParallel(true);
+        double[] sParallel = ((DataFunction) meter.getData()).getData().clone();
+        for (int k = 0; k < waveVectors.length; k++) {
+            Assertions.assertEquals(direct[k], s[k], 1e-12);
+            Assertions.assertEquals(direct[k], sParallel[k], 1e-12);
+        }
+        Assertions.assertEquals(2, meter.getAverageCount());
+        double[] avg = meter.getAverage();
+        for (int k = 0; k < waveVectors.length; k++) {
+            Assertions.assertEquals(direct[k], avg[k], 1e-12);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.integrator;
+
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.models.water.ConformationWater3P;
+import etomica.models.water.SpeciesWater3P;
+import etomica.potential.PotentialMaster;
+import etomica.simulation.Simulation;
+import etomica.space.BoundaryRectangularNonperiodic;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MatrixShakeTest {
+
+    private static final double lOH = ConformationWater3P.bondLengthOH;
+    private static final double lHH = Math.sqrt(2 * lOH * lOH * (1 - Math.cos(ConformationWater3P.angleHOH)));
+    private static final int[][] bonds = new int[][]{{0, 2}, {1, 2}, {0, 1}};
+    private static final double[] bondLengths = new double[]{lOH, lOH, lHH};
+
+    /**
+     * Runs a free water molecule with the given integrator settings and
+     * returns the final atom positions and velocities.
+     */
+    private static Vector[] run(boolean rattle, boolean matrix, double timeStep, int nSteps) {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesWater3P species = new SpeciesWater3P(sim.getSpace(), true);
+        sim.addSpecies(species);
+        Box box = new Box(new BoundaryRectangularNonperiodic(sim.getSpace()), sim.getSpace());
+        sim.addBox(box);
+        box.getBoundary().setBoxSize(Vector.of(20, 20, 20));
+        box.setNMolecules(species, 1);
+        IntegratorVelocityVerletShake integrator = rattle
+                ? new IntegratorVelocityVerletRattle(sim, new PotentialMaster(), new RandomMersenneTwister(1), timeStep, 1, box)
+                : new IntegratorVelocityVerletShake(sim, new PotentialMaster(), new RandomMersenneTwister(1), timeStep, 1, box);
+        integrator.setBondConstraints(species, bonds, bondLengths);
+        integrator.setUseMatrixShake(matrix);
+        integrator.setMaxIterations(1000);
+        IAtomList atoms = box.getLeafList();
+        RandomMersenneTwister random = new RandomMersenneTwister(5);
+        for (int i = 0; i < atoms.size(); i++) {
+            Vector v = ((IAtomKinetic) atoms.get(i)).getVelocity();
+            for (int j = 0; j < 3; j++) {
+                v.setX(j, 2 * random.nextDouble() - 1);
+            }
+        }
+        integrator.reset();
+        for (int i = 0; i < nSteps; i++) {
+            integrator.doStep();
+        }
+        Vector[] result = new Vector[2 * atoms.size()];
+        for (int i = 0; i < atoms.size(); i++) {
+            result[2 * i] = atoms.get(i).getPosition();
+            result[2 * i + 1] = ((IAtomKinetic) atoms.get(i)).getVelocity();
+        }
+        Vector dr = Vector.d(3);
+        for (int k = 0; k < bonds.length; k++) {
+            dr.Ev1Mv2(atoms.get(bonds[k][1]).getPosition(), atoms.get(bonds[k][0]).getPosition());
+            assertEquals(bondLengths[k], Math.sqrt(dr.squared()), 1e-10);
+            if (rattle) {
+                Vector dv = Vector.d(3);
+                dv.Ev1Mv2(((IAtomKinetic) atoms.get(bonds[k][1])).getVelocity(), ((IAtomKinetic) atoms.get(bonds[k][0])).getVelocity());
+                assertEquals(0, dr.dot(dv), 1e-10);
+            }
+        }
+        return result;
+    }
+
+    private static void check(boolean rattle, double timeStep) {
+        Vector[] iterative = run(rattle, false, timeStep, 200);
+        Vector[] matrix = run(rattle, true, timeStep, 200);
+        for (int i = 0; i < iterative.length; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(iterative[i].getX(j), matrix[i].getX(j), 1e-8);
+            }
+        }
+    }
+
+    @Test
+    void testShake() {
+        check(false, 0.01);
+    }
+
+    @Test
+    void testRattle() {
+        check(true, 0.01);
+    }
+
+    @Test
+    void testLargeStep() {
+        // per-bond iteration takes many sweeps here; Newton converges anyway
+        run(true, true, 0.1, 50);
+    }
+}
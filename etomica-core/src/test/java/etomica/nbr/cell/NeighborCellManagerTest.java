@@ -0,0 +1,100 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.nbr.cell;
+
+import etomica.action.BoxInflate;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.simulation.Simulation;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NeighborCellManagerTest {
+
+    private Box box;
+    private NeighborCellManager cellManager;
+    private RandomMersenneTwister random;
+
+    @BeforeEach
+    void setUp() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        SpeciesSpheresMono species = new SpeciesSpheresMono(sim, sim.getSpace());
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        box.setNMolecules(species, 500);
+        new BoxInflate(box, sim.getSpace(), 0.8).actionPerformed();
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+        cellManager = new NeighborCellManager(box, 2.5);
+        cellManager.setDoApplyPBC(true);
+        cellManager.setIncrementalAssignment(true);
+        cellManager.assignCellAll();
+        random = new RandomMersenneTwister(3);
+    }
+
+    private List<Set<IAtom>> occupants() {
+        List<Set<IAtom>> occupants = new ArrayList<>();
+        for (Object cell : cellManager.getLattice().sites()) {
+            occupants.add(new HashSet<>(((Cell) cell).occupants()));
+        }
+        return occupants;
+    }
+
+    private void checkMatchesFullAssignment() {
+        IAtomList atoms = box.getLeafList();
+        List<Set<IAtom>> incremental = occupants();
+        int total = 0;
+        for (Set<IAtom> cellAtoms : incremental) {
+            total += cellAtoms.size();
+        }
+        assertEquals(atoms.size(), total);
+        for (int i = 0; i < atoms.size(); i++) {
+            assertTrue(cellManager.getCell(atoms.get(i)).occupants().contains(atoms.get(i)));
+        }
+
+        cellManager.setIncrementalAssignment(false);
+        cellManager.assignCellAll();
+        assertEquals(occupants(), incremental);
+        cellManager.setIncrementalAssignment(true);
+    }
+
+    @Test
+    void testMovedAtoms() {
+        IAtomList atoms = box.getLeafList();
+        for (int step = 0; step < 5; step++) {
+            for (int i = 0; i < atoms.size(); i++) {
+                IAtom atom = atoms.get(i);
+                for (int d = 0; d < 3; d++) {
+                    atom.getPosition().setX(d, atom.getPosition().getX(d) + 0.5 * (random.nextDouble() - 0.5));
+                }
+            }
+            cellManager.assignCellAll();
+            checkMatchesFullAssignment();
+        }
+    }
+
+    @Test
+    void testInflate() {
+        BoxInflate inflate = new BoxInflate(box, box.getSpace());
+        // first shrinks the cells, then changes the number of cells
+        for (double scale : new double[]{0.99, 1.3}) {
+            inflate.setScale(scale);
+            inflate.actionPerformed();
+            checkMatchesFullAssignment();
+        }
+    }
+}
@@ -171,6 +171,58 @@ class NeighborListingTest {
         }
     }
 
+    @Test
+    void testDisplacementRebuild() {
+        // skin is 0.8 and the safety factor 0.4, so the lists are rebuilt once
+        // the two largest displacements add up to more than 0.64
+        nlm.setDoPairSkinCheck(true);
+        int numUpdates = nlm.getNumUpdates();
+        IAtom atom = box.getLeafList().get(0);
+        atom.getPosition().setX(0, atom.getPosition().getX(0) + 0.5);
+        nlm.updateNbrsIfNeeded();
+        assertEquals(numUpdates, nlm.getNumUpdates());
+        assertEquals(0.5, nlm.getDisplacementTracker().getLargestDisplacement(), 1e-10);
+
+        for (IAtom a : box.getLeafList()) {
+            // everything within the interaction range must still be listed
+            Set<IAtom> nbrList = new HashSet<>();
+            nbrList.addAll(nlm.getUpList(a)[a.getType().getIndex()]);
+            nbrList.addAll(nlm.getDownList(a)[a.getType().getIndex()]);
+            assertTrue(nbrList.containsAll(getSameTypeNbrs(box, a, POTENTIAL_RANGE)), a + " same-type neighbors");
+        }
+
+        IAtom atom2 = box.getLeafList().get(1);
+        atom2.getPosition().setX(1, atom2.getPosition().getX(1) + 0.2);
+        nlm.updateNbrsIfNeeded();
+        assertEquals(numUpdates + 1, nlm.getNumUpdates());
+        assertEquals(0, nlm.getDisplacementTracker().computeMaxPairDisplacement());
+    }
+
+    @Test
+    void testDisplacementSingleAtom() {
+        // by default, any atom moving more than 0.32 triggers a rebuild
+        int numUpdates = nlm.getNumUpdates();
+        IAtom atom = box.getLeafList().get(0);
+        atom.getPosition().setX(0, atom.getPosition().getX(0) + 0.3);
+        nlm.updateNbrsIfNeeded();
+        assertEquals(numUpdates, nlm.getNumUpdates());
+        atom.getPosition().setX(0, atom.getPosition().getX(0) + 0.05);
+        nlm.updateNbrsIfNeeded();
+        assertEquals(numUpdates + 1, nlm.getNumUpdates());
+    }
+
+    @Test
+    void testDisplacementAfterRemove() {
+        int numUpdates = nlm.getNumUpdates();
+        IAtom last = box.getLeafList().get(box.getLeafList().size() - 1);
+        last.getPosition().setX(0, last.getPosition().getX(0) + 0.3);
+        // the last atom takes the removed atom's leaf index and keeps its displacement
+        box.removeMolecule(box.getLeafList().get(0).getParentGroup());
+        assertEquals(0.3, nlm.getDisplacementTracker().computeMaxPairDisplacement(), 1e-10);
+        nlm.updateNbrsIfNeeded();
+        assertEquals(numUpdates, nlm.getNumUpdates());
+    }
+
     @Nested
     class AfterBoxInflate {
 
@@ -0,0 +1,152 @@
+package etomica.nbr.list;
+
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.chem.elements.ElementSimple;
+import etomica.config.ConfigurationLattice;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.potential.IteratorDirective;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.potential.PotentialCalculationEnergySum;
+import etomica.potential.PotentialCalculationForcePressureSum;
+import etomica.potential.PotentialCalculationForceSum;
+import etomica.potential.PotentialCalculationVirialSum;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Vector;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the multi-threaded pair calculations of PotentialMasterList
+ * agree with the serial calculations.
+ */
+class PotentialMasterListParallelTest {
+
+    private static final double TOLERANCE = 1e-10;
+
+    private Space space;
+    private Box box;
+    private PotentialMasterList potentialMaster;
+    private IteratorDirective id;
+
+    @BeforeEach
+    void setup() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        sim.setRandom(new RandomMersenneTwister(new int[]{1, 2, 3, 4}));
+        space = sim.getSpace();
+        SpeciesSpheresMono speciesA = new SpeciesSpheresMono(space, new AtomType(new ElementSimple("A")));
+        SpeciesSpheresMono speciesB = new SpeciesSpheresMono(space, new AtomType(new ElementSimple("B")));
+        sim.addSpecies(speciesA);
+        sim.addSpecies(speciesB);
+        box = sim.makeBox();
+        box.setNMolecules(speciesA, 300);
+        box.setNMolecules(speciesB, 200);
+        box.getBoundary().setBoxSize(Vector.of(9, 9, 9));
+        new ConfigurationLattice(new LatticeCubicFcc(space), space).initializeCoordinates(box);
+        // move atoms off the lattice so that forces do not cancel
+        for (IAtom atom : box.getLeafList()) {
+            Vector r = atom.getPosition();
+            for (int k = 0; k < 3; k++) {
+                r.setX(k, r.getX(k) + 0.1 * (sim.getRandom().nextDouble() - 0.5));
+            }
+        }
+
+        potentialMaster = new PotentialMasterList(sim, 3.0, space);
+        AtomType a = speciesA.getLeafType(), b = speciesB.getLeafType();
+        potentialMaster.addPotential(new P2SoftSphericalTruncated(space, new P2LennardJones(space, 1.0, 1.0), 2.5), new AtomType[]{a, a});
+        potentialMaster.addPotential(new P2SoftSphericalTruncated(space, new P2LennardJones(space, 1.1, 0.8), 2.5), new AtomType[]{a, b});
+        potentialMaster.addPotential(new P2SoftSphericalTruncated(space, new P2LennardJones(space, 1.2, 0.6), 2.5), new AtomType[]{b, b});
+        potentialMaster.getNeighborManager(box).reset();
+        id = new IteratorDirective();
+        id.setIncludeLrc(false);
+    }
+
+    @Test
+    void testEnergy() {
+        double[] u = new double[2];
+        for (int i = 0; i < 2; i++) {
+            potentialMaster.setParallel(i == 1);
+            PotentialCalculationEnergySum pc = new PotentialCalculationEnergySum();
+            pc.zeroSum();
+            potentialMaster.calculate(box, id, pc);
+            u[i] = pc.getSum();
+        }
+        assertEquals(u[0], u[1], TOLERANCE * Math.abs(u[0]));
+    }
+
+    @Test
+    void testVirial() {
+        double[] w = new double[2];
+        for (int i = 0; i < 2; i++) {
+            potentialMaster.setParallel(i == 1);
+            PotentialCalculationVirialSum pc = new PotentialCalculationVirialSum();
+            pc.zeroSum();
+            potentialMaster.calculate(box, id, pc);
+            w[i] = pc.getSum();
+        }
+        assertEquals(w[0], w[1], TOLERANCE * Math.abs(w[0]));
+    }
+
+    @Test
+    void testForce() {
+        Vector[][] forces = new Vector[2][];
+        for (int i = 0; i < 2; i++) {
+            potentialMaster.setParallel(i == 1);
+            PotentialCalculationForceSum pc = new PotentialCalculationForceSum();
+            forces[i] = computeForces(pc);
+        }
+        checkForces(forces);
+    }
+
+    @Test
+    void testPressureTensor() {
+        Vector[][] forces = new Vector[2][];
+        double[][] pressureTensors = new double[2][];
+        for (int i = 0; i < 2; i++) {
+            potentialMaster.setParallel(i == 1);
+            PotentialCalculationForcePressureSum pc = new PotentialCalculationForcePressureSum(space);
+            forces[i] = computeForces(pc);
+            pressureTensors[i] = pc.getPressureTensor().toArray();
+        }
+        checkForces(forces);
+        for (int k = 0; k < pressureTensors[0].length; k++) {
+            assertEquals(pressureTensors[0][k], pressureTensors[1][k], TOLERANCE * (1 + Math.abs(pressureTensors[0][k])));
+        }
+    }
+
+    private Vector[] computeForces(PotentialCalculationForceSum pc) {
+        AtomLeafAgentManager<Vector> forceManager = new AtomLeafAgentManager<>(a -> space.makeVector(), box);
+        pc.setAgentManager(forceManager);
+        pc.reset();
+        potentialMaster.calculate(box, id, pc);
+        IAtomList atoms = box.getLeafList();
+        Vector[] forces = new Vector[atoms.size()];
+        for (int j = 0; j < forces.length; j++) {
+            forces[j] = forceManager.getAgent(atoms.get(j));
+        }
+        forceManager.dispose();
+        return forces;
+    }
+
+    private void checkForces(Vector[][] forces) {
+        double fMax = 0;
+        for (Vector f : forces[0]) {
+            fMax = Math.max(fMax, Math.sqrt(f.squared()));
+        }
+        for (int j = 0; j < forces[0].length; j++) {
+            for (int k = 0; k < 3; k++) {
+                assertEquals(forces[0][j].getX(k), forces[1][j].getX(k), TOLERANCE * fMax);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.atom.IAtom;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.data.meter.MeterPotentialEnergy;
+import etomica.integrator.IntegratorMC;
+import etomica.integrator.mcmove.MCMoveAtom;
+import etomica.integrator.mcmove.MCMoveInsertDelete;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.simulation.Simulation;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs Lennard-Jones MC with atom displacements, insertions and deletions,
+ * checking that the energies in AtomEnergyCache match direct calculations.
+ */
+class AtomEnergyCacheTest {
+
+    private Box box;
+    private IntegratorMC integrator;
+    private AtomEnergyCache cache;
+    private MeterPotentialEnergy meterPE;
+
+    @BeforeEach
+    void setup() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        sim.setRandom(new RandomMersenneTwister(new int[]{1, 2, 3, 4}));
+        SpeciesSpheresMono species = new SpeciesSpheresMono(sim, sim.getSpace());
+        sim.addSpecies(species);
+        PotentialMasterCell potentialMaster = new PotentialMasterCell(sim, sim.getSpace());
+        box = sim.makeBox();
+        box.setNMolecules(species, 108);
+        BoxInflate inflater = new BoxInflate(box, sim.getSpace());
+        inflater.setTargetDensity(0.6);
+        inflater.actionPerformed();
+        P2SoftSphericalTruncated p2 = new P2SoftSphericalTruncated(sim.getSpace(), new P2LennardJones(sim.getSpace()), 2.5);
+        potentialMaster.setCellRange(2);
+        potentialMaster.setRange(p2.getRange());
+        AtomType leafType = species.getLeafType();
+        potentialMaster.addPotential(p2, new AtomType[]{leafType, leafType});
+        new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+
+        integrator = new IntegratorMC(sim, potentialMaster, box);
+        integrator.setTemperature(1.5);
+        cache = new AtomEnergyCache(integrator);
+        cache.setCheckEnergies(true);
+        MCMoveAtom mcMoveAtom = new MCMoveAtom(sim.getRandom(), potentialMaster, sim.getSpace());
+        mcMoveAtom.setStepSize(0.3);
+        mcMoveAtom.setEnergyCache(cache);
+        integrator.getMoveManager().addMCMove(mcMoveAtom);
+        MCMoveInsertDelete mcMoveID = new MCMoveInsertDelete(potentialMaster, sim.getRandom(), sim.getSpace());
+        mcMoveID.setSpecies(species);
+        mcMoveID.setMu(-3);
+        integrator.getMoveManager().addMCMove(mcMoveID);
+        integrator.getMoveEventManager().addListener(potentialMaster.getNbrCellManager(box).makeMCMoveListener());
+        potentialMaster.getNbrCellManager(box).assignCellAll();
+        integrator.reset();
+
+        meterPE = new MeterPotentialEnergy(potentialMaster);
+        meterPE.setBox(box);
+        meterPE.setIncludeLrc(false);
+    }
+
+    @Test
+    void testEnergies() {
+        int nInitial = box.getLeafList().size();
+        for (int i = 0; i < 20000; i++) {
+            integrator.doStep();
+        }
+        // insertions and deletions happened
+        assertTrue(box.getLeafList().size() != nInitial);
+        double sum = 0;
+        for (IAtom atom : box.getLeafList()) {
+            meterPE.setTarget(atom);
+            double u = meterPE.getDataAsScalar();
+            assertEquals(u, cache.getEnergy(atom), 1e-9 * (1 + Math.abs(u)));
+            sum += u;
+        }
+        meterPE.setTarget((IAtom) null);
+        // each pair is counted by both atoms
+        assertEquals(meterPE.getDataAsScalar(), 0.5 * sum, 1e-8 * (1 + Math.abs(sum)));
+    }
+}
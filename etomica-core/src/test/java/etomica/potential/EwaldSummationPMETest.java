@@ -0,0 +1,121 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.atom.AtomLeafAgentManager;
+import etomica.atom.IAtom;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.config.ConfigurationResourceFile;
+import etomica.models.water.P2WaterSPCE;
+import etomica.models.water.SpeciesWater3P;
+import etomica.simulation.Simulation;
+import etomica.space.Space;
+import etomica.space.Tensor;
+import etomica.space.Vector;
+import etomica.space3d.Vector3D;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares EwaldSummationPME against EwaldSummation for the first of the NIST
+ * SPC/E configurations used by EwaldSummationTest, and checks that its
+ * gradient and virial are consistent with its energy.
+ */
+class EwaldSummationPMETest {
+
+    private Box box;
+    private EwaldSummation es;
+    private EwaldSummationPME pme;
+
+    @BeforeEach
+    void setup() {
+        double boxlength = 20;
+        // PME includes all wave vectors, so compare with a converged Ewald sum
+        // rather than the NIST cutoff
+        double kcut = 10 * 2 * Math.PI / boxlength;
+        double rCutRealES = 10;
+        double alpha = 5.6 / boxlength;
+        Space space = Space.getInstance(3);
+        Simulation sim = new Simulation(space);
+        SpeciesWater3P species = new SpeciesWater3P(space, false);
+        sim.addSpecies(species);
+        box = sim.makeBox();
+        EwaldSummation.MyCharge chargeO = new EwaldSummation.MyCharge(P2WaterSPCE.QO);
+        EwaldSummation.MyCharge chargeH = new EwaldSummation.MyCharge(P2WaterSPCE.QH);
+        AtomLeafAgentManager<EwaldSummation.MyCharge> atomAgentManager = new AtomLeafAgentManager<>(new AtomLeafAgentManager.AgentSource<EwaldSummation.MyCharge>() {
+            public EwaldSummation.MyCharge makeAgent(IAtom a, Box agentBox) {
+                return a.getType() == species.getOxygenType() ? chargeO : chargeH;
+            }
+
+            public void releaseAgent(EwaldSummation.MyCharge agent, IAtom atom, Box agentBox) {
+            }
+        }, box);
+        box.setNMolecules(species, 100);
+        box.getBoundary().setBoxSize(new Vector3D(boxlength, boxlength, boxlength));
+        new ConfigurationResourceFile("spce1.pos", EwaldSummationTest.class).initializeCoordinates(box);
+
+        es = new EwaldSummation(box, atomAgentManager, space, kcut, rCutRealES);
+        es.setAlpha(alpha);
+        pme = new EwaldSummationPME(box, atomAgentManager, space, rCutRealES, alpha, new int[]{32, 32, 32}, 6);
+    }
+
+    @Test
+    void testEnergy() {
+        assertEquals(es.uReal(), pme.uReal(), 1e-8 * Math.abs(es.uReal()), "uReal");
+        assertEquals(es.uFourier(), pme.uFourier(), 1e-5 * Math.abs(es.uFourier()), "uFourier");
+        assertEquals(es.uSelf(), pme.uSelf(), 1e-10 * Math.abs(es.uSelf()), "uSelf");
+        assertEquals(es.uBondCorr(), pme.uBondCorr(), 1e-10 * Math.abs(es.uBondCorr()), "uBondCorr");
+        assertEquals(es.energy(null), pme.energy(null), 1e-5 * Math.abs(es.energy(null)), "energy");
+    }
+
+    @Test
+    void testGradient() {
+        IAtomList atoms = box.getLeafList();
+        Vector[] esGradient = es.gradient(atoms);
+        Vector[] pmeGradient = pme.gradient(atoms);
+        double maxGradient = 0;
+        for (int i = 0; i < atoms.size(); i++) {
+            maxGradient = Math.max(maxGradient, Math.sqrt(esGradient[i].squared()));
+        }
+        for (int i = 0; i < atoms.size(); i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(esGradient[i].getX(j), pmeGradient[i].getX(j), 1e-4 * maxGradient);
+            }
+        }
+
+        // the gradient should be the derivative of the PME energy itself
+        IAtom atom = atoms.get(7);
+        double dx = 1e-5;
+        double g = pmeGradient[7].getX(1);
+        atom.getPosition().setX(1, atom.getPosition().getX(1) + dx);
+        double uPlus = pme.energy(atoms);
+        atom.getPosition().setX(1, atom.getPosition().getX(1) - 2 * dx);
+        double uMinus = pme.energy(atoms);
+        atom.getPosition().setX(1, atom.getPosition().getX(1) + dx);
+        assertEquals(g, (uPlus - uMinus) / (2 * dx), 1e-5 * maxGradient);
+    }
+
+    @Test
+    void testVirial() {
+        IAtomList atoms = box.getLeafList();
+        Tensor pressureTensor = box.getSpace().makeTensor();
+        pme.gradient(atoms, pressureTensor);
+        double virial = pme.virial(atoms);
+        assertEquals(-virial, pressureTensor.trace(), 1e-8 * Math.abs(virial));
+
+        // the virial is dU/d(ln s) when all coordinates and the box are scaled by s
+        double s = 1 + 1e-6;
+        double u0 = pme.energy(atoms);
+        for (int i = 0; i < atoms.size(); i++) {
+            atoms.get(i).getPosition().TE(s);
+        }
+        box.getBoundary().setBoxSize(new Vector3D(20 * s, 20 * s, 20 * s));
+        double u1 = pme.energy(atoms);
+        assertEquals(virial, (u1 - u0) / (s - 1), 1e-4 * Math.abs(virial));
+    }
+}
@@ -0,0 +1,49 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.potential;
+
+import etomica.space.Space;
+import etomica.space3d.Space3D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class P2SoftSphericalTabulatedTest {
+
+    @Test
+    public void testMorse() {
+        Space space = Space3D.getInstance();
+        P2Morse p2 = new P2Morse(space, 1.0, 1.0, 3.0);
+        P2SoftSphericalTabulated quintic = new P2SoftSphericalTabulated(space, p2, 0.7, 3.0, 2000);
+        P2SoftSphericalTabulated cubic = new P2SoftSphericalTabulated(space, p2, 0.7, 3.0, 2000, P2SoftSphericalTabulated.Interpolation.CUBIC);
+        Assertions.assertTrue(quintic.getMaxErrorU() < 1e-10);
+        Assertions.assertTrue(quintic.getMaxErrorDU() < 1e-7);
+        Assertions.assertTrue(quintic.getMaxErrorD2U() < 1e-4);
+        Assertions.assertTrue(cubic.getMaxErrorU() < 1e-6);
+        Assertions.assertTrue(cubic.getMaxErrorU() > quintic.getMaxErrorU());
+
+        for (int i = 0; i <= 1000; i++) {
+            double r = 0.5 + i * 3.0 / 1000;
+            double r2 = r * r;
+            Assertions.assertEquals(p2.u(r2), quintic.u(r2), 2 * quintic.getMaxErrorU() + 1e-14);
+            Assertions.assertEquals(p2.du(r2), quintic.du(r2), 2 * quintic.getMaxErrorDU() + 1e-14);
+            Assertions.assertEquals(p2.d2u(r2), quintic.d2u(r2), 2 * quintic.getMaxErrorD2U() + 1e-14);
+            Assertions.assertEquals(p2.u(r2), cubic.u(r2), 2 * cubic.getMaxErrorU() + 1e-14);
+        }
+    }
+
+    @Test
+    public void testGridPoints() {
+        Space space = Space3D.getInstance();
+        P2LennardJones p2 = new P2LennardJones(space);
+        P2SoftSphericalTabulated table = new P2SoftSphericalTabulated(space, p2, 0.8, 2.5, 11);
+        double ds = (2.5 * 2.5 - 0.8 * 0.8) / 10;
+        for (int i = 0; i < 10; i++) {
+            double r2 = 0.8 * 0.8 + i * ds;
+            Assertions.assertEquals(p2.u(r2), table.u(r2), 1e-9 * Math.abs(p2.u(r2)));
+            Assertions.assertEquals(p2.du(r2), table.du(r2), 1e-9 * Math.abs(p2.du(r2)));
+            Assertions.assertEquals(p2.d2u(r2), table.d2u(r2), 1e-9 * Math.abs(p2.d2u(r2)));
+        }
+    }
+}
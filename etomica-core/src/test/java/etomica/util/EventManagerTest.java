@@ -0,0 +1,46 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class EventManagerTest {
+
+    @Test
+    public void testPriorityAndInterval() {
+        EventManager<IEvent> eventManager = new EventManager<>();
+        List<String> fired = new ArrayList<>();
+        eventManager.addListener(e -> fired.add("a"));
+        eventManager.addListener(e -> fired.add("b"), -1, 1);
+        eventManager.addListener(e -> fired.add("c"), 0, 3);
+        eventManager.addListener(e -> fired.add("d"));
+        IEvent event = new IEvent() {};
+        for (int i = 0; i < 3; i++) {
+            eventManager.fireEvent(event);
+        }
+        Assertions.assertEquals("[b, a, d, b, a, d, b, a, c, d]", fired.toString());
+    }
+
+    @Test
+    public void testRemoveWhileFiring() {
+        EventManager<IEvent> eventManager = new EventManager<>();
+        List<String> fired = new ArrayList<>();
+        IListener<IEvent> b = e -> fired.add("b");
+        eventManager.addListener(e -> {
+            fired.add("a");
+            eventManager.removeListener(b);
+        });
+        eventManager.addListener(b);
+        IEvent event = new IEvent() {};
+        // b is still notified of the event being fired when it was removed
+        eventManager.fireEvent(event);
+        eventManager.fireEvent(event);
+        Assertions.assertEquals("[a, b, a]", fired.toString());
+    }
+}
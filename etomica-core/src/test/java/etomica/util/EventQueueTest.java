@@ -0,0 +1,74 @@
+package etomica.util;
+
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventQueueTest {
+
+    private static IEventQueue makeQueue(String name) {
+        return name.equals("HeapList") ? new HeapList() : new TreeList();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"TreeList", "HeapList"})
+    public void testFirstElement(String name) {
+        IEventQueue queue = makeQueue(name);
+        assertNull(queue.firstElement());
+        RandomMersenneTwister random = new RandomMersenneTwister(5);
+        List<TreeLinker> inQueue = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            TreeLinker linker = new TreeLinker(i);
+            linker.sortKey = random.nextDouble();
+            queue.add(linker);
+            inQueue.add(linker);
+        }
+        queue.check();
+
+        for (int step = 0; step < 5000; step++) {
+            // remove an arbitrary event and put it back with a new time
+            TreeLinker linker = inQueue.get(random.nextInt(inQueue.size()));
+            queue.remove(linker);
+            linker.sortKey = random.nextDouble();
+            queue.add(linker);
+
+            TreeLinker min = inQueue.stream().min(Comparator.comparingDouble(l -> l.sortKey)).get();
+            assertEquals(min.sortKey, inQueue.get((Integer) queue.firstElement()).sortKey);
+        }
+        queue.check();
+
+        // drain in order
+        double last = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < inQueue.size(); i++) {
+            TreeLinker first = inQueue.get((Integer) queue.firstElement());
+            assertTrue(first.sortKey >= last);
+            last = first.sortKey;
+            queue.remove(first);
+        }
+        assertNull(queue.firstElement());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"TreeList", "HeapList"})
+    public void testReset(String name) {
+        IEventQueue queue = makeQueue(name);
+        TreeLinker[] linkers = new TreeLinker[10];
+        for (int i = 0; i < linkers.length; i++) {
+            linkers[i] = new TreeLinker(i);
+            linkers[i].sortKey = 10 - i;
+            queue.add(linkers[i]);
+        }
+        assertEquals(9, queue.firstElement());
+        queue.reset();
+        assertNull(queue.firstElement());
+        linkers[3].sortKey = 0;
+        queue.add(linkers[3]);
+        assertEquals(3, queue.firstElement());
+    }
+}
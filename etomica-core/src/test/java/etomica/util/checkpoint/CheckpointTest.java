@@ -0,0 +1,189 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.checkpoint;
+
+import etomica.action.BoxInflate;
+import etomica.atom.AtomType;
+import etomica.atom.IAtomKinetic;
+import etomica.atom.IAtomList;
+import etomica.box.Box;
+import etomica.config.ConfigurationLattice;
+import etomica.data.AccumulatorAverage;
+import etomica.data.AccumulatorAverageFixed;
+import etomica.data.DataPumpListener;
+import etomica.data.meter.MeterPotentialEnergyFromIntegrator;
+import etomica.integrator.IntegratorBox;
+import etomica.integrator.IntegratorListenerAction;
+import etomica.integrator.IntegratorMC;
+import etomica.integrator.IntegratorMD;
+import etomica.integrator.IntegratorVelocityVerlet;
+import etomica.integrator.IntegratorVerlet;
+import etomica.integrator.mcmove.MCMoveAtom;
+import etomica.lattice.LatticeCubicFcc;
+import etomica.nbr.cell.PotentialMasterCell;
+import etomica.nbr.list.PotentialMasterList;
+import etomica.potential.P2LennardJones;
+import etomica.potential.P2SoftSphericalTruncated;
+import etomica.potential.PotentialMaster;
+import etomica.simulation.Simulation;
+import etomica.space3d.Space3D;
+import etomica.species.SpeciesSpheresMono;
+import etomica.util.random.RandomMersenneTwister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a simulation restored from a checkpoint continues exactly as
+ * the checkpointed simulation does.
+ */
+class CheckpointTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = Files.createTempFile("etomica", ".chk");
+        Files.delete(file);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testMC() {
+        checkRestart(false);
+    }
+
+    @Test
+    void testMD() {
+        checkRestart(true);
+    }
+
+    @Test
+    void testUnsupportedIntegrator() {
+        Simulation sim = new Simulation(Space3D.getInstance());
+        Box box = sim.makeBox();
+        Checkpoint checkpoint = new Checkpoint(sim, file.toString());
+        IntegratorVerlet integrator = new IntegratorVerlet(sim, new PotentialMaster(), box);
+        assertThrows(IllegalArgumentException.class, () -> checkpoint.addIntegrator(integrator));
+    }
+
+    private void checkRestart(boolean md) {
+        LJSim original = new LJSim(md, 1);
+        // checkpoint is written after 300 steps
+        original.integrator.getEventManager().addListener(new IntegratorListenerAction(original.checkpoint, 300));
+        for (int i = 0; i < 500; i++) {
+            original.integrator.doStep();
+        }
+        assertTrue(original.checkpoint.exists());
+
+        // different seed; everything should come from the checkpoint
+        LJSim restarted = new LJSim(md, 2);
+        restarted.checkpoint.restore();
+        assertEquals(300, restarted.integrator.getStepCount());
+        for (int i = 0; i < 200; i++) {
+            restarted.integrator.doStep();
+        }
+
+        assertEquals(original.integrator.getStepCount(), restarted.integrator.getStepCount());
+        IAtomList atoms0 = original.box.getLeafList();
+        IAtomList atoms1 = restarted.box.getLeafList();
+        assertEquals(atoms0.size(), atoms1.size());
+        for (int i = 0; i < atoms0.size(); i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(atoms0.get(i).getPosition().getX(j), atoms1.get(i).getPosition().getX(j));
+                if (md) {
+                    assertEquals(((IAtomKinetic) atoms0.get(i)).getVelocity().getX(j), ((IAtomKinetic) atoms1.get(i)).getVelocity().getX(j));
+                }
+            }
+        }
+        assertEquals(original.integrator.getPotentialEnergy(), restarted.integrator.getPotentialEnergy());
+        if (md) {
+            assertEquals(((IntegratorMD) original.integrator).getCurrentTime(), ((IntegratorMD) restarted.integrator).getCurrentTime());
+        }
+        else {
+            assertEquals(original.mcMove.getStepSize(), restarted.mcMove.getStepSize());
+            assertEquals(original.mcMove.getTracker().acceptanceRatio(), restarted.mcMove.getTracker().acceptanceRatio());
+        }
+        assertEquals(original.accumulator.getSampleCount(), restarted.accumulator.getSampleCount());
+        double[] avg0 = new double[1], avg1 = new double[1];
+        original.accumulator.getData(AccumulatorAverage.AVERAGE).assignTo(avg0);
+        restarted.accumulator.getData(AccumulatorAverage.AVERAGE).assignTo(avg1);
+        assertArrayEquals(avg0, avg1);
+        assertEquals(original.sim.getRandom().nextDouble(), restarted.sim.getRandom().nextDouble());
+    }
+
+    private class LJSim {
+        final Simulation sim;
+        final Box box;
+        final IntegratorBox integrator;
+        final AccumulatorAverageFixed accumulator;
+        final Checkpoint checkpoint;
+        MCMoveAtom mcMove;
+
+        LJSim(boolean md, int seed) {
+            sim = new Simulation(Space3D.getInstance());
+            sim.setRandom(new RandomMersenneTwister(seed));
+            SpeciesSpheresMono species = new SpeciesSpheresMono(sim, sim.getSpace());
+            species.setIsDynamic(md);
+            sim.addSpecies(species);
+            box = sim.makeBox();
+            box.setNMolecules(species, 256);
+            BoxInflate inflater = new BoxInflate(box, sim.getSpace());
+            inflater.setTargetDensity(0.7);
+            inflater.actionPerformed();
+            new ConfigurationLattice(new LatticeCubicFcc(sim.getSpace()), sim.getSpace()).initializeCoordinates(box);
+            P2SoftSphericalTruncated p2 = new P2SoftSphericalTruncated(sim.getSpace(), new P2LennardJones(sim.getSpace()), 2.5);
+            AtomType leafType = species.getLeafType();
+            if (md) {
+                PotentialMasterList potentialMasterList = new PotentialMasterList(sim, 3.0, sim.getSpace());
+                potentialMasterList.addPotential(p2, new AtomType[]{leafType, leafType});
+                IntegratorVelocityVerlet integratorMD = new IntegratorVelocityVerlet(sim, potentialMasterList, box);
+                integratorMD.setTimeStep(0.005);
+                integratorMD.setTemperature(1.2);
+                integratorMD.setIsothermal(true);
+                integratorMD.setThermostat(IntegratorMD.ThermostatType.ANDERSEN_SINGLE);
+                integratorMD.setThermostatInterval(5);
+                integratorMD.getEventManager().addListener(potentialMasterList.getNeighborManager(box));
+                integrator = integratorMD;
+            }
+            else {
+                PotentialMasterCell potentialMasterCell = new PotentialMasterCell(sim, 2.5, sim.getSpace());
+                potentialMasterCell.setCellRange(2);
+                potentialMasterCell.addPotential(p2, new AtomType[]{leafType, leafType});
+                IntegratorMC integratorMC = new IntegratorMC(sim, potentialMasterCell, box);
+                integratorMC.setTemperature(1.2);
+                mcMove = new MCMoveAtom(sim.getRandom(), potentialMasterCell, sim.getSpace());
+                mcMove.setStepSize(0.2);
+                integratorMC.getMoveManager().addMCMove(mcMove);
+                integratorMC.getMoveEventManager().addListener(potentialMasterCell.getNbrCellManager(box).makeMCMoveListener());
+                integrator = integratorMC;
+            }
+
+            accumulator = new AccumulatorAverageFixed(10);
+            DataPumpListener pump = new DataPumpListener(new MeterPotentialEnergyFromIntegrator(integrator), accumulator, 7);
+            integrator.getEventManager().addListener(pump);
+
+            checkpoint = new Checkpoint(sim, file.toString());
+            checkpoint.addBox(box);
+            checkpoint.addIntegrator(integrator);
+            checkpoint.add("accumulator", accumulator);
+            checkpoint.add("pump", pump);
+            integrator.reset();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.util.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+
+    @Test
+    public void testRegistry() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Metric timer = registry.get("b.timer");
+        Assertions.assertSame(timer, registry.get("b.timer"));
+        timer.addTime(2000000000L);
+        timer.addTime(1000000000L);
+        Metric counter = registry.get("a.counter");
+        counter.add(5);
+        counter.increment();
+
+        Assertions.assertArrayEquals(new String[]{"a.counter", "b.timer"}, registry.getMetrics().keySet().toArray());
+        Assertions.assertEquals(6, counter.getCount());
+        Assertions.assertEquals(2, timer.getCount());
+        Assertions.assertEquals(3.0, timer.getTime(), 1e-12);
+
+        DataSourceMetric meanTime = new DataSourceMetric(timer, DataSourceMetric.Quantity.MEAN_TIME);
+        Assertions.assertEquals(1.5, meanTime.getDataAsScalar(), 1e-12);
+        Assertions.assertEquals("b.timer mean time", meanTime.getDataInfo().getLabel());
+        DataSourceMetric count = new DataSourceMetric(counter, DataSourceMetric.Quantity.COUNT);
+        Assertions.assertEquals(6, count.getData().getValue(0), 0.5);
+
+        registry.reset();
+        Assertions.assertEquals(0, counter.getCount());
+        Assertions.assertEquals(0, timer.getTime());
+        Assertions.assertTrue(Double.isNaN(timer.getMeanTime()));
+    }
+}
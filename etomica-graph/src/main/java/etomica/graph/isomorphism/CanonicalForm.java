@@ -0,0 +1,297 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph.isomorphism;
+
+import java.util.Arrays;
+
+import etomica.graph.model.Bitmap;
+import etomica.graph.model.BitmapFactory;
+import etomica.graph.model.Graph;
+import etomica.graph.model.Node;
+import etomica.graph.model.impl.MetadataImpl;
+
+/**
+ * Canonical form of a graph, such that two graphs have equal canonical forms
+ * if and only if they are isomorphic (in the sense of Match.match, honoring
+ * node colors, edge colors and, if root points are special, node types).
+ * Instances can be used as hash keys, so that finding an isomorph of a graph
+ * in a collection is a hash lookup rather than a sequence of matches.
+ *
+ * The canonical labelling is found by partition refinement.  Nodes are
+ * partitioned by their labels and the partition is refined by the number of
+ * neighbors (by edge color) each node has in each cell until it is equitable.
+ * If cells with more than one node remain, each node of the first such cell
+ * is individualized in turn and the refinement repeated, and the labelling
+ * (among the leaves of this search) with the smallest certificate is taken.
+ * Nodes that can be swapped without changing the graph (twins) are
+ * individualized only once.
+ */
+public class CanonicalForm {
+
+  private final byte[] labelling;
+  private final Bitmap store;
+  private final int[] labels;
+  private final int hashCode;
+
+  private final int n;
+  private final int[] nodeLabels;
+  private final int[][] adj;
+  private int[] bestCertificate, bestColors;
+
+  public CanonicalForm(Graph g) {
+
+    n = g.nodeCount();
+    nodeLabels = new int[n];
+    adj = new int[n][n];
+    boolean rootPointsSpecial = MetadataImpl.rootPointsSpecial;
+    for (byte i = 0; i < n; i++) {
+      Node node = g.getNode(i);
+      nodeLabels[i] = node.getColor();
+      if (rootPointsSpecial) {
+        nodeLabels[i] |= node.getType() << 16;
+      }
+      for (byte j = 0; j < n; j++) {
+        if (i != j && g.hasEdge(i, j)) {
+          adj[i][j] = 1 + g.getEdge(i, j).getColor();
+        }
+      }
+    }
+
+    // initial partition, by node label
+    int[] color = new int[n];
+    int nCells = rank(nodeLabels, color);
+    search(color, nCells);
+
+    labelling = new byte[n];
+    byte[] order = new byte[n];
+    for (byte i = 0; i < n; i++) {
+      labelling[i] = (byte) bestColors[i];
+      order[bestColors[i]] = i;
+    }
+    store = BitmapFactory.createBitmap((byte) n, false);
+    int nEdges = 0;
+    int[] edgeLabels = new int[n * (n - 1)];
+    int bit = 0;
+    for (int p = 0; p < n; p++) {
+      for (int q = p + 1; q < n; q++) {
+        int pq = adj[order[p]][order[q]];
+        if (pq != 0) {
+          store.setBit(bit);
+          edgeLabels[nEdges++] = pq;
+          edgeLabels[nEdges++] = adj[order[q]][order[p]];
+        }
+        bit++;
+      }
+    }
+    labels = new int[n + nEdges];
+    for (int p = 0; p < n; p++) {
+      labels[p] = nodeLabels[order[p]];
+    }
+    System.arraycopy(edgeLabels, 0, labels, n, nEdges);
+    hashCode = 31 * store.hashCode() + Arrays.hashCode(labels);
+  }
+
+  /**
+   * Returns the canonical label of each node, suitable for RelabelParameters.
+   * Relabeling any two isomorphic graphs this way yields identical graphs.
+   */
+  public byte[] getLabelling() {
+
+    return labelling.clone();
+  }
+
+  /**
+   * Returns the edges of the canonically labeled graph, with a bit for each
+   * pair of nodes (0,1),(0,2),...,(0,n-1),(1,2),...
+   */
+  public Bitmap getStore() {
+
+    return store;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CanonicalForm)) {
+      return false;
+    }
+    CanonicalForm other = (CanonicalForm) obj;
+    return hashCode == other.hashCode && store.equals(other.store) && Arrays.equals(labels, other.labels);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return hashCode;
+  }
+
+  /**
+   * Refines the partition given by color (and individualizes nodes, if
+   * needed) until each node is in its own cell, keeping the labelling with the
+   * smallest certificate.
+   */
+  private void search(int[] color, int nCells) {
+
+    nCells = refine(color, nCells);
+    if (nCells == n) {
+      int[] certificate = certificate(color);
+      if (bestCertificate == null || compare(certificate, bestCertificate) < 0) {
+        bestCertificate = certificate;
+        bestColors = color.clone();
+      }
+      return;
+    }
+    // individualize each node in the first cell with more than one node
+    int[] cellSize = new int[nCells];
+    for (int i = 0; i < n; i++) {
+      cellSize[color[i]]++;
+    }
+    int target = 0;
+    while (cellSize[target] == 1) {
+      target++;
+    }
+    int[] tried = new int[cellSize[target]];
+    int nTried = 0;
+    int[] child = new int[n];
+    outer: for (int v = 0; v < n; v++) {
+      if (color[v] != target) {
+        continue;
+      }
+      for (int t = 0; t < nTried; t++) {
+        if (isTwin(tried[t], v)) {
+          // swapping v and tried[t] is an automorphism, so we would find
+          // the same certificates
+          continue outer;
+        }
+      }
+      tried[nTried++] = v;
+      for (int i = 0; i < n; i++) {
+        child[i] = color[i] > target || (color[i] == target && i != v) ? color[i] + 1 : color[i];
+      }
+      search(child.clone(), nCells + 1);
+    }
+  }
+
+  /**
+   * Refines the partition until it is equitable, keeping the order of the
+   * existing cells.  Returns the new number of cells.
+   */
+  private int refine(int[] color, int nCells) {
+
+    long[][] keys = new long[n][n];
+    Integer[] nodes = new Integer[n];
+    while (nCells < n) {
+      for (int v = 0; v < n; v++) {
+        long[] key = keys[v];
+        key[0] = color[v];
+        int k = 1;
+        for (int u = 0; u < n; u++) {
+          if (u == v) continue;
+          key[k++] = ((long) color[u] << 42) | ((long) adj[v][u] << 21) | adj[u][v];
+        }
+        Arrays.sort(key, 1, n);
+        nodes[v] = v;
+      }
+      Arrays.sort(nodes, (a, b) -> compare(keys[a], keys[b]));
+      int newCells = 0;
+      for (int i = 0; i < n; i++) {
+        if (i > 0 && compare(keys[nodes[i]], keys[nodes[i - 1]]) != 0) {
+          newCells++;
+        }
+        color[nodes[i]] = newCells;
+      }
+      newCells++;
+      if (newCells == nCells) {
+        break;
+      }
+      nCells = newCells;
+    }
+    return nCells;
+  }
+
+  /**
+   * Returns true if nodes u and v can be swapped without changing the graph.
+   */
+  private boolean isTwin(int u, int v) {
+
+    if (nodeLabels[u] != nodeLabels[v] || adj[u][v] != adj[v][u]) {
+      return false;
+    }
+    for (int w = 0; w < n; w++) {
+      if (w == u || w == v) continue;
+      if (adj[u][w] != adj[v][w] || adj[w][u] != adj[w][v]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the node labels and edges of the graph relabeled according to the
+   * given (discrete) partition.
+   */
+  private int[] certificate(int[] color) {
+
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[color[i]] = i;
+    }
+    int[] certificate = new int[n * n];
+    for (int p = 0; p < n; p++) {
+      certificate[p] = nodeLabels[order[p]];
+    }
+    int k = n;
+    for (int p = 0; p < n; p++) {
+      for (int q = 0; q < n; q++) {
+        if (p == q) continue;
+        certificate[k++] = adj[order[p]][order[q]];
+      }
+    }
+    return certificate;
+  }
+
+  /**
+   * Assigns each node the rank of its value among the distinct values and
+   * returns the number of distinct values.
+   */
+  private static int rank(int[] values, int[] ranks) {
+
+    int[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int nDistinct = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[nDistinct++] = sorted[i];
+      }
+    }
+    for (int i = 0; i < values.length; i++) {
+      ranks[i] = Arrays.binarySearch(sorted, 0, nDistinct, values[i]);
+    }
+    return nDistinct;
+  }
+
+  private static int compare(int[] a, int[] b) {
+
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return a[i] < b[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private static int compare(long[] a, long[] b) {
+
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return a[i] < b[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+}
@@ -4,20 +4,30 @@
 
 package etomica.graph.iterators.filters;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
+import etomica.graph.isomorphism.CanonicalForm;
 import etomica.graph.isomorphism.Match;
 import etomica.graph.model.Graph;
 import etomica.graph.model.GraphIterator;
 
 public class IsomorphismFilter extends GlobalFilter {
 
+  // if true, isomorphs are found by looking up the canonical form of each
+  // graph; otherwise each graph is matched against those with the same
+  // signature
+  public static boolean USE_CANONICAL_FORM = true;
   public static boolean DEBUG_MODE = true;
   private static int DEBUG_FREQUENCY = 2500;
 
   private int countSeen = 0;
   private int countDiscarded = 0;
   private long debugStart = System.nanoTime();
+  // for each blocking set, the graphs in the set keyed by canonical form
+  private final Map<Set<Graph>, Map<CanonicalForm, Graph>> canonicalMaps = new IdentityHashMap<Set<Graph>, Map<CanonicalForm, Graph>>();
 
   public IsomorphismFilter(GraphIterator iterator) {
     this(iterator, null);
@@ -29,6 +39,9 @@ public class IsomorphismFilter extends GlobalFilter {
 
   protected boolean accept(Graph g1, Set<Graph> set) {
 
+    if (USE_CANONICAL_FORM) {
+      return acceptCanonical(g1, set);
+    }
     boolean result = true;
     if (!set.isEmpty()) {
       for (Graph isoGraph : set) {
@@ -62,6 +75,47 @@ public class IsomorphismFilter extends GlobalFilter {
     return result;
   }
 
+  protected boolean acceptCanonical(Graph g1, Set<Graph> set) {
+
+    Map<CanonicalForm, Graph> canonicalMap = canonicalMaps.get(set);
+    if (canonicalMap == null) {
+      canonicalMap = new HashMap<CanonicalForm, Graph>();
+      canonicalMaps.put(set, canonicalMap);
+    }
+    CanonicalForm key = new CanonicalForm(g1);
+    Graph isoGraph = canonicalMap.get(key);
+    boolean result = true;
+    if (isoGraph != null) {
+      // keep the graph lower in the graph order; update the graph coefficients
+      countDiscarded++;
+      if (isoGraph.compareTo(g1) >= 0) {
+        isoGraph.coefficient().add(g1.coefficient());
+        result = false;
+        if (isoGraph.coefficient().getNumerator() == 0) {
+          countDiscarded++;
+          set.remove(isoGraph);
+          canonicalMap.remove(key);
+        }
+      }
+      else {
+        set.remove(isoGraph);
+        canonicalMap.remove(key);
+        g1.coefficient().add(isoGraph.coefficient());
+        // replace the graph in the set with an isomorph with lower score
+        result = g1.coefficient().getNumerator() != 0;
+        if (!result) {
+          countDiscarded++;
+        }
+      }
+    }
+    if (result) {
+      canonicalMap.put(key, g1);
+    }
+    countSeen++;
+    debugReport();
+    return result;
+  }
+
   private void debugReport() {
 
     if (!DEBUG_MODE || (countSeen % DEBUG_FREQUENCY != 0)) {
@@ -6,15 +6,17 @@ package etomica.graph.model.impl;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import etomica.graph.model.Metadata;
 
 public class MetadataImpl implements Metadata {
 
-  private static final Map<String, Metadata> stock = new HashMap<String, Metadata>();
+  // keyed by type and color; graph operations may create metadata from
+  // multiple threads
+  private static final Map<Integer, Metadata> stock = new ConcurrentHashMap<Integer, Metadata>();
   public static Comparator<Metadata> metaDataComparator = null;
   private char type;
   private char color;
@@ -36,11 +38,16 @@ public class MetadataImpl implements Metadata {
 
   public static Metadata getStockComponent(char type, char color) {
 
-    String key = "" + type + color;
-    if (!stock.containsKey(key)) {
-      stock.put(key, new MetadataImpl(type, color));
+    Integer key = (type << 16) | color;
+    Metadata m = stock.get(key);
+    if (m == null) {
+      Metadata newMetadata = new MetadataImpl(type, color);
+      m = stock.putIfAbsent(key, newMetadata);
+      if (m == null) {
+        m = newMetadata;
+      }
     }
-    return stock.get(key);
+    return m;
   }
 
   public char getColor() {
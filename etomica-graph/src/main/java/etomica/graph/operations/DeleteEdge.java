@@ -23,9 +23,7 @@ public class DeleteEdge implements Unary {
 
     assert (params instanceof DeleteEdgeParameters);
     Set<Graph> result = new HashSet<Graph>();
-    for (Graph g : argument) {
-      result.add(apply(g, (DeleteEdgeParameters) params));
-    }
+    result.addAll(ParallelApply.apply(argument, g -> apply(g, (DeleteEdgeParameters) params)));
     return result;
   }
 
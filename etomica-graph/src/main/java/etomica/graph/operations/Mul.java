@@ -21,13 +21,18 @@ public class Mul implements Binary {
     assert(params instanceof MulParameters);
     Unary isoFree = new IsoFree();
     Set<Graph> result = new HashSet<Graph>();
-    for (Graph lg : left) {
+    List<List<Graph>> products = ParallelApply.apply(left, lg -> {
+      List<Graph> lgProducts = new ArrayList<Graph>();
       for (Graph rg : right) {
         Graph graph = apply(lg, rg, (MulParameters)params);
         if (graph != null) {
-          result.add(graph);
+          lgProducts.add(graph);
         }
       }
+      return lgProducts;
+    });
+    for (List<Graph> lgProducts : products) {
+      result.addAll(lgProducts);
     }
     return isoFree.apply(result, null);
   }
@@ -12,6 +12,7 @@ import etomica.graph.model.impl.MetadataImpl;
 import etomica.graph.operations.Mul.MulParameters;
 import etomica.graph.property.NumFieldNodes;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -66,16 +67,20 @@ public class MulFlexible implements Binary {
         assert (params instanceof MulFlexibleParameters);
         Set<Graph> result = new HashSet<Graph>();
         int maxNField = ((MulFlexibleParameters) params).nFieldPoints;
-        for (Graph g : argument) {
+        List<List<Graph>> products = ParallelApply.apply(argument, g -> {
+            List<Graph> gProducts = new ArrayList<Graph>();
             int numField1 = NumFieldNodes.value(g);
             // look only at graphs from g2 that will result in a product with less
             // than the max # of field nodes
             for (int i = 0; i <= maxNField - numField1; i++) {
                 for (Graph g2 : sets2[i]) {
-                    Graph newGraph = apply(g, g2, (MulFlexibleParameters) params);
-                    result.add(newGraph);
+                    gProducts.add(apply(g, g2, (MulFlexibleParameters) params));
                 }
             }
+            return gProducts;
+        });
+        for (List<Graph> gProducts : products) {
+            result.addAll(gProducts);
         }
         return result;
     }
@@ -0,0 +1,52 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph.operations;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import etomica.graph.model.Graph;
+
+/**
+ * Applies a function to each graph in a collection, processing chunks of the
+ * collection in parallel.  The results are returned in the collection's
+ * iteration order, so that an operation that combines them sequentially
+ * produces the same result as a sequential loop.  The function must be safe
+ * to call from multiple threads.
+ */
+public class ParallelApply {
+
+  // set to false to process graphs sequentially
+  public static boolean enabled = true;
+  // collections with fewer graphs are processed sequentially
+  public static int minGraphs = 64;
+
+  @SuppressWarnings("unchecked")
+  public static <T> List<T> apply(Collection<Graph> graphs, Function<Graph, T> function) {
+
+    final Graph[] g = graphs.toArray(new Graph[0]);
+    final Object[] result = new Object[g.length];
+    int nChunks = Math.min(g.length, 4 * ForkJoinPool.getCommonPoolParallelism());
+    if (!enabled || g.length < minGraphs || nChunks < 2) {
+      for (int i = 0; i < g.length; i++) {
+        result[i] = function.apply(g[i]);
+      }
+    }
+    else {
+      IntStream.range(0, nChunks).parallel().forEach(iChunk -> {
+        int start = (int) ((long) g.length * iChunk / nChunks);
+        int end = (int) ((long) g.length * (iChunk + 1) / nChunks);
+        for (int i = start; i < end; i++) {
+          result[i] = function.apply(g[i]);
+        }
+      });
+    }
+    return (List<T>) Arrays.asList(result);
+  }
+}
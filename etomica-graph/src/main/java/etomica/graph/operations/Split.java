@@ -30,17 +30,18 @@ public class Split implements Unary {
     int totalCount = 0;
     // We assume here that the set we're receiving is isofree.  We can then
     // assume that graphs that result from splitting can be isomers only if
-    // they come from the same original graph.
-    for (Graph g : argument) {
+    // they come from the same original graph, so each graph can be split
+    // (and the result made isofree) independently.
+    List<Set<Graph>> newSets = ParallelApply.apply(argument, g -> {
       Set<Graph> newSet = apply(g, (SplitParameters) params);
-              
       if (newSet.size() == 1) {
         // split had no effect (g did not contain the bond of interest)
-        result.addAll(newSet);
-      }
-      else {
-        result.addAll(isoFree.apply(newSet, null));
+        return newSet;
       }
+      return isoFree.apply(newSet, null);
+    });
+    for (Set<Graph> newSet : newSets) {
+      result.addAll(newSet);
       if (++count==interval) {
         if (totalCount == 0) System.out.print("Split =>");
         System.out.print(" "+result.size());
@@ -79,6 +80,8 @@ public class Split implements Unary {
         char newColor = permutation[edgePtr] == 0 ? params.newColor0() : params.newColor1();
         newGraph.getEdge(edges.get(edgePtr)).setColor(newColor);
       }
+      // graphs may be checked from several threads at once; see
+      // SplitParameters.getDiscardProperty
       if (dp == null || !dp.check(newGraph)) {
         result.add(newGraph);
       }
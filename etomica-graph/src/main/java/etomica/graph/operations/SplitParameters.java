@@ -39,6 +39,12 @@ public final class SplitParameters implements Parameters {
     return newColor1;
   }
   
+  /**
+   * Returns the property used to discard split graphs (graphs for which it
+   * returns true are dropped), or null.  Split checks graphs from several
+   * threads at once, so the property must be thread-safe, for instance by
+   * keeping no state between checks.
+   */
   public Property getDiscardProperty() {
     return discardCriteria;
   }
@@ -0,0 +1,101 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package etomica.graph.isomorphism;
+
+import java.util.Random;
+
+import etomica.graph.iterators.DefaultIterator;
+import etomica.graph.iterators.filters.IsomorphismFilter;
+import etomica.graph.model.Graph;
+import etomica.graph.model.GraphFactory;
+import etomica.graph.model.GraphIterator;
+import etomica.graph.operations.Relabel;
+import etomica.graph.operations.RelabelParameters;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CanonicalFormTest {
+
+  private static Graph randomGraph(byte n, Random random, int nNodeColors, int nEdgeColors, double pEdge) {
+
+    Graph g = GraphFactory.createGraph(n);
+    for (byte i = 0; i < n; i++) {
+      g.getNode(i).setColor((char) ('A' + random.nextInt(nNodeColors)));
+      for (byte j = (byte) (i + 1); j < n; j++) {
+        if (random.nextDouble() < pEdge) {
+          g.putEdge(i, j);
+          g.getEdge(i, j).setColor((char) ('A' + random.nextInt(nEdgeColors)));
+        }
+      }
+    }
+    return g;
+  }
+
+  private static byte[] randomPermutation(byte n, Random random) {
+
+    byte[] p = new byte[n];
+    for (byte i = 0; i < n; i++) {
+      p[i] = i;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      byte t = p[i];
+      p[i] = p[j];
+      p[j] = t;
+    }
+    return p;
+  }
+
+  @Test
+  public void testRelabeled() {
+
+    Random random = new Random(3);
+    Relabel relabel = new Relabel();
+    for (int k = 0; k < 500; k++) {
+      byte n = (byte) (2 + random.nextInt(9));
+      Graph g = randomGraph(n, random, 1 + random.nextInt(2), 1 + random.nextInt(2), random.nextDouble());
+      Graph g2 = relabel.apply(g, new RelabelParameters(randomPermutation(n, random)));
+      CanonicalForm form = new CanonicalForm(g);
+      Assertions.assertEquals(form, new CanonicalForm(g2));
+      // relabeling with the canonical labelling gives the same graph
+      Graph c1 = relabel.apply(g, new RelabelParameters(form.getLabelling()));
+      Graph c2 = relabel.apply(g2, new RelabelParameters(new CanonicalForm(g2).getLabelling()));
+      Assertions.assertEquals(0, c1.compareTo(c2));
+    }
+  }
+
+  @Test
+  public void testMatch() {
+
+    Random random = new Random(5);
+    int nIso = 0;
+    for (int k = 0; k < 2000; k++) {
+      byte n = (byte) (4 + random.nextInt(3));
+      Graph g1 = randomGraph(n, random, 2, 2, 0.5);
+      Graph g2 = randomGraph(n, random, 2, 2, 0.5);
+      boolean match = Match.match(g1, g2, false);
+      if (match) nIso++;
+      Assertions.assertEquals(match, new CanonicalForm(g1).equals(new CanonicalForm(g2)));
+    }
+    Assertions.assertTrue(nIso > 0);
+  }
+
+  @Test
+  public void testIsoFreeCount() {
+
+    boolean oldDebug = IsomorphismFilter.DEBUG_MODE;
+    IsomorphismFilter.DEBUG_MODE = false;
+    for (byte n = 2; n <= 6; n++) {
+      GraphIterator iterator = new IsomorphismFilter(new DefaultIterator(n));
+      int count = 0;
+      while (iterator.hasNext()) {
+        iterator.next();
+        count++;
+      }
+      Assertions.assertEquals(Match.ISMORPHS_COUNT[n - 1], count);
+    }
+    IsomorphismFilter.DEBUG_MODE = oldDebug;
+  }
+}
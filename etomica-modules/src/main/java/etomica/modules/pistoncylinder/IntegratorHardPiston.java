@@ -100,7 +100,7 @@ public class IntegratorHardPiston extends IntegratorHard {
                         System.out.println("setting down time "+collisionTime+" for atom "+atom1+" with null");
                     }
                     if (aia.collisionPotential != null) {
-                        aia.eventLinker.remove();
+                        eventList.remove(aia.eventLinker);
                     }
                     aia.setCollision(collisionTime, null, pistonPotential);
                     eventList.add(aia.eventLinker);
@@ -0,0 +1,11 @@
+package etomica.server.dao;
+
+import etomica.server.resources.ConfigurationBroadcaster;
+
+import javax.inject.Singleton;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Singleton
+public class ConfigurationBroadcasterStore extends ConcurrentHashMap<UUID, ConfigurationBroadcaster> {
+}
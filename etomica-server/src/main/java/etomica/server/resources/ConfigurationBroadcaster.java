@@ -0,0 +1,209 @@
+package etomica.server.resources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import etomica.meta.wrappers.SimulationWrapper;
+import etomica.server.representations.ConfigurationUpdate;
+import etomica.server.serializers.ConfigurationBinaryEncoder;
+import etomica.simulation.Simulation;
+import etomica.space.Boundary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static etomica.server.EtomicaServer.objectWriter;
+
+/**
+ * Sends the configuration of one simulation to all of its websocket
+ * subscribers.  Each frame, the coordinates are copied on the simulation
+ * thread, then (back on the executor thread) encoded once per format that
+ * some subscriber needs, and the same encoded frame is sent to every
+ * subscriber using that format.
+ * <p>
+ * A subscriber whose previous frame is still being sent skips the new frame
+ * rather than queueing it, so slow clients see a lower frame rate instead of
+ * growing latency and server memory.  Subscribers to the DELTA format that
+ * missed the previous frame are sent a QUANTIZED keyframe instead.
+ */
+public class ConfigurationBroadcaster {
+    public enum Format {JSON, FLOAT32, QUANTIZED, DELTA}
+
+    private static final long FRAME_INTERVAL_MILLIS = 33;
+
+    private final Logger log = LoggerFactory.getLogger(ConfigurationBroadcaster.class);
+
+    private final Simulation sim;
+    private final SimulationWrapper wrapper;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ConfigurationBinaryEncoder encoder = new ConfigurationBinaryEncoder();
+    private ScheduledFuture<?> task;
+    private boolean closed;
+    private int frameNumber;
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    // filled on the simulation thread
+    private double[][][] coordinates;
+    private double[][] boxSizes;
+    private Boundary[] boundaries;
+
+    public ConfigurationBroadcaster(Simulation sim, SimulationWrapper wrapper, ScheduledThreadPoolExecutor executor) {
+        this.sim = sim;
+        this.wrapper = wrapper;
+        this.executor = executor;
+    }
+
+    /**
+     * Adds the session as a subscriber.
+     *
+     * @return false if the broadcaster has been closed (its simulation was
+     * deleted), in which case the session is not subscribed
+     */
+    public synchronized boolean subscribe(Session session, Format format) {
+        if (closed) {
+            return false;
+        }
+        subscribers.put(session, new Subscriber(session, format));
+        if (task == null) {
+            task = executor.scheduleWithFixedDelay(this::broadcast, 0, FRAME_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    public synchronized void unsubscribe(Session session) {
+        subscribers.remove(session);
+        if (subscribers.isEmpty() && task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /**
+     * Stops broadcasting and drops all subscribers, so that the simulation
+     * can be released.  Called when the simulation is deleted.
+     */
+    public synchronized void close() {
+        closed = true;
+        subscribers.clear();
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /**
+     * @return the number of frames skipped for subscribers that were still
+     * receiving the previous frame
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    private void broadcast() {
+        try {
+            if (sim.getController().isPaused() || !sim.getController().isActive()) {
+                return;
+            }
+            boolean anyReady = false;
+            for (Subscriber s : subscribers.values()) {
+                anyReady = anyReady || !s.sending.get();
+            }
+            if (!anyReady) {
+                droppedFrames.addAndGet(subscribers.size());
+                return;
+            }
+
+            sim.getController().doActionNow(() -> {
+                coordinates = wrapper.getAllCoordinates();
+                int nBoxes = sim.getBoxCount();
+                if (boxSizes == null || boxSizes.length != nBoxes) {
+                    boxSizes = new double[nBoxes][sim.getSpace().D()];
+                }
+                boundaries = new Boundary[nBoxes];
+                for (int i = 0; i < nBoxes; i++) {
+                    boundaries[i] = sim.getBox(i).getBoundary();
+                    boundaries[i].getBoxSize().assignTo(boxSizes[i]);
+                }
+            });
+            frameNumber++;
+            encoder.setFrame(frameNumber, coordinates, boxSizes);
+
+            String json = null;
+            ByteBuffer float32 = null, quantized = null, delta = null;
+            for (Subscriber s : subscribers.values()) {
+                if (!s.sending.compareAndSet(false, true)) {
+                    droppedFrames.incrementAndGet();
+                    continue;
+                }
+                // record the frame before sending; if the send fails, the
+                // callback (which may run before send returns) resets it
+                int previousFrame = s.lastFrame;
+                s.lastFrame = frameNumber;
+                switch (s.format) {
+                    case JSON:
+                        if (json == null) {
+                            json = objectWriter().writeValueAsString(new ConfigurationUpdate(coordinates, boundaries));
+                        }
+                        s.send(json);
+                        break;
+                    case FLOAT32:
+                        if (float32 == null) float32 = encoder.encodeFloat32();
+                        s.send(float32);
+                        break;
+                    case DELTA:
+                        if (encoder.canSendDelta(previousFrame)) {
+                            if (delta == null) delta = encoder.encodeDelta();
+                            s.send(delta);
+                            break;
+                        }
+                        // fall through and send a keyframe
+                    case QUANTIZED:
+                        if (quantized == null) quantized = encoder.encodeQuantized();
+                        s.send(quantized);
+                        break;
+                }
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            // an exception would silently cancel the scheduled task
+            log.warn("Error sending configuration", e);
+        }
+    }
+
+    private class Subscriber {
+        final Session session;
+        final Format format;
+        final AtomicBoolean sending = new AtomicBoolean();
+        // written by the send callback as well as the broadcasting thread
+        volatile int lastFrame = -1;
+
+        Subscriber(Session session, Format format) {
+            this.session = session;
+            this.format = format;
+        }
+
+        void send(String text) {
+            session.getAsyncRemote().sendText(text, result -> sent(result.isOK(), result.getException()));
+        }
+
+        void send(ByteBuffer buffer) {
+            // duplicate so that each send has its own position
+            session.getAsyncRemote().sendBinary(buffer.duplicate(), result -> sent(result.isOK(), result.getException()));
+        }
+
+        private void sent(boolean ok, Throwable exception) {
+            if (!ok) {
+                log.debug("Failed to send configuration", exception);
+                lastFrame = -1;
+            }
+            sending.set(false);
+        }
+    }
+}
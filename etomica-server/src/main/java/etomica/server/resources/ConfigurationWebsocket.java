@@ -3,13 +3,11 @@ package etomica.server.resources;
 import com.codahale.metrics.annotation.Metered;
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import etomica.meta.SimulationModel;
 import etomica.meta.wrappers.SimulationWrapper;
+import etomica.server.dao.ConfigurationBroadcasterStore;
 import etomica.server.dao.SimulationStore;
-import etomica.server.representations.ConfigurationUpdate;
 import etomica.simulation.Simulation;
-import etomica.space.Boundary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,99 +16,87 @@ import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 import java.io.IOException;
-import java.io.Writer;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
-import static etomica.server.EtomicaServer.objectWriter;
-
-@ServerEndpoint(
-        value="/simulations/{id}/configuration",
-        encoders = {ConfigurationWebsocket.ConfigurationUpdateEncoder.class}
-)
+@ServerEndpoint("/simulations/{id}/configuration")
 @Metered
 @Timed
 public class ConfigurationWebsocket {
     private final SimulationStore simStore;
+    private final ConfigurationBroadcasterStore broadcasterStore;
     private final ObjectMapper mapper;
     private final ScheduledThreadPoolExecutor executor;
 
     private final Logger log = LoggerFactory.getLogger(ConfigurationWebsocket.class);
 
     @Inject
-    public ConfigurationWebsocket(SimulationStore store, ObjectMapper mapper, ScheduledThreadPoolExecutor executor) {
+    public ConfigurationWebsocket(SimulationStore store, ConfigurationBroadcasterStore broadcasterStore, ObjectMapper mapper, ScheduledThreadPoolExecutor executor) {
         this.simStore = store;
+        this.broadcasterStore = broadcasterStore;
         this.mapper = mapper;
         this.executor = executor;
     }
 
+    /**
+     * Subscribes the session to configuration updates for the simulation.
+     * The format query parameter selects json (the default), float32,
+     * quantized or delta; see ConfigurationBinaryEncoder for the binary
+     * formats.
+     */
     @OnOpen
     public void onOpen(final Session session, @PathParam("id") String id) {
         session.setMaxIdleTimeout(0);
 
-        SimulationModel model = simStore.get(UUID.fromString(id));
-        Simulation sim = model.getSimulation();
-        SimulationWrapper wrapper = (SimulationWrapper) model.getWrapper(sim);
-
-        Runnable sendConfigurationUpdate = () -> {
-            if(sim.getController().isPaused() || !sim.getController().isActive()) {
+        ConfigurationBroadcaster.Format format = ConfigurationBroadcaster.Format.JSON;
+        List<String> formatParam = session.getRequestParameterMap().get("format");
+        if (formatParam != null && !formatParam.isEmpty()) {
+            try {
+                format = ConfigurationBroadcaster.Format.valueOf(formatParam.get(0).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                try {
+                    session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Unknown configuration format"));
+                } catch (IOException ex) {
+                    log.warn("Error closing websocket", ex);
+                }
                 return;
             }
+        }
 
-
-            sim.getController().doActionNow(() -> {
-                Boundary[] boundaries = new Boundary[sim.getBoxCount()];
-                for (int i = 0; i < sim.getBoxCount(); i++) {
-                    boundaries[i] = sim.getBox(i).getBoundary();
-                }
-
-                ConfigurationUpdate update = new ConfigurationUpdate(
-                        wrapper.getAllCoordinates(),
-                        boundaries
-                );
-                session.getAsyncRemote().sendObject(update);
-            });
-
-        };
-
-        ScheduledFuture<?> task = executor.scheduleWithFixedDelay(sendConfigurationUpdate, 0, 33, TimeUnit.MILLISECONDS);
-        session.getUserProperties().put("task", task);
+        UUID simId = UUID.fromString(id);
+        ConfigurationBroadcaster broadcaster = broadcasterStore.computeIfAbsent(simId, k -> {
+            SimulationModel model = simStore.get(simId);
+            Simulation sim = model.getSimulation();
+            return new ConfigurationBroadcaster(sim, (SimulationWrapper) model.getWrapper(sim), executor);
+        });
+        if (!broadcaster.subscribe(session, format)) {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Simulation was deleted"));
+            } catch (IOException ex) {
+                log.warn("Error closing websocket", ex);
+            }
+            return;
+        }
+        session.getUserProperties().put("broadcaster", broadcaster);
     }
 
     @OnClose
     public void onClose(Session session) {
         log.warn("Closing websocket");
-        ((ScheduledFuture<?>) session.getUserProperties().get("task")).cancel(false);
+        unsubscribe(session);
     }
 
     @OnError
     public void onError(Session session, Throwable reason) {
         log.warn("Error in websocket", reason);
-        ((ScheduledFuture<?>) session.getUserProperties().get("task")).cancel(false);
+        unsubscribe(session);
     }
 
-
-    public static class ConfigurationUpdateEncoder implements Encoder.TextStream<ConfigurationUpdate> {
-        private static ObjectWriter objectWriter = objectWriter();
-
-        @Override
-        public void encode(ConfigurationUpdate object, Writer writer) throws EncodeException, IOException {
-            objectWriter.writeValue(writer, object);
-
-        }
-
-        @Override
-        public void init(EndpointConfig config) {
-
-        }
-
-        @Override
-        public void destroy() {
-
+    private void unsubscribe(Session session) {
+        ConfigurationBroadcaster broadcaster = (ConfigurationBroadcaster) session.getUserProperties().get("broadcaster");
+        if (broadcaster != null) {
+            broadcaster.unsubscribe(session);
         }
     }
 }
@@ -3,6 +3,7 @@ package etomica.server.resources;
 import etomica.data.DataDump;
 import etomica.data.DataPipeForked;
 import etomica.meta.SimulationModel;
+import etomica.server.dao.ConfigurationBroadcasterStore;
 import etomica.server.dao.DataStreamStore;
 import etomica.server.dao.SimulationStore;
 import etomica.server.representations.SimClassInfo;
@@ -26,11 +27,13 @@ import java.util.UUID;
 public class SimulationResource {
     private final SimulationStore simStore;
     private final DataStreamStore dataStore;
+    private final ConfigurationBroadcasterStore broadcasterStore;
 
     @Inject
-    public SimulationResource(SimulationStore simStore, DataStreamStore dataStore) {
+    public SimulationResource(SimulationStore simStore, DataStreamStore dataStore, ConfigurationBroadcasterStore broadcasterStore) {
         this.simStore = simStore;
         this.dataStore = dataStore;
+        this.broadcasterStore = broadcasterStore;
     }
 
     @GET
@@ -78,6 +81,10 @@ public class SimulationResource {
         SimulationModel model = simStore.get(id);
         model.getSimulation().getController().halt();
         simStore.remove(id);
+        ConfigurationBroadcaster broadcaster = broadcasterStore.remove(id);
+        if (broadcaster != null) {
+            broadcaster.close();
+        }
     }
 
 
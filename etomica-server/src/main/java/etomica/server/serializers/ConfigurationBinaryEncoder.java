@@ -0,0 +1,180 @@
+package etomica.server.serializers;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes atom coordinates into compact binary websocket frames.  All values
+ * are little-endian.  Each frame is laid out as
+ * <pre>
+ * byte    format (FLOAT32, QUANTIZED or DELTA)
+ * int32   frame number
+ * int32   number of boxes
+ * for each box:
+ *   byte    D
+ *   int32   number of atoms
+ *   float32 x D   box edge lengths
+ * for each box, for each atom, for each dimension:
+ *   FLOAT32:   float32 coordinate
+ *   QUANTIZED: uint16 q, where x = (2 q / 65535 - 1) L
+ *   DELTA:     q - q(previous frame) as a zigzag-encoded varint
+ * </pre>
+ * Quantized coordinates cover -L to L (so that atoms of molecules that
+ * straddle the boundary are not clipped) with a resolution of L/32768.  A
+ * DELTA frame can only be applied to the frame immediately before it, and
+ * is typically 1 byte per coordinate.
+ * <p>
+ * Call {@link #setFrame} with each new set of coordinates, then encode it in
+ * whichever formats are needed.  Each encode allocates a new buffer, so
+ * buffers can be handed to asynchronous sends and shared between them.
+ */
+public class ConfigurationBinaryEncoder {
+    public static final byte FLOAT32 = 0;
+    public static final byte QUANTIZED = 1;
+    public static final byte DELTA = 2;
+
+    private double[][][] coordinates;
+    private double[][] boxSizes;
+    private int[][] quantized, previousQuantized;
+    private int frameNumber;
+    private boolean hasDelta;
+
+    /**
+     * Takes a new frame.  The coordinates are quantized immediately; the
+     * arrays are not copied and must not change until encoding is done.
+     *
+     * @param frameNumber number of the frame, passed through to the client
+     * @param coordinates coordinates for each box, atom and dimension
+     * @param boxSizes    edge lengths of each box
+     */
+    public void setFrame(int frameNumber, double[][][] coordinates, double[][] boxSizes) {
+        this.frameNumber = frameNumber;
+        this.coordinates = coordinates;
+        this.boxSizes = boxSizes;
+
+        int[][] tmp = previousQuantized;
+        previousQuantized = quantized;
+        quantized = tmp;
+        hasDelta = previousQuantized != null && previousQuantized.length == coordinates.length;
+        if (quantized == null || quantized.length != coordinates.length) {
+            quantized = new int[coordinates.length][];
+        }
+        for (int i = 0; i < coordinates.length; i++) {
+            double[][] box = coordinates[i];
+            int D = boxSizes[i].length;
+            if (quantized[i] == null || quantized[i].length != box.length * D) {
+                quantized[i] = new int[box.length * D];
+            }
+            hasDelta = hasDelta && previousQuantized[i] != null && previousQuantized[i].length == quantized[i].length;
+            int[] q = quantized[i];
+            for (int j = 0; j < box.length; j++) {
+                for (int k = 0; k < D; k++) {
+                    double s = (box[j][k] / boxSizes[i][k] + 1) * 0.5;
+                    q[j * D + k] = (int) Math.max(0, Math.min(65535, Math.round(s * 65535)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the current frame can be encoded as a delta from the
+     * previous one (the number of boxes and atoms did not change)
+     */
+    public boolean hasDelta() {
+        return hasDelta;
+    }
+
+    /**
+     * Returns whether a client that last received the given frame can be
+     * sent the current frame as a delta.  A client that missed a frame (or
+     * never received one) needs a QUANTIZED keyframe instead.
+     *
+     * @param lastFrame number of the last frame the client received, or -1
+     */
+    public boolean canSendDelta(int lastFrame) {
+        return hasDelta && lastFrame == frameNumber - 1;
+    }
+
+    /**
+     * @return the number of the current frame
+     */
+    public int getFrameNumber() {
+        return frameNumber;
+    }
+
+    public ByteBuffer encodeFloat32() {
+        ByteBuffer buffer = allocate(FLOAT32, 4);
+        for (double[][] box : coordinates) {
+            for (double[] atom : box) {
+                for (double x : atom) {
+                    buffer.putFloat((float) x);
+                }
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public ByteBuffer encodeQuantized() {
+        ByteBuffer buffer = allocate(QUANTIZED, 2);
+        for (int[] q : quantized) {
+            for (int v : q) {
+                buffer.putShort((short) v);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Encodes the frame as a delta from the previous frame.
+     *
+     * @throws IllegalStateException if there is no compatible previous frame
+     */
+    public ByteBuffer encodeDelta() {
+        if (!hasDelta) {
+            throw new IllegalStateException("no previous frame to encode a delta from");
+        }
+        // zigzag values up to 2*65535 fit in 3 bytes
+        ByteBuffer buffer = allocate(DELTA, 3);
+        for (int i = 0; i < quantized.length; i++) {
+            int[] q = quantized[i];
+            int[] qPrevious = previousQuantized[i];
+            for (int j = 0; j < q.length; j++) {
+                int d = q[j] - qPrevious[j];
+                int zigzag = (d << 1) ^ (d >> 31);
+                while ((zigzag & ~0x7f) != 0) {
+                    buffer.put((byte) ((zigzag & 0x7f) | 0x80));
+                    zigzag >>>= 7;
+                }
+                buffer.put((byte) zigzag);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Allocates a buffer big enough for the header and maxBytesPerValue for
+     * each coordinate, and writes the header.
+     */
+    private ByteBuffer allocate(byte format, int maxBytesPerValue) {
+        int size = 9;
+        for (int i = 0; i < coordinates.length; i++) {
+            int D = boxSizes[i].length;
+            size += 5 + 4 * D + maxBytesPerValue * coordinates[i].length * D;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(format);
+        buffer.putInt(frameNumber);
+        buffer.putInt(coordinates.length);
+        for (int i = 0; i < coordinates.length; i++) {
+            buffer.put((byte) boxSizes[i].length);
+            buffer.putInt(coordinates[i].length);
+            for (double L : boxSizes[i]) {
+                buffer.putFloat((float) L);
+            }
+        }
+        return buffer;
+    }
+}
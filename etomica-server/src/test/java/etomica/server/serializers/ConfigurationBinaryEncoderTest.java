@@ -0,0 +1,232 @@
+package etomica.server.serializers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Decodes frames written by ConfigurationBinaryEncoder, as a client would,
+ * and checks them against the coordinates that were encoded.
+ */
+class ConfigurationBinaryEncoderTest {
+
+    private static final double[][] BOX_SIZES = {{10, 12, 14}, {5, 6}};
+
+    private ConfigurationBinaryEncoder encoder;
+    private Random random;
+
+    @BeforeEach
+    void setup() {
+        encoder = new ConfigurationBinaryEncoder();
+        random = new Random(12345);
+    }
+
+    @Test
+    void testFloat32() {
+        double[][][] coordinates = randomCoordinates(20, 7);
+        encoder.setFrame(1, coordinates, BOX_SIZES);
+        Frame frame = decode(encoder.encodeFloat32(), null);
+        assertEquals(ConfigurationBinaryEncoder.FLOAT32, frame.format);
+        assertEquals(1, frame.frameNumber);
+        checkHeader(frame, coordinates);
+        for (int i = 0; i < coordinates.length; i++) {
+            for (int j = 0; j < coordinates[i].length; j++) {
+                for (int k = 0; k < coordinates[i][j].length; k++) {
+                    assertEquals((float) coordinates[i][j][k], frame.coordinates[i][j][k]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testQuantized() {
+        double[][][] coordinates = randomCoordinates(20, 7);
+        // the extremes of the range
+        coordinates[0][0] = new double[]{-10, 12, 0};
+        encoder.setFrame(3, coordinates, BOX_SIZES);
+        Frame frame = decode(encoder.encodeQuantized(), null);
+        assertEquals(ConfigurationBinaryEncoder.QUANTIZED, frame.format);
+        assertEquals(3, frame.frameNumber);
+        checkHeader(frame, coordinates);
+        checkQuantized(frame, coordinates);
+    }
+
+    @Test
+    void testDelta() {
+        double[][][] coordinates = randomCoordinates(20, 7);
+        encoder.setFrame(1, coordinates, BOX_SIZES);
+        assertFalse(encoder.hasDelta());
+        Frame previous = decode(encoder.encodeQuantized(), null);
+
+        for (int frameNumber = 2; frameNumber < 6; frameNumber++) {
+            coordinates = move(coordinates, 0.05);
+            if (frameNumber == 4) {
+                // a jump across the box needs a multi-byte delta
+                coordinates[0][1][0] = -coordinates[0][1][0];
+                coordinates[1][2][1] = 5.9;
+            }
+            encoder.setFrame(frameNumber, coordinates, BOX_SIZES);
+            assertTrue(encoder.hasDelta());
+            Frame frame = decode(encoder.encodeDelta(), previous);
+            assertEquals(ConfigurationBinaryEncoder.DELTA, frame.format);
+            assertEquals(frameNumber, frame.frameNumber);
+            checkHeader(frame, coordinates);
+            checkQuantized(frame, coordinates);
+            // applying the delta gives the same frame as a keyframe
+            Frame keyframe = decode(encoder.encodeQuantized(), null);
+            for (int i = 0; i < frame.quantized.length; i++) {
+                assertArrayEquals(keyframe.quantized[i], frame.quantized[i]);
+            }
+            previous = frame;
+        }
+    }
+
+    @Test
+    void testKeyframeFallback() {
+        double[][][] coordinates = randomCoordinates(20, 7);
+        encoder.setFrame(1, coordinates, BOX_SIZES);
+        // nothing to take a delta from
+        assertFalse(encoder.canSendDelta(0));
+        assertFalse(encoder.canSendDelta(-1));
+        assertThrows(IllegalStateException.class, () -> encoder.encodeDelta());
+
+        encoder.setFrame(2, move(coordinates, 0.05), BOX_SIZES);
+        assertTrue(encoder.canSendDelta(1));
+        // a client that never received a frame, or that missed frame 1
+        assertFalse(encoder.canSendDelta(-1));
+        assertFalse(encoder.canSendDelta(0));
+
+        // the number of atoms changed, so every client needs a keyframe
+        encoder.setFrame(3, randomCoordinates(21, 7), BOX_SIZES);
+        assertFalse(encoder.hasDelta());
+        assertFalse(encoder.canSendDelta(2));
+        assertThrows(IllegalStateException.class, () -> encoder.encodeDelta());
+
+        // the number of boxes changed
+        encoder.setFrame(4, new double[][][]{randomCoordinates(21, 7)[0]}, new double[][]{BOX_SIZES[0]});
+        assertFalse(encoder.canSendDelta(3));
+    }
+
+    private double[][][] randomCoordinates(int n0, int n1) {
+        int[] n = {n0, n1};
+        double[][][] coordinates = new double[BOX_SIZES.length][][];
+        for (int i = 0; i < BOX_SIZES.length; i++) {
+            coordinates[i] = new double[n[i]][BOX_SIZES[i].length];
+            for (int j = 0; j < n[i]; j++) {
+                for (int k = 0; k < BOX_SIZES[i].length; k++) {
+                    coordinates[i][j][k] = (random.nextDouble() - 0.5) * BOX_SIZES[i][k];
+                }
+            }
+        }
+        return coordinates;
+    }
+
+    private double[][][] move(double[][][] coordinates, double step) {
+        double[][][] moved = new double[coordinates.length][][];
+        for (int i = 0; i < coordinates.length; i++) {
+            moved[i] = new double[coordinates[i].length][];
+            for (int j = 0; j < coordinates[i].length; j++) {
+                moved[i][j] = coordinates[i][j].clone();
+                for (int k = 0; k < moved[i][j].length; k++) {
+                    moved[i][j][k] += (random.nextDouble() - 0.5) * step;
+                }
+            }
+        }
+        return moved;
+    }
+
+    private void checkHeader(Frame frame, double[][][] coordinates) {
+        assertEquals(coordinates.length, frame.boxSizes.length);
+        for (int i = 0; i < coordinates.length; i++) {
+            assertEquals(BOX_SIZES[i].length, frame.boxSizes[i].length);
+            for (int k = 0; k < BOX_SIZES[i].length; k++) {
+                assertEquals((float) BOX_SIZES[i][k], frame.boxSizes[i][k]);
+            }
+            assertEquals(coordinates[i].length, frame.coordinates[i].length);
+        }
+    }
+
+    private void checkQuantized(Frame frame, double[][][] coordinates) {
+        for (int i = 0; i < coordinates.length; i++) {
+            for (int j = 0; j < coordinates[i].length; j++) {
+                for (int k = 0; k < coordinates[i][j].length; k++) {
+                    double L = BOX_SIZES[i][k];
+                    assertEquals(coordinates[i][j][k], frame.coordinates[i][j][k], L / 65535 * 1.0001);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a frame.  A DELTA frame is applied to the previous frame.
+     */
+    private static Frame decode(ByteBuffer buffer, Frame previous) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        Frame frame = new Frame();
+        frame.format = buffer.get();
+        frame.frameNumber = buffer.getInt();
+        int nBoxes = buffer.getInt();
+        frame.boxSizes = new float[nBoxes][];
+        frame.coordinates = new double[nBoxes][][];
+        frame.quantized = new int[nBoxes][];
+        for (int i = 0; i < nBoxes; i++) {
+            int D = buffer.get();
+            int nAtoms = buffer.getInt();
+            frame.boxSizes[i] = new float[D];
+            for (int k = 0; k < D; k++) {
+                frame.boxSizes[i][k] = buffer.getFloat();
+            }
+            frame.coordinates[i] = new double[nAtoms][D];
+            frame.quantized[i] = new int[nAtoms * D];
+        }
+        for (int i = 0; i < nBoxes; i++) {
+            float[] L = frame.boxSizes[i];
+            int D = L.length;
+            for (int j = 0; j < frame.coordinates[i].length; j++) {
+                for (int k = 0; k < D; k++) {
+                    int q;
+                    switch (frame.format) {
+                        case ConfigurationBinaryEncoder.FLOAT32:
+                            frame.coordinates[i][j][k] = buffer.getFloat();
+                            continue;
+                        case ConfigurationBinaryEncoder.QUANTIZED:
+                            q = buffer.getShort() & 0xffff;
+                            break;
+                        case ConfigurationBinaryEncoder.DELTA:
+                            int zigzag = 0;
+                            for (int shift = 0; ; shift += 7) {
+                                byte b = buffer.get();
+                                zigzag |= (b & 0x7f) << shift;
+                                if ((b & 0x80) == 0) break;
+                            }
+                            q = previous.quantized[i][j * D + k] + ((zigzag >>> 1) ^ -(zigzag & 1));
+                            break;
+                        default:
+                            throw new IllegalStateException("unknown format " + frame.format);
+                    }
+                    frame.quantized[i][j * D + k] = q;
+                    frame.coordinates[i][j][k] = (2.0 * q / 65535 - 1) * L[k];
+                }
+            }
+        }
+        assertEquals(0, buffer.remaining());
+        return frame;
+    }
+
+    private static class Frame {
+        byte format;
+        int frameNumber;
+        float[][] boxSizes;
+        double[][][] coordinates;
+        int[][] quantized;
+    }
+}